@@ -0,0 +1,65 @@
+package fr.landel.calc.config;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark of {@link HistoryIndex} over the large history of {@link HistoryIndexTest} (1M formulas): the first search, which indexes the
+ * history, and the next ones
+ *
+ * @since Mar 2, 2019
+ * @author Gilles
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoryIndexBenchmark {
+
+    private List<Formula> history;
+    private HistoryIndex index;
+
+    @Setup
+    public void setup() {
+        this.history = HistoryIndexTest.largeHistory();
+        this.index = new HistoryIndex(this.history);
+        this.index.search(HistoryIndexTest.QUERIES[0], this.history.size());
+    }
+
+    /**
+     * Search of each query from the most recent formula, the history being indexed
+     */
+    @Benchmark
+    public void search(final Blackhole blackhole) {
+        for (String query : HistoryIndexTest.QUERIES) {
+            blackhole.consume(this.index.search(query, this.history.size()));
+        }
+    }
+
+    /**
+     * First search, the history is indexed
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public int buildAndSearch() {
+        return new HistoryIndex(this.history).search("0.1234", this.history.size());
+    }
+}
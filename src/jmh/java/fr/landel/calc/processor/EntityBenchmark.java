@@ -0,0 +1,67 @@
+package fr.landel.calc.processor;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark of the construction of {@link Entity}, from values and from the input (numbers, lengths, durations and dates), and of their
+ * formatting ({@link UnityType#format(Entity, EvaluationContext)})
+ *
+ * @since Mar 1, 2019
+ * @author Gilles
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityBenchmark {
+
+    private static final String[] INPUTS = {"5", "-12.675", "1.5e10", "5m", "2ft", "10h", "3h45i12s", "2019y", "2019y03M12d"};
+
+    private final EvaluationContext context = new EvaluationContext();
+
+    private Entity[] entities;
+
+    @Setup
+    public void setup() throws ProcessorException {
+        this.entities = new Entity[INPUTS.length];
+        for (int i = 0; i < INPUTS.length; ++i) {
+            this.entities[i] = new Entity(i, INPUTS[i]);
+        }
+    }
+
+    @Benchmark
+    public void construct(final Blackhole blackhole) {
+        blackhole.consume(new Entity(0, 5.0));
+        blackhole.consume(new Entity(0, 5.0, Unity.LENGTH_METER));
+        blackhole.consume(new Entity(this.entities[6]));
+    }
+
+    @Benchmark
+    public void parse(final Blackhole blackhole) throws ProcessorException {
+        for (int i = 0; i < INPUTS.length; ++i) {
+            blackhole.consume(new Entity(i, INPUTS[i]));
+        }
+    }
+
+    @Benchmark
+    public void format(final Blackhole blackhole) {
+        for (Entity entity : this.entities) {
+            blackhole.consume(entity.getUnityType().format(entity, this.context));
+        }
+    }
+}
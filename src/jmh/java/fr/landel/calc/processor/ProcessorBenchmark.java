@@ -0,0 +1,88 @@
+package fr.landel.calc.processor;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark of {@link MainProcessor} over the formulas checked by the processor tests, each corpus replayed in the same order and with the
+ * same settings as its test.
+ *
+ * @since Mar 1, 2019
+ * @author Gilles
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProcessorBenchmark {
+
+    @Param({"ProcessorTest", "DateProcessorTest", "LengthProcessorTest", "TemperatureProcessorTest"})
+    private String corpus;
+
+    private String[] formulas;
+    private EvaluationContext[] contexts;
+    private MainProcessor processor;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        final List<String> formulas = new ArrayList<>();
+        final List<EvaluationContext> contexts = new ArrayList<>();
+
+        final Class<?> type = Class.forName(ProcessorBenchmark.class.getPackageName() + "." + this.corpus);
+        final AbstractProcessorTest test = (AbstractProcessorTest) type.getDeclaredConstructor().newInstance();
+        test.setListener((formula, context) -> {
+            formulas.add(formula);
+            contexts.add(context);
+        });
+        for (Method method : type.getDeclaredMethods()) {
+            if (method.isAnnotationPresent(Test.class)) {
+                method.setAccessible(true);
+                test.init();
+                method.invoke(test);
+            }
+        }
+
+        this.formulas = formulas.toArray(String[]::new);
+        this.contexts = contexts.toArray(EvaluationContext[]::new);
+        this.processor = new MainProcessor();
+    }
+
+    /**
+     * Processing as in the application, the compiled formulas and the results of the pure ones are cached
+     */
+    @Benchmark
+    public void process(final Blackhole blackhole) throws ProcessorException {
+        for (int i = 0; i < this.formulas.length; ++i) {
+            blackhole.consume(this.processor.process(this.formulas[i], this.contexts[i]));
+        }
+    }
+
+    /**
+     * Parsing and evaluation of each formula, without cache
+     */
+    @Benchmark
+    public void parseAndEvaluate(final Blackhole blackhole) throws ProcessorException {
+        for (int i = 0; i < this.formulas.length; ++i) {
+            blackhole.consume(new FormulaParser(MainProcessor.prepare(this.formulas[i])).parse().evaluate(this.contexts[i]));
+        }
+    }
+}
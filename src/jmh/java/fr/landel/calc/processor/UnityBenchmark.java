@@ -0,0 +1,57 @@
+package fr.landel.calc.processor;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark of {@link Unity}: the reading of the symbols and the conversions from and to each unity
+ *
+ * @since Mar 1, 2019
+ * @author Gilles
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnityBenchmark {
+
+    private static final Unity[] UNITIES = Unity.values();
+    private static final String[] SYMBOLS = Arrays.stream(UNITIES).flatMap(u -> Arrays.stream(u.getSymbols())).toArray(String[]::new);
+
+    private final Double value = 12.5;
+
+    @Benchmark
+    public void getUnities(final Blackhole blackhole) throws ProcessorException {
+        for (String symbol : SYMBOLS) {
+            blackhole.consume(Unity.getUnities(symbol, null));
+        }
+    }
+
+    @Benchmark
+    public void fromUnity(final Blackhole blackhole) {
+        for (Unity unity : UNITIES) {
+            blackhole.consume(unity.fromUnity(this.value));
+        }
+    }
+
+    @Benchmark
+    public void toUnity(final Blackhole blackhole) {
+        for (Unity unity : UNITIES) {
+            blackhole.consume(unity.toUnity(this.value));
+        }
+    }
+}
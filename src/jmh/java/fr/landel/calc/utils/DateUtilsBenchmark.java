@@ -0,0 +1,49 @@
+package fr.landel.calc.utils;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark of {@link DateUtils#toZeroNanosecond}, from years (near and far from year zero) and from dates
+ *
+ * @since Mar 1, 2019
+ * @author Gilles
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateUtilsBenchmark {
+
+    private static final int[] YEARS = {1, 4, 100, 1582, 1970, 2000, 2019, 9999, 100_000};
+    private static final LocalDateTime[] DATES = {LocalDateTime.of(1970, 1, 1, 0, 0), LocalDateTime.of(2019, 3, 1, 12, 35, 10, 123),
+            LocalDateTime.of(9999, 12, 31, 23, 59, 59)};
+
+    @Benchmark
+    public void toZeroNanosecondYear(final Blackhole blackhole) {
+        for (int year : YEARS) {
+            blackhole.consume(DateUtils.toZeroNanosecond(year));
+        }
+    }
+
+    @Benchmark
+    public void toZeroNanosecondDate(final Blackhole blackhole) {
+        for (LocalDateTime date : DATES) {
+            blackhole.consume(DateUtils.toZeroNanosecond(date));
+        }
+    }
+}
@@ -9,6 +9,7 @@ import javax.swing.UnsupportedLookAndFeelException;
 import fr.landel.calc.config.Conf;
 import fr.landel.calc.config.I18n;
 import fr.landel.calc.processor.ProcessorException;
+import fr.landel.calc.processor.ProcessorMetrics;
 import fr.landel.calc.utils.Logger;
 import fr.landel.calc.view.MainFrame;
 
@@ -33,6 +34,8 @@ public class Main {
 
         LOGGER.info("Start {}", I18n.TITLE.getI18n());
 
+        ProcessorMetrics.register();
+
         EventQueue.invokeLater(new Runnable() {
             public void run() {
                 try {
@@ -5,12 +5,13 @@ import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.regex.Pattern;
 
 import fr.landel.calc.processor.Entity;
+import fr.landel.calc.processor.EvaluationContext;
 import fr.landel.calc.processor.ProcessorException;
+import fr.landel.calc.processor.VariableScope;
 import fr.landel.calc.utils.Logger;
 import fr.landel.calc.utils.StringUtils;
 
@@ -21,6 +22,7 @@ public enum Conf {
     RADIAN("result.radian", Boolean.class, false),
     SCIENTIFIC("result.scientific", Boolean.class, false),
     PRECISION("result.precision", Integer.class, 6),
+    TIMEOUT("result.timeout", Integer.class, 10_000),
     THEME("frame.theme", (Pattern) null, "Windows"),
     X("frame.x", Integer.class, null),
     Y("frame.y", Integer.class, null),
@@ -29,6 +31,8 @@ public enum Conf {
     EXTENDED_STATE("frame.extendedState", Integer.class, Frame.NORMAL),
     KEYBOARD("frame.keyboard", Boolean.class, true),
     LOG_MODE("log.mode", Pattern.compile("^(" + Logger.LOG_MODE_CONSOLE + "|" + Logger.LOG_MODE_FILE + ")$"), Logger.LOG_MODE_CONSOLE),
+    LOG_OVERFLOW("log.overflow", Pattern.compile("^(" + Logger.OVERFLOW_BLOCK + "|" + Logger.OVERFLOW_DROP + ")$"), Logger.OVERFLOW_BLOCK),
+    LOG_BUFFER("log.buffer", Integer.class, 1024),
     UNITY_ABBREV("unity.abbrev", Boolean.class, true),
     UNITY_SPACE("unity.space", Boolean.class, true),
     VALUE_SPACE("value.space", Boolean.class, true),
@@ -129,18 +133,6 @@ public enum Conf {
         Configuration.clear(StringUtils.inject(Conf.HISTORY_FORMULA.getKey(), StringUtils.EMPTY));
     }
 
-    public static void setFormula(final int index, final Formula formula) {
-        if (formula != null) {
-            Configuration.set(Conf.HISTORY_FORMULA, index, formula.getFormula());
-            formula.getResult().ifPresent(result -> {
-                Configuration.set(Conf.HISTORY_FORMULA_STATUS, index, String.valueOf(result.isSuccess()));
-                Configuration.set(Conf.HISTORY_FORMULA_RESULT, index, result.getResult());
-            });
-        } else {
-            Configuration.set(Conf.HISTORY_FORMULA, index, null);
-        }
-    }
-
     public static List<Formula> getFormulas() {
 
         final int max = HISTORY_MAX.getInt().get();
@@ -167,18 +159,19 @@ public enum Conf {
         return formulas;
     }
 
-    public static void saveVariables() {
-        int index = 0;
-        for (Entry<String, Optional<Entity>> entry : Entity.VARIABLES.entrySet()) {
-            Configuration.set(Conf.VARIABLE_KEY, index, entry.getKey());
-            if (entry.getValue().isPresent()) {
-                Configuration.set(Conf.VARIABLE_VALUE, index, entry.getValue().get().toString());
-            }
-            ++index;
+    public static EvaluationContext getEvaluationContext(final VariableScope scope) {
+        return new EvaluationContext(RADIAN.getBoolean().get(), EXACT.getBoolean().get(), SCIENTIFIC.getBoolean().get(), PRECISION.getInt().get(),
+                UNITY_ABBREV.getBoolean().get(), UNITY_SPACE.getBoolean().get(), VALUE_SPACE.getBoolean().get(), scope);
+    }
+
+    public static void clearVariables() {
+        for (int index = 0; Configuration.get(Conf.VARIABLE_KEY, index) != null; index++) {
+            Configuration.set(Conf.VARIABLE_KEY, index, null);
+            Configuration.set(Conf.VARIABLE_VALUE, index, null);
         }
     }
 
-    public static void loadVariables() throws ProcessorException {
+    public static void loadVariables(final VariableScope scope) throws ProcessorException {
 
         final int max = VARIABLE_MAX.getInt().get();
 
@@ -188,17 +181,21 @@ public enum Conf {
             value = Configuration.get(Conf.VARIABLE_VALUE, index);
 
             if (key != null && !key.isBlank()) {
-                if (value != null) {
-                    Entity.VARIABLES.put(key, Optional.of(new Entity(0, StringUtils.replaceCommaByDot(StringUtils.removeAllSpaces(value)))));
-                } else {
-                    Entity.VARIABLES.put(key, Optional.empty());
-                }
+                loadVariable(scope, key, value);
             } else {
                 break;
             }
         }
     }
 
+    public static void loadVariable(final VariableScope scope, final String key, final String value) throws ProcessorException {
+        if (value != null) {
+            scope.set(key, new Entity(0, StringUtils.replaceCommaByDot(StringUtils.removeAllSpaces(value))));
+        } else {
+            scope.declare(key);
+        }
+    }
+
     public static Locale getLocale() {
         final String value = Configuration.get(Conf.LOCALE);
         final Locale defaultValue = (Locale) Conf.LOCALE.defaultValue;
@@ -0,0 +1,301 @@
+package fr.landel.calc.config;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * N-gram index of the history (from 1 to 3 characters), to find the formulas (or their results) containing a text, from the most recent.
+ * <p>
+ * Each entry gets an increasing identifier, so the posting list of a n-gram is sorted and stored as deltas (variable-length bytes). A
+ * search intersects the posting lists of the trigrams of the query (or uses the list of the query itself, if shorter), then checks the
+ * candidates. The entries already in the history are indexed on the first search, the next ones when added.
+ * </p>
+ *
+ * @since Feb 21, 2019
+ * @author Gilles
+ *
+ */
+public class HistoryIndex {
+
+    private static final int GRAM = 3;
+    private static final int INITIAL_GRAMS = 1 << 12;
+
+    private final List<Formula> history;
+
+    // identifiers of the history entries, in the same order
+    private int[] ids;
+    private int size;
+    private int nextId;
+
+    // open addressing, by n-gram
+    private long[] keys = new long[INITIAL_GRAMS];
+    private Postings[] postings = new Postings[INITIAL_GRAMS];
+    private int grams;
+    private boolean built;
+
+    /**
+     * Constructor
+     *
+     * @param history
+     *            the history, changes have to be reported to the index after being done in the history
+     */
+    public HistoryIndex(final List<Formula> history) {
+        this.history = history;
+        this.ids = new int[Math.max(Journal.PAGE_SIZE, history.size())];
+        for (; this.size < history.size(); ++this.size) {
+            this.ids[this.size] = this.nextId++;
+        }
+    }
+
+    /**
+     * @param formula
+     *            the formula appended to the history
+     */
+    public void add(final Formula formula) {
+        if (this.size == this.ids.length) {
+            this.ids = Arrays.copyOf(this.ids, this.size * 2);
+        }
+        final int id = this.nextId++;
+        this.ids[this.size++] = id;
+
+        if (this.built) {
+            this.index(id, formula);
+        }
+    }
+
+    /**
+     * @param index
+     *            the index of the formula removed from the history (its postings are ignored from now)
+     */
+    public void remove(final int index) {
+        if (index > -1 && index < this.size) {
+            System.arraycopy(this.ids, index + 1, this.ids, index, this.size - index - 1);
+            --this.size;
+        }
+    }
+
+    public void clear() {
+        this.size = 0;
+        this.keys = new long[INITIAL_GRAMS];
+        this.postings = new Postings[INITIAL_GRAMS];
+        this.grams = 0;
+    }
+
+    /**
+     * Finds the most recent formula, before the specified index, containing the query (case insensitive) in its text or its result
+     *
+     * @param query
+     *            the text to find
+     * @param before
+     *            the index to search before (exclusive), the history size to search from the last
+     * @return the index of the formula or -1
+     */
+    public int search(final String query, final int before) {
+        if (query == null || query.isEmpty()) {
+            return -1;
+        }
+
+        this.build();
+
+        final String text = query.toLowerCase(Locale.ROOT);
+        final int from = Math.min(before, this.size) - 1;
+
+        final long[] grams = text.length() < GRAM ? new long[] {gram(text, 0, text.length())} : grams(text, GRAM);
+        final int[][] lists = new int[grams.length][];
+        for (int i = 0; i < grams.length; ++i) {
+            final Postings list = this.get(grams[i]);
+            if (list == null) {
+                return -1;
+            }
+            lists[i] = list.decode();
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.length, b.length));
+
+        // from the rarest trigram, the most recent first
+        final int maxId = from > -1 ? this.ids[from] : -1;
+        final int[] rarest = lists[0];
+        for (int i = rarest.length - 1; i > -1; --i) {
+            final int id = rarest[i];
+            if (id > maxId || !contains(lists, id)) {
+                continue;
+            }
+            final int index = Arrays.binarySearch(this.ids, 0, this.size, id);
+            if (index > -1 && this.matches(index, text)) {
+                return index;
+            }
+        }
+
+        return -1;
+    }
+
+    private static boolean contains(final int[][] lists, final int id) {
+        for (int j = 1; j < lists.length; ++j) {
+            if (Arrays.binarySearch(lists[j], id) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean matches(final int index, final String text) {
+        final Formula formula = this.history.get(index);
+        return formula.getFormula().toLowerCase(Locale.ROOT).contains(text) || formula.getResult()
+                .map(r -> r.getResult() != null && r.getResult().toLowerCase(Locale.ROOT).contains(text)).orElse(false);
+    }
+
+    private void build() {
+        if (!this.built) {
+            this.built = true;
+            for (int i = 0; i < this.size; ++i) {
+                this.index(this.ids[i], this.history.get(i));
+            }
+        }
+    }
+
+    private void index(final int id, final Formula formula) {
+        final StringBuilder text = new StringBuilder(formula.getFormula().toLowerCase(Locale.ROOT));
+        formula.getResult().ifPresent(r -> text.append('\n').append(r.getResult() != null ? r.getResult().toLowerCase(Locale.ROOT) : ""));
+
+        for (int n = 1; n <= GRAM; ++n) {
+            for (long gram : grams(text, n)) {
+                this.getOrCreate(gram).add(id);
+            }
+        }
+    }
+
+    private Postings get(final long gram) {
+        final int mask = this.keys.length - 1;
+        for (int i = slot(gram, mask); this.postings[i] != null; i = (i + 1) & mask) {
+            if (this.keys[i] == gram) {
+                return this.postings[i];
+            }
+        }
+        return null;
+    }
+
+    private Postings getOrCreate(final long gram) {
+        final int mask = this.keys.length - 1;
+        int i = slot(gram, mask);
+        for (; this.postings[i] != null; i = (i + 1) & mask) {
+            if (this.keys[i] == gram) {
+                return this.postings[i];
+            }
+        }
+
+        final Postings list = new Postings();
+        this.keys[i] = gram;
+        this.postings[i] = list;
+        if (++this.grams * 2 > this.keys.length) {
+            this.resize();
+        }
+        return list;
+    }
+
+    private void resize() {
+        final long[] keys = this.keys;
+        final Postings[] postings = this.postings;
+        this.keys = new long[keys.length * 2];
+        this.postings = new Postings[keys.length * 2];
+
+        final int mask = this.keys.length - 1;
+        for (int j = 0; j < keys.length; ++j) {
+            if (postings[j] != null) {
+                int i = slot(keys[j], mask);
+                while (this.postings[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                this.keys[i] = keys[j];
+                this.postings[i] = postings[j];
+            }
+        }
+    }
+
+    private static int slot(final long gram, final int mask) {
+        final long h = gram * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+
+    /**
+     * @return the n-gram, the characters and the length packed in a long
+     */
+    private static long gram(final CharSequence text, final int start, final int n) {
+        long gram = n;
+        for (int i = start; i < start + n; ++i) {
+            gram = (gram << 16) | text.charAt(i);
+        }
+        return gram;
+    }
+
+    /**
+     * @return the distinct n-grams of the text
+     */
+    private static long[] grams(final CharSequence text, final int n) {
+        if (text.length() < n) {
+            return new long[0];
+        }
+
+        final long[] grams = new long[text.length() - n + 1];
+        for (int i = 0; i < grams.length; ++i) {
+            grams[i] = gram(text, i, n);
+        }
+        Arrays.sort(grams);
+
+        int distinct = 0;
+        for (int i = 0; i < grams.length; ++i) {
+            if (i == 0 || grams[i] != grams[i - 1]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    /**
+     * Increasing identifiers, stored as deltas of 7 bits per byte (the high bit is set on the last byte)
+     */
+    private static class Postings {
+        private byte[] data = new byte[4];
+        private int length;
+        private int count;
+        private int last = -1;
+
+        private void add(final int id) {
+            if (id <= this.last) {
+                return;
+            }
+            if (this.length + 5 > this.data.length) {
+                this.data = Arrays.copyOf(this.data, this.data.length * 2);
+            }
+
+            int delta = id - this.last;
+            while (delta >= 0x80) {
+                this.data[this.length++] = (byte) (delta & 0x7F);
+                delta >>>= 7;
+            }
+            this.data[this.length++] = (byte) (delta | 0x80);
+
+            this.last = id;
+            ++this.count;
+        }
+
+        private int[] decode() {
+            final int[] ids = new int[this.count];
+            int id = -1;
+            int delta = 0;
+            int shift = 0;
+            for (int i = 0, j = 0; i < this.length; ++i) {
+                final int b = this.data[i];
+                delta |= (b & 0x7F) << shift;
+                if ((b & 0x80) != 0) {
+                    id += delta;
+                    ids[j++] = id;
+                    delta = 0;
+                    shift = 0;
+                } else {
+                    shift += 7;
+                }
+            }
+            return ids;
+        }
+    }
+}
@@ -44,6 +44,7 @@ public enum I18n {
     MENU_EDIT_DELETE("menu.edit.delete", Images.DELETE, KeyEvent.VK_DELETE, InputEvent.CTRL_DOWN_MASK),
     MENU_EDIT_CLEAR("menu.edit.clear", Images.CLEAR, KeyEvent.VK_DELETE, InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK),
     MENU_EDIT_INSERT("menu.edit.insert", Images.INSERT, KeyEvent.VK_INSERT, InputEvent.CTRL_DOWN_MASK),
+    MENU_EDIT_CANCEL("menu.edit.cancel", KeyEvent.VK_ESCAPE, 0),
 
     MENU_VIEW("menu.view", KeyEvent.VK_V),
     MENU_VIEW_KEYBOARD("menu.view.keyboard", KeyEvent.VK_K, InputEvent.CTRL_DOWN_MASK),
@@ -178,6 +179,9 @@ public enum I18n {
     DIALOG_FUNCTION_PARAM_ANGULAR("dialog.function.param.angular"),
     DIALOG_FUNCTION_PARAM_DATE("dialog.function.param.date"),
     DIALOG_FUNCTION_PARAM_UNITY("dialog.function.param.unity"),
+    DIALOG_FUNCTION_PARAM_SEED("dialog.function.param.seed"),
+    DIALOG_FUNCTION_PARAM_MIN("dialog.function.param.min"),
+    DIALOG_FUNCTION_PARAM_MAX("dialog.function.param.max"),
 
     DIALOG_ERROR("dialog.error"),
     DIALOG_ERROR_SELECTION_EMPTY("dialog.error.selection.empty"),
@@ -192,6 +196,8 @@ public enum I18n {
     DIALOG_ERROR_PARAM_TANGENT("dialog.error.param.tangent"),
     DIALOG_ERROR_PARAM_EXPONENT("dialog.error.param.exponent"),
     DIALOG_ERROR_PARAM_UNITY("dialog.error.param.unity"),
+    DIALOG_ERROR_PARAM_INTEGER("dialog.error.param.integer"),
+    DIALOG_ERROR_PARAM_FACTORIAL("dialog.error.param.factorial"),
 
     ERROR_CHARACTERS_RESTRICTED("error.characters.restricted"),
     ERROR_CHARACTERS_UNKNOWN("error.characters.unknown"),
@@ -206,13 +212,16 @@ public enum I18n {
     ERROR_FORMULA_UNITIES("error.formula.unities"),
     ERROR_FORMULA_PARENTHESIS("error.formula.parenthesis"),
     ERROR_VARIABLE_VALUE_MISSING("error.variable.value.missing"),
+    ERROR_VARIABLE_CYCLE("error.variable.cycle"),
     ERROR_UNITY_TYPE("error.unity.type"),
     ERROR_UNITY_PARSE("error.unity.parse"),
     ERROR_UNITY_PARSE_TYPE("error.unity.parse.type"),
     ERROR_UNITY_BOUNDS("error.unity.bounds"),
     ERROR_UNITY_UNKNOWN("error.unity.unknown"),
     ERROR_UNITY_VALUE_MISSING("error.unity.value.missing"),
-    ERROR_OPERATOR("error.operator");
+    ERROR_OPERATOR("error.operator"),
+    ERROR_EVALUATION_CANCELLED("error.evaluation.cancelled"),
+    ERROR_EVALUATION_TIMEOUT("error.evaluation.timeout");
 
     private static final Logger LOGGER = new Logger(I18n.class);
 
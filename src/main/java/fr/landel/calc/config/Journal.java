@@ -0,0 +1,911 @@
+package fr.landel.calc.config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+import fr.landel.calc.utils.Logger;
+import fr.landel.calc.utils.StringUtils;
+
+/**
+ * Append-only journal of the history and the variables: each change is appended as one checksummed record when it happens, instead of
+ * rewriting the configuration on exit.
+ * <p>
+ * On opening, records are replayed up to the first partial or corrupted one (crash while writing), the file is truncated there. When
+ * obsolete records outnumber the live ones, the journal is rewritten in background into a temporary file, which atomically replaces it.
+ * </p>
+ * <p>
+ * Only the offsets of the formulas are kept in memory, formulas are read by page on demand and the last used pages are cached. On closing,
+ * the offsets and the variables are saved in an index file, so the next opening only replays the records appended after.
+ * </p>
+ * <p>
+ * Record: {@code length (int), CRC32 of the body (int), body (type (byte), fields)}, strings are stored as length (int, -1 for null) and
+ * UTF-8 bytes.
+ * </p>
+ *
+ * @since Feb 20, 2019
+ * @author Gilles
+ *
+ */
+public class Journal implements Closeable {
+
+    /**
+     * Number of formulas read at once
+     */
+    public static final int PAGE_SIZE = 256;
+
+    private static final Logger LOGGER = new Logger(Journal.class);
+
+    private static final String PATH = ".calculatrice";
+    private static final String FILENAME = "journal.bin";
+
+    public static final File FILE = new File(new File(System.getProperty("user.home"), PATH), FILENAME);
+
+    private static final String SUFFIX_COMPACT = ".tmp";
+    private static final String SUFFIX_INVALID = ".invalid";
+    private static final String SUFFIX_INDEX = ".idx";
+
+    private static final int MAGIC = 0x43414C4A; // CALJ
+    private static final int MAGIC_INDEX = 0x43414C49; // CALI
+    private static final byte VERSION = 1;
+    private static final int HEADER_LENGTH = Integer.BYTES + Byte.BYTES;
+    private static final int RECORD_HEADER_LENGTH = Integer.BYTES * 2;
+
+    private static final int COMPACT_MIN_RECORDS = 1_024;
+    private static final int PAGES_CACHED = 64;
+
+    private static final byte FORMULA = 1;
+    private static final byte REMOVE = 2;
+    private static final byte CLEAR = 3;
+    private static final byte TRIM = 4;
+    private static final byte VARIABLE = 5;
+    private static final byte UNSET = 6;
+
+    private static final byte STATUS_NONE = 0;
+    private static final byte STATUS_SUCCESS = 1;
+    private static final byte STATUS_ERROR = 2;
+
+    private final Path file;
+    private final Path compacted;
+    private final Path index;
+    private final int max;
+
+    private Offsets formulas = new Offsets(PAGE_SIZE);
+    // formulas added while the history is not saved, after the saved ones (only in memory)
+    private final List<Formula> unsaved = new ArrayList<>();
+    private boolean saveFormulas = true;
+    // a null value for variables declared without value
+    private final SortedMap<String, String> variables = new TreeMap<>();
+
+    private final Map<Integer, Formula[]> pages = new LinkedHashMap<>(PAGES_CACHED, 0.75f, true) {
+        private static final long serialVersionUID = -1318402547046410283L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Integer, Formula[]> eldest) {
+            return this.size() > PAGES_CACHED;
+        }
+    };
+    private final List<Formula> history = new History();
+
+    private final Encoder encoder = new Encoder();
+    private final ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+    private final ExecutorService compactor;
+
+    private FileChannel channel;
+    private int records;
+    // the last record, to check that the index matches the journal
+    private long lastPosition = -1;
+    private int lastLength;
+    private int lastChecksum;
+    private boolean scheduled;
+    // records appended while compacting, null otherwise
+    private List<ByteBuffer> pending;
+
+    /**
+     * Opens the journal, replays it and recovers it after an interrupted write
+     *
+     * @param file
+     *            the journal file (created if missing)
+     * @param max
+     *            the maximum number of formulas to keep
+     * @throws IOException
+     *             if the file cannot be read or written
+     */
+    public Journal(final Path file, final int max) throws IOException {
+        this.file = file;
+        this.compacted = file.resolveSibling(file.getFileName() + SUFFIX_COMPACT);
+        this.index = file.resolveSibling(file.getFileName() + SUFFIX_INDEX);
+        this.max = max;
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.load();
+    }
+
+    private void load() throws IOException {
+        // an interrupted compaction, the journal is still complete
+        Files.deleteIfExists(this.compacted);
+
+        long valid = 0;
+        if (Files.exists(this.file)) {
+            this.channel = FileChannel.open(this.file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            final long indexed = this.loadIndex();
+            if (indexed > 0) {
+                final ByteBuffer buffer = ByteBuffer.allocate((int) (this.channel.size() - indexed));
+                readFully(this.channel, buffer, indexed);
+                valid = this.replay(buffer.flip(), indexed);
+
+            } else {
+                final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(this.file));
+                if (buffer.remaining() >= HEADER_LENGTH && buffer.getInt() == MAGIC && buffer.get() == VERSION) {
+                    valid = this.replay(buffer, 0);
+                } else if (buffer.hasRemaining()) {
+                    this.channel.close();
+                    final Path invalid = this.file.resolveSibling(this.file.getFileName() + SUFFIX_INVALID);
+                    Files.move(this.file, invalid, StandardCopyOption.REPLACE_EXISTING);
+                    LOGGER.warn("Journal {} is not readable, moved to {}", this.file, invalid);
+                    this.channel = null;
+                }
+            }
+        } else {
+            Files.createDirectories(this.file.toAbsolutePath().getParent());
+        }
+
+        if (this.channel == null) {
+            this.channel = FileChannel.open(this.file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        if (valid == 0) {
+            this.channel.truncate(0);
+            this.channel.write(header());
+        } else if (this.channel.size() > valid) {
+            LOGGER.warn("Journal {} truncated after the last complete record, {} bytes dropped", this.file, this.channel.size() - valid);
+            this.channel.truncate(valid);
+        }
+        this.channel.position(this.channel.size());
+
+        this.trim();
+        this.scheduleCompaction();
+    }
+
+    /**
+     * Loads the index written on closing, if it matches the journal
+     *
+     * @return the position in the journal after the indexed records or 0
+     */
+    private long loadIndex() throws IOException {
+        if (!Files.exists(this.index)) {
+            return 0;
+        }
+
+        final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(this.index));
+        try {
+            final CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, buffer.limit() - Integer.BYTES);
+            if (buffer.getInt(buffer.limit() - Integer.BYTES) != (int) crc.getValue() || buffer.getInt() != MAGIC_INDEX
+                    || buffer.get() != VERSION) {
+                return 0;
+            }
+
+            final long indexed = buffer.getLong();
+            final long last = buffer.getLong();
+            final int length = buffer.getInt();
+            final int checksum = buffer.getInt();
+            if (indexed > this.channel.size() || last + RECORD_HEADER_LENGTH + length != indexed) {
+                return 0;
+            }
+
+            // the journal may have been replaced since
+            final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+            readFully(this.channel, header, last);
+            if (header.getInt(0) != length || header.getInt(Integer.BYTES) != checksum) {
+                return 0;
+            }
+
+            final int records = buffer.getInt();
+            final int count = buffer.getInt();
+            if (count < 0 || count > buffer.remaining() / Long.BYTES) {
+                return 0;
+            }
+            final Offsets formulas = new Offsets(count);
+            for (int i = 0; i < count; ++i) {
+                formulas.add(buffer.getLong());
+            }
+
+            final SortedMap<String, String> variables = new TreeMap<>();
+            for (int i = buffer.getInt(); i > 0; --i) {
+                variables.put(string(buffer), string(buffer));
+            }
+
+            this.records = records;
+            this.formulas = formulas;
+            this.variables.putAll(variables);
+            this.lastPosition = last;
+            this.lastLength = length;
+            this.lastChecksum = checksum;
+            return indexed;
+
+        } catch (BufferUnderflowException | IllegalArgumentException | EOFException e) {
+            return 0;
+        }
+    }
+
+    private void writeIndex() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(this.formulas.size() * Long.BYTES + PAGE_SIZE);
+        final DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(MAGIC_INDEX);
+        out.writeByte(VERSION);
+        out.writeLong(this.channel.size());
+        out.writeLong(this.lastPosition);
+        out.writeInt(this.lastLength);
+        out.writeInt(this.lastChecksum);
+        out.writeInt(this.records);
+        out.writeInt(this.formulas.size());
+        for (int i = 0; i < this.formulas.size(); ++i) {
+            out.writeLong(this.formulas.get(i));
+        }
+        out.writeInt(this.variables.size());
+        for (Map.Entry<String, String> variable : this.variables.entrySet()) {
+            Encoder.string(out, variable.getKey());
+            Encoder.string(out, variable.getValue());
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+
+        final Path temp = this.index.resolveSibling(this.index.getFileName() + SUFFIX_COMPACT);
+        Files.write(temp, bytes.toByteArray());
+        Files.move(temp, this.index, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @param buffer
+     *            the records
+     * @param offset
+     *            the position of the buffer in the journal
+     * @return the position after the last valid record
+     */
+    private long replay(final ByteBuffer buffer, final long offset) {
+        final CRC32 crc = new CRC32();
+        long valid = offset + buffer.position();
+
+        while (buffer.remaining() >= RECORD_HEADER_LENGTH) {
+            final int start = buffer.position();
+            final int length = buffer.getInt();
+            final int checksum = buffer.getInt();
+            if (length < 1 || length > buffer.remaining()) {
+                break;
+            }
+
+            crc.reset();
+            crc.update(buffer.array(), buffer.position(), length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            final ByteBuffer body = buffer.slice();
+            body.limit(length);
+            try {
+                apply(body, offset + start, this.formulas, this.variables);
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                break;
+            }
+
+            buffer.position(buffer.position() + length);
+            valid = offset + buffer.position();
+            ++this.records;
+            this.lastPosition = offset + start;
+            this.lastLength = length;
+            this.lastChecksum = checksum;
+        }
+
+        return valid;
+    }
+
+    /**
+     * @param body
+     *            the record body
+     * @param position
+     *            the position of the record in the journal
+     * @param formulas
+     *            the offsets of the formulas to update
+     * @param variables
+     *            the variables to update (or {@code null} to ignore them)
+     */
+    private static void apply(final ByteBuffer body, final long position, final Offsets formulas, final Map<String, String> variables) {
+        final byte type = body.get();
+        switch (type) {
+        case FORMULA:
+            if (string(body) == null || body.get() > STATUS_ERROR) {
+                throw new IllegalArgumentException("Invalid formula");
+            }
+            string(body);
+            formulas.add(position);
+            break;
+        case REMOVE:
+            final int index = body.getInt();
+            if (index > -1 && index < formulas.size()) {
+                formulas.remove(index);
+            }
+            break;
+        case CLEAR:
+            formulas.clear();
+            break;
+        case TRIM:
+            formulas.trim(body.getInt());
+            break;
+        case VARIABLE:
+            final String name = string(body);
+            final String value = string(body);
+            if (name == null) {
+                throw new IllegalArgumentException("Variable name missing");
+            } else if (variables != null) {
+                variables.put(name, value);
+            }
+            break;
+        case UNSET:
+            final String unset = string(body);
+            if (variables != null) {
+                variables.remove(unset);
+            }
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown record type: " + type);
+        }
+    }
+
+    private static String string(final ByteBuffer body) {
+        final int length = body.getInt();
+        if (length < 0) {
+            return null;
+        } else if (length > body.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        final String string = new String(body.array(), body.arrayOffset() + body.position(), length, StandardCharsets.UTF_8);
+        body.position(body.position() + length);
+        return string;
+    }
+
+    private static ByteBuffer header() {
+        return ByteBuffer.allocate(HEADER_LENGTH).putInt(MAGIC).put(VERSION).flip();
+    }
+
+    private static void readFully(final FileChannel channel, final ByteBuffer buffer, final long position) throws IOException {
+        long current = position;
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, current);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            current += read;
+        }
+    }
+
+    /**
+     * The returned list reads the journal by page, its changes are appended to the journal
+     *
+     * @return the formulas (the last ones, see max)
+     */
+    public List<Formula> getFormulas() {
+        return this.history;
+    }
+
+    /**
+     * @return the number of formulas
+     */
+    public synchronized int size() {
+        return this.formulas.size() + this.unsaved.size();
+    }
+
+    /**
+     * @param index
+     *            the index of the formula
+     * @return the formula, read with its page if not cached
+     */
+    public synchronized Formula getFormula(final int index) {
+        Objects.checkIndex(index, this.size());
+        if (index >= this.formulas.size()) {
+            return this.unsaved.get(index - this.formulas.size());
+        }
+
+        final int page = index / PAGE_SIZE;
+        Formula[] formulas = this.pages.get(page);
+        if (formulas == null) {
+            formulas = this.readPage(page);
+            this.pages.put(page, formulas);
+        }
+        return formulas[index - page * PAGE_SIZE];
+    }
+
+    private Formula[] readPage(final int page) {
+        final int from = page * PAGE_SIZE;
+        final Formula[] formulas = new Formula[Math.min(this.formulas.size() - from, PAGE_SIZE)];
+
+        for (int i = 0; i < formulas.length; ++i) {
+            try {
+                final ByteBuffer body = this.readRecord(this.formulas.get(from + i));
+                body.get();
+                final String formula = string(body);
+                final byte status = body.get();
+                final String result = string(body);
+                if (status == STATUS_NONE) {
+                    formulas[i] = new Formula(formula);
+                } else {
+                    formulas[i] = new Formula(formula, status == STATUS_SUCCESS, result);
+                }
+            } catch (IOException | BufferUnderflowException e) {
+                LOGGER.error(e, "Cannot read the formula {} in the journal {}", from + i, this.file);
+                formulas[i] = new Formula(StringUtils.EMPTY);
+            }
+        }
+
+        return formulas;
+    }
+
+    private ByteBuffer readRecord(final long position) throws IOException {
+        this.recordHeader.clear();
+        readFully(this.channel, this.recordHeader, position);
+
+        final ByteBuffer body = ByteBuffer.allocate(this.recordHeader.getInt(0));
+        readFully(this.channel, body, position + RECORD_HEADER_LENGTH);
+
+        final CRC32 crc = new CRC32();
+        crc.update(body.array());
+        if ((int) crc.getValue() != this.recordHeader.getInt(Integer.BYTES)) {
+            throw new IOException("Corrupted record at " + position);
+        }
+        return body.flip();
+    }
+
+    /**
+     * @return a copy of the variables, sorted by name (values are null for variables declared without value)
+     */
+    public synchronized SortedMap<String, String> getVariables() {
+        return new TreeMap<>(this.variables);
+    }
+
+    /**
+     * @param save
+     *            true, to append the formulas to the journal (the ones kept in memory meanwhile are appended first), false to only keep the
+     *            next ones in memory, they are lost on closing
+     */
+    public synchronized void setSaveFormulas(final boolean save) {
+        this.saveFormulas = save;
+        if (save && !this.unsaved.isEmpty()) {
+            final List<Formula> formulas = new ArrayList<>(this.unsaved);
+            this.unsaved.clear();
+            formulas.forEach(this::addFormula);
+        }
+    }
+
+    /**
+     * @return true, if the formulas are appended to the journal
+     * @category getter
+     */
+    public synchronized boolean isSaveFormulas() {
+        return this.saveFormulas;
+    }
+
+    /**
+     * Appends the formula, the oldest ones over the maximum are dropped
+     *
+     * @param formula
+     *            the formula
+     */
+    public synchronized void addFormula(final Formula formula) {
+        if (!this.saveFormulas) {
+            this.unsaved.add(formula);
+        } else {
+            final long position = this.append(this.encoder.formula(formula));
+            if (position > -1) {
+                this.formulas.add(position);
+                this.pages.remove((this.formulas.size() - 1) / PAGE_SIZE);
+            }
+        }
+        this.trim();
+    }
+
+    /**
+     * Drops the oldest formulas over the maximum, the saved ones first
+     */
+    private void trim() {
+        final int excess = this.size() - this.max;
+        if (excess > 0) {
+            final int saved = Math.min(excess, this.formulas.size());
+            if (saved > 0) {
+                this.append(this.encoder.start(TRIM).integer(this.formulas.size() - saved).build());
+                this.formulas.trim(this.formulas.size() - saved);
+                // the indexes are shifted
+                this.pages.clear();
+            }
+            this.unsaved.subList(0, excess - saved).clear();
+        }
+    }
+
+    /**
+     * @param index
+     *            the index of the formula
+     */
+    public synchronized void removeFormula(final int index) {
+        if (index >= this.formulas.size() && index < this.size()) {
+            this.unsaved.remove(index - this.formulas.size());
+        } else if (index > -1 && index < this.formulas.size()) {
+            this.append(this.encoder.start(REMOVE).integer(index).build());
+            this.formulas.remove(index);
+            this.pages.keySet().removeIf(page -> page >= index / PAGE_SIZE);
+        }
+    }
+
+    public synchronized void clearFormulas() {
+        this.unsaved.clear();
+        this.append(this.encoder.start(CLEAR).build());
+        this.formulas.clear();
+        this.pages.clear();
+    }
+
+    /**
+     * @param name
+     *            the variable name
+     * @param value
+     *            the value (null, if declared without value)
+     */
+    public synchronized void setVariable(final String name, final String value) {
+        this.append(this.encoder.start(VARIABLE).string(name).string(value).build());
+        this.variables.put(name, value);
+    }
+
+    public synchronized void removeVariable(final String name) {
+        if (this.variables.containsKey(name)) {
+            this.append(this.encoder.start(UNSET).string(name).build());
+            this.variables.remove(name);
+        }
+    }
+
+    /**
+     * @return the position of the record or -1 on failure
+     */
+    private long append(final ByteBuffer record) {
+        if (this.channel == null) {
+            LOGGER.warn("Journal {} closed, change ignored", this.file);
+            return -1;
+        }
+
+        long position = -1;
+        try {
+            position = this.channel.position();
+            write(this.channel, record);
+
+            ++this.records;
+            this.lastPosition = position;
+            this.lastLength = record.getInt(0);
+            this.lastChecksum = record.getInt(Integer.BYTES);
+            if (this.pending != null) {
+                this.pending.add(record.rewind());
+            }
+        } catch (IOException e) {
+            LOGGER.error(e, "Cannot write the journal {}", this.file);
+            position = -1;
+        }
+
+        this.scheduleCompaction();
+        return position;
+    }
+
+    private void scheduleCompaction() {
+        if (!this.scheduled && this.records > COMPACT_MIN_RECORDS && this.records > 2 * (this.formulas.size() + this.variables.size())) {
+            this.scheduled = true;
+            this.compactor.execute(() -> {
+                try {
+                    this.compact();
+                } catch (IOException e) {
+                    // the journal may be closed meanwhile
+                    if (this.isOpen()) {
+                        LOGGER.error(e, "Cannot compact the journal {}", this.file);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Rewrites the journal with only the live records, changes done meanwhile are appended to both files
+     *
+     * @throws IOException
+     *             if the compacted file cannot be written
+     */
+    public void compact() throws IOException {
+        final Offsets formulas;
+        final Map<String, String> variables;
+        final FileChannel source;
+        synchronized (this) {
+            if (this.pending != null || this.channel == null) {
+                return;
+            }
+            formulas = this.formulas.copy();
+            variables = new TreeMap<>(this.variables);
+            source = this.channel;
+            this.pending = new ArrayList<>();
+        }
+
+        final Encoder encoder = new Encoder();
+        final Offsets moved = new Offsets(formulas.size());
+        final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+        try (FileChannel out = FileChannel.open(this.compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = write(out, header());
+            ByteBuffer last = null;
+
+            // formulas are copied as is
+            for (int i = 0; i < formulas.size(); ++i) {
+                header.clear();
+                readFully(source, header, formulas.get(i));
+                last = ByteBuffer.allocate(RECORD_HEADER_LENGTH + header.getInt(0));
+                readFully(source, last, formulas.get(i));
+
+                moved.add(position);
+                position += write(out, last.flip());
+            }
+            for (Map.Entry<String, String> variable : variables.entrySet()) {
+                last = encoder.start(VARIABLE).string(variable.getKey()).string(variable.getValue()).build();
+                position += write(out, last);
+            }
+
+            synchronized (this) {
+                if (this.channel == null) {
+                    return;
+                }
+                for (ByteBuffer record : this.pending) {
+                    final ByteBuffer body = record.duplicate().position(RECORD_HEADER_LENGTH).slice();
+                    apply(body, position, moved, null);
+
+                    last = record;
+                    position += write(out, record);
+                }
+                out.force(true);
+                out.close();
+
+                // closed first, an open file cannot be replaced on every system
+                this.channel.close();
+                try {
+                    Files.move(this.compacted, this.file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    Files.deleteIfExists(this.index);
+
+                    this.formulas = moved;
+                    this.records = formulas.size() + variables.size() + this.pending.size();
+                    if (last != null) {
+                        this.lastPosition = position - last.limit();
+                        this.lastLength = last.getInt(0);
+                        this.lastChecksum = last.getInt(Integer.BYTES);
+                    } else {
+                        this.lastPosition = -1;
+                    }
+                } finally {
+                    this.channel = FileChannel.open(this.file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    this.channel.position(this.channel.size());
+                }
+            }
+
+            LOGGER.info("Journal {} compacted, {} records", this.file, this.records);
+
+        } finally {
+            synchronized (this) {
+                this.pending = null;
+                this.scheduled = false;
+            }
+            Files.deleteIfExists(this.compacted);
+        }
+    }
+
+    /**
+     * @return the number of bytes written
+     */
+    private static int write(final FileChannel channel, final ByteBuffer record) throws IOException {
+        final int length = record.remaining();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        return length;
+    }
+
+    private synchronized boolean isOpen() {
+        return this.channel != null;
+    }
+
+    /**
+     * Flushes the journal to the disk, saves the index and closes it, later changes are ignored
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        // not interrupted, an interrupted channel is closed
+        this.compactor.shutdown();
+        if (this.channel != null) {
+            try {
+                this.channel.force(true);
+                this.writeIndex();
+            } finally {
+                this.channel.close();
+                this.channel = null;
+            }
+        }
+    }
+
+    /**
+     * View of the formulas in the journal
+     */
+    private class History extends AbstractList<Formula> implements RandomAccess {
+
+        @Override
+        public Formula get(final int index) {
+            return Journal.this.getFormula(index);
+        }
+
+        @Override
+        public int size() {
+            return Journal.this.size();
+        }
+
+        @Override
+        public boolean add(final Formula formula) {
+            Journal.this.addFormula(formula);
+            return true;
+        }
+
+        @Override
+        public Formula remove(final int index) {
+            final Formula formula = this.get(index);
+            Journal.this.removeFormula(index);
+            return formula;
+        }
+
+        @Override
+        public void clear() {
+            Journal.this.clearFormulas();
+        }
+    }
+
+    /**
+     * Growable array of positions
+     */
+    private static class Offsets {
+        private long[] values;
+        private int size;
+
+        private Offsets(final int capacity) {
+            this.values = new long[Math.max(capacity, PAGE_SIZE)];
+        }
+
+        private int size() {
+            return this.size;
+        }
+
+        private long get(final int index) {
+            return this.values[index];
+        }
+
+        private void add(final long value) {
+            if (this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+            }
+            this.values[this.size++] = value;
+        }
+
+        private void remove(final int index) {
+            System.arraycopy(this.values, index + 1, this.values, index, this.size - index - 1);
+            --this.size;
+        }
+
+        private void clear() {
+            this.size = 0;
+        }
+
+        private void trim(final int keep) {
+            if (this.size > keep) {
+                System.arraycopy(this.values, this.size - keep, this.values, 0, keep);
+                this.size = keep;
+            }
+        }
+
+        private Offsets copy() {
+            final Offsets copy = new Offsets(this.size);
+            System.arraycopy(this.values, 0, copy.values, 0, this.size);
+            copy.size = this.size;
+            return copy;
+        }
+    }
+
+    /**
+     * Record builder, reused for each record
+     */
+    private static class Encoder {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(this.bytes);
+        private final CRC32 crc = new CRC32();
+
+        private Encoder start(final byte type) {
+            this.bytes.reset();
+            return this.integer(0).integer(0).put(type);
+        }
+
+        private ByteBuffer formula(final Formula formula) {
+            final Result result = formula.getResult().orElse(null);
+            if (result == null) {
+                return this.start(FORMULA).string(formula.getFormula()).put(STATUS_NONE).string(null).build();
+            }
+            return this.start(FORMULA).string(formula.getFormula()).put(result.isSuccess() ? STATUS_SUCCESS : STATUS_ERROR)
+                    .string(result.getResult()).build();
+        }
+
+        private Encoder put(final byte value) {
+            this.bytes.write(value);
+            return this;
+        }
+
+        private Encoder integer(final int value) {
+            try {
+                this.out.writeInt(value);
+            } catch (IOException e) {
+                // cannot happen in memory
+                throw new IllegalStateException(e);
+            }
+            return this;
+        }
+
+        private Encoder string(final String value) {
+            try {
+                string(this.out, value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return this;
+        }
+
+        private static void string(final DataOutputStream out, final String value) throws IOException {
+            if (value == null) {
+                out.writeInt(-1);
+            } else {
+                final byte[] data = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(data.length);
+                out.write(data);
+            }
+        }
+
+        private ByteBuffer build() {
+            final byte[] record = this.bytes.toByteArray();
+            final int length = record.length - RECORD_HEADER_LENGTH;
+
+            this.crc.reset();
+            this.crc.update(record, RECORD_HEADER_LENGTH, length);
+
+            return ByteBuffer.wrap(record).putInt(0, length).putInt(Integer.BYTES, (int) this.crc.getValue());
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package fr.landel.calc.processor;
+
+import java.time.Duration;
+import java.util.SortedSet;
+import java.util.function.BiFunction;
+import java.util.function.ToDoubleFunction;
+
+import fr.landel.calc.utils.DateUtils;
+
+/**
+ * Accumulator of the aggregate functions, the values are read one at a time in one pass, without being stored.
+ * <p>
+ * The sum is compensated (Neumaier, the low-order bits lost by each addition are accumulated apart) and the variance is updated with the
+ * Welford recurrence, so the results keep their accuracy on long lists of values. The values have to be numbers or of the same type of
+ * unity (durations included, not dates).
+ * </p>
+ *
+ * @since Feb 27, 2019
+ * @author Gilles
+ *
+ */
+public class Aggregate {
+
+    private int index;
+    private UnityType type;
+    private SortedSet<Unity> unities;
+
+    private long count;
+
+    private double sum;
+    private double compensation;
+
+    private double mean;
+    private double squares;
+
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Adds a value
+     *
+     * @param entity
+     *            the value
+     * @return false, if not a number nor a value with a unity of the same type as the previous ones
+     */
+    public boolean add(final Entity entity) {
+        if (entity == null || entity.isUnity() || entity.isDate()) {
+            return false;
+        }
+
+        if (this.count == 0) {
+            this.type = entity.getUnityType();
+            this.unities = entity.getUnities();
+        } else if (!this.type.equals(entity.getUnityType())) {
+            return false;
+        } else if (!this.unities.equals(entity.getUnities())) {
+            this.unities = Unity.merge(this.unities, entity.getUnities());
+        }
+        this.index = entity.getIndex();
+
+        this.add(entity.getValue());
+        return true;
+    }
+
+    /**
+     * Adds a number
+     *
+     * @param value
+     *            the value
+     */
+    public void add(final double value) {
+        ++this.count;
+
+        final double total = this.sum + value;
+        if (Math.abs(this.sum) >= Math.abs(value)) {
+            this.compensation += (this.sum - total) + value;
+        } else {
+            this.compensation += (value - total) + this.sum;
+        }
+        this.sum = total;
+
+        final double delta = value - this.mean;
+        this.mean += delta / this.count;
+        this.squares += delta * (value - this.mean);
+
+        this.min = Math.min(this.min, value);
+        this.max = Math.max(this.max, value);
+    }
+
+    /**
+     * @return the number of values
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * @return the compensated sum
+     */
+    public double getSum() {
+        return this.sum + this.compensation;
+    }
+
+    /**
+     * @return the mean, from the compensated sum
+     */
+    public double getAverage() {
+        return this.count > 0 ? this.getSum() / this.count : Double.NaN;
+    }
+
+    public double getMin() {
+        return this.count > 0 ? this.min : Double.NaN;
+    }
+
+    public double getMax() {
+        return this.count > 0 ? this.max : Double.NaN;
+    }
+
+    /**
+     * @return the population variance (the values are the whole population)
+     */
+    public double getVariance() {
+        return this.count > 0 ? this.squares / this.count : Double.NaN;
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(this.getVariance());
+    }
+
+    /**
+     * @param statistic
+     *            the statistic
+     * @return the result, with the unities of the values (as a duration for durations), or {@code null} if no value or if the statistic
+     *         doesn't apply to values with unities
+     */
+    public Entity get(final Statistic statistic) {
+        if (this.count == 0) {
+            return null;
+        }
+
+        final double value = statistic.function.applyAsDouble(this);
+        if (UnityType.NUMBER.equals(this.type)) {
+            return new Entity(this.index, value, this.unities);
+
+        } else if (!statistic.typed) {
+            return null;
+
+        } else if (UnityType.DATE.equals(this.type)) {
+            final long seconds = (long) Math.floor(value / DateUtils.NANO_PER_SECOND);
+            final Duration duration = Duration.ofSeconds(seconds, (long) (value - seconds * DateUtils.NANO_PER_SECOND));
+            return new Entity(this.index, value, duration, this.unities);
+
+        } else {
+            return new Entity(this.index, value, this.unities);
+        }
+    }
+
+    /**
+     * @param statistic
+     *            the statistic
+     * @return the processor of the function on already evaluated values, {@code null} if a value cannot be aggregated
+     */
+    public static BiFunction<EvaluationContext, Entity[], Entity> processor(final Statistic statistic) {
+        return (c, e) -> {
+            final Aggregate aggregate = new Aggregate();
+            for (int i = e.length - 1; i >= 0; --i) {
+                if (!aggregate.add(e[i])) {
+                    return null;
+                }
+            }
+            return aggregate.get(statistic);
+        };
+    }
+
+    /**
+     * Statistics computed from the aggregate
+     */
+    public enum Statistic {
+        SUM(Aggregate::getSum, true),
+        AVERAGE(Aggregate::getAverage, true),
+        MIN(Aggregate::getMin, true),
+        MAX(Aggregate::getMax, true),
+        STANDARD_DEVIATION(Aggregate::getStandardDeviation, true),
+        // the unity would be squared
+        VARIANCE(Aggregate::getVariance, false);
+
+        private final ToDoubleFunction<Aggregate> function;
+        private final boolean typed;
+
+        private Statistic(final ToDoubleFunction<Aggregate> function, final boolean typed) {
+            this.function = function;
+            this.typed = typed;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package fr.landel.calc.processor;
+
+import java.io.Closeable;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import fr.landel.calc.config.Formula;
+import fr.landel.calc.config.I18n;
+import fr.landel.calc.utils.Logger;
+
+/**
+ * Evaluates the formulas out of the caller thread, one at a time in submission order (the {@link MainProcessor} is only used by the
+ * evaluation thread).
+ * <p>
+ * Each evaluation gets its own {@link Cancellation}, requested on cancel or when the time budget is exceeded. The results, failures and
+ * cancellations included, are posted to the callback executor in submission order.
+ * </p>
+ */
+public class AsyncProcessor implements Closeable {
+
+    private static final Logger LOGGER = new Logger(AsyncProcessor.class);
+
+    private final MainProcessor processor;
+    private final Executor callbackExecutor;
+    private final ExecutorService evaluator;
+    private final ScheduledExecutorService watchdog;
+
+    // submitted and not yet posted
+    private final Queue<Evaluation> pending = new ConcurrentLinkedQueue<>();
+
+    // context of the running evaluation, for the listeners called meanwhile (in the evaluation thread or in the propagation workers)
+    private volatile EvaluationContext running;
+
+    /**
+     * Constructor
+     *
+     * @param processor
+     *            the processor, only used by the evaluation thread from now
+     * @param callbackExecutor
+     *            the executor of the callbacks (like {@code SwingUtilities::invokeLater})
+     */
+    public AsyncProcessor(final MainProcessor processor, final Executor callbackExecutor) {
+        this.processor = processor;
+        this.callbackExecutor = callbackExecutor;
+        this.evaluator = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "evaluator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "evaluator-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Submits a formula
+     *
+     * @param input
+     *            the formula
+     * @param context
+     *            the evaluation context (settings read in the calling thread)
+     * @param timeout
+     *            the time budget in milliseconds, from the evaluation start (0 or less for none)
+     * @param callback
+     *            the consumer of the result, a failure is given as an error formula
+     * @return the evaluation, to cancel it
+     */
+    public Evaluation submit(final String input, final EvaluationContext context, final long timeout, final Consumer<Formula> callback) {
+        return this.submit(input, context, timeout, false, callback);
+    }
+
+    /**
+     * Submits a formula
+     *
+     * @param input
+     *            the formula
+     * @param context
+     *            the evaluation context (settings read in the calling thread)
+     * @param timeout
+     *            the time budget in milliseconds, from the evaluation start (0 or less for none)
+     * @param watch
+     *            true, to recompute the formula when the variables it reads are re-bound (see
+     *            {@link MainProcessor#process(String, EvaluationContext, boolean)})
+     * @param callback
+     *            the consumer of the result, a failure is given as an error formula
+     * @return the evaluation, to cancel it
+     */
+    public Evaluation submit(final String input, final EvaluationContext context, final long timeout, final boolean watch,
+            final Consumer<Formula> callback) {
+        final Evaluation evaluation = new Evaluation(input, context, timeout, watch, callback);
+        this.pending.add(evaluation);
+        this.evaluator.execute(evaluation);
+        return evaluation;
+    }
+
+    /**
+     * @return the context of the running evaluation, as submitted (settings read in the submitting thread)
+     */
+    public Optional<EvaluationContext> getRunningContext() {
+        return Optional.ofNullable(this.running);
+    }
+
+    /**
+     * @return true, if evaluations are running or waiting
+     */
+    public boolean isBusy() {
+        return !this.pending.isEmpty();
+    }
+
+    /**
+     * Cancels the running evaluation and the waiting ones
+     */
+    public void cancelAll() {
+        this.pending.forEach(Evaluation::cancel);
+    }
+
+    @Override
+    public void close() {
+        this.cancelAll();
+        this.evaluator.shutdown();
+        this.watchdog.shutdownNow();
+    }
+
+    /**
+     * A submitted formula
+     */
+    public class Evaluation implements Runnable {
+
+        private final String input;
+        private final EvaluationContext context;
+        private final long timeout;
+        private final boolean watch;
+        private final Consumer<Formula> callback;
+        private final Cancellation cancellation = new Cancellation();
+
+        private Evaluation(final String input, final EvaluationContext context, final long timeout, final boolean watch,
+                final Consumer<Formula> callback) {
+            this.input = input;
+            this.context = context.withCancellation(this.cancellation);
+            this.timeout = timeout;
+            this.watch = watch;
+            this.callback = callback;
+        }
+
+        /**
+         * Cancels the evaluation, if not yet finished
+         */
+        public void cancel() {
+            this.cancellation.cancel(I18n.ERROR_EVALUATION_CANCELLED);
+        }
+
+        @Override
+        public void run() {
+            Formula result;
+            ScheduledFuture<?> expiration = null;
+            try {
+                this.cancellation.check();
+                if (this.timeout > 0) {
+                    expiration = watchdog.schedule(() -> this.cancellation.cancel(I18n.ERROR_EVALUATION_TIMEOUT, this.timeout), this.timeout,
+                            TimeUnit.MILLISECONDS);
+                }
+                running = this.context;
+                result = processor.process(this.input, this.context, this.watch);
+
+            } catch (ProcessorException e) {
+                result = new Formula(this.input, false, e.getMessage());
+
+            } catch (RuntimeException | StackOverflowError e) {
+                LOGGER.error(e, "Cannot evaluate '{}'", this.input);
+                result = new Formula(this.input, false, I18n.ERROR_RESULT_EVAL.getI18n(this.input, e.getClass().getSimpleName()));
+
+            } finally {
+                running = null;
+                if (expiration != null) {
+                    expiration.cancel(false);
+                }
+            }
+
+            final Formula formula = result;
+            callbackExecutor.execute(() -> {
+                pending.remove(this);
+                this.callback.accept(formula);
+            });
+        }
+
+        /**
+         * @return the submitted formula
+         * @category getter
+         */
+        public String getInput() {
+            return this.input;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package fr.landel.calc.processor;
+
+import fr.landel.calc.config.I18n;
+
+/**
+ * Cancellation request of an evaluation, checked by the processors between operator steps (cooperative, the evaluation thread is never
+ * interrupted). The first reason given is kept.
+ */
+public class Cancellation {
+
+    /**
+     * Never cancelled
+     */
+    public static final Cancellation NONE = new Cancellation();
+
+    private volatile I18n reason;
+    private volatile Object[] params;
+
+    /**
+     * Requests the cancellation, ignored on {@link #NONE} or if already cancelled
+     *
+     * @param reason
+     *            the error message
+     * @param params
+     *            the message parameters
+     */
+    public synchronized void cancel(final I18n reason, final Object... params) {
+        if (this != NONE && this.reason == null) {
+            this.params = params;
+            this.reason = reason;
+        }
+    }
+
+    public boolean isCancelled() {
+        return this.reason != null;
+    }
+
+    /**
+     * @throws ProcessorException
+     *             if cancelled, with the reason as message
+     */
+    public void check() throws ProcessorException {
+        final I18n reason = this.reason;
+        if (reason != null) {
+            throw new ProcessorException(reason, this.params);
+        }
+    }
+}
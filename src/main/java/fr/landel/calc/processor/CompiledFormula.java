@@ -0,0 +1,82 @@
+package fr.landel.calc.processor;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Formula parsed once, can be evaluated many times (and concurrently) against different contexts.
+ */
+public class CompiledFormula {
+
+    private final String formula;
+    private final FormulaProcessor processor;
+    private final String[] variables;
+    private final String[] assigned;
+    private final boolean pure;
+
+    public CompiledFormula(final String formula, final FormulaProcessor processor, final String[] variables, final String[] assigned,
+            final boolean pure) {
+        this.formula = formula;
+        this.processor = Objects.requireNonNull(processor);
+        this.variables = variables;
+        this.assigned = assigned;
+        this.pure = pure;
+    }
+
+    /**
+     * @return the prepared formula
+     * @category getter
+     */
+    public String getFormula() {
+        return this.formula;
+    }
+
+    /**
+     * @return the names of the variables used by the formula
+     * @category getter
+     */
+    public String[] getVariables() {
+        return Arrays.copyOf(this.variables, this.variables.length);
+    }
+
+    /**
+     * @return the count of variables used by the formula
+     */
+    int variableCount() {
+        return this.variables.length;
+    }
+
+    /**
+     * @param index
+     *            the index of the variable, from 0 to {@link #variableCount()} excluded
+     * @return the name of the variable used by the formula (without copying the array, unlike {@link #getVariables()})
+     */
+    String getVariable(final int index) {
+        return this.variables[index];
+    }
+
+    /**
+     * @return the names of the variables assigned by the formula (left operand of '=')
+     * @category getter
+     */
+    public String[] getAssigned() {
+        return Arrays.copyOf(this.assigned, this.assigned.length);
+    }
+
+    /**
+     * @return true, if the formula has no side effect (no assignment) and no volatile function (like random)
+     * @category getter
+     */
+    public boolean isPure() {
+        return this.pure;
+    }
+
+    public Entity evaluate(final EvaluationContext context) throws ProcessorException {
+        return this.processor.process(Objects.requireNonNull(context));
+    }
+
+    @Override
+    public String toString() {
+        return this.formula;
+    }
+}
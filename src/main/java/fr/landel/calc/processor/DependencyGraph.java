@@ -0,0 +1,323 @@
+package fr.landel.calc.processor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import fr.landel.calc.config.Formula;
+import fr.landel.calc.config.I18n;
+
+/**
+ * Dependencies between variables and the stored formulas using them. When a variable is re-bound, only the formulas depending (directly or not)
+ * on it are recomputed, layer by layer in topological order (formulas of the same layer are independent and may be recomputed in parallel).
+ */
+public class DependencyGraph {
+
+    public static final int PARALLEL_THRESHOLD = 8;
+
+    private final Map<String, Node> definitions = new HashMap<>();
+    private final Map<String, Node> watched = new LinkedHashMap<>();
+    private final Map<String, Set<Node>> dependents = new HashMap<>();
+
+    private final List<Consumer<Formula>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Checks the formula can be defined, before its evaluation
+     *
+     * @param formula
+     *            the compiled formula
+     * @throws ProcessorException
+     *             if the formula would create a circular dependency
+     */
+    public synchronized void check(final CompiledFormula formula) throws ProcessorException {
+        final Node node = new Node(formula);
+        if (!node.assigned.isEmpty()) {
+            this.checkCycle(node);
+        }
+    }
+
+    /**
+     * Registers the formula as the definition of the variables it assigns (replacing their previous definitions), once evaluated
+     *
+     * @param formula
+     *            the compiled formula
+     * @return true, if the formula assigns at least one variable
+     * @throws ProcessorException
+     *             if the new definition creates a circular dependency
+     */
+    public synchronized boolean define(final CompiledFormula formula) throws ProcessorException {
+        final Node node = new Node(formula);
+        if (node.assigned.isEmpty()) {
+            return false;
+        }
+
+        this.checkCycle(node);
+
+        for (String variable : node.assigned) {
+            final Node previous = this.definitions.put(variable, node);
+            if (previous != null && !this.definitions.containsValue(previous)) {
+                this.unlink(previous);
+            }
+        }
+        this.link(node);
+
+        return true;
+    }
+
+    /**
+     * Stores the formula, to be recomputed when one of its variables changes
+     *
+     * @param formula
+     *            the compiled formula
+     */
+    public synchronized void watch(final CompiledFormula formula) {
+        final Node node = new Node(formula);
+        final Node previous = this.watched.put(formula.getFormula(), node);
+        if (previous != null) {
+            this.unlink(previous);
+        }
+        this.link(node);
+    }
+
+    public synchronized void unwatch(final CompiledFormula formula) {
+        this.unwatch(formula.getFormula());
+    }
+
+    /**
+     * @param formula
+     *            the prepared formula, as given by {@link CompiledFormula#getFormula()}
+     */
+    public synchronized void unwatch(final String formula) {
+        final Node previous = this.watched.remove(formula);
+        if (previous != null) {
+            this.unlink(previous);
+        }
+    }
+
+    /**
+     * Removes all the stored formulas, the definitions are kept
+     */
+    public synchronized void unwatchAll() {
+        this.watched.values().forEach(this::unlink);
+        this.watched.clear();
+    }
+
+    public synchronized void clear() {
+        this.definitions.clear();
+        this.watched.clear();
+        this.dependents.clear();
+    }
+
+    public void addListener(final Consumer<Formula> listener) {
+        this.listeners.add(listener);
+    }
+
+    public void removeListener(final Consumer<Formula> listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * @param variable
+     *            the variable name
+     * @return the formulas directly using the variable
+     */
+    public synchronized List<String> getDependents(final String variable) {
+        return this.dependents.getOrDefault(variable, Collections.emptySet()).stream().map(n -> n.formula.getFormula()).sorted()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Recomputes, in topological order, the formulas depending on the changed variables. If a formula fails, the formulas depending on it are
+     * not recomputed and are reported with the same error.
+     *
+     * @param changed
+     *            the re-bound variables
+     * @param context
+     *            the evaluation context
+     * @return the recomputed formulas, in computation order
+     */
+    public List<Formula> propagate(final Collection<String> changed, final EvaluationContext context) {
+        final List<List<Node>> layers;
+        synchronized (this) {
+            layers = this.sort(this.collect(changed));
+        }
+
+        final Map<Node, String> failures = new HashMap<>();
+        final List<Formula> results = new ArrayList<>();
+
+        for (List<Node> layer : layers) {
+            // a random stream by formula, split in the layer order so the results don't depend on the scheduling
+            final EvaluationContext[] contexts = new EvaluationContext[layer.size()];
+            for (int i = 0; i < contexts.length; ++i) {
+                contexts[i] = context.withSplitRandom();
+            }
+
+            final IntStream indexes = IntStream.range(0, layer.size());
+            final List<Formula> layerResults = (layer.size() < PARALLEL_THRESHOLD ? indexes : indexes.parallel())
+                    .mapToObj(i -> layer.get(i).compute(contexts[i], failures)).collect(Collectors.toList());
+
+            for (int i = 0; i < layer.size(); ++i) {
+                final Formula result = layerResults.get(i);
+                if (!result.getResult().get().isSuccess()) {
+                    failures.put(layer.get(i), result.getResult().get().getResult());
+                }
+                results.add(result);
+            }
+        }
+
+        for (Formula result : results) {
+            this.listeners.forEach(l -> l.accept(result));
+        }
+
+        return results;
+    }
+
+    private void checkCycle(final Node node) throws ProcessorException {
+        final List<String> cycle = this.findCycle(node);
+        if (!cycle.isEmpty()) {
+            throw new ProcessorException(I18n.ERROR_VARIABLE_CYCLE, String.join(" -> ", cycle));
+        }
+    }
+
+    private void link(final Node node) {
+        node.reads.forEach(v -> this.dependents.computeIfAbsent(v, k -> new LinkedHashSet<>()).add(node));
+    }
+
+    private void unlink(final Node node) {
+        for (String variable : node.reads) {
+            final Set<Node> nodes = this.dependents.get(variable);
+            if (nodes != null && nodes.remove(node) && nodes.isEmpty()) {
+                this.dependents.remove(variable);
+            }
+        }
+    }
+
+    /**
+     * Depth first search from the variables read by the node through their definitions, a cycle exists if one of the variables assigned by the
+     * node is reached
+     */
+    private List<String> findCycle(final Node node) {
+        final Set<String> visited = new HashSet<>();
+        final Deque<String> path = new ArrayDeque<>();
+
+        for (String variable : node.reads) {
+            if (this.findCycle(node, variable, visited, path)) {
+                final List<String> cycle = new ArrayList<>(path);
+                Collections.reverse(cycle);
+                cycle.add(0, cycle.get(cycle.size() - 1));
+                return cycle;
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private boolean findCycle(final Node node, final String variable, final Set<String> visited, final Deque<String> path) {
+        path.push(variable);
+        if (node.assigned.contains(variable)) {
+            return true;
+        }
+
+        final Node definition = this.definitions.get(variable);
+        if (visited.add(variable) && definition != null) {
+            for (String read : definition.reads) {
+                if (this.findCycle(node, read, visited, path)) {
+                    return true;
+                }
+            }
+        }
+        path.pop();
+        return false;
+    }
+
+    private Set<Node> collect(final Collection<String> changed) {
+        final Set<Node> nodes = new LinkedHashSet<>();
+        final Deque<String> queue = new ArrayDeque<>(changed);
+        final Set<String> seen = new HashSet<>(changed);
+
+        while (!queue.isEmpty()) {
+            for (Node node : this.dependents.getOrDefault(queue.poll(), Collections.emptySet())) {
+                if (nodes.add(node)) {
+                    node.assigned.stream().filter(seen::add).forEach(queue::add);
+                }
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Kahn's algorithm restricted to the affected nodes, each layer only depends on the previous ones
+     */
+    private List<List<Node>> sort(final Set<Node> nodes) {
+        final Map<Node, Integer> degrees = new HashMap<>();
+        final Map<Node, List<Node>> successors = new HashMap<>();
+
+        for (Node node : nodes) {
+            degrees.putIfAbsent(node, 0);
+            for (String variable : node.assigned) {
+                for (Node dependent : this.dependents.getOrDefault(variable, Collections.emptySet())) {
+                    if (nodes.contains(dependent) && dependent != node) {
+                        successors.computeIfAbsent(node, k -> new ArrayList<>()).add(dependent);
+                        degrees.merge(dependent, 1, Integer::sum);
+                    }
+                }
+            }
+        }
+
+        final List<List<Node>> layers = new ArrayList<>();
+        List<Node> layer = nodes.stream().filter(n -> degrees.get(n) == 0).collect(Collectors.toList());
+        while (!layer.isEmpty()) {
+            layers.add(layer);
+            final List<Node> next = new ArrayList<>();
+            for (Node node : layer) {
+                for (Node successor : successors.getOrDefault(node, Collections.emptyList())) {
+                    if (degrees.merge(successor, -1, Integer::sum) == 0) {
+                        next.add(successor);
+                    }
+                }
+            }
+            layer = next;
+        }
+        return layers;
+    }
+
+    private static class Node {
+        private final CompiledFormula formula;
+        private final Set<String> assigned;
+        private final Set<String> reads;
+
+        private Node(final CompiledFormula formula) {
+            this.formula = formula;
+            this.assigned = new LinkedHashSet<>(Arrays.asList(formula.getAssigned()));
+            this.reads = new LinkedHashSet<>(Arrays.asList(formula.getVariables()));
+            this.reads.removeAll(this.assigned);
+        }
+
+        private Formula compute(final EvaluationContext context, final Map<Node, String> failures) {
+            final String failure = failures.keySet().stream().filter(n -> n.assigned.stream().anyMatch(this.reads::contains)).map(failures::get)
+                    .findFirst().orElse(null);
+            if (failure != null) {
+                return new Formula(this.formula.getFormula(), false, failure);
+            }
+
+            try {
+                return new Formula(this.formula.getFormula(), true, this.formula.evaluate(context).toString(context));
+            } catch (ProcessorException e) {
+                return new Formula(this.formula.getFormula(), false, e.getMessage());
+            }
+        }
+    }
+}
@@ -1,17 +1,16 @@
 package fr.landel.calc.processor;
 
+import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import fr.landel.calc.config.I18n;
@@ -24,70 +23,111 @@ public class Entity {
 
     private static final Logger LOGGER = new Logger(Entity.class);
 
-    public static final Map<String, Optional<Entity>> VARIABLES = new HashMap<>();
-
     public static final Pattern PATTERN_VARIABLE = Pattern.compile("^\\$[a-zA-Z_]+$");
 
-    private static final Pattern PATTERN_NUMBER = Pattern.compile("([+-]?(:?[0-9]+(:?\\.[0-9]+)?|\\.[0-9]+)([Ee][+-]?[0-9]+)?)([a-zA-Z°'\"²³]+)?");
-    private static final int GROUP_NUMBER = 0;
-    private static final int GROUP_NUMBER_DECIMAL = 1;
-    private static final int GROUP_NUMBER_UNITY = 5;
+    private static final char DOLLAR = StringUtils.DOLLAR.charAt(0);
 
-    private static final Pattern PATTERN_UNITY = Pattern.compile("^[a-zA-Z°'\"²³]+$");
+    private static final byte NOT_TEMPORAL = 0;
+    private static final byte DATE = 1;
+    private static final byte DURATION = 2;
 
     private final int index;
     private Double value;
-    private Optional<LocalDateTime> date;
-    private Optional<Duration> duration;
+    // date (UTC epoch second and nano of second) or duration (seconds and nano adjustment), kept as primitives
+    private byte temporal = NOT_TEMPORAL;
+    private long seconds;
+    private int nanos;
+    // exact mode: bound of the absolute error of the value, the exact value once escalated and its deferred computation
+    private double error;
+    private BigDecimal exact;
+    private Escalation escalation;
     private SortedSet<Unity> unities = new TreeSet<>(Unity.COMPARATOR_UNITIES);
-    private boolean decimal;
-    private boolean positive;
     private String variable;
+    private VariableScope scope;
 
-    public Entity(final int index, final String input, final UnityType type) throws ProcessorException {
+    public Entity(final int index, final char[] chars, final int start, final int end, final UnityType type, final VariableScope scope)
+            throws ProcessorException {
         this.index = index;
-        parse(input, type);
-        prepare();
+        this.scope = scope;
+        parse(chars, start, end, type);
+    }
+
+    public Entity(final int index, final String input, final UnityType type, final VariableScope scope) throws ProcessorException {
+        this(index, input.toCharArray(), 0, input.length(), type, scope);
+    }
+
+    public Entity(final int index, final String input, final UnityType type) throws ProcessorException {
+        this(index, input, type, null);
     }
 
     public Entity(final int index, final String input) throws ProcessorException {
         this(index, input, null);
     }
 
+    public Entity(final Entity entity) {
+        this.index = entity.index;
+        this.value = entity.value;
+        this.temporal = entity.temporal;
+        this.seconds = entity.seconds;
+        this.nanos = entity.nanos;
+        this.error = entity.error;
+        this.exact = entity.exact;
+        this.unities = new TreeSet<>(entity.unities);
+        this.variable = entity.variable;
+        this.scope = entity.scope;
+    }
+
     public Entity(final int index, final Double value, final Duration duration, final SortedSet<Unity> unities) {
         this.index = index;
         this.value = value;
-        this.date = Optional.empty();
-        this.duration = Optional.ofNullable(duration);
+        this.setDuration(duration);
         this.setUnities(unities);
-        prepare();
     }
 
     public Entity(final int index, final Double value, final Duration duration, final Unity... unities) {
         this.index = index;
         this.value = value;
-        this.date = Optional.empty();
-        this.duration = Optional.ofNullable(duration);
+        this.setDuration(duration);
         this.setUnities(unities);
-        prepare();
     }
 
     public Entity(final int index, final Double value, final LocalDateTime date, final SortedSet<Unity> unities) {
         this.index = index;
         this.value = value;
-        this.date = Optional.ofNullable(date);
-        this.duration = Optional.empty();
+        this.setDate(date);
         this.setUnities(unities);
-        prepare();
     }
 
     public Entity(final int index, final Double value, final LocalDateTime date, final Unity... unities) {
         this.index = index;
         this.value = value;
-        this.date = Optional.ofNullable(date);
-        this.duration = Optional.empty();
+        this.setDate(date);
+        this.setUnities(unities);
+    }
+
+    /**
+     * Constructor of date or duration
+     *
+     * @param index
+     *            the index
+     * @param value
+     *            the value in nanoseconds
+     * @param date
+     *            true for a date, false for a duration
+     * @param seconds
+     *            the UTC epoch second (date) or the seconds (duration)
+     * @param nanos
+     *            the nanoseconds in the second, from 0 to 999,999,999
+     * @param unities
+     *            the unities
+     */
+    public Entity(final int index, final Double value, final boolean date, final long seconds, final int nanos, final Unity... unities) {
+        this.index = index;
+        this.value = value;
+        this.temporal = date ? DATE : DURATION;
+        this.seconds = seconds;
+        this.nanos = nanos;
         this.setUnities(unities);
-        prepare();
     }
 
     public Entity(final int index, final Double value, final SortedSet<Unity> unities) {
@@ -102,37 +142,32 @@ public class Entity {
         this(index, value, Unity.NUMBER);
     }
 
-    private void parse(final String input, final UnityType type) throws ProcessorException {
+    private void parse(final char[] chars, final int start, final int end, final UnityType type) throws ProcessorException {
         final EntityTmp entity = new EntityTmp();
         final SortedMap<Unity, Double> inputs = new TreeMap<>(Unity.COMPARATOR_UNITIES);
 
-        int notParsedlength = input.length();
+        int notParsedlength = end - start;
 
-        final Matcher matcher = PATTERN_NUMBER.matcher(input);
-        while (matcher.find()) {
+        final SegmentLexer lexer = new SegmentLexer(chars, start, end);
+        while (lexer.find()) {
             if (entity.unity == null || entity.accumulable) {
-                try {
-                    notParsedlength -= matcher.group(GROUP_NUMBER).length();
-                    entity.value = Double.parseDouble(matcher.group(GROUP_NUMBER_DECIMAL));
+                notParsedlength -= lexer.getLength();
+                entity.value = lexer.getValue();
 
-                    final String unityGroup = matcher.group(GROUP_NUMBER_UNITY);
-                    entity.unities = Unity.getUnities(unityGroup, type);
+                entity.unities.clear();
+                Unity.getUnities(chars, lexer.getUnityStart(), lexer.getUnityEnd(), type, entity.unities);
 
-                    if (entity.unities.isEmpty() && !entity.accumulable) {
-                        this.value = entity.value;
+                if (entity.unities.isEmpty() && !entity.accumulable) {
+                    this.value = entity.value;
 
-                    } else if (entity.unities.size() > 1) {
-                        throw new ProcessorException(I18n.ERROR_UNITY_UNKNOWN, unityGroup);
+                } else if (entity.unities.size() > 1) {
+                    throw new ProcessorException(I18n.ERROR_UNITY_UNKNOWN, text(chars, lexer.getUnityStart(), lexer.getUnityEnd()));
 
-                    } else {
-                        this.check(entity, input, inputs);
-                    }
-                } catch (NumberFormatException e) {
-                    LOGGER.error(e, I18n.ERROR_FORMULA_PARSE.getI18n(), input);
-                    throw new ProcessorException(e, I18n.ERROR_FORMULA_PARSE, input);
+                } else {
+                    this.check(entity, chars, start, end, inputs);
                 }
             } else {
-                throw new ProcessorException(I18n.ERROR_FORMULA_FORMAT, input);
+                throw new ProcessorException(I18n.ERROR_FORMULA_FORMAT, text(chars, start, end));
             }
         }
 
@@ -140,31 +175,25 @@ public class Entity {
             loadDuration(inputs);
             loadLocalDateTime(inputs);
 
-        } else if (input.startsWith(StringUtils.DOLLAR)) {
-            loadVariables(input);
+        } else if (start < end && chars[start] == DOLLAR) {
+            loadVariables(chars, start, end);
             notParsedlength = 0;
 
         } else if (!this.isNumber() && !this.hasUnity()) {
-            loadUnities(input, type);
+            loadUnities(chars, start, end, type);
             notParsedlength = 0;
         }
 
         if (notParsedlength > 0) {
-            throw new ProcessorException(I18n.ERROR_FORMULA_PARSE, input);
-        }
-
-        if (this.date == null) {
-            this.date = Optional.empty();
-        }
-        if (this.duration == null) {
-            this.duration = Optional.empty();
+            throw new ProcessorException(I18n.ERROR_FORMULA_PARSE, text(chars, start, end));
         }
     }
 
-    private void check(final EntityTmp entity, final String input, final SortedMap<Unity, Double> inputs) throws ProcessorException {
+    private void check(final EntityTmp entity, final char[] chars, final int start, final int end, final SortedMap<Unity, Double> inputs)
+            throws ProcessorException {
 
         if (entity.unities.isEmpty()) {
-            entity.unity = entity.unity.next().orElseThrow(() -> new ProcessorException(I18n.ERROR_FORMULA_FORMAT, input));
+            entity.unity = entity.unity.next().orElseThrow(() -> new ProcessorException(I18n.ERROR_FORMULA_FORMAT, text(chars, start, end)));
         } else {
             entity.unity = entity.unities.first();
         }
@@ -173,11 +202,11 @@ public class Entity {
         entity.accumulable = entity.unityType.isAccumulable();
 
         if (this.hasUnity() && !Objects.equals(this.getUnityType(), entity.unityType)) {
-            throw new ProcessorException(I18n.ERROR_FORMULA_FORMAT, input);
+            throw new ProcessorException(I18n.ERROR_FORMULA_FORMAT, text(chars, start, end));
 
         } else if (inputs.containsKey(entity.unity) || (Unity.INCOMPATIBLE_UNITIES.containsKey(entity.unity)
                 && Unity.INCOMPATIBLE_UNITIES.get(entity.unity).stream().anyMatch(inputs::containsKey))) {
-            throw new ProcessorException(I18n.ERROR_FORMULA_UNITIES, input);
+            throw new ProcessorException(I18n.ERROR_FORMULA_UNITIES, text(chars, start, end));
 
         } else {
             inputs.put(entity.unity, entity.value);
@@ -195,40 +224,47 @@ public class Entity {
         }
     }
 
-    private void loadVariables(final String input) throws ProcessorException {
-        if (PATTERN_VARIABLE.matcher(input).matches()) {
+    private void loadVariables(final char[] chars, final int start, final int end) throws ProcessorException {
+        if (this.scope != null && SymbolTable.matchVariable(chars, start, end) == end - start) {
 
-            this.variable = input;
+            this.variable = text(chars, start, end);
 
-            final Optional<Entity> entity = VARIABLES.get(this.variable);
+            final Optional<Entity> entity = this.scope.get(this.variable);
 
-            if (entity == null || entity.isEmpty()) {
+            if (entity.isEmpty()) {
                 this.unities.add(Unity.VARIABLE);
-                VARIABLES.put(input, Optional.empty());
+                this.scope.declare(this.variable);
 
             } else {
                 loadEntity(entity.get());
             }
         }
         if (!this.isVariable()) {
+            final String input = text(chars, start, end);
             LOGGER.error(I18n.ERROR_FORMULA_PARSE.getI18n(), input);
             throw new ProcessorException(I18n.ERROR_FORMULA_PARSE, input);
         }
     }
 
-    private void loadUnities(final String input, final UnityType type) throws ProcessorException {
-        if (PATTERN_UNITY.matcher(input).matches()) {
-            final SortedSet<Unity> list = Unity.getUnities(input, type);
+    private void loadUnities(final char[] chars, final int start, final int end, final UnityType type) throws ProcessorException {
+        if (SegmentLexer.isUnity(chars, start, end)) {
+            final SortedSet<Unity> list = new TreeSet<>(Unity.COMPARATOR_UNITIES);
+            Unity.getUnities(chars, start, end, type, list);
             if (!list.isEmpty() && !this.hasUnity()) {
                 this.setUnities(list.toArray(Unity[]::new));
             }
         }
         if (!this.hasUnity()) {
+            final String input = text(chars, start, end);
             LOGGER.error(I18n.ERROR_FORMULA_PARSE.getI18n(), input);
             throw new ProcessorException(I18n.ERROR_FORMULA_PARSE, input);
         }
     }
 
+    private static String text(final char[] chars, final int start, final int end) {
+        return new String(chars, start, end - start);
+    }
+
     private void loadDuration(final SortedMap<Unity, Double> inputs) throws ProcessorException {
         if (inputs.containsKey(Unity.DATE_YEAR)) {
             return;
@@ -237,7 +273,7 @@ public class Entity {
         final Duration duration = Unity.mapToDuration(inputs, this.getUnities());
 
         this.value = Double.valueOf(duration.toNanos());
-        this.duration = Optional.of(duration);
+        this.setDuration(duration);
     }
 
     private void loadLocalDateTime(final SortedMap<Unity, Double> inputs) throws ProcessorException {
@@ -248,14 +284,7 @@ public class Entity {
         final LocalDateTime date = Unity.mapToLocalDateTime(inputs, this.getUnities());
 
         this.value = DateUtils.toZeroNanosecond(date);
-        this.date = Optional.of(date);
-    }
-
-    private void prepare() {
-        if (this.isNumber()) {
-            positive = MathUtils.isEqualOrGreater(this.getValue(), 0d, MainProcessor.getPrecision());
-            decimal = MathUtils.isNotEqual(this.getValue(), Math.round(this.getValue()), MainProcessor.getPrecision());
-        }
+        this.setDate(date);
     }
 
     public Unity firstUnity() {
@@ -271,11 +300,115 @@ public class Entity {
     }
 
     public Optional<LocalDateTime> getDate() {
-        return this.date;
+        if (this.temporal == DATE) {
+            return Optional.of(LocalDateTime.ofEpochSecond(this.seconds, this.nanos, ZoneOffset.UTC));
+        }
+        return Optional.empty();
     }
 
     public Optional<Duration> getDuration() {
-        return this.duration;
+        if (this.temporal == DURATION) {
+            return Optional.of(Duration.ofSeconds(this.seconds, this.nanos));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return the UTC epoch second of the date or the seconds of the duration
+     * @category getter
+     */
+    public long getSeconds() {
+        return this.seconds;
+    }
+
+    /**
+     * @return the nanoseconds in the second of the date or of the duration
+     * @category getter
+     */
+    public int getNanos() {
+        return this.nanos;
+    }
+
+    /**
+     * @return the bound of the absolute error of the value (only computed in exact mode)
+     * @category getter
+     */
+    public double getError() {
+        return this.error;
+    }
+
+    /**
+     * @param error
+     *            the bound of the absolute error of the value
+     * @return this
+     * @category setter
+     */
+    public Entity setError(final double error) {
+        this.error = error;
+        return this;
+    }
+
+    /**
+     * @return the exact value, if computed (exact mode, when the value cannot be rounded safely), otherwise {@code null}
+     * @category getter
+     */
+    public BigDecimal getExact() {
+        return this.exact;
+    }
+
+    /**
+     * @param exact
+     *            the exact value
+     * @return this
+     * @category setter
+     */
+    public Entity setExact(final BigDecimal exact) {
+        this.exact = exact;
+        return this;
+    }
+
+    /**
+     * @param escalation
+     *            the computation of the exact value, from the operands already evaluated (not copied with the entity)
+     * @return this
+     * @category setter
+     */
+    public Entity setEscalation(final Escalation escalation) {
+        this.escalation = escalation;
+        return this;
+    }
+
+    /**
+     * Computes the exact value, once, if deferred
+     *
+     * @return the exact value, {@code null} if not computed nor computable
+     * @throws ProcessorException
+     *             on evaluation failure
+     */
+    public BigDecimal escalate() throws ProcessorException {
+        final Escalation escalation = this.escalation;
+        if (this.exact == null && escalation != null) {
+            // cleared first, the entity can be one of its own operands
+            this.escalation = null;
+            this.exact = escalation.escalate();
+        }
+        return this.exact;
+    }
+
+    private void setDate(final LocalDateTime date) {
+        if (date != null) {
+            this.temporal = DATE;
+            this.seconds = date.toEpochSecond(ZoneOffset.UTC);
+            this.nanos = date.getNano();
+        }
+    }
+
+    private void setDuration(final Duration duration) {
+        if (duration != null) {
+            this.temporal = DURATION;
+            this.seconds = duration.getSeconds();
+            this.nanos = duration.getNano();
+        }
     }
 
     public boolean isNumber() {
@@ -290,16 +423,16 @@ public class Entity {
         return this.value == null;
     }
 
-    public boolean isPositive() {
-        return this.positive;
+    public boolean isPositive(final int precision) {
+        return this.isNumber() && MathUtils.isEqualOrGreater(this.getValue(), 0d, precision);
     }
 
     public boolean isDate() {
-        return this.date.isPresent();
+        return this.temporal == DATE;
     }
 
     public boolean isDuration() {
-        return this.duration.isPresent();
+        return this.temporal == DURATION;
     }
 
     public SortedSet<Unity> getUnities() {
@@ -361,16 +494,12 @@ public class Entity {
         return this.index;
     }
 
-    public boolean isInteger() {
-        return !this.decimal;
-    }
-
-    public boolean isPositiveDecimal() {
-        return this.positive;
+    public boolean isInteger(final int precision) {
+        return !this.isDecimal(precision);
     }
 
-    public boolean isDecimal() {
-        return this.decimal;
+    public boolean isDecimal(final int precision) {
+        return this.isNumber() && MathUtils.isNotEqual(this.getValue(), Math.round(this.getValue()), precision);
     }
 
     public boolean isUnity(final UnityType type) {
@@ -383,23 +512,32 @@ public class Entity {
 
     public Entity setVariable(final Entity entity) {
         loadEntity(entity);
-        VARIABLES.put(this.variable, Optional.of(this));
+        this.scope.set(this.variable, this);
 
         return this;
     }
 
     private void loadEntity(final Entity entity) {
         this.value = entity.getValue();
-        this.date = entity.getDate();
-        this.duration = entity.getDuration();
-        this.decimal = entity.isDecimal();
-        this.positive = entity.isPositive();
+        this.temporal = entity.temporal;
+        this.seconds = entity.seconds;
+        this.nanos = entity.nanos;
+        this.error = entity.error;
+        this.exact = entity.exact;
         this.unities = entity.getUnities();
     }
 
+    public static String format(final Entity entity, final EvaluationContext context) {
+        return entity != null ? entity.toString(context) : String.valueOf(entity);
+    }
+
+    public String toString(final EvaluationContext context) {
+        return this.getUnityType().format(this, context);
+    }
+
     @Override
     public String toString() {
-        return this.getUnityType().format(this);
+        return this.toString(EvaluationContext.DEFAULT);
     }
 
     private class EntityTmp {
@@ -407,6 +545,14 @@ public class Entity {
         Unity unity;
         UnityType unityType;
         boolean accumulable;
-        SortedSet<Unity> unities;
+        final SortedSet<Unity> unities = new TreeSet<>(Unity.COMPARATOR_UNITIES);
+    }
+
+    /**
+     * Deferred computation of the exact value
+     */
+    @FunctionalInterface
+    public interface Escalation {
+        BigDecimal escalate() throws ProcessorException;
     }
-}
\ No newline at end of file
+}
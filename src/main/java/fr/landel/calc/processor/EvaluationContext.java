@@ -0,0 +1,168 @@
+package fr.landel.calc.processor;
+
+import java.util.Objects;
+
+/**
+ * Immutable settings of an evaluation (angular unit, output format) with the variables scope to use, the cancellation to check and the
+ * stream of the random functions. A context can be shared by many threads, use the {@code with*} methods to derive a context with other
+ * settings. The random stream isn't thread-safe and the derived contexts share it: each worker evaluates with its own split stream
+ * ({@link #withSplitRandom()}).
+ */
+public class EvaluationContext {
+
+    public static final int DEFAULT_PRECISION = 3;
+
+    public static final EvaluationContext DEFAULT = new EvaluationContext();
+
+    private final boolean radian;
+    private final boolean exact;
+    private final boolean scientific;
+    private final int precision;
+    private final boolean unityAbbrev;
+    private final boolean unitiesSpace;
+    private final boolean valuesSpace;
+    private final VariableScope scope;
+    private final Cancellation cancellation;
+    private final RandomStream random;
+
+    public EvaluationContext(final boolean radian, final boolean exact, final boolean scientific, final int precision, final boolean unityAbbrev,
+            final boolean unitiesSpace, final boolean valuesSpace, final VariableScope scope, final Cancellation cancellation,
+            final RandomStream random) {
+        this.radian = radian;
+        this.exact = exact;
+        this.scientific = scientific;
+        this.precision = precision;
+        this.unityAbbrev = unityAbbrev;
+        this.unitiesSpace = unitiesSpace;
+        this.valuesSpace = valuesSpace;
+        this.scope = Objects.requireNonNull(scope);
+        this.cancellation = Objects.requireNonNull(cancellation);
+        this.random = Objects.requireNonNull(random);
+    }
+
+    public EvaluationContext(final boolean radian, final boolean exact, final boolean scientific, final int precision, final boolean unityAbbrev,
+            final boolean unitiesSpace, final boolean valuesSpace, final VariableScope scope, final Cancellation cancellation) {
+        this(radian, exact, scientific, precision, unityAbbrev, unitiesSpace, valuesSpace, scope, cancellation, new RandomStream());
+    }
+
+    public EvaluationContext(final boolean radian, final boolean exact, final boolean scientific, final int precision, final boolean unityAbbrev,
+            final boolean unitiesSpace, final boolean valuesSpace, final VariableScope scope) {
+        this(radian, exact, scientific, precision, unityAbbrev, unitiesSpace, valuesSpace, scope, Cancellation.NONE);
+    }
+
+    public EvaluationContext(final VariableScope scope) {
+        this(true, false, false, DEFAULT_PRECISION, true, true, true, scope);
+    }
+
+    public EvaluationContext() {
+        this(new VariableScope());
+    }
+
+    public boolean isRadian() {
+        return this.radian;
+    }
+
+    public boolean isExact() {
+        return this.exact;
+    }
+
+    public boolean isScientific() {
+        return this.scientific;
+    }
+
+    public int getPrecision() {
+        return this.precision;
+    }
+
+    public boolean isUnityAbbrev() {
+        return this.unityAbbrev;
+    }
+
+    public boolean isUnitiesSpace() {
+        return this.unitiesSpace;
+    }
+
+    public boolean isValuesSpace() {
+        return this.valuesSpace;
+    }
+
+    public VariableScope getScope() {
+        return this.scope;
+    }
+
+    public Cancellation getCancellation() {
+        return this.cancellation;
+    }
+
+    public RandomStream getRandom() {
+        return this.random;
+    }
+
+    public EvaluationContext withRadian(final boolean radian) {
+        return new EvaluationContext(radian, this.exact, this.scientific, this.precision, this.unityAbbrev, this.unitiesSpace, this.valuesSpace,
+                this.scope, this.cancellation, this.random);
+    }
+
+    public EvaluationContext withExact(final boolean exact) {
+        return new EvaluationContext(this.radian, exact, this.scientific, this.precision, this.unityAbbrev, this.unitiesSpace, this.valuesSpace,
+                this.scope, this.cancellation, this.random);
+    }
+
+    public EvaluationContext withScientific(final boolean scientific) {
+        return new EvaluationContext(this.radian, this.exact, scientific, this.precision, this.unityAbbrev, this.unitiesSpace, this.valuesSpace,
+                this.scope, this.cancellation, this.random);
+    }
+
+    public EvaluationContext withPrecision(final int precision) {
+        return new EvaluationContext(this.radian, this.exact, this.scientific, precision, this.unityAbbrev, this.unitiesSpace, this.valuesSpace,
+                this.scope, this.cancellation, this.random);
+    }
+
+    public EvaluationContext withUnityAbbrev(final boolean unityAbbrev) {
+        return new EvaluationContext(this.radian, this.exact, this.scientific, this.precision, unityAbbrev, this.unitiesSpace, this.valuesSpace,
+                this.scope, this.cancellation, this.random);
+    }
+
+    public EvaluationContext withUnitiesSpace(final boolean unitiesSpace) {
+        return new EvaluationContext(this.radian, this.exact, this.scientific, this.precision, this.unityAbbrev, unitiesSpace, this.valuesSpace,
+                this.scope, this.cancellation, this.random);
+    }
+
+    public EvaluationContext withValuesSpace(final boolean valuesSpace) {
+        return new EvaluationContext(this.radian, this.exact, this.scientific, this.precision, this.unityAbbrev, this.unitiesSpace, valuesSpace,
+                this.scope, this.cancellation, this.random);
+    }
+
+    public EvaluationContext withScope(final VariableScope scope) {
+        return new EvaluationContext(this.radian, this.exact, this.scientific, this.precision, this.unityAbbrev, this.unitiesSpace, this.valuesSpace,
+                scope, this.cancellation, this.random);
+    }
+
+    public EvaluationContext withCancellation(final Cancellation cancellation) {
+        return new EvaluationContext(this.radian, this.exact, this.scientific, this.precision, this.unityAbbrev, this.unitiesSpace, this.valuesSpace,
+                this.scope, cancellation, this.random);
+    }
+
+    public EvaluationContext withRandom(final RandomStream random) {
+        return new EvaluationContext(this.radian, this.exact, this.scientific, this.precision, this.unityAbbrev, this.unitiesSpace, this.valuesSpace,
+                this.scope, this.cancellation, random);
+    }
+
+    /**
+     * @return a context for a worker, with a stream split from this one (the splits are deterministic, in the calling order)
+     */
+    public EvaluationContext withSplitRandom() {
+        return this.withRandom(this.random.split());
+    }
+
+    /**
+     * @param context
+     *            the other context
+     * @return true, if all settings (so not the scope) are equal
+     */
+    public boolean hasSameSettings(final EvaluationContext context) {
+        return this.radian == context.radian && this.exact == context.exact && this.scientific == context.scientific
+                && this.precision == context.precision && this.unityAbbrev == context.unityAbbrev && this.unitiesSpace == context.unitiesSpace
+                && this.valuesSpace == context.valuesSpace;
+    }
+}
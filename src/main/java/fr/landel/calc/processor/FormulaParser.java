@@ -0,0 +1,370 @@
+package fr.landel.calc.processor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+import fr.landel.calc.config.I18n;
+import fr.landel.calc.processor.ProcessorMetrics.Stage;
+import fr.landel.calc.utils.LRUCache;
+import fr.landel.calc.utils.StringUtils;
+
+/**
+ * Parses a prepared formula in one pass into a tree of processors (each parenthesis level is a {@link FormulaProcessor}, each function a
+ * {@link FunctionProcessor} and each value a {@link SegmentProcessor}).
+ * <p>
+ * With a groups cache, the groups and function calls already parsed (same text, parentheses included) are reused instead of parsed again.
+ * </p>
+ */
+public class FormulaParser {
+
+    private static final char SEMICOLON = StringUtils.SEMICOLON.charAt(0);
+    private static final char[] POW_10 = "eE".toCharArray();
+    private static final Operators[] POW_10_OPERATORS = {Operators.ADD, Operators.SUBSTRACT};
+    static {
+        Arrays.sort(POW_10);
+        Arrays.sort(POW_10_OPERATORS);
+    }
+
+    private final String formula;
+    private final char[] chars;
+    private int pos;
+
+    private final LRUCache<String, Group> groups;
+    private final boolean memo;
+    // index of the matching closing parenthesis, by opening one (-1 if missing)
+    private int[] closes;
+
+    private Set<String> variables = new TreeSet<>();
+    private Set<String> assigned = new TreeSet<>();
+    private boolean pure = true;
+
+    public FormulaParser(final String formula) {
+        this(formula, null, false);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param formula
+     *            the prepared formula
+     * @param groups
+     *            the cache of the parsed groups (by text), shared between the formulas parsed by one thread (may be {@code null})
+     * @param memo
+     *            true to reuse the results of the pure groups (see {@link Group#getMemo()}), not in exact mode
+     */
+    public FormulaParser(final String formula, final LRUCache<String, Group> groups, final boolean memo) {
+        this.formula = StringUtils.requireNonBlank(formula);
+        this.chars = this.formula.toCharArray();
+        this.groups = groups;
+        this.memo = memo;
+    }
+
+    public CompiledFormula parse() throws ProcessorException {
+        final long start = ProcessorMetrics.start();
+
+        this.pos = 0;
+        this.variables = new TreeSet<>();
+        this.assigned = new TreeSet<>();
+        this.pure = true;
+
+        if (this.groups != null) {
+            this.closes = this.matchParentheses();
+        }
+
+        final FormulaProcessor processor = this.parseFormula(false, false);
+        final CompiledFormula compiled = new CompiledFormula(this.formula, processor, this.variables.toArray(String[]::new),
+                this.assigned.toArray(String[]::new), this.pure);
+
+        ProcessorMetrics.record(Stage.PARSE, start);
+
+        return compiled;
+    }
+
+    private FormulaProcessor parseFormula(final boolean group, final boolean argument) throws ProcessorException {
+        final Level level = new Level(this.pos);
+
+        int lastOperatorEnd = -1;
+        Operators operator;
+
+        while (this.pos < this.chars.length) {
+            final char c = this.chars[this.pos];
+
+            if (c == StringUtils.PARENTHESIS_CLOSE) {
+                if (group || argument) {
+                    break;
+                }
+                throw new ProcessorException(I18n.ERROR_FORMULA_PARENTHESIS);
+
+            } else if (argument && c == SEMICOLON) {
+                break;
+
+            } else if (c == StringUtils.PARENTHESIS_OPEN) {
+                level.addProcessor(this.parseParenthesis(level));
+
+            } else if ((operator = this.getOperator()) != null) {
+                final int index = this.pos - level.start;
+                if (!operator.getPositionChecker().test(index, this.chars.length - level.start)) {
+                    throw new ProcessorException(I18n.ERROR_FORMULA_OPERATOR_POSITION, operator, index);
+                }
+
+                // exclude false operators = +1, ++1, E+1, e+1
+                if (index > 0 && lastOperatorEnd != this.pos
+                        && (Arrays.binarySearch(POW_10_OPERATORS, operator) < 0 || Arrays.binarySearch(POW_10, this.chars[this.pos - 1]) < 0)) {
+                    level.addOperator(operator, this.pos);
+                    this.pure &= !Operators.VARIABLE.equals(operator);
+                } else {
+                    level.literals += operator.getLength();
+                }
+
+                this.pos += operator.getLength();
+                lastOperatorEnd = this.pos;
+
+            } else {
+                ++level.literals;
+                ++this.pos;
+            }
+        }
+
+        return level.build(argument);
+    }
+
+    private int[] matchParentheses() {
+        final int[] closes = new int[this.chars.length];
+        final int[] opens = new int[this.chars.length];
+        int depth = 0;
+        for (int i = 0; i < this.chars.length; ++i) {
+            closes[i] = -1;
+            if (this.chars[i] == StringUtils.PARENTHESIS_OPEN) {
+                opens[depth++] = i;
+            } else if (this.chars[i] == StringUtils.PARENTHESIS_CLOSE && depth > 0) {
+                closes[opens[--depth]] = i;
+            }
+        }
+        return closes;
+    }
+
+    private Processor parseParenthesis(final Level level) throws ProcessorException {
+        final int open = this.pos;
+
+        int start = open;
+        while (start > level.segmentStart && SymbolTable.isFunctionChar(this.chars[start - 1])) {
+            --start;
+        }
+        level.literals -= open - start;
+
+        if (this.groups == null || this.closes[open] < 0) {
+            return this.parseGroup(level, start, open);
+        }
+
+        final String text = this.formula.substring(start, this.closes[open] + 1);
+        Group group = this.groups.get(text);
+        if (group != null) {
+            this.pos = this.closes[open] + 1;
+            this.checkPrefix(level, start);
+
+        } else {
+            // the group is parsed with its own sets, then merged
+            final Set<String> variables = this.variables;
+            final Set<String> assigned = this.assigned;
+            final boolean pure = this.pure;
+            this.variables = new TreeSet<>();
+            this.assigned = new TreeSet<>();
+            this.pure = true;
+            try {
+                final Processor processor = this.parseGroup(level, start, open);
+                group = new Group(processor, this.variables.toArray(String[]::new), this.assigned.toArray(String[]::new), this.pure);
+                if (this.pos == this.closes[open] + 1) {
+                    this.groups.put(text, group);
+                }
+            } finally {
+                variables.addAll(this.variables);
+                assigned.addAll(this.assigned);
+                this.variables = variables;
+                this.assigned = assigned;
+                this.pure &= pure;
+            }
+        }
+
+        this.variables.addAll(Arrays.asList(group.variables));
+        this.assigned.addAll(Arrays.asList(group.assigned));
+        this.pure &= group.pure;
+
+        return this.memo && group.memo != null ? group.memo : group.processor;
+    }
+
+    private Processor parseGroup(final Level level, final int start, final int open) throws ProcessorException {
+        final Optional<Functions> function = this.getFunction(start, open);
+
+        ++this.pos;
+
+        final Processor processor;
+        if (function.isPresent()) {
+            final List<FormulaProcessor> arguments = new ArrayList<>();
+            FormulaProcessor argument;
+            boolean next = true;
+            while (next) {
+                if ((argument = this.parseFormula(false, true)) != null) {
+                    arguments.add(argument);
+                }
+                next = this.pos < this.chars.length && this.chars[this.pos] == SEMICOLON;
+                if (next) {
+                    ++this.pos;
+                }
+            }
+
+            processor = new FunctionProcessor(function.get(), arguments);
+            this.pure &= function.get().isPure();
+        } else {
+            processor = this.parseFormula(true, false);
+        }
+
+        if (this.pos >= this.chars.length) {
+            throw new ProcessorException(I18n.ERROR_FORMULA_PARENTHESIS);
+        }
+        ++this.pos;
+
+        this.checkPrefix(level, start);
+
+        return processor;
+    }
+
+    private void checkPrefix(final Level level, final int start) throws ProcessorException {
+        if (start > level.start && Character.isDigit(this.chars[start - 1])) {
+            throw new ProcessorException(I18n.ERROR_RESULT_EVAL, this.formula.substring(level.start, start), this.formula.substring(start, this.pos));
+        }
+    }
+
+    private Optional<Functions> getFunction(final int start, final int end) throws ProcessorException {
+        if (start < end) {
+            final Functions function = SymbolTable.getFunction(this.chars, start, end);
+            if (function != null) {
+                return Optional.of(function);
+            } else {
+                throw new ProcessorException(I18n.ERROR_FUNCTION_UNKNOWN, this.formula.substring(start, end));
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    private Operators getOperator() {
+        for (Operators o : Operators.BY_LENGTH_DESC) {
+            if (this.formula.startsWith(o.getOperator(), this.pos)) {
+                return o;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A parsed group or function call, with what the parser collected in it
+     */
+    public static class Group {
+        private final Processor processor;
+        private final MemoProcessor memo;
+        private final String[] variables;
+        private final String[] assigned;
+        private final boolean pure;
+
+        private Group(final Processor processor, final String[] variables, final String[] assigned, final boolean pure) {
+            this.processor = processor;
+            this.memo = pure ? new MemoProcessor(processor, variables) : null;
+            this.variables = variables;
+            this.assigned = assigned;
+            this.pure = pure;
+        }
+
+        /**
+         * @return the processor reusing the last result while the settings and the read variables are unchanged, {@code null} if not
+         *         pure
+         * @category getter
+         */
+        public MemoProcessor getMemo() {
+            return this.memo;
+        }
+    }
+
+    private class Level {
+        final int start;
+        final List<Processor> operands = new ArrayList<>();
+        final List<Operators> operators = new ArrayList<>();
+
+        int segmentStart;
+        int segmentIndex;
+        int literals;
+        Processor processor;
+        int processors;
+        String mixed;
+
+        Level(final int start) {
+            this.start = start;
+            this.segmentStart = start;
+        }
+
+        void addProcessor(final Processor processor) {
+            this.processor = processor;
+            ++this.processors;
+        }
+
+        void addOperator(final Operators operator, final int position) {
+            this.closeSegment(position);
+            this.operators.add(operator);
+
+            final Processor left = this.operands.get(this.operands.size() - 1);
+            if (Operators.VARIABLE.equals(operator) && left instanceof SegmentProcessor && ((SegmentProcessor) left).isVariable()) {
+                assigned.add(((SegmentProcessor) left).getSegment());
+            }
+
+            this.segmentStart = position + operator.getLength();
+            this.segmentIndex = position - this.start;
+            this.literals = 0;
+            this.processor = null;
+            this.processors = 0;
+        }
+
+        void closeSegment(final int end) {
+            if (this.processors == 0) {
+                if (end > this.segmentStart) {
+                    final SegmentProcessor segment = new SegmentProcessor(this.segmentIndex, chars, this.segmentStart, end);
+                    if (segment.isVariable()) {
+                        variables.add(segment.getSegment());
+                    }
+                    this.operands.add(segment);
+                } else {
+                    this.operands.add(null);
+                }
+            } else if (this.processors == 1 && this.literals == 0) {
+                this.operands.add(this.processor);
+            } else {
+                if (this.mixed == null) {
+                    this.mixed = formula.substring(this.segmentStart, end);
+                }
+                this.operands.add(null);
+            }
+        }
+
+        FormulaProcessor build(final boolean argument) throws ProcessorException {
+            this.closeSegment(pos);
+
+            if (this.mixed != null) {
+                if (this.operators.isEmpty()) {
+                    throw new ProcessorException(I18n.ERROR_FORMULA_OPERATOR_MISSING, formula.substring(this.start, pos));
+                } else {
+                    throw new ProcessorException(I18n.ERROR_FORMULA_PARSE, this.mixed);
+                }
+
+            } else if (this.operators.isEmpty() && this.operands.get(0) == null) {
+                if (argument) {
+                    return null;
+                }
+                throw new ProcessorException(I18n.ERROR_FORMULA_PARENTHESIS);
+            }
+
+            return new FormulaProcessor(formula.substring(this.start, pos), this.operands, this.operators);
+        }
+    }
+}
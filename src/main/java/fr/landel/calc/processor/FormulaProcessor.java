@@ -1,227 +1,267 @@
 package fr.landel.calc.processor;
 
-import java.util.ArrayList;
+import java.math.BigDecimal;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Optional;
-import java.util.SortedMap;
-import java.util.SortedSet;
-import java.util.TreeMap;
-import java.util.TreeSet;
-import java.util.function.BiConsumer;
-import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 import fr.landel.calc.config.I18n;
-import fr.landel.calc.utils.MapUtils;
+import fr.landel.calc.processor.ProcessorMetrics.Stage;
+import fr.landel.calc.utils.MathUtils;
 import fr.landel.calc.utils.StringUtils;
 
 public class FormulaProcessor implements Processor {
 
-    // private static final Logger LOGGER =
-    // new Logger(SimpleFormulaProcessor.class);
-
-    private static final char[] POW_10 = "eE".toCharArray();
-    private static final Operators[] POW_10_OPERATORS = {Operators.ADD, Operators.SUBSTRACT};
-    static {
-        Arrays.sort(POW_10);
-        Arrays.sort(POW_10_OPERATORS);
-    }
-    private static final Supplier<SortedSet<Integer>> SUPPLIER_SORTED_SET = () -> new TreeSet<>(Integer::compareTo);
-    private static final Supplier<List<Integer>> SUPPLIER_LIST = ArrayList::new;
-    private static final BiConsumer<List<Integer>, ? super SortedSet<Integer>> ACCUMULATOR = (a, b) -> a.addAll(b);
-    private static final BiConsumer<List<Integer>, List<Integer>> COMBINER = (a, b) -> a.addAll(b);
+    private static final int PRIORITIES = Operators.PRIORITIES.get(Operators.PRIORITIES.size() - 1) + 1;
 
     private final String formula;
-    private final int length;
-    private final char[] chars;
-    private final ResultBuilder result;
-
-    private UnityType type;
-    private final List<Integer> positions = new ArrayList<>();
-    private final Map<Integer, Entity> segments = new HashMap<>();
-    private SortedMap<Integer, Operators> sortedOperators;
-
-    public FormulaProcessor(final String formula, final ResultBuilder result) {
+    private final SegmentProcessor[] segments;
+    private final Processor[] processors;
+    private final Operators[] operators;
+    private final int[] order;
+
+    /**
+     * Constructor
+     *
+     * @param formula
+     *            the formula of this level (for errors)
+     * @param operands
+     *            the operands, segments or sub-processors (groups and functions), {@code null} if missing
+     * @param operators
+     *            the operators between operands
+     */
+    public FormulaProcessor(final String formula, final List<Processor> operands, final List<Operators> operators) {
         this.formula = StringUtils.requireNonBlank(formula);
-        this.length = this.formula.length();
-        this.chars = this.formula.toCharArray();
-        this.result = result;
-    }
+        this.segments = new SegmentProcessor[operands.size()];
+        this.processors = new Processor[operands.size()];
+        this.operators = operators.toArray(Operators[]::new);
+
+        for (int i = 0; i < operands.size(); ++i) {
+            final Processor operand = operands.get(i);
+            if (operand instanceof SegmentProcessor) {
+                this.segments[i] = (SegmentProcessor) operand;
+            } else {
+                this.processors[i] = operand;
+            }
+        }
 
-    public FormulaProcessor(final String formula) {
-        this(formula, null);
+        this.order = sort(this.operators);
     }
 
-    public FormulaProcessor(final ResultBuilder result) {
-        this(result.getFormula(), result);
+    /**
+     * Counting sort of the operators by priority (linear), stable, so same priorities keep the position order
+     *
+     * @param operators
+     *            the operators
+     * @return the indexes of the operators in processing order
+     */
+    private static int[] sort(final Operators[] operators) {
+        final int[] offsets = new int[PRIORITIES + 1];
+        for (Operators operator : operators) {
+            ++offsets[operator.getPriority() + 1];
+        }
+        for (int i = 1; i < offsets.length; ++i) {
+            offsets[i] += offsets[i - 1];
+        }
+
+        final int[] order = new int[operators.length];
+        for (int i = 0; i < operators.length; ++i) {
+            order[offsets[operators[i].getPriority()]++] = i;
+        }
+        return order;
     }
 
     @Override
-    public Entity process() throws ProcessorException {
-        loadOperatorsAndSegments();
-
-        final Optional<Entity> result = calculate();
-
-        if (result.isPresent()) {
-            final Entity entity = result.get();
-
-            if (!entity.isUnity()) {
-                return entity;
-
-            } else if (entity.isVariable()) {
-                throw new ProcessorException(I18n.ERROR_VARIABLE_VALUE_MISSING, entity);
+    public Entity process(final EvaluationContext context) throws ProcessorException {
+        return this.process(context, this.prepare(context));
+    }
 
-            } else {
-                throw new ProcessorException(I18n.ERROR_UNITY_VALUE_MISSING, entity);
+    /**
+     * Evaluates the sub-processors, from the last to the first one
+     *
+     * @param context
+     *            the evaluation context
+     * @return the values array, segments are not yet loaded
+     * @throws ProcessorException
+     *             on evaluation failure
+     */
+    Entity[] prepare(final EvaluationContext context) throws ProcessorException {
+        final Entity[] values = new Entity[this.processors.length];
+
+        for (int i = this.processors.length - 1; i >= 0; --i) {
+            context.getCancellation().check();
+            if (this.processors[i] != null) {
+                values[i] = this.processors[i].process(context);
             }
-        } else {
-            throw new ProcessorException(I18n.ERROR_FORMULA_PARSE, this.formula);
         }
+
+        return values;
     }
 
-    private void loadOperatorsAndSegments() throws ProcessorException {
-        final SortedMap<Integer, Operators> positions = new TreeMap<>(Integer::compareTo);
-        final SortedMap<Integer, SortedSet<Integer>> sortedOperatorsByPriority = new TreeMap<>(Integer::compareTo);
-        final Map<Integer, Operators> realOperatorsByPosition = new HashMap<>();
-
-        // get operator's position
-        for (Operators o : Operators.BY_LENGTH_DESC) {
-            final String operator = o.getOperator();
-            final int length = o.getLength();
-            int pos = -length;
-            while ((pos = this.formula.indexOf(operator, pos + length)) > -1) {
-                if (o.getPositionChecker().test(pos, this.length)) {
-                    positions.put(pos, o);
-                } else {
-                    throw new ProcessorException(I18n.ERROR_FORMULA_OPERATOR_POSITION, o, pos);
-                }
-            }
+    /**
+     * Evaluates the level in double. In exact mode, the error bound is computed along and, if the rounding of the result at the
+     * requested precision is ambiguous (or if the double overflowed, like big factorials), the level is computed again with
+     * {@link BigDecimal} from the operands already evaluated. Otherwise, this computation is deferred in the result, for a parent level
+     * which would need it ({@link Entity#escalate()}): only the sub-levels with an error are escalated in turn, and none is evaluated
+     * twice
+     *
+     * @param context
+     *            the evaluation context
+     * @param values
+     *            the prepared values
+     * @return the result
+     * @throws ProcessorException
+     *             on evaluation failure
+     */
+    Entity process(final EvaluationContext context, final Entity[] values) throws ProcessorException {
+        final boolean exact = context.isExact();
+
+        // a sub-level is already checked, a function result has still to be in exact mode
+        if (this.operators.length == 0 && this.processors[0] != null && (!exact || this.processors[0] instanceof FormulaProcessor)) {
+            return values[0];
         }
 
-        if (!positions.isEmpty()) {
+        UnityType type = null;
+        for (int i = 0; i < values.length; ++i) {
+            if (this.segments[i] != null) {
+                values[i] = this.segments[i].process(context, type);
+            }
+            if (values[i] != null && UnityType.TYPED_UNITIES.contains(values[i].getUnityType())) {
+                type = values[i].getUnityType();
+            }
+            // read numbers and function results, sub-levels compute their own error
+            if (exact && values[i] != null && values[i].isNumber() && !(this.processors[i] instanceof FormulaProcessor)) {
+                values[i].setError(Math.max(values[i].getError(), MathUtils.roundingError(values[i].getValue())));
+            }
+        }
 
-            // exclude false operators
+        final Entity[] operands = exact ? Arrays.copyOf(values, values.length) : null;
 
-            int pos, lastPos = -1, lastRealPos = -1;
-            Operators operator, lastOperator = null, lastRealOperator = null;
+        // each span of merged operands is stored at its first index
+        final int[] starts = IntStream.range(0, values.length).toArray();
+        final int[] ends = Arrays.copyOf(starts, starts.length);
 
-            for (Entry<Integer, Operators> entry : positions.entrySet()) {
-                pos = entry.getKey();
-                operator = entry.getValue();
+        final Cancellation cancellation = context.getCancellation();
 
-                // remove false operators = +1, ++1, E+1, e+1
-                if (pos > 0 && (lastPos == -1 || lastPos + lastOperator.getLength() < pos)
-                        && (Arrays.binarySearch(POW_10_OPERATORS, operator) < 0 || Arrays.binarySearch(POW_10, this.chars[pos - 1]) < 0)) {
+        int left, right;
+        long start;
+        for (int i : this.order) {
+            cancellation.check();
 
-                    this.positions.add(pos);
-                    if (lastRealPos > -1) {
-                        addSegment(lastRealPos, lastRealPos + lastRealOperator.getLength(), pos);
-                    } else {
-                        addSegment(0, 0, pos);
-                    }
-                    realOperatorsByPosition.put(pos, operator);
-                    MapUtils.getOrPutIfAbsent(sortedOperatorsByPriority, operator.getPriority(), SUPPLIER_SORTED_SET).add(pos);
+            left = starts[i];
+            right = ends[i + 1];
 
-                    lastRealPos = pos;
-                    lastRealOperator = operator;
-                }
+            start = ProcessorMetrics.start();
+            values[left] = this.operators[i].process(context, values[left], values[i + 1]);
+            ProcessorMetrics.record(Stage.OPERATOR, this.operators[i].ordinal(), start);
 
-                lastPos = pos;
-                lastOperator = operator;
-            }
-            if (lastRealPos > -1 && lastRealPos + lastRealOperator.getLength() < this.chars.length) {
-                addSegment(lastRealPos, lastRealPos + lastRealOperator.getLength(), this.chars.length);
-            }
+            ends[left] = right;
+            starts[right] = left;
+        }
 
-            // merge sorted operators into a list following priority and
-            // position
-            final List<Integer> sortedOperators = sortedOperatorsByPriority.values().stream().collect(SUPPLIER_LIST, ACCUMULATOR, COMBINER);
+        final Entity entity = values[0];
 
-            // rebuild map following sorted operators
-            this.sortedOperators = new TreeMap<>((a, b) -> Integer.compare(sortedOperators.indexOf(a), sortedOperators.indexOf(b)));
-            this.sortedOperators.putAll(realOperatorsByPosition);
+        if (!entity.isUnity()) {
+            if (exact && entity.isNumber() && entity.getExact() == null) {
+                if (!Double.isFinite(entity.getValue())
+                        || MathUtils.isRoundingAmbiguous(entity.getValue(), entity.getError(), context.getPrecision())) {
+                    entity.setExact(this.escalate(context, operands));
+                } else if (this.operators.length > 0 || this.processors[0] == null) {
+                    // a function result alone keeps its own escalation
+                    entity.setEscalation(() -> this.escalate(context, operands));
+                }
+            }
+            return entity;
 
-        } else if (this.result != null && this.result.innerLength() > 0 && this.result.hasEntities()) {
-            throw new ProcessorException(I18n.ERROR_FORMULA_OPERATOR_MISSING, this.result);
+        } else if (entity.isVariable()) {
+            throw new ProcessorException(I18n.ERROR_VARIABLE_VALUE_MISSING, entity.toString(context));
 
         } else {
-            this.sortedOperators = Collections.emptySortedMap();
+            throw new ProcessorException(I18n.ERROR_UNITY_VALUE_MISSING, entity.toString(context));
         }
     }
 
-    private void addSegment(final int index, final int start, final int end) throws ProcessorException {
-        final Optional<Entity> optionalEntity;
-        final Entity entity;
-
-        if (result != null) {
-            optionalEntity = result.subEntity(start, end);
-        } else {
-            optionalEntity = Optional.empty();
-        }
-
-        if (optionalEntity.isPresent()) {
-            entity = optionalEntity.get();
-        } else {
-            entity = new Entity(index, this.formula.substring(start, end), this.type);
+    /**
+     * Computes the level with {@link BigDecimal}, in the same order
+     *
+     * @param context
+     *            the evaluation context
+     * @param operands
+     *            the operands evaluated in double (not modified by exact operators)
+     * @return the exact value or {@code null} if not computable exactly (operator or operand)
+     * @throws ProcessorException
+     *             on evaluation failure of a sub-level
+     */
+    private BigDecimal escalate(final EvaluationContext context, final Entity[] operands) throws ProcessorException {
+        for (Operators operator : this.operators) {
+            if (!operator.isExact()) {
+                return null;
+            }
         }
 
-        if (UnityType.TYPED_UNITIES.contains(entity.getUnityType())) {
-            this.type = entity.getUnityType();
+        final BigDecimal[] values = new BigDecimal[operands.length];
+        for (int i = 0; i < operands.length; ++i) {
+            values[i] = this.toExact(context, i, operands[i]);
+            if (values[i] == null) {
+                return null;
+            }
         }
 
-        this.segments.put(index, entity);
-    }
+        final int[] starts = IntStream.range(0, values.length).toArray();
+        final int[] ends = Arrays.copyOf(starts, starts.length);
 
-    private Optional<Entity> calculate() throws ProcessorException {
-        Entity result = null;
+        int left, right;
+        for (int i : this.order) {
+            left = starts[i];
+            right = ends[i + 1];
 
-        if (!this.segments.isEmpty()) {
+            context.getCancellation().check();
 
-            final Map<Integer, Entity> used = new HashMap<>();
+            values[left] = this.operators[i].process(values[left], values[i + 1]);
+            if (values[left] == null) {
+                return null;
+            }
 
-            int index, leftIndex, rightIndex;
-            Entity left, right;
-            List<Integer> sameValues;
+            ends[left] = right;
+            starts[right] = left;
+        }
 
-            final Supplier<List<Integer>> arrayListSupplier = ArrayList::new;
-            final Map<Integer, List<Integer>> links = new HashMap<>();
+        return values[0];
+    }
 
-            for (Entry<Integer, Operators> entry : sortedOperators.entrySet()) {
-                index = this.positions.indexOf(entry.getKey());
+    private BigDecimal toExact(final EvaluationContext context, final int index, final Entity operand) throws ProcessorException {
+        if (operand == null || !operand.isNumber()) {
+            return null;
 
-                if (index > 0) {
-                    leftIndex = this.positions.get(index - 1);
-                } else {
-                    leftIndex = 0;
-                }
-                rightIndex = entry.getKey();
+        } else if (operand.getExact() != null) {
+            return operand.getExact();
 
-                left = Optional.ofNullable(used.get(leftIndex)).orElse(this.segments.get(leftIndex));
-                right = Optional.ofNullable(used.get(rightIndex)).orElse(this.segments.get(rightIndex));
+        } else if (!Double.isFinite(operand.getValue())) {
+            // overflowed, only computable from its own operands
+            return operand.escalate();
 
-                result = entry.getValue().process(left, right);
+        } else if (operand.getError() == 0) {
+            return new BigDecimal(operand.getValue());
 
-                sameValues = Arrays.asList(leftIndex, rightIndex);
-                MapUtils.getOrPutIfAbsent(links, leftIndex, arrayListSupplier).addAll(sameValues);
-                MapUtils.getOrPutIfAbsent(links, rightIndex, arrayListSupplier).addAll(sameValues);
+        }
 
-                for (Integer i : links.get(leftIndex)) {
-                    used.put(i, result);
-                }
-                for (Integer i : links.get(rightIndex)) {
-                    used.put(i, result);
-                }
-            }
-        } else if (this.result != null && this.result.hasEntities() && ResultBuilder.FIRST_ID.equals(this.formula)) {
-            result = this.result.firstEntity().get();
+        final BigDecimal exact;
+        if (this.segments[index] != null && !this.segments[index].isVariable() && !operand.hasUnity()) {
+            exact = this.segments[index].toExact();
         } else {
-            result = new Entity(0, this.formula);
+            // sub-level or function result, from its own operands
+            exact = operand.escalate();
+        }
+        if (exact != null) {
+            return exact;
         }
 
-        return Optional.ofNullable(result);
+        // function result or assigned variable, the shortest decimal representation (the input for variables)
+        return BigDecimal.valueOf(operand.getValue());
+    }
+
+    @Override
+    public String toString() {
+        return this.formula;
     }
 }
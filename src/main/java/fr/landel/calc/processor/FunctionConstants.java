@@ -1,19 +1,55 @@
 package fr.landel.calc.processor;
 
+import java.math.BigDecimal;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
+import fr.landel.calc.utils.MathUtils;
+
 public interface FunctionConstants {
 
-    Function<Supplier<Double>, Function<Entity[], Entity>> NO_PARAM = f -> e -> new Entity(0, f.get());
-    BiFunction<Supplier<Double>, Unity, Function<Entity[], Entity>> NO_PARAM_UNITY = (f, u) -> e -> new Entity(0, f.get(), u);
-    Function<Function<Double, Double>, Function<Entity[], Entity>> ONE_PARAM = f -> e -> new Entity(e[0].getIndex(), f.apply(e[0].getValue()),
-            e[0].getUnities());
-    BiFunction<Function<Double, Double>, Unity, Function<Entity[], Entity>> ONE_PARAM_UNITY = (f,
-            u) -> e -> new Entity(e[0].getIndex(), f.apply(e[0].getValue()), u);
-    Function<BiFunction<Double, Double, Double>, Function<Entity[], Entity>> TWO_PARAM = f -> e -> new Entity(e[0].getIndex(),
-            f.apply(e[0].getValue(), e[1].getValue()), e[0].getUnities());
-    BiFunction<BiFunction<Double, Double, Double>, Unity, Function<Entity[], Entity>> TWO_PARAM_UNITY = (f,
-            u) -> e -> new Entity(e[0].getIndex(), f.apply(e[0].getValue(), e[1].getValue()), u);
+    Function<Supplier<Double>, BiFunction<EvaluationContext, Entity[], Entity>> NO_PARAM = f -> (c, e) -> new Entity(0, f.get());
+    BiFunction<Supplier<Double>, Unity, BiFunction<EvaluationContext, Entity[], Entity>> NO_PARAM_UNITY = (f,
+            u) -> (c, e) -> new Entity(0, f.get(), u);
+    Function<Function<Double, Double>, BiFunction<EvaluationContext, Entity[], Entity>> ONE_PARAM = f -> (c,
+            e) -> new Entity(e[0].getIndex(), f.apply(e[0].getValue()), e[0].getUnities());
+    Function<BiFunction<Double, Boolean, Double>, BiFunction<EvaluationContext, Entity[], Entity>> ONE_PARAM_ANGULAR = f -> (c,
+            e) -> new Entity(e[0].getIndex(), f.apply(e[0].getValue(), c.isRadian()), e[0].getUnities());
+    BiFunction<Function<Double, Double>, Unity, BiFunction<EvaluationContext, Entity[], Entity>> ONE_PARAM_UNITY = (f,
+            u) -> (c, e) -> new Entity(e[0].getIndex(), f.apply(e[0].getValue()), u);
+    Function<BiFunction<Double, Double, Double>, BiFunction<EvaluationContext, Entity[], Entity>> TWO_PARAM = f -> (c,
+            e) -> new Entity(e[0].getIndex(), f.apply(e[0].getValue(), e[1].getValue()), e[0].getUnities());
+    BiFunction<BiFunction<Double, Double, Double>, Unity, BiFunction<EvaluationContext, Entity[], Entity>> TWO_PARAM_UNITY = (f,
+            u) -> (c, e) -> new Entity(e[0].getIndex(), f.apply(e[0].getValue(), e[1].getValue()), u);
+
+    // rand() or rand(seed), a seeded call draws from its own stream, the shared stream of the context is left unchanged
+    BiFunction<EvaluationContext, Entity[], Entity> FUN_RANDOM = (c, e) -> {
+        final RandomStream random = e.length > 0 ? new RandomStream(e[0].getValue().longValue()) : c.getRandom();
+        return new Entity(0, random.nextDouble());
+    };
+    BiFunction<EvaluationContext, Entity[], Entity> FUN_RANDOM_NORMAL = (c, e) -> new Entity(0, c.getRandom().nextGaussian());
+    BiFunction<EvaluationContext, Entity[], Entity> FUN_RANDOM_INTEGER = (c, e) -> {
+        final long min = Math.round(e[0].getValue());
+        final long max = Math.round(e[1].getValue());
+        return min <= max ? new Entity(e[0].getIndex(), (double) c.getRandom().nextLong(min, max)) : null;
+    };
+
+    // above, the exact factorial is too long to display
+    int EXACT_MAX_FACTORIAL = 9_999;
+
+    // the exact value is computed only on escalation, when the double isn't exact
+    BiFunction<EvaluationContext, Entity[], Entity> FACTORIAL = (c, e) -> {
+        final double n = e[0].getValue();
+        final double value = MathUtils.fact(n);
+        final Entity entity = new Entity(e[0].getIndex(), value, e[0].getUnities());
+        if (c.isExact() && n >= 0 && n <= EXACT_MAX_FACTORIAL && n == Math.rint(n)) {
+            if (n <= MathUtils.MAX_EXACT_DOUBLE_FACTORIAL) {
+                entity.setExact(new BigDecimal(value));
+            } else {
+                entity.setEscalation(() -> new BigDecimal(MathUtils.factExact((int) n)));
+            }
+        }
+        return entity;
+    };
 }
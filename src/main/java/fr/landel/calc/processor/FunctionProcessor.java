@@ -5,35 +5,86 @@ import java.util.Arrays;
 import java.util.List;
 
 import fr.landel.calc.config.I18n;
+import fr.landel.calc.processor.ProcessorMetrics.Stage;
 import fr.landel.calc.utils.StringUtils;
 
 public class FunctionProcessor implements Processor {
 
     private final Functions function;
-    private final Entity[] segments;
+    private final FormulaProcessor[] arguments;
 
-    public FunctionProcessor(final Functions function, final Entity[] segments) {
+    public FunctionProcessor(final Functions function, final List<FormulaProcessor> arguments) {
         this.function = function;
-        this.segments = Arrays.copyOf(segments, segments.length);
+        this.arguments = arguments.toArray(FormulaProcessor[]::new);
     }
 
     @Override
-    public Entity process() throws ProcessorException {
+    public Entity process(final EvaluationContext context) throws ProcessorException {
+        if (this.function.isAggregate()) {
+            return this.aggregate(context);
+        }
+
+        // sub-processors of all arguments first, from the last to the first
+        final Entity[][] values = new Entity[this.arguments.length][];
+        for (int i = this.arguments.length - 1; i >= 0; --i) {
+            values[i] = this.arguments[i].prepare(context);
+        }
+
+        final Entity[] segments = new Entity[this.arguments.length];
+        for (int i = 0; i < this.arguments.length; ++i) {
+            segments[i] = this.arguments[i].process(context, values[i]);
+        }
 
         final List<I18n> errors = new ArrayList<>();
         Entity result = null;
 
-        errors.addAll(function.check(segments));
+        errors.addAll(function.check(context, segments));
 
         if (errors.isEmpty()) {
-            result = function.getProcessor().apply(segments);
+            final long start = ProcessorMetrics.start();
+            result = function.getProcessor().apply(context, segments);
+            ProcessorMetrics.record(Stage.FUNCTION, this.function.ordinal(), start);
         }
 
         if (result != null) {
             return result;
         } else {
             throw new ProcessorException(I18n.ERROR_FUNCTION_PARSE, function.getFunction(),
-                    Arrays.stream(segments).map(String::valueOf).collect(StringUtils.SEMICOLON_JOINING_COLLECTOR));
+                    Arrays.stream(segments).map(s -> Entity.format(s, context)).collect(StringUtils.SEMICOLON_JOINING_COLLECTOR));
+        }
+    }
+
+    /**
+     * Evaluates the arguments one at a time (from the last to the first, as the sub-processors are prepared above) into the aggregate,
+     * without keeping them
+     */
+    private Entity aggregate(final EvaluationContext context) throws ProcessorException {
+        final Aggregate aggregate = new Aggregate();
+        FormulaProcessor argument;
+        Entity value;
+        for (int i = this.arguments.length - 1; i >= 0; --i) {
+            context.getCancellation().check();
+
+            argument = this.arguments[i];
+            value = argument.process(context, argument.prepare(context));
+            if (!aggregate.add(value)) {
+                throw new ProcessorException(I18n.ERROR_FUNCTION_PARSE, this.function.getFunction(), Entity.format(value, context));
+            }
+        }
+
+        // the values are added as the arguments are evaluated, only the statistic is timed
+        final long start = ProcessorMetrics.start();
+        final Entity result = aggregate.get(this.function.getStatistic());
+        ProcessorMetrics.record(Stage.FUNCTION, this.function.ordinal(), start);
+        if (result == null) {
+            throw new ProcessorException(I18n.ERROR_FUNCTION_PARSE, this.function.getFunction(),
+                    Arrays.stream(this.arguments).map(FormulaProcessor::toString).collect(StringUtils.SEMICOLON_JOINING_COLLECTOR));
         }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return this.function.getFunction() + Arrays.toString(this.arguments);
     }
 }
@@ -4,9 +4,11 @@ import java.time.LocalDateTime;
 import java.time.temporal.IsoFields;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.function.Function;
-import java.util.function.Predicate;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
 
 import fr.landel.calc.config.I18n;
 import fr.landel.calc.utils.DateUtils;
@@ -16,68 +18,88 @@ import fr.landel.calc.utils.StringUtils;
 public enum Functions implements FunctionConstants {
 
     ABS("abs", I18n.DIALOG_FUNCTION_ABS, ONE_PARAM.apply(Math::abs), Params.VALUE),
-    ACOS("acos", I18n.DIALOG_FUNCTION_ACOS, ONE_PARAM.apply(MathUtils.applyInverseAngularFunction(Math::acos)), Params.COSINUS),
-    ASIN("asin", I18n.DIALOG_FUNCTION_ASIN, ONE_PARAM.apply(MathUtils.applyInverseAngularFunction(Math::asin)), Params.SINUS),
-    ATAN("atan", I18n.DIALOG_FUNCTION_ATAN, ONE_PARAM.apply(MathUtils.applyInverseAngularFunction(Math::atan)), Params.TANGENT),
+    ACOS("acos", I18n.DIALOG_FUNCTION_ACOS, ONE_PARAM_ANGULAR.apply(MathUtils.applyInverseAngularFunction(Math::acos)), Params.COSINUS),
+    ASIN("asin", I18n.DIALOG_FUNCTION_ASIN, ONE_PARAM_ANGULAR.apply(MathUtils.applyInverseAngularFunction(Math::asin)), Params.SINUS),
+    ATAN("atan", I18n.DIALOG_FUNCTION_ATAN, ONE_PARAM_ANGULAR.apply(MathUtils.applyInverseAngularFunction(Math::atan)), Params.TANGENT),
     CEIL("ceil", I18n.DIALOG_FUNCTION_CEIL, TWO_PARAM.apply(MathUtils::ceil), Params.VALUE, Params.ACCURACY),
-    COS("cos", I18n.DIALOG_FUNCTION_COS, ONE_PARAM.apply(MathUtils.applyAngularFunction(Math::cos)), Params.ANGULAR),
+    COS("cos", I18n.DIALOG_FUNCTION_COS, ONE_PARAM_ANGULAR.apply(MathUtils.applyAngularFunction(Math::cos)), Params.ANGULAR),
     EXP("exp", I18n.DIALOG_FUNCTION_EXP, ONE_PARAM.apply(Math::exp), Params.VALUE),
-    FACT("fact", I18n.DIALOG_FUNCTION_FACT, ONE_PARAM.apply(MathUtils::fact), Params.VALUE),
+    FACT("fact", I18n.DIALOG_FUNCTION_FACT, FACTORIAL, Params.FACTORIAL),
     FLOOR("floor", I18n.DIALOG_FUNCTION_FLOOR, TWO_PARAM.apply(MathUtils::floor), Params.VALUE, Params.ACCURACY),
     LOG("log", I18n.DIALOG_FUNCTION_LOG, ONE_PARAM.apply(Math::log10), Params.VALUE),
     LN("ln", I18n.DIALOG_FUNCTION_LN, ONE_PARAM.apply(Math::log), Params.VALUE),
     PI("pi", NO_PARAM.apply(() -> Math.PI)),
     E("e", NO_PARAM.apply(() -> Math.E)),
-    RANDOM("rand", NO_PARAM.apply(Math::random)),
+    RANDOM("rand", null, FUN_RANDOM, Params.SEED),
+    RANDOM_NORMAL("randn", FUN_RANDOM_NORMAL),
+    RANDOM_INTEGER("randint", null, FUN_RANDOM_INTEGER, Params.MIN, Params.MAX),
     POW("pow", I18n.DIALOG_FUNCTION_POW, TWO_PARAM.apply(Math::pow), Params.VALUE, Params.EXPONENT),
     ROUND("round", I18n.DIALOG_FUNCTION_ROUND, TWO_PARAM.apply(MathUtils::round), Params.VALUE, Params.ACCURACY),
-    SIN("sin", I18n.DIALOG_FUNCTION_SIN, ONE_PARAM.apply(MathUtils.applyAngularFunction(Math::sin)), Params.ANGULAR),
+    SIN("sin", I18n.DIALOG_FUNCTION_SIN, ONE_PARAM_ANGULAR.apply(MathUtils.applyAngularFunction(Math::sin)), Params.ANGULAR),
     SQR("sqr", I18n.DIALOG_FUNCTION_SQR, ONE_PARAM.apply(Math::sqrt), Params.VALUE),
-    TAN("tan", I18n.DIALOG_FUNCTION_TAN, ONE_PARAM.apply(MathUtils.applyAngularFunction(Math::tan)), Params.ANGULAR),
+    TAN("tan", I18n.DIALOG_FUNCTION_TAN, ONE_PARAM_ANGULAR.apply(MathUtils.applyAngularFunction(Math::tan)), Params.ANGULAR),
+
+    // aggregates, any number of arguments
+    SUM("sum", Aggregate.Statistic.SUM),
+    AVERAGE("avg", Aggregate.Statistic.AVERAGE),
+    MIN("min", Aggregate.Statistic.MIN),
+    MAX("max", Aggregate.Statistic.MAX),
+    STDDEV("stddev", Aggregate.Statistic.STANDARD_DEVIATION),
+    VARIANCE("variance", Aggregate.Statistic.VARIANCE),
 
     // FIXME date, 3>>M 2019Y>>y
-    YEARS("year", I18n.DIALOG_FUNCTION_YEAR, e -> new Entity(e[0].getIndex(), Double.valueOf(e[0].getDate().get().getYear())), Params.DATE_DATE),
+    YEARS("year", I18n.DIALOG_FUNCTION_YEAR, (c, e) -> new Entity(e[0].getIndex(), Double.valueOf(e[0].getDate().get().getYear())), Params.DATE_DATE),
     MONTH(
             "month",
             I18n.DIALOG_FUNCTION_MONTH,
-            e -> new Entity(e[0].getIndex(), Double.valueOf(e[0].getDate().get().getMonthValue())),
+            (c, e) -> new Entity(e[0].getIndex(), Double.valueOf(e[0].getDate().get().getMonthValue())),
             Params.DATE_DATE),
     WEEK(
             "week",
             I18n.DIALOG_FUNCTION_WEEK,
-            e -> new Entity(e[0].getIndex(), Double.valueOf(e[0].getDate().get().get(IsoFields.WEEK_OF_WEEK_BASED_YEAR))),
+            (c, e) -> new Entity(e[0].getIndex(), Double.valueOf(e[0].getDate().get().get(IsoFields.WEEK_OF_WEEK_BASED_YEAR))),
+            Params.DATE_DATE),
+    DAY(
+            "day",
+            I18n.DIALOG_FUNCTION_DAY,
+            (c, e) -> new Entity(e[0].getIndex(), Double.valueOf(e[0].getDate().get().getDayOfMonth())),
+            Params.DATE_DATE),
+    HOURS(
+            "hour",
+            I18n.DIALOG_FUNCTION_HOURS,
+            (c, e) -> new Entity(e[0].getIndex(), Double.valueOf(e[0].getDate().get().getHour())),
             Params.DATE_DATE),
-    DAY("day", I18n.DIALOG_FUNCTION_DAY, e -> new Entity(e[0].getIndex(), Double.valueOf(e[0].getDate().get().getDayOfMonth())), Params.DATE_DATE),
-    HOURS("hour", I18n.DIALOG_FUNCTION_HOURS, e -> new Entity(e[0].getIndex(), Double.valueOf(e[0].getDate().get().getHour())), Params.DATE_DATE),
     MINUTES(
             "minute",
             I18n.DIALOG_FUNCTION_MINUTES,
-            e -> new Entity(e[0].getIndex(), Double.valueOf(e[0].getDate().get().getMinute())),
+            (c, e) -> new Entity(e[0].getIndex(), Double.valueOf(e[0].getDate().get().getMinute())),
             Params.DATE_DATE),
     SECONDS(
             "second",
             I18n.DIALOG_FUNCTION_SECONDS,
-            e -> new Entity(e[0].getIndex(), Double.valueOf(e[0].getDate().get().getSecond())),
+            (c, e) -> new Entity(e[0].getIndex(), Double.valueOf(e[0].getDate().get().getSecond())),
             Params.DATE_DATE),
     MILLISECONDS(
             "millisecond",
             I18n.DIALOG_FUNCTION_MILLISECONDS,
-            e -> new Entity(e[0].getIndex(), Math.floor(e[0].getDate().get().getNano() / DateUtils.NANO_PER_MILLISECOND)),
+            (c, e) -> new Entity(e[0].getIndex(), Math.floor(e[0].getDate().get().getNano() / DateUtils.NANO_PER_MILLISECOND)),
             Params.DATE_DATE),
     MICROSECONDS(
             "microsecond",
             I18n.DIALOG_FUNCTION_MICROSECONDS,
-            e -> new Entity(e[0].getIndex(), Math.floor(e[0].getDate().get().getNano() / DateUtils.NANO_PER_MICROSECOND))),
+            (c, e) -> new Entity(e[0].getIndex(), Math.floor(e[0].getDate().get().getNano() / DateUtils.NANO_PER_MICROSECOND))),
     NANOSECONDS(
             "nanosecond",
             I18n.DIALOG_FUNCTION_NANOSECONDS,
-            e -> new Entity(e[0].getIndex(), Double.valueOf(e[0].getDate().get().getNano())),
+            (c, e) -> new Entity(e[0].getIndex(), Double.valueOf(e[0].getDate().get().getNano())),
             Params.DATE_DATE),
-    NOW("now", e -> {
+    NOW("now", (c, e) -> {
         return new Entity(0, System.currentTimeMillis() * DateUtils.NANO_PER_MILLISECOND + DateUtils.NANO_EPOCH, LocalDateTime.now(),
                 Unity.DATE_NANOSECONDS);
     });
 
+    private static final Set<Functions> NOT_PURE = EnumSet.of(RANDOM, RANDOM_NORMAL, RANDOM_INTEGER, NOW);
+
     public static final int MAX_PARAMS = Arrays.stream(Functions.values()).map(f -> f.getParamsCount()).max(Integer::compareTo).orElse(0);
 
     private static final String TAG_HTML_OPEN = "<html>";
@@ -87,7 +109,8 @@ public enum Functions implements FunctionConstants {
 
     private final String function;
     private final I18n i18n;
-    private final Function<Entity[], Entity> processor;
+    private final BiFunction<EvaluationContext, Entity[], Entity> processor;
+    private final Aggregate.Statistic statistic;
     private final Params<?>[] params;
     private final boolean hasParams;
     private final int paramsCount;
@@ -95,10 +118,17 @@ public enum Functions implements FunctionConstants {
     private String toString;
     private String[] focusParams;
 
-    private Functions(final String function, final I18n i18n, final Function<Entity[], Entity> processor, final Params<?>... params) {
+    private Functions(final String function, final I18n i18n, final BiFunction<EvaluationContext, Entity[], Entity> processor,
+            final Params<?>... params) {
+        this(function, i18n, processor, null, params);
+    }
+
+    private Functions(final String function, final I18n i18n, final BiFunction<EvaluationContext, Entity[], Entity> processor,
+            final Aggregate.Statistic statistic, final Params<?>... params) {
         this.function = function;
         this.i18n = i18n;
         this.processor = processor;
+        this.statistic = statistic;
 
         this.hasParams = params != null && params.length > 0;
         if (this.hasParams) {
@@ -122,18 +152,33 @@ public enum Functions implements FunctionConstants {
         }
     }
 
-    private Functions(final String function, final Function<Entity[], Entity> processor) {
+    private Functions(final String function, final BiFunction<EvaluationContext, Entity[], Entity> processor) {
         this(function, null, processor);
     }
 
+    private Functions(final String function, final Aggregate.Statistic statistic) {
+        this(function, null, Aggregate.processor(statistic), statistic);
+    }
+
     public String getFunction() {
         return this.function;
     }
 
-    public Function<Entity[], Entity> getProcessor() {
+    public BiFunction<EvaluationContext, Entity[], Entity> getProcessor() {
         return this.processor;
     }
 
+    /**
+     * @return the statistic of an aggregate function (evaluated by streaming its arguments), otherwise {@code null}
+     */
+    public Aggregate.Statistic getStatistic() {
+        return this.statistic;
+    }
+
+    public boolean isAggregate() {
+        return this.statistic != null;
+    }
+
     public boolean hasParams() {
         return this.hasParams;
     }
@@ -154,18 +199,28 @@ public enum Functions implements FunctionConstants {
         return this.focusParams;
     }
 
-    public List<I18n> check(final Entity... params) {
+    /**
+     * @return true, if the result only depends on the parameters
+     */
+    public boolean isPure() {
+        return !NOT_PURE.contains(this);
+    }
+
+    public List<I18n> check(final EvaluationContext context, final Entity... params) {
         final List<I18n> errors = new ArrayList<>();
 
-        if (this.getParamsCount() != params.length) {
+        if (this.isAggregate()) {
+            return errors;
+        } else if (params.length > this.getParamsCount()
+                || (params.length < this.getParamsCount() && !this.getParams()[params.length].isOptional())) {
             errors.add(I18n.DIALOG_ERROR_PARAMS_COUNT);
             return errors;
         }
 
-        Predicate<Entity> predicate;
-        for (int i = 0; i < this.getParamsCount(); ++i) {
+        BiPredicate<Entity, EvaluationContext> predicate;
+        for (int i = 0; i < params.length; ++i) {
             predicate = this.getParams()[i].getValidator();
-            if (predicate != null && !predicate.test(params[i])) {
+            if (predicate != null && !predicate.test(params[i], context)) {
                 errors.add(this.getParams()[i].getPredicateI18n());
             }
         }
@@ -1,23 +1,19 @@
 package fr.landel.calc.processor;
 
 import java.util.Arrays;
-import java.util.List;
-import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import fr.landel.calc.config.Formula;
 import fr.landel.calc.config.I18n;
-import fr.landel.calc.function.FunctionThrowable;
+import fr.landel.calc.processor.ProcessorMetrics.Stage;
+import fr.landel.calc.utils.LRUCache;
 import fr.landel.calc.utils.Logger;
 import fr.landel.calc.utils.StringUtils;
 
 public class MainProcessor {
 
-    // TODO gerer radian / exact / scientific
-
     private static final Logger LOGGER = new Logger(MainProcessor.class);
 
-    private static final List<String> RESTRICTED_LIST = Arrays.asList(StringUtils.ID_OPEN, StringUtils.ID_CLOSE);
-    private static final String RESTRICTED_TEXT = RESTRICTED_LIST.stream().collect(StringUtils.COMMA_JOINING_COLLECTOR);
     private static final char[] KNOWN_ARRAY = ("abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789_°'\"²³" + StringUtils.COMMA
             + StringUtils.DOT + StringUtils.SEMICOLON + StringUtils.SPACE + StringUtils.PARENTHESIS_OPEN + StringUtils.PARENTHESIS_CLOSE
             + Operators.ADD.getOperator() + Operators.SUBSTRACT.getOperator() + Operators.MULTIPLY.getOperator() + Operators.DEVIDE.getOperator()
@@ -27,187 +23,219 @@ public class MainProcessor {
         Arrays.sort(KNOWN_ARRAY);
     }
 
-    private static boolean radian = true;
-    private static boolean exact = false;
-    private static boolean scientific = false;
-    private static int precision = 3;
-    private static boolean unityAbbrev = true;
-    private static boolean unitiesSpace = true;
-    private static boolean valuesSpace = true;
+    public static final int CACHE_SIZE = 256;
 
-    public MainProcessor() {
-    }
+    private final EvaluationContext context;
 
-    public static void setRadian(final boolean radian) {
-        MainProcessor.radian = radian;
-    }
+    private final LRUCache<String, CompiledFormula> formulas;
+    private final LRUCache<String, CachedResult> results;
 
-    public static void setExact(final boolean exact) {
-        MainProcessor.exact = exact;
-    }
+    private final DependencyGraph dependencies = new DependencyGraph();
 
-    public static void setScientific(final boolean scientific) {
-        MainProcessor.scientific = scientific;
+    public MainProcessor(final EvaluationContext context, final int formulasCacheSize, final int resultsCacheSize) {
+        this.context = context;
+        this.formulas = new LRUCache<>(formulasCacheSize);
+        this.results = new LRUCache<>(resultsCacheSize);
     }
 
-    public static void setPrecision(final int precision) {
-        MainProcessor.precision = precision;
+    public MainProcessor(final EvaluationContext context) {
+        this(context, CACHE_SIZE, CACHE_SIZE);
     }
 
-    public static void setUnityAbbrev(boolean unityAbbrev) {
-        MainProcessor.unityAbbrev = unityAbbrev;
+    public MainProcessor() {
+        this(new EvaluationContext());
     }
 
-    public static void setUnitiesSpace(boolean unitiesSpace) {
-        MainProcessor.unitiesSpace = unitiesSpace;
+    public EvaluationContext getContext() {
+        return this.context;
     }
 
-    public static void setValuesSpace(boolean valuesSpace) {
-        MainProcessor.valuesSpace = valuesSpace;
+    /**
+     * @return the cache of compiled formulas
+     * @category getter
+     */
+    public LRUCache<String, CompiledFormula> getFormulasCache() {
+        return this.formulas;
     }
 
-    public static boolean isRadian() {
-        return MainProcessor.radian;
+    /**
+     * @return the cache of results of pure formulas
+     * @category getter
+     */
+    public LRUCache<String, CachedResult> getResultsCache() {
+        return this.results;
     }
 
-    public static boolean isExact() {
-        return MainProcessor.exact;
+    /**
+     * @return the dependencies between variables and stored formulas
+     * @category getter
+     */
+    public DependencyGraph getDependencies() {
+        return this.dependencies;
     }
 
-    public static boolean isScientific() {
-        return MainProcessor.scientific;
-    }
+    public Formula process(final String input) throws ProcessorException {
+        return process(input, this.context);
+    }
+
+    public Formula process(final String input, final EvaluationContext context) throws ProcessorException {
+        return process(input, context, false);
+    }
+
+    /**
+     * Processes the formula, an assignment re-binds its variables and recomputes the formulas depending on them
+     *
+     * @param input
+     *            the formula
+     * @param context
+     *            the evaluation context
+     * @param watch
+     *            true, to store the formula (if it doesn't assign any variable) to be recomputed when the variables it reads are re-bound,
+     *            even if its evaluation fails
+     * @return the formula with its result
+     * @throws ProcessorException
+     *             on parsing or evaluation error
+     */
+    public Formula process(final String input, final EvaluationContext context, final boolean watch) throws ProcessorException {
+        final long start = System.nanoTime();
+
+        final CompiledFormula formula = compile(input);
+        this.dependencies.check(formula);
+        if (watch && formula.getAssigned().length == 0 && formula.variableCount() > 0) {
+            this.dependencies.watch(formula);
+        }
+
+        final Formula result = new Formula(input, true, evaluate(formula, context));
+
+        // a failed assignment keeps the previous definition
+        if (this.dependencies.define(formula)) {
+            this.dependencies.propagate(Arrays.asList(formula.getAssigned()), context);
+        }
+
+        ProcessorMetrics.record(Stage.PROCESS, start);
+        LOGGER.info("'{}' processed in {} µs", input, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
 
-    public static int getPrecision() {
-        return MainProcessor.precision;
+        return result;
     }
 
-    public static boolean isUnityAbbrev() {
-        return MainProcessor.unityAbbrev;
+    /**
+     * Stops recomputing the formula, stored by {@link #process(String, EvaluationContext, boolean)}
+     *
+     * @param input
+     *            the formula
+     */
+    public void unwatch(final String input) {
+        this.dependencies.unwatch(normalize(input));
     }
 
-    public static boolean isUnitiesSpace() {
-        return MainProcessor.unitiesSpace;
+    public Entity processToEntity(final String input) throws ProcessorException {
+        return processToEntity(input, this.context);
     }
 
-    public static boolean isValuesSpace() {
-        return MainProcessor.valuesSpace;
+    public Entity processToEntity(final String input, final EvaluationContext context) throws ProcessorException {
+        return compile(input).evaluate(context);
     }
 
-    public Formula process(final String input) throws ProcessorException {
+    public CompiledFormula compile(final String input) throws ProcessorException {
         if (input == null || input.isBlank()) {
             throw new ProcessorException(I18n.ERROR_FORMULA_EMPTY);
         }
 
-        final long start = System.currentTimeMillis();
+        final String formula = prepare(input);
 
-        final Formula result = new Formula(input, true, processFormula(prepare(input)).toString());
-
-        LOGGER.info("'{}' processed in {} ms", input, System.currentTimeMillis() - start);
+        CompiledFormula compiled = this.formulas.get(formula);
+        if (compiled == null) {
+            compiled = new FormulaParser(formula).parse();
+            this.formulas.put(formula, compiled);
+        }
 
-        return result;
+        return compiled;
     }
 
-    public Entity processToEntity(final String input) throws ProcessorException {
-        if (input == null || input.isBlank()) {
-            throw new ProcessorException(I18n.ERROR_FORMULA_EMPTY);
+    private String evaluate(final CompiledFormula formula, final EvaluationContext context) throws ProcessorException {
+        if (!formula.isPure()) {
+            return formula.evaluate(context).toString(context);
         }
 
-        return processFormula(prepare(input));
+        final CachedResult cached = this.results.get(formula.getFormula(), c -> c.isValid(formula, context));
+        if (cached != null) {
+            return cached.result;
+        }
+
+        final String result = formula.evaluate(context).toString(context);
+        this.results.put(formula.getFormula(), new CachedResult(formula, context, result));
+
+        return result;
     }
 
-    private String prepare(final String input) throws ProcessorException {
+    /**
+     * @param input
+     *            the input
+     * @return the formula without spaces and with dots as decimal separator
+     * @throws ProcessorException
+     *             if the input contains unknown characters
+     */
+    static String prepare(final String input) throws ProcessorException {
+        final long start = ProcessorMetrics.start();
+
         final String unknown = input.chars().filter(c -> Arrays.binarySearch(KNOWN_ARRAY, (char) c) < 0)
                 .collect(StringBuilder::new, (a, c) -> a.append((char) c), (a, b) -> a.append(b)).toString();
         if (!unknown.isEmpty()) {
             throw new ProcessorException(I18n.ERROR_CHARACTERS_UNKNOWN, unknown);
         }
 
-        return StringUtils.replaceCommaByDot(StringUtils.removeAllSpaces(input));
-    }
+        final String formula = normalize(input);
 
-    private Entity processFormula(final String input) throws ProcessorException {
-        if (RESTRICTED_LIST.stream().filter(input::contains).findAny().isPresent()) {
-            throw new ProcessorException(I18n.ERROR_CHARACTERS_RESTRICTED, input, RESTRICTED_TEXT);
-        }
+        ProcessorMetrics.record(Stage.PREPARE, start);
 
-        return processFormula(ResultBuilder.from(input));
+        return formula;
     }
 
-    private Entity processFormula(final ResultBuilder input) throws ProcessorException {
-        int parenthesisOpen = input.lastIndexOf(StringUtils.PARENTHESIS_OPEN);
-        int parenthesisClose = input.indexOf(StringUtils.PARENTHESIS_CLOSE, parenthesisOpen + 1);
-
-        if (parenthesisOpen < 0 && parenthesisClose < 0) {
-            final Optional<Entity> entity = input.firstEntity();
-            if (input.innerLength() == 0 && entity.isPresent()) {
-                return entity.get();
-            } else {
-                return new FormulaProcessor(input).process();
-            }
-
-        } else if (parenthesisOpen < 0 || parenthesisClose <= parenthesisOpen) {
-            throw new ProcessorException(I18n.ERROR_FORMULA_PARENTHESIS);
-        }
-
-        final ResultBuilder result = new ResultBuilder();
-        final String block = input.substring(parenthesisOpen + 1, parenthesisClose);
-
-        if (parenthesisOpen > -1) {
-
-            final String prefix = input.substring(0, parenthesisOpen);
-            final Optional<Functions> function = getFunction(prefix);
-
-            if (function.isPresent()) {
-
-                final FunctionThrowable<String, Entity, ProcessorException> processor = s -> {
-                    final ResultBuilder rb = ResultBuilder.from(s, input);
-                    if (rb.innerLength() == 0 && rb.getEntitiesSize() == 1) {
-                        return rb.firstEntity().get();
-                    } else {
-                        return new FormulaProcessor(rb).process();
-                    }
-                };
+    /**
+     * @param input
+     *            the input
+     * @return the formula without spaces and with dots as decimal separator, the characters are not checked (see {@link #compile(String)})
+     */
+    public static String normalize(final String input) {
+        return StringUtils.replaceCommaByDot(StringUtils.removeAllSpaces(input));
+    }
 
-                final Entity[] entities = Arrays.stream(block.split(StringUtils.SEMICOLON)).filter(StringUtils::isNotEmpty).map(processor)
-                        .toArray(Entity[]::new);
+    /**
+     * Result of a pure formula, valid while settings and read variables are unchanged (each binding is a new instance)
+     */
+    public static class CachedResult {
+        private final EvaluationContext context;
+        private final Object[] variables;
+        private final String result;
 
-                final Entity entity = new FunctionProcessor(function.get(), entities).process();
-                result.append(input.substring(0, parenthesisOpen - function.get().getFunction().length()), input);
-                result.append(entity);
-            } else {
-                result.append(prefix, input).append(new FormulaProcessor(ResultBuilder.from(block, input)).process());
+        private CachedResult(final CompiledFormula formula, final EvaluationContext context, final String result) {
+            this.context = context;
+            this.variables = new Object[formula.variableCount()];
+            for (int i = 0; i < this.variables.length; ++i) {
+                this.variables[i] = context.getScope().get(formula.getVariable(i));
             }
-        } else {
-            result.append(block);
-        }
-
-        if (++parenthesisClose > -1 && parenthesisClose < input.length()) {
-            final String suffix = input.substring(parenthesisClose, input.length());
-            result.append(suffix, input);
+            this.result = result;
         }
-        return processFormula(result);
-    }
-
-    private Optional<Functions> getFunction(final String input) throws ProcessorException {
-        final char[] chars = input.toCharArray();
-        final int len = chars.length;
-
-        int pos = len;
 
-        while (--pos >= 0 && Arrays.binarySearch(FunctionsTree.CHARS, chars[pos]) > -1) {
-        }
+        private boolean isValid(final CompiledFormula formula, final EvaluationContext context) {
+            if (!this.context.hasSameSettings(context)) {
+                return false;
+            }
 
-        if (pos < len - 1) {
-            final char[] inputFunction = Arrays.copyOfRange(chars, pos + 1, len);
-            final Optional<Functions> function = FunctionsTree.check(inputFunction);
-            if (function.isPresent()) {
-                return function;
-            } else {
-                throw new ProcessorException(I18n.ERROR_FUNCTION_UNKNOWN, new String(inputFunction));
+            for (int i = 0; i < this.variables.length; ++i) {
+                if (context.getScope().get(formula.getVariable(i)) != this.variables[i]) {
+                    return false;
+                }
             }
+            return true;
         }
 
-        return Optional.empty();
+        /**
+         * @return the formatted result
+         * @category getter
+         */
+        public String getResult() {
+            return this.result;
+        }
     }
 }
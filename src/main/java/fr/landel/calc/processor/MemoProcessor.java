@@ -0,0 +1,64 @@
+package fr.landel.calc.processor;
+
+/**
+ * Processor of a pure group, reusing its last result while the settings and the values of the read variables are unchanged (each binding
+ * is a new instance). Only copies of the result are returned, as the levels modify their operands.
+ */
+public class MemoProcessor implements Processor {
+
+    private final Processor processor;
+    private final String[] variables;
+
+    private volatile Result last;
+
+    MemoProcessor(final Processor processor, final String[] variables) {
+        this.processor = processor;
+        this.variables = variables;
+    }
+
+    @Override
+    public Entity process(final EvaluationContext context) throws ProcessorException {
+        final Result last = this.last;
+        if (last != null && last.isValid(context)) {
+            return new Entity(last.entity);
+        }
+
+        final Entity entity = this.processor.process(context);
+        this.last = new Result(context, this.variables, new Entity(entity));
+        return entity;
+    }
+
+    @Override
+    public String toString() {
+        return this.processor.toString();
+    }
+
+    private static class Result {
+        private final EvaluationContext context;
+        private final String[] variables;
+        private final Object[] values;
+        private final Entity entity;
+
+        private Result(final EvaluationContext context, final String[] variables, final Entity entity) {
+            this.context = context;
+            this.variables = variables;
+            this.values = new Object[variables.length];
+            for (int i = 0; i < variables.length; ++i) {
+                this.values[i] = context.getScope().get(variables[i]);
+            }
+            this.entity = entity;
+        }
+
+        private boolean isValid(final EvaluationContext context) {
+            if (!this.context.hasSameSettings(context)) {
+                return false;
+            }
+            for (int i = 0; i < this.variables.length; ++i) {
+                if (context.getScope().get(this.variables[i]) != this.values[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package fr.landel.calc.processor;
 
+import java.math.BigDecimal;
+import java.math.MathContext;
 import java.util.SortedSet;
 import java.util.function.BiFunction;
 import java.util.function.BiPredicate;
 
 import fr.landel.calc.utils.DateUtils;
+import fr.landel.calc.utils.MathUtils;
 
 public interface OperatorConstants {
 
@@ -74,4 +77,23 @@ public interface OperatorConstants {
             a.getUnities());
     BiFunction<Entity, Entity, Entity> FUN_CONVERT = (a, b) -> a.setUnities(b.getUnities());
     BiFunction<Entity, Entity, Entity> FUN_VARIABLE = (a, b) -> a.setVariable(b);
+
+    // EXACT FUNCTIONS (numbers only, null if not computable exactly)
+
+    // non terminating quotients are rounded to 34 digits
+    MathContext EXACT_CONTEXT = MathContext.DECIMAL128;
+    int EXACT_MAX_EXPONENT = 9_999;
+
+    BiFunction<BigDecimal, BigDecimal, BigDecimal> EXACT_ADD = BigDecimal::add;
+    BiFunction<BigDecimal, BigDecimal, BigDecimal> EXACT_SUBSTRACT = BigDecimal::subtract;
+    BiFunction<BigDecimal, BigDecimal, BigDecimal> EXACT_MULTIPLY = BigDecimal::multiply;
+    BiFunction<BigDecimal, BigDecimal, BigDecimal> EXACT_DEVIDE = (a, b) -> b.signum() != 0 ? a.divide(b, EXACT_CONTEXT) : null;
+    BiFunction<BigDecimal, BigDecimal, BigDecimal> EXACT_MODULO = (a, b) -> b.signum() != 0 ? a.remainder(b) : null;
+    BiFunction<BigDecimal, BigDecimal, BigDecimal> EXACT_POWER = (a, b) -> {
+        final double n = b.doubleValue();
+        if (!MathUtils.isSafeInteger(n) || Math.abs(n) > EXACT_MAX_EXPONENT || (n < 0 && a.signum() == 0)) {
+            return null;
+        }
+        return a.pow((int) n, EXACT_CONTEXT);
+    };
 }
@@ -1,5 +1,6 @@
 package fr.landel.calc.processor;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -12,16 +13,17 @@ import java.util.stream.Collectors;
 
 import fr.landel.calc.config.I18n;
 import fr.landel.calc.utils.MapUtils;
+import fr.landel.calc.utils.MathUtils;
 
 public enum Operators implements OperatorConstants {
-    ADD("+", 3, ALL_EXCEPT_LAST, CHECK_ADD, FUN_ADD),
-    SUBSTRACT("-", 3, ALL_EXCEPT_LAST, CHECK_SUBSTRACT, FUN_SUBSTRACT),
-    MULTIPLY("*", 2, ALL_EXCEPT_FIRST_AND_LAST, IS_ANY_NUMBER, FUN_MULTIPLY),
-    DEVIDE("/", 2, ALL_EXCEPT_FIRST_AND_LAST, IS_LEFT_NOT_UNITY_AND_RIGHT_NUMBER, FUN_DEVIDE),
-    MODULO("%", 2, ALL_EXCEPT_FIRST_AND_LAST, IS_LEFT_NOT_UNITY_AND_RIGHT_NUMBER, FUN_MODULO),
-    POWER("^", 1, ALL_EXCEPT_FIRST_AND_LAST, IS_LEFT_NOT_UNITY_AND_RIGHT_NUMBER, FUN_POWER),
-    CONVERT(">>", 0, ALL_EXCEPT_FIRST_AND_LAST, IS_CONVERTIBLE, FUN_CONVERT),
-    VARIABLE("=", 0, ALL_EXCEPT_FIRST_AND_LAST, IS_VARIABLE, FUN_VARIABLE);
+    ADD("+", 3, ALL_EXCEPT_LAST, CHECK_ADD, FUN_ADD, EXACT_ADD),
+    SUBSTRACT("-", 3, ALL_EXCEPT_LAST, CHECK_SUBSTRACT, FUN_SUBSTRACT, EXACT_SUBSTRACT),
+    MULTIPLY("*", 2, ALL_EXCEPT_FIRST_AND_LAST, IS_ANY_NUMBER, FUN_MULTIPLY, EXACT_MULTIPLY),
+    DEVIDE("/", 2, ALL_EXCEPT_FIRST_AND_LAST, IS_LEFT_NOT_UNITY_AND_RIGHT_NUMBER, FUN_DEVIDE, EXACT_DEVIDE),
+    MODULO("%", 2, ALL_EXCEPT_FIRST_AND_LAST, IS_LEFT_NOT_UNITY_AND_RIGHT_NUMBER, FUN_MODULO, EXACT_MODULO),
+    POWER("^", 1, ALL_EXCEPT_FIRST_AND_LAST, IS_LEFT_NOT_UNITY_AND_RIGHT_NUMBER, FUN_POWER, EXACT_POWER),
+    CONVERT(">>", 0, ALL_EXCEPT_FIRST_AND_LAST, IS_CONVERTIBLE, FUN_CONVERT, null),
+    VARIABLE("=", 0, ALL_EXCEPT_FIRST_AND_LAST, IS_VARIABLE, FUN_VARIABLE, null);
 
     public static final List<Operators> BY_LENGTH_DESC = Arrays.stream(Operators.values())
             .sorted((a, b) -> Integer.compare(b.getLength(), a.getLength())).collect(Collectors.toList());
@@ -40,15 +42,18 @@ public enum Operators implements OperatorConstants {
     private final BiPredicate<Integer, Integer> positionChecker;
     private final BiPredicate<Entity, Entity> validator;
     private final BiFunction<Entity, Entity, Entity> processor;
+    private final BiFunction<BigDecimal, BigDecimal, BigDecimal> exact;
 
     private Operators(final String operator, final int priority, final BiPredicate<Integer, Integer> positionChecker,
-            final BiPredicate<Entity, Entity> validator, final BiFunction<Entity, Entity, Entity> processor) {
+            final BiPredicate<Entity, Entity> validator, final BiFunction<Entity, Entity, Entity> processor,
+            final BiFunction<BigDecimal, BigDecimal, BigDecimal> exact) {
         this.operator = operator;
         this.length = operator.length();
         this.priority = priority;
         this.positionChecker = positionChecker;
         this.validator = validator;
         this.processor = processor;
+        this.exact = exact;
     }
 
     /**
@@ -84,19 +89,89 @@ public enum Operators implements OperatorConstants {
     }
 
     /**
+     * @return true, if the operator can be computed exactly on numbers
+     */
+    public boolean isExact() {
+        return this.exact != null;
+    }
+
+    /**
+     * @param context
+     *            the evaluation context
      * @param left
      *            the left entity
      * @param right
      *            the right entity
-     * @return the calculated entity
+     * @return the calculated entity (with its error bound in exact mode)
      * @throws ProcessorException
      *             if inputs don't match the validator
      */
-    public Entity process(final Entity left, final Entity right) throws ProcessorException {
+    public Entity process(final EvaluationContext context, final Entity left, final Entity right) throws ProcessorException {
         if (!this.validator.test(left, right)) {
-            throw new ProcessorException(I18n.ERROR_OPERATOR, left, right, this.operator);
+            throw new ProcessorException(I18n.ERROR_OPERATOR, Entity.format(left, context), Entity.format(right, context), this.operator);
+        }
+        final Entity result = this.processor.apply(left, right);
+        if (context.isExact() && this.isExact() && result.isNumber()) {
+            result.setError(this.error(left, right, result));
+        }
+        return result;
+    }
+
+    /**
+     * @param left
+     *            the left number
+     * @param right
+     *            the right number
+     * @return the exact result or {@code null} if not computable exactly (division by zero, non integer exponent...)
+     */
+    public BigDecimal process(final BigDecimal left, final BigDecimal right) {
+        return this.exact != null ? this.exact.apply(left, right) : null;
+    }
+
+    /**
+     * Bound of the absolute error of the result, from the errors of the operands (first order for the power) and the rounding of the result
+     */
+    private double error(final Entity left, final Entity right, final Entity result) {
+        if (!left.isNumber() || !right.isNumber()) {
+            return 0;
+        }
+
+        final double a = left.getValue();
+        final double b = right.getValue();
+        final double r = result.getValue();
+        final double ea = left.getError();
+        final double eb = right.getError();
+
+        final boolean exactOperands = ea == 0 && eb == 0;
+        final boolean integers = exactOperands && MathUtils.isSafeInteger(a) && MathUtils.isSafeInteger(b) && MathUtils.isSafeInteger(r);
+        final double rounding = integers ? 0 : Math.ulp(r) / 2;
+
+        switch (this) {
+        case ADD:
+        case SUBSTRACT:
+            return ea + eb + rounding;
+        case MULTIPLY:
+            return Math.abs(a) * eb + Math.abs(b) * ea + ea * eb + rounding;
+        case DEVIDE:
+            if (Math.abs(b) <= eb) {
+                return Double.POSITIVE_INFINITY;
+            }
+            return (Math.abs(a) * eb + Math.abs(b) * ea) / (Math.abs(b) * (Math.abs(b) - eb)) + (integers && a % b == 0 ? 0 : Math.ulp(r) / 2);
+        case MODULO:
+            // the remainder of doubles is exact, but not continuous
+            return exactOperands ? 0 : Double.POSITIVE_INFINITY;
+        case POWER:
+            // Math.pow is within 1 ulp
+            final double error = integers ? 0 : Math.ulp(r);
+            if (exactOperands) {
+                return error;
+            } else if (Math.abs(a) <= ea) {
+                return Double.POSITIVE_INFINITY;
+            }
+            return Math.abs(r) * (Math.abs(b) * ea / Math.abs(a) + Math.abs(Math.log(Math.abs(a))) * eb) + error;
+        default:
+            return result.getError();
         }
-        return this.processor.apply(left, right);
     }
 
     @Override
@@ -1,5 +1,6 @@
 package fr.landel.calc.processor;
 
+import java.util.function.BiPredicate;
 import java.util.function.Predicate;
 
 import fr.landel.calc.config.I18n;
@@ -7,10 +8,11 @@ import fr.landel.calc.config.I18n;
 public class Params<T> {
 
     public static final Params<Double> VALUE = new Params<>(I18n.DIALOG_FUNCTION_PARAM_VALUE, Entity::isNumber, I18n.DIALOG_ERROR_PARAM_VALUE);
-    public static final Params<Double> ACCURACY = new Params<>(I18n.DIALOG_FUNCTION_PARAM_ACCURACY, Entity::isPositiveDecimal,
+    public static final Params<Double> ACCURACY = new Params<>(I18n.DIALOG_FUNCTION_PARAM_ACCURACY, (e, c) -> e.isPositive(c.getPrecision()),
             I18n.DIALOG_ERROR_PARAM_ACCURACY);
     public static final Params<Double> ANGULAR = new Params<>(I18n.DIALOG_FUNCTION_PARAM_ANGULAR, Entity::isNumber, I18n.DIALOG_ERROR_PARAM_ANGULAR);
-    public static final Params<Double> DATE = new Params<>(I18n.DIALOG_FUNCTION_PARAM_DATE, Entity::isInteger, I18n.DIALOG_ERROR_PARAM_DATE);
+    public static final Params<Double> DATE = new Params<>(I18n.DIALOG_FUNCTION_PARAM_DATE, (e, c) -> e.isInteger(c.getPrecision()),
+            I18n.DIALOG_ERROR_PARAM_DATE);
     public static final Params<Double> DATE_DATE = new Params<>(I18n.DIALOG_FUNCTION_PARAM_DATE, Entity::isDate, I18n.DIALOG_ERROR_PARAM_DATE);
     public static final Params<Double> DATE_DURATION = new Params<>(I18n.DIALOG_FUNCTION_PARAM_DATE, Entity::isDuration,
             I18n.DIALOG_ERROR_PARAM_DATE);
@@ -21,26 +23,60 @@ public class Params<T> {
             I18n.DIALOG_ERROR_PARAM_EXPONENT);
     public static final Params<String> UNITY = new Params<>(I18n.DIALOG_FUNCTION_PARAM_UNITY, e -> e.isUnity(UnityType.DATE),
             I18n.DIALOG_ERROR_PARAM_EXPONENT);
+    public static final Params<Double> FACTORIAL = new Params<>(I18n.DIALOG_FUNCTION_PARAM_VALUE,
+            (e, c) -> e.isNumber() && !(e.getValue() < 0 && e.getValue() == Math.rint(e.getValue())), I18n.DIALOG_ERROR_PARAM_FACTORIAL);
+    public static final Params<Double> SEED = new Params<>(I18n.DIALOG_FUNCTION_PARAM_SEED, (e, c) -> e.isNumber() && e.isInteger(c.getPrecision()),
+            I18n.DIALOG_ERROR_PARAM_INTEGER, true);
+    public static final Params<Double> MIN = new Params<>(I18n.DIALOG_FUNCTION_PARAM_MIN, (e, c) -> e.isNumber() && e.isInteger(c.getPrecision()),
+            I18n.DIALOG_ERROR_PARAM_INTEGER);
+    public static final Params<Double> MAX = new Params<>(I18n.DIALOG_FUNCTION_PARAM_MAX, (e, c) -> e.isNumber() && e.isInteger(c.getPrecision()),
+            I18n.DIALOG_ERROR_PARAM_INTEGER);
 
     private final I18n i18n;
-    private final Predicate<Entity> validator;
+    private final BiPredicate<Entity, EvaluationContext> validator;
     private final I18n predicateI18n;
+    private final boolean optional;
 
-    public Params(final I18n i18n, final Predicate<Entity> validator, final I18n predicateI18n) {
+    /**
+     * Constructor
+     *
+     * @param i18n
+     *            the name
+     * @param validator
+     *            the validator of the value
+     * @param predicateI18n
+     *            the error if not valid
+     * @param optional
+     *            true, if the parameter can be omitted (only the last ones)
+     */
+    public Params(final I18n i18n, final BiPredicate<Entity, EvaluationContext> validator, final I18n predicateI18n, final boolean optional) {
         this.i18n = i18n;
         this.validator = validator;
         this.predicateI18n = predicateI18n;
+        this.optional = optional;
+    }
+
+    public Params(final I18n i18n, final BiPredicate<Entity, EvaluationContext> validator, final I18n predicateI18n) {
+        this(i18n, validator, predicateI18n, false);
+    }
+
+    public Params(final I18n i18n, final Predicate<Entity> validator, final I18n predicateI18n) {
+        this(i18n, (e, c) -> validator.test(e), predicateI18n);
     }
 
     public I18n getI18n() {
         return this.i18n;
     }
 
-    public Predicate<Entity> getValidator() {
+    public BiPredicate<Entity, EvaluationContext> getValidator() {
         return this.validator;
     }
 
     public I18n getPredicateI18n() {
         return this.predicateI18n;
     }
+
+    public boolean isOptional() {
+        return this.optional;
+    }
 }
@@ -0,0 +1,59 @@
+package fr.landel.calc.processor;
+
+import fr.landel.calc.config.I18n;
+import fr.landel.calc.processor.FormulaParser.Group;
+import fr.landel.calc.utils.LRUCache;
+
+/**
+ * Evaluates the formula being typed, without side effect (assignments are done in a child scope, nothing is cached by the
+ * {@link MainProcessor}).
+ * <p>
+ * The preview is incremental: the groups and function calls not modified since the previous inputs are not parsed again, and the pure ones
+ * return their last result while the settings and their variables are unchanged (except in exact mode, where the levels need their
+ * sub-levels to compute the exact value). Not thread-safe, a preview processor is used by one thread at a time.
+ * </p>
+ */
+public class PreviewProcessor {
+
+    public static final int CACHE_SIZE = 1_024;
+
+    private final LRUCache<String, Group> groups;
+
+    public PreviewProcessor(final int cacheSize) {
+        this.groups = new LRUCache<>(cacheSize);
+    }
+
+    public PreviewProcessor() {
+        this(CACHE_SIZE);
+    }
+
+    /**
+     * @return the cache of the parsed groups
+     * @category getter
+     */
+    public LRUCache<String, Group> getGroupsCache() {
+        return this.groups;
+    }
+
+    /**
+     * Evaluates the input
+     *
+     * @param input
+     *            the formula being typed
+     * @param context
+     *            the evaluation context, its scope and its random stream are only read
+     * @return the result
+     * @throws ProcessorException
+     *             if the formula is not valid (yet) or on evaluation failure
+     */
+    public Entity preview(final String input, final EvaluationContext context) throws ProcessorException {
+        if (input == null || input.isBlank()) {
+            throw new ProcessorException(I18n.ERROR_FORMULA_EMPTY);
+        }
+
+        final CompiledFormula formula = new FormulaParser(MainProcessor.prepare(input), this.groups, !context.isExact()).parse();
+
+        // own stream, the evaluation thread may use the context one
+        return formula.evaluate(context.withScope(context.getScope().child()).withRandom(new RandomStream()));
+    }
+}
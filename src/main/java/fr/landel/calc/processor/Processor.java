@@ -1,5 +1,5 @@
 package fr.landel.calc.processor;
 
 public interface Processor {
-    Entity process() throws ProcessorException;
+    Entity process(EvaluationContext context) throws ProcessorException;
 }
@@ -0,0 +1,212 @@
+package fr.landel.calc.processor;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import fr.landel.calc.utils.Histogram;
+import fr.landel.calc.utils.Histogram.Snapshot;
+import fr.landel.calc.utils.Logger;
+
+/**
+ * Latency histograms of the processing stages, exposed through JMX as {@value #OBJECT_NAME}.
+ * <p>
+ * The stages are timed with {@link System#nanoTime()} where they are computed, so the previews are included. The histograms are created
+ * on the first record and never block nor allocate afterwards; once disabled, the stages don't even read the clock.
+ * </p>
+ *
+ * @since Mar 2, 2019
+ * @author Gilles
+ *
+ */
+public final class ProcessorMetrics implements ProcessorMetricsMXBean {
+
+    private static final Logger LOGGER = new Logger(ProcessorMetrics.class);
+
+    public static final String OBJECT_NAME = "fr.landel.calc:type=ProcessorMetrics";
+
+    private static final ProcessorMetrics INSTANCE = new ProcessorMetrics();
+
+    private static final long DISABLED = Long.MIN_VALUE;
+
+    private static volatile boolean enabled = true;
+
+    private final AtomicReferenceArray<Histogram>[] histograms;
+
+    @SuppressWarnings("unchecked")
+    private ProcessorMetrics() {
+        final Stage[] stages = Stage.values();
+        this.histograms = new AtomicReferenceArray[stages.length];
+        for (Stage stage : stages) {
+            this.histograms[stage.ordinal()] = new AtomicReferenceArray<>(stage.keys.length);
+        }
+    }
+
+    public static ProcessorMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server, once
+     */
+    public static void register() {
+        try {
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, name);
+            }
+        } catch (JMException e) {
+            LOGGER.error(e, "Cannot register MBean: {}", OBJECT_NAME);
+        }
+    }
+
+    /**
+     * @return the start time of a stage
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : DISABLED;
+    }
+
+    /**
+     * Records a stage without key
+     *
+     * @param stage
+     *            the stage
+     * @param start
+     *            the start time, from {@link #start()}
+     */
+    public static void record(final Stage stage, final long start) {
+        record(stage, 0, start);
+    }
+
+    /**
+     * Records a stage
+     *
+     * @param stage
+     *            the stage
+     * @param key
+     *            the ordinal of the operator, the function or the unity type
+     * @param start
+     *            the start time, from {@link #start()}
+     */
+    public static void record(final Stage stage, final int key, final long start) {
+        if (start != DISABLED && enabled) {
+            INSTANCE.get(stage, key).record(System.nanoTime() - start);
+        }
+    }
+
+    private Histogram get(final Stage stage, final int key) {
+        final AtomicReferenceArray<Histogram> histograms = this.histograms[stage.ordinal()];
+        Histogram histogram = histograms.get(key);
+        if (histogram == null) {
+            histograms.compareAndSet(key, null, new Histogram());
+            histogram = histograms.get(key);
+        }
+        return histogram;
+    }
+
+    /**
+     * @param stage
+     *            the stage
+     * @return the snapshots of the recorded keys
+     */
+    public Map<String, Snapshot> getSnapshots(final Stage stage) {
+        final AtomicReferenceArray<Histogram> histograms = this.histograms[stage.ordinal()];
+        final Map<String, Snapshot> snapshots = new LinkedHashMap<>();
+        Histogram histogram;
+        for (int i = 0; i < histograms.length(); ++i) {
+            if ((histogram = histograms.get(i)) != null) {
+                snapshots.put(stage.keys[i], histogram.getSnapshot());
+            }
+        }
+        return snapshots;
+    }
+
+    private Snapshot getSnapshot(final Stage stage) {
+        final Histogram histogram = this.histograms[stage.ordinal()].get(0);
+        return histogram != null ? histogram.getSnapshot() : new Histogram().getSnapshot();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(final boolean enabled) {
+        ProcessorMetrics.enabled = enabled;
+    }
+
+    @Override
+    public Snapshot getProcess() {
+        return this.getSnapshot(Stage.PROCESS);
+    }
+
+    @Override
+    public Snapshot getPrepare() {
+        return this.getSnapshot(Stage.PREPARE);
+    }
+
+    @Override
+    public Snapshot getParse() {
+        return this.getSnapshot(Stage.PARSE);
+    }
+
+    @Override
+    public Map<String, Snapshot> getOperators() {
+        return this.getSnapshots(Stage.OPERATOR);
+    }
+
+    @Override
+    public Map<String, Snapshot> getFunctions() {
+        return this.getSnapshots(Stage.FUNCTION);
+    }
+
+    @Override
+    public Map<String, Snapshot> getEntities() {
+        return this.getSnapshots(Stage.ENTITY);
+    }
+
+    @Override
+    public Map<String, Snapshot> getFormats() {
+        return this.getSnapshots(Stage.FORMAT);
+    }
+
+    @Override
+    public void reset() {
+        Histogram histogram;
+        for (AtomicReferenceArray<Histogram> histograms : this.histograms) {
+            for (int i = 0; i < histograms.length(); ++i) {
+                if ((histogram = histograms.get(i)) != null) {
+                    histogram.reset();
+                }
+            }
+        }
+    }
+
+    /**
+     * Timed stages, with the names of their keys
+     */
+    public enum Stage {
+        PROCESS(),
+        PREPARE(),
+        PARSE(),
+        OPERATOR(Operators.values()),
+        FUNCTION(Functions.values()),
+        ENTITY(UnityType.values()),
+        FORMAT(UnityType.values());
+
+        private final String[] keys;
+
+        private Stage(final Enum<?>... keys) {
+            this.keys = keys.length > 0 ? new String[keys.length] : new String[] {this.name()};
+            for (int i = 0; i < keys.length; ++i) {
+                this.keys[i] = keys[i].name();
+            }
+        }
+    }
+}
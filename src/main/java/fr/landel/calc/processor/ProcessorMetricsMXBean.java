@@ -0,0 +1,60 @@
+package fr.landel.calc.processor;
+
+import java.util.Map;
+
+import fr.landel.calc.utils.Histogram.Snapshot;
+
+/**
+ * Management interface of {@link ProcessorMetrics}, durations in nanoseconds. The maps are keyed by operator, function or unity type name
+ * and only list the keys already recorded.
+ *
+ * @since Mar 2, 2019
+ * @author Gilles
+ *
+ */
+public interface ProcessorMetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return the durations of {@link MainProcessor#process(String, EvaluationContext)}
+     */
+    Snapshot getProcess();
+
+    /**
+     * @return the durations of the check and the cleaning of the input
+     */
+    Snapshot getPrepare();
+
+    /**
+     * @return the durations of the parsing (parentheses, functions and operators resolution), on compiled formulas cache misses
+     */
+    Snapshot getParse();
+
+    /**
+     * @return the durations of the operations by operator
+     */
+    Map<String, Snapshot> getOperators();
+
+    /**
+     * @return the durations of the functions by function, arguments excluded
+     */
+    Map<String, Snapshot> getFunctions();
+
+    /**
+     * @return the durations of the parsing of the segments by unity type
+     */
+    Map<String, Snapshot> getEntities();
+
+    /**
+     * @return the durations of the formatting of the results by unity type
+     */
+    Map<String, Snapshot> getFormats();
+
+    /**
+     * Clears all the histograms
+     */
+    void reset();
+}
@@ -0,0 +1,94 @@
+package fr.landel.calc.processor;
+
+import java.util.SplittableRandom;
+
+/**
+ * Stream of pseudo-random numbers of the random functions, from a {@link SplittableRandom}.
+ * <p>
+ * A stream can be seeded to replay a sequence, and split into independent streams for the workers of a parallel evaluation: the splits
+ * are deterministic, the same seed and the same splits give the same streams. A stream isn't thread-safe, each thread uses its own, so
+ * there's no shared state to contend on.
+ * </p>
+ *
+ * @since Feb 28, 2019
+ * @author Gilles
+ *
+ */
+public class RandomStream {
+
+    private final SplittableRandom random;
+
+    // second value of the last polar draw
+    private double spare;
+    private boolean hasSpare;
+
+    /**
+     * Constructor of an unpredictable stream
+     */
+    public RandomStream() {
+        this(new SplittableRandom());
+    }
+
+    /**
+     * Constructor of a reproducible stream
+     *
+     * @param seed
+     *            the seed
+     */
+    public RandomStream(final long seed) {
+        this(new SplittableRandom(seed));
+    }
+
+    private RandomStream(final SplittableRandom random) {
+        this.random = random;
+    }
+
+    /**
+     * @return a new independent stream for a worker, this stream advances
+     */
+    public RandomStream split() {
+        return new RandomStream(this.random.split());
+    }
+
+    /**
+     * @return a value in [0, 1)
+     */
+    public double nextDouble() {
+        return this.random.nextDouble();
+    }
+
+    /**
+     * Marsaglia polar method, each accepted draw gives two independent values, the second one is kept for the next call
+     *
+     * @return a value of the standard normal distribution
+     */
+    public double nextGaussian() {
+        if (this.hasSpare) {
+            this.hasSpare = false;
+            return this.spare;
+        }
+
+        double u, v, s;
+        do {
+            u = 2 * this.random.nextDouble() - 1;
+            v = 2 * this.random.nextDouble() - 1;
+            s = u * u + v * v;
+        } while (s >= 1 || s == 0);
+
+        final double factor = Math.sqrt(-2 * Math.log(s) / s);
+        this.spare = v * factor;
+        this.hasSpare = true;
+        return u * factor;
+    }
+
+    /**
+     * @param min
+     *            the minimum
+     * @param max
+     *            the maximum, included (less than {@link Long#MAX_VALUE})
+     * @return an integer in [min, max]
+     */
+    public long nextLong(final long min, final long max) {
+        return this.random.nextLong(min, max + 1);
+    }
+}
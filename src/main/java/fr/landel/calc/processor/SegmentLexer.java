@@ -0,0 +1,207 @@
+package fr.landel.calc.processor;
+
+/**
+ * Scanner of the numbers followed by their unity symbols in a segment, works directly on the characters of the formula (without regular
+ * expression, nor intermediate string).
+ *
+ * <pre>
+ * number = [+-]? ([0-9]+ ('.' [0-9]+)? | '.' [0-9]+) ([Ee] [+-]? [0-9]+)?
+ * unity = [a-zA-Z°'"²³]+
+ * </pre>
+ */
+public class SegmentLexer {
+
+    private static final int MAX_DIGITS = 15;
+    private static final int MAX_EXACT_POW10 = 22;
+    private static final double[] POW10 = new double[MAX_EXACT_POW10 + 1];
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; ++i) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    private final char[] chars;
+    private final int end;
+
+    private int pos;
+    private int start;
+    private int numberEnd;
+    private int unityEnd;
+
+    private long mantissa;
+    private int digits;
+    private int exponent;
+    private boolean negative;
+    private boolean inexact;
+
+    public SegmentLexer(final char[] chars, final int start, final int end) {
+        this.chars = chars;
+        this.pos = start;
+        this.end = end;
+    }
+
+    /**
+     * Finds the next number (and its unity) from the current position, skipped characters are not part of any match
+     *
+     * @return true, if found
+     */
+    public boolean find() {
+        while (this.pos < this.end) {
+            if (this.match(this.pos)) {
+                this.pos = this.unityEnd;
+                return true;
+            }
+            ++this.pos;
+        }
+        return false;
+    }
+
+    /**
+     * @return the length of the last match (number and unity)
+     */
+    public int getLength() {
+        return this.unityEnd - this.start;
+    }
+
+    /**
+     * @return the start of the unity symbols of the last match
+     */
+    public int getUnityStart() {
+        return this.numberEnd;
+    }
+
+    /**
+     * @return the end of the last match
+     */
+    public int getUnityEnd() {
+        return this.unityEnd;
+    }
+
+    /**
+     * @return the number of the last match, identical to {@link Double#parseDouble(String)}
+     */
+    public double getValue() {
+        if (!this.inexact && this.digits <= MAX_DIGITS && Math.abs(this.exponent) <= MAX_EXACT_POW10) {
+            // fast path, both operands are exact doubles, so the result is correctly rounded
+            double value = this.mantissa;
+            if (this.exponent < 0) {
+                value /= POW10[-this.exponent];
+            } else {
+                value *= POW10[this.exponent];
+            }
+            return this.negative ? -value : value;
+        }
+        return Double.parseDouble(new String(this.chars, this.start, this.numberEnd - this.start));
+    }
+
+    public static boolean isUnity(final char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '°' || c == '\'' || c == '"' || c == '²' || c == '³';
+    }
+
+    public static boolean isUnity(final char[] chars, final int start, final int end) {
+        if (start >= end) {
+            return false;
+        }
+        for (int i = start; i < end; ++i) {
+            if (!isUnity(chars[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean match(final int from) {
+        int i = from;
+
+        this.mantissa = 0;
+        this.digits = 0;
+        this.exponent = 0;
+        this.inexact = false;
+        this.negative = this.chars[i] == '-';
+        if (this.negative || this.chars[i] == '+') {
+            ++i;
+        }
+
+        final int integer = i;
+        i = this.digits(i, false);
+        if (i == integer) {
+            if (!this.isDecimal(i)) {
+                return false;
+            }
+            i = this.digits(i + 1, true);
+        } else if (this.isDecimal(i)) {
+            i = this.digits(i + 1, true);
+        }
+        this.start = from;
+
+        i = this.exponent(i);
+        this.numberEnd = i;
+
+        while (i < this.end && isUnity(this.chars[i])) {
+            ++i;
+        }
+        this.unityEnd = i;
+
+        return true;
+    }
+
+    private boolean isDecimal(final int i) {
+        return i + 1 < this.end && this.chars[i] == '.' && isDigit(this.chars[i + 1]);
+    }
+
+    private int digits(final int from, final boolean decimal) {
+        int i = from;
+        while (i < this.end && isDigit(this.chars[i])) {
+            final int digit = this.chars[i] - '0';
+            if (this.digits > 0 || digit > 0) {
+                if (this.digits < MAX_DIGITS) {
+                    this.mantissa = this.mantissa * 10 + digit;
+                    ++this.digits;
+                    if (decimal) {
+                        --this.exponent;
+                    }
+                } else {
+                    this.inexact = true;
+                }
+            } else if (decimal) {
+                --this.exponent;
+            }
+            ++i;
+        }
+        return i;
+    }
+
+    private int exponent(final int from) {
+        if (from >= this.end || (this.chars[from] != 'e' && this.chars[from] != 'E')) {
+            return from;
+        }
+
+        int i = from + 1;
+        boolean negativeExponent = false;
+        if (i < this.end && (this.chars[i] == '-' || this.chars[i] == '+')) {
+            negativeExponent = this.chars[i] == '-';
+            ++i;
+        }
+
+        if (i >= this.end || !isDigit(this.chars[i])) {
+            // not an exponent, may be a unity
+            return from;
+        }
+
+        int value = 0;
+        while (i < this.end && isDigit(this.chars[i])) {
+            if (value < MAX_EXACT_POW10 * 10) {
+                value = value * 10 + this.chars[i] - '0';
+            }
+            ++i;
+        }
+        this.exponent += negativeExponent ? -value : value;
+
+        return i;
+    }
+
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+}
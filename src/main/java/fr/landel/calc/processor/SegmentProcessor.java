@@ -0,0 +1,97 @@
+package fr.landel.calc.processor;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import fr.landel.calc.processor.ProcessorMetrics.Stage;
+import fr.landel.calc.utils.StringUtils;
+
+public class SegmentProcessor implements Processor {
+
+    private static final int UNTYPED = UnityType.values().length;
+
+    private final int index;
+    private final String segment;
+    private final char[] chars;
+    private final int start;
+    private final int end;
+    private final boolean variable;
+
+    // parsed entities by required type, only copies are returned
+    private final AtomicReferenceArray<Entity> entities = new AtomicReferenceArray<>(UNTYPED + 1);
+
+    /**
+     * Constructor
+     *
+     * @param index
+     *            the index of the segment in its level
+     * @param chars
+     *            the characters of the formula (not copied)
+     * @param start
+     *            the start of the segment in the formula
+     * @param end
+     *            the end of the segment in the formula (exclusive)
+     */
+    public SegmentProcessor(final int index, final char[] chars, final int start, final int end) {
+        this.index = index;
+        this.segment = StringUtils.requireNonBlank(new String(chars, start, end - start));
+        this.chars = chars;
+        this.start = start;
+        this.end = end;
+        this.variable = this.segment.startsWith(StringUtils.DOLLAR);
+    }
+
+    public SegmentProcessor(final int index, final String segment) {
+        this(index, segment.toCharArray(), 0, segment.length());
+    }
+
+    public boolean isVariable() {
+        return this.variable;
+    }
+
+    public String getSegment() {
+        return this.segment;
+    }
+
+    /**
+     * @return the exact value of the number (without unity) read in the segment, {@code null} if not a plain decimal
+     */
+    public BigDecimal toExact() {
+        try {
+            return new BigDecimal(this.chars, this.start, this.end - this.start);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public Entity process(final EvaluationContext context) throws ProcessorException {
+        return this.process(context, null);
+    }
+
+    public Entity process(final EvaluationContext context, final UnityType type) throws ProcessorException {
+        if (this.variable) {
+            final long start = ProcessorMetrics.start();
+            final Entity entity = new Entity(this.index, this.chars, this.start, this.end, type, context.getScope());
+            ProcessorMetrics.record(Stage.ENTITY, entity.getUnityType().ordinal(), start);
+            return entity;
+        }
+
+        final int key = type != null ? type.ordinal() : UNTYPED;
+
+        Entity entity = this.entities.get(key);
+        if (entity == null) {
+            final long start = ProcessorMetrics.start();
+            entity = new Entity(this.index, this.chars, this.start, this.end, type, null);
+            ProcessorMetrics.record(Stage.ENTITY, entity.getUnityType().ordinal(), start);
+            this.entities.set(key, entity);
+        }
+
+        return new Entity(entity);
+    }
+
+    @Override
+    public String toString() {
+        return this.segment;
+    }
+}
@@ -0,0 +1,223 @@
+package fr.landel.calc.processor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Symbol table of functions, unities and variables, built once as a deterministic automaton packed into arrays: the edges of each state are
+ * sorted by character and stored contiguously ({@code offsets[state]} to {@code offsets[state + 1]}), so a transition is a scan of a few
+ * slots (the root, with most edges, is a direct table). Lookups walk the characters in place, in one pass, and return the longest match
+ * without allocation.
+ */
+public final class SymbolTable {
+
+    public static final int NONE = -1;
+
+    private static final char DOLLAR = '$';
+    private static final int ROOT = 0;
+
+    private static final int[] OFFSETS;
+    private static final char[] LABELS;
+    private static final int[] TARGETS;
+
+    private static final int[] LENGTHS;
+    private static final Functions[] FUNCTIONS;
+    private static final Unity[] UNITIES;
+    private static final int DOLLAR_STATE;
+    private static final int VARIABLE;
+
+    // characters used in function names, and transitions from the root (all symbols are in Latin-1)
+    private static final int LATIN_1 = 256;
+    private static final boolean[] FUNCTION_CHARS = new boolean[LATIN_1];
+    private static final int[] ROOT_TARGETS = new int[LATIN_1];
+
+    static {
+        final List<Map<Character, Integer>> edges = new ArrayList<>();
+        final List<Integer> lengths = new ArrayList<>();
+        final List<Functions> functions = new ArrayList<>();
+        final List<Unity> unities = new ArrayList<>();
+
+        newState(edges, lengths, functions, unities, 0);
+
+        for (Functions function : Functions.values()) {
+            final int state = add(edges, lengths, functions, unities, function.getFunction());
+            functions.set(state, function);
+            function.getFunction().chars().forEach(c -> FUNCTION_CHARS[c] = true);
+        }
+
+        // on duplicated symbols, the last declared unity wins
+        for (Unity unity : Unity.values()) {
+            for (String symbol : unity.getSymbols()) {
+                unities.set(add(edges, lengths, functions, unities, symbol), unity);
+            }
+        }
+
+        // $[a-zA-Z_]+, the second state loops on itself
+        final int dollar = add(edges, lengths, functions, unities, String.valueOf(DOLLAR));
+        final int variable = newState(edges, lengths, functions, unities, 2);
+        for (char c = 'A'; c <= 'z'; ++c) {
+            if (Character.isLetter(c) || c == '_') {
+                edges.get(dollar).put(c, variable);
+                edges.get(variable).put(c, variable);
+            }
+        }
+        DOLLAR_STATE = dollar;
+        VARIABLE = variable;
+
+        final int states = edges.size();
+        OFFSETS = new int[states + 1];
+        for (int i = 0; i < states; ++i) {
+            OFFSETS[i + 1] = OFFSETS[i] + edges.get(i).size();
+        }
+
+        LABELS = new char[OFFSETS[states]];
+        TARGETS = new int[OFFSETS[states]];
+        for (int i = 0; i < states; ++i) {
+            int j = OFFSETS[i];
+            for (Map.Entry<Character, Integer> edge : edges.get(i).entrySet()) {
+                LABELS[j] = edge.getKey();
+                TARGETS[j++] = edge.getValue();
+            }
+        }
+
+        Arrays.fill(ROOT_TARGETS, NONE);
+        edges.get(ROOT).forEach((c, target) -> ROOT_TARGETS[c] = target);
+
+        LENGTHS = lengths.stream().mapToInt(Integer::intValue).toArray();
+        FUNCTIONS = functions.toArray(Functions[]::new);
+        UNITIES = unities.toArray(Unity[]::new);
+    }
+
+    private SymbolTable() {
+    }
+
+    private static int newState(final List<Map<Character, Integer>> edges, final List<Integer> lengths, final List<Functions> functions,
+            final List<Unity> unities, final int length) {
+        edges.add(new TreeMap<>());
+        lengths.add(length);
+        functions.add(null);
+        unities.add(null);
+        return edges.size() - 1;
+    }
+
+    private static int add(final List<Map<Character, Integer>> edges, final List<Integer> lengths, final List<Functions> functions,
+            final List<Unity> unities, final String symbol) {
+        int state = ROOT;
+        for (int i = 0; i < symbol.length(); ++i) {
+            final Integer next = edges.get(state).get(symbol.charAt(i));
+            if (next == null) {
+                final int created = newState(edges, lengths, functions, unities, i + 1);
+                edges.get(state).put(symbol.charAt(i), created);
+                state = created;
+            } else {
+                state = next;
+            }
+        }
+        return state;
+    }
+
+    /**
+     * @param state
+     *            the current state
+     * @param c
+     *            the character
+     * @return the next state or {@link #NONE}
+     */
+    static int next(final int state, final char c) {
+        if (state == ROOT) {
+            return c < LATIN_1 ? ROOT_TARGETS[c] : NONE;
+        }
+        final int end = OFFSETS[state + 1];
+        for (int i = OFFSETS[state]; i < end && LABELS[i] <= c; ++i) {
+            if (LABELS[i] == c) {
+                return TARGETS[i];
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * @return the number of states
+     */
+    public static int size() {
+        return LENGTHS.length;
+    }
+
+    public static boolean isFunctionChar(final char c) {
+        return c < LATIN_1 && FUNCTION_CHARS[c];
+    }
+
+    /**
+     * @param chars
+     *            the characters
+     * @param start
+     *            the start index
+     * @param end
+     *            the end index (exclusive)
+     * @return the function named exactly by the characters or {@code null}
+     */
+    public static Functions getFunction(final char[] chars, final int start, final int end) {
+        int state = ROOT;
+        for (int i = start; i < end && state != NONE; ++i) {
+            state = next(state, chars[i]);
+        }
+        return state > ROOT ? FUNCTIONS[state] : null;
+    }
+
+    /**
+     * Finds the longest unity symbol starting at index
+     *
+     * @param chars
+     *            the characters
+     * @param start
+     *            the start index
+     * @param end
+     *            the end index (exclusive)
+     * @param requiredType
+     *            the required type (or {@code null} for all)
+     * @return the state of the match (see {@link #getUnity(int)} and {@link #getLength(int)}) or {@link #NONE}
+     */
+    public static int matchUnity(final char[] chars, final int start, final int end, final UnityType requiredType) {
+        int match = NONE;
+        int state = ROOT;
+        for (int i = start; i < end && (state = next(state, chars[i])) != NONE; ++i) {
+            if (UNITIES[state] != null && (requiredType == null || requiredType.equals(UNITIES[state].getType()))) {
+                match = state;
+            }
+        }
+        return match;
+    }
+
+    /**
+     * @param chars
+     *            the characters
+     * @param start
+     *            the start index
+     * @param end
+     *            the end index (exclusive)
+     * @return the length of the variable name ({@code $[a-zA-Z_]+}) starting at index or 0
+     */
+    public static int matchVariable(final char[] chars, final int start, final int end) {
+        if (start >= end || chars[start] != DOLLAR) {
+            return 0;
+        }
+
+        int state = DOLLAR_STATE;
+        int i = start + 1;
+        while (i < end && (state = next(state, chars[i])) == VARIABLE) {
+            ++i;
+        }
+        return i - start > 1 ? i - start : 0;
+    }
+
+    public static Unity getUnity(final int state) {
+        return UNITIES[state];
+    }
+
+    public static int getLength(final int state) {
+        return LENGTHS[state];
+    }
+}
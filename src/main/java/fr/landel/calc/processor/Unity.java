@@ -338,42 +338,55 @@ public enum Unity {
     public static SortedSet<Unity> getUnities(final String input, final UnityType requiredType) throws ProcessorException {
         final SortedSet<Unity> unities = new TreeSet<>(COMPARATOR_UNITIES);
 
-        if (input == null || input.isEmpty()) {
-            return unities;
+        if (input != null && !input.isEmpty()) {
+            getUnities(input.toCharArray(), 0, input.length(), requiredType, unities);
         }
 
-        String text = input;
-        char[] data = input.toCharArray();
+        return unities;
+    }
 
-        Optional<Unity> unityOptional;
+    /**
+     * Loads the unities by walking the {@link SymbolTable} directly on the characters
+     *
+     * @param chars
+     *            the characters
+     * @param start
+     *            the start index of the unity symbols
+     * @param end
+     *            the end index (exclusive)
+     * @param requiredType
+     *            the required type (or {@code null})
+     * @param unities
+     *            the output unities
+     * @throws ProcessorException
+     *             if the unities cannot be parsed or have different types
+     */
+    public static void getUnities(final char[] chars, final int start, final int end, final UnityType requiredType, final SortedSet<Unity> unities)
+            throws ProcessorException {
+
+        int index = start;
+        int state;
         Unity unity;
         UnityType type = null;
 
-        while ((unityOptional = UnityTree.check(data, 0, requiredType)).isPresent()) {
-            unity = unityOptional.get();
-            for (String s : unity.getSymbols()) {
-                if (text.startsWith(s)) {
-                    if (type != null && !unity.getType().equals(type)) {
-                        throw new ProcessorException(I18n.ERROR_UNITY_TYPE, input, type, unity.getType());
-                    }
-                    text = text.substring(s.length());
-                    data = text.toCharArray();
-                    unities.add(unity);
-                    type = unity.getType();
-                    break;
-                }
+        while ((state = SymbolTable.matchUnity(chars, index, end, requiredType)) != SymbolTable.NONE) {
+            unity = SymbolTable.getUnity(state);
+            if (type != null && !unity.getType().equals(type)) {
+                throw new ProcessorException(I18n.ERROR_UNITY_TYPE, new String(chars, start, end - start), type, unity.getType());
             }
+            index += SymbolTable.getLength(state);
+            unities.add(unity);
+            type = unity.getType();
         }
 
-        if (data.length > 0) {
+        if (index < end) {
+            final String text = new String(chars, index, end - index);
             if (requiredType == null) {
                 throw new ProcessorException(I18n.ERROR_UNITY_PARSE, text);
             } else {
                 throw new ProcessorException(I18n.ERROR_UNITY_PARSE_TYPE, text, requiredType);
             }
         }
-
-        return unities;
     }
 
     public static Duration mapToDuration(final SortedMap<Unity, Double> inputs, final SortedSet<Unity> unities) throws ProcessorException {
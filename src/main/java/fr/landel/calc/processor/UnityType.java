@@ -1,5 +1,7 @@
 package fr.landel.calc.processor;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.time.temporal.TemporalField;
 import java.util.Arrays;
@@ -8,26 +10,29 @@ import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.SortedSet;
-import java.util.function.Function;
 
+import fr.landel.calc.processor.ProcessorMetrics.Stage;
 import fr.landel.calc.utils.DateUtils;
 import fr.landel.calc.utils.MathUtils;
+import fr.landel.calc.utils.NumberFormatter;
 import fr.landel.calc.utils.StringUtils;
 
 public enum UnityType {
-    // TODO manage output conf (exact, scientific, precision)
-
-    VARIABLE(false, v -> v.getVariable()),
-    NUMBER(false, v -> stringify(v.getValue())),
+    VARIABLE(false, (b, v, c) -> b.append(v.getVariable())),
+    NUMBER(false, (b, v, c) -> {
+        if (v.getExact() != null) {
+            append(b, v.getExact(), c);
+        } else {
+            NumberFormatter.append(b, v.getValue(), c.getPrecision(), c.isScientific());
+        }
+    }),
 
-    DATE(true, v -> {
-        final StringBuilder builder = new StringBuilder();
+    DATE(true, (b, v, c) -> {
         if (!v.isUnity()) {
-            appendDate(builder, v);
+            appendDate(b, v, c);
         } else {
-            builder.append(v.firstUnity().getSymbol(MainProcessor.isUnityAbbrev()));
+            b.append(v.firstUnity().getSymbol(c.isUnityAbbrev()));
         }
-        return builder.toString();
     }),
     TEMPERATURE(false),
     LENGTH(true),
@@ -38,24 +43,23 @@ public enum UnityType {
     public static final List<UnityType> TYPED_UNITIES = Arrays.asList(DATE, TEMPERATURE, LENGTH);
 
     private final boolean accumulable;
-    private final Function<Entity, String> formatter;
+    private final Formatter formatter;
     private final Map<String, Unity> unities = new HashMap<>();
 
-    private UnityType(final boolean accumulable, final Function<Entity, String> formatter) {
+    private UnityType(final boolean accumulable, final Formatter formatter) {
         this.accumulable = accumulable;
         this.formatter = formatter;
     }
 
     private UnityType(final boolean accumulable) {
-        this(accumulable, v -> {
-            final StringBuilder builder = new StringBuilder();
+        this(accumulable, (b, v, c) -> {
             if (!v.isUnity()) {
-                builder.append(stringify(v.toUnity()));
-                if (MainProcessor.isUnitiesSpace()) {
-                    builder.append(StringUtils.SPACE);
+                NumberFormatter.append(b, v.toUnity(), c.getPrecision(), c.isScientific());
+                if (c.isUnitiesSpace()) {
+                    b.append(StringUtils.SPACE);
                 }
             }
-            return builder.append(v.firstUnity().getSymbol(MainProcessor.isUnityAbbrev())).toString();
+            b.append(v.firstUnity().getSymbol(c.isUnityAbbrev()));
         });
     }
 
@@ -73,15 +77,31 @@ public enum UnityType {
         return this.unities;
     }
 
-    public Function<Entity, String> getFormatter() {
+    public Formatter getFormatter() {
         return this.formatter;
     }
 
-    public String format(final Entity entity) {
-        return this.formatter.apply(entity);
+    public String format(final Entity entity, final EvaluationContext context) {
+        return this.format(new StringBuilder(), entity, context).toString();
     }
 
-    private static void appendDate(final StringBuilder builder, final Entity entity) {
+    /**
+     * @param builder
+     *            the builder where the entity is written
+     * @param entity
+     *            the entity
+     * @param context
+     *            the evaluation context (output settings)
+     * @return the builder
+     */
+    public StringBuilder format(final StringBuilder builder, final Entity entity, final EvaluationContext context) {
+        final long start = ProcessorMetrics.start();
+        this.formatter.format(builder, entity, context);
+        ProcessorMetrics.record(Stage.FORMAT, this.ordinal(), start);
+        return builder;
+    }
+
+    private static void appendDate(final StringBuilder builder, final Entity entity, final EvaluationContext context) {
         if (entity.isDate() && entity.getUnities().contains(Unity.DATE_YEAR)) {
             final LocalDateTime date = entity.getDate().get();
 
@@ -93,7 +113,7 @@ public enum UnityType {
                 field = Unity.UNITIES_DATE_TEMPORAL.get(unity);
                 if (field != null) {
 
-                    if (previous != null && MainProcessor.isValuesSpace()) {
+                    if (previous != null && context.isValuesSpace()) {
                         builder.append(StringUtils.SPACE);
                     }
 
@@ -110,20 +130,21 @@ public enum UnityType {
                         builder.append(value);
                     }
 
-                    if (MainProcessor.isUnitiesSpace()) {
+                    if (context.isUnitiesSpace()) {
                         builder.append(StringUtils.SPACE);
                     }
 
-                    builder.append(unity.getSymbol(MainProcessor.isUnityAbbrev()));
+                    builder.append(unity.getSymbol(context.isUnityAbbrev()));
                 }
             }
         } else {
-            append(builder, entity.getValue(), entity.getUnities(), Unity.UNITIES_DATE, Unity.DATES_AVG, 9);
+            append(builder, entity.getValue(), entity.getUnities(), Unity.UNITIES_DATE, Unity.DATES_AVG, 9, context);
         }
     }
 
     private static void append(final StringBuilder builder, final double value, final SortedSet<Unity> unities,
-            final SortedMap<Unity, Double> valuesByUnity, final SortedSet<Unity> sortedUnities, final int maxPrecision) {
+            final SortedMap<Unity, Double> valuesByUnity, final SortedSet<Unity> sortedUnities, final int maxPrecision,
+            final EvaluationContext context) {
 
         if (!MathUtils.isEqualOrGreater(value, 0d, maxPrecision)) {
             builder.append('-');
@@ -143,122 +164,39 @@ public enum UnityType {
                 } else {
                     intermediate = v / u;
                 }
-                if (appended && MainProcessor.isValuesSpace()) {
+                if (appended && context.isValuesSpace()) {
                     builder.append(StringUtils.SPACE);
                 }
-                builder.append(stringify(intermediate, i < size));
-                if (MainProcessor.isUnitiesSpace()) {
+                NumberFormatter.appendFixed(builder, intermediate, context.getPrecision(), i < size);
+                if (context.isUnitiesSpace()) {
                     builder.append(StringUtils.SPACE);
                 }
-                builder.append(unity.getSymbol(MainProcessor.isUnityAbbrev()));
+                builder.append(unity.getSymbol(context.isUnityAbbrev()));
                 appended = true;
             }
             ++i;
         }
 
         if (intermediate == null && !sortedUnities.equals(unities)) {
-            append(builder, value, sortedUnities, valuesByUnity, sortedUnities, maxPrecision);
+            append(builder, value, sortedUnities, valuesByUnity, sortedUnities, maxPrecision, context);
         }
     }
 
-    private static String stringify(final double input) {
-        return stringify(input, false);
-    }
-
-    private static String stringify(final double input, boolean intermediate) {
-        double rounded = MathUtils.round(input, MainProcessor.getPrecision());
-
-        final String value = removeExponent(Double.toString(rounded));
-        final int dot = value.indexOf('.');
-        final int length = dot + 1 + MainProcessor.getPrecision();
-        final String result;
-
-        if (intermediate && !value.substring(dot + 1).chars().anyMatch(v -> v != '0')) {
-            result = value.substring(0, dot);
-
-        } else if (length > value.length()) {
-            char[] chars = new char[length - value.length()];
-            Arrays.fill(chars, '0');
-            result = value + new String(chars);
-
-        } else if (MainProcessor.getPrecision() > 0) {
-            result = value.substring(0, length);
-
-        } else if (dot > -1) {
-            result = value.substring(0, dot);
-
+    private static void append(final StringBuilder builder, final BigDecimal input, final EvaluationContext context) {
+        final int precision = context.getPrecision();
+        if (context.isScientific() && NumberFormatter.isScientific(input.doubleValue(), precision)) {
+            NumberFormatter.appendScientific(builder, input.doubleValue(), precision);
         } else {
-            result = value;
+            // as Math.round, ties toward positive infinity
+            builder.append(input.setScale(precision, input.signum() < 0 ? RoundingMode.HALF_DOWN : RoundingMode.HALF_UP).toPlainString());
         }
-
-        return result;
     }
 
-    private static String removeExponent(String input) {
-
-        final int exp = Math.max(input.indexOf('E'), input.indexOf('e'));
-
-        if (exp > -1) {
-            int dot = input.indexOf('.');
-
-            if (dot < 0) {
-                dot = exp;
-            }
-
-            final boolean positive = input.indexOf('-') != 0;
-            final int nbExp = Integer.parseInt(input.substring(exp + 1));
-            final boolean posExp = nbExp > 0;
-
-            char[] in = input.toCharArray();
-            char[] out;
-
-            if (posExp) { // prepare array
-                out = new char[in.length + nbExp];
-            } else {
-                out = new char[in.length + -1 * nbExp];
-            }
-
-            Arrays.fill(out, '0');
-
-            int pos = 0;
-
-            if (posExp) { // fill digits in front of dot
-                System.arraycopy(in, 0, out, pos, dot);
-            } else {
-                pos = -1 * nbExp + 2;
-                if (positive) {
-                    System.arraycopy(in, 0, out, pos - 1, dot);
-                } else {
-                    System.arraycopy(in, 1, out, pos, dot - 1);
-                }
-            }
-
-            if (exp > dot) { // fill digits after dot
-                if (posExp) {
-                    pos = Math.min(exp - dot - 1, nbExp);
-                    System.arraycopy(in, dot + 1, out, dot, pos);
-                } else {
-                    pos += dot - 1;
-                    System.arraycopy(in, dot + 1, out, pos, exp - dot - 1);
-                }
-            }
-
-            if (posExp && exp - dot > nbExp) { // append digit after dot
-                pos = dot + pos + 1;
-                System.arraycopy(in, pos, out, nbExp + dot + 1, exp - pos);
-            }
-
-            if (posExp) { // set dot
-                out[nbExp + dot] = '.';
-            } else if (positive) {
-                out[1] = '.';
-            } else {
-                out[0] = '-';
-                out[2] = '.';
-            }
-
-            return new String(out);
-        }
-        return input;
+    /**
+     * Writer of an entity
+     */
+    @FunctionalInterface
+    public interface Formatter {
+        void format(StringBuilder builder, Entity entity, EvaluationContext context);
     }
-}
\ No newline at end of file
+}
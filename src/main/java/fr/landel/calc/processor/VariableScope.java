@@ -0,0 +1,222 @@
+package fr.landel.calc.processor;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Variables of a session, scopes can be nested (a child reads its parents but binds locally) and copied.
+ * <p>
+ * Bindings are spread over stripes, each stripe is an immutable map replaced on write (compare-and-set), so readers never lock, writers on
+ * different stripes don't contend and a snapshot only copies the stripe references.
+ * </p>
+ */
+public class VariableScope {
+
+    private static final int STRIPES = 16;
+    private static final int MASK = STRIPES - 1;
+
+    private final VariableScope parent;
+    private final AtomicReferenceArray<Map<String, Optional<Entity>>> stripes;
+    private final AtomicLong version;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    public VariableScope() {
+        this((VariableScope) null);
+    }
+
+    public VariableScope(final VariableScope parent) {
+        this.parent = parent;
+        this.stripes = new AtomicReferenceArray<>(STRIPES);
+        this.version = new AtomicLong();
+        for (int i = 0; i < STRIPES; ++i) {
+            this.stripes.set(i, Collections.emptyMap());
+        }
+    }
+
+    private VariableScope(final VariableScope parent, final VariableScope scope) {
+        this.parent = parent;
+        this.stripes = new AtomicReferenceArray<>(STRIPES);
+        this.version = new AtomicLong(scope.version.get());
+        for (int i = 0; i < STRIPES; ++i) {
+            this.stripes.set(i, scope.stripes.get(i));
+        }
+    }
+
+    /**
+     * @return a new scope reading this one, bindings in the new scope are not visible here
+     */
+    public VariableScope child() {
+        return new VariableScope(this);
+    }
+
+    /**
+     * @return a copy of this scope (and its parents), further bindings in one are not visible in the other
+     */
+    public VariableScope snapshot() {
+        return new VariableScope(this.parent != null ? this.parent.snapshot() : null, this);
+    }
+
+    /**
+     * @return the parent scope or {@code null}
+     * @category getter
+     */
+    public VariableScope getParent() {
+        return this.parent;
+    }
+
+    /**
+     * @return the number of bindings done in this scope, including parents
+     * @category getter
+     */
+    public long getVersion() {
+        return this.version.get() + (this.parent != null ? this.parent.getVersion() : 0L);
+    }
+
+    /**
+     * Adds a listener of the bindings done in this scope (not in children, nor in snapshots)
+     *
+     * @param listener
+     *            the listener
+     */
+    public void addListener(final Listener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * @param name
+     *            the variable name
+     * @return true, if declared here or in a parent
+     */
+    public boolean isDeclared(final String name) {
+        return this.stripe(name).containsKey(name) || (this.parent != null && this.parent.isDeclared(name));
+    }
+
+    /**
+     * The returned instance changes on each binding, so it can be used as a version of the variable
+     *
+     * @param name
+     *            the variable name
+     * @return the binding (empty if not declared or without value)
+     */
+    public Optional<Entity> get(final String name) {
+        final Optional<Entity> entity = this.stripe(name).get(name);
+        if (entity != null) {
+            return entity;
+        } else if (this.parent != null) {
+            return this.parent.get(name);
+        } else {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Declares the variable without value in this scope, if not already declared
+     *
+     * @param name
+     *            the variable name
+     */
+    public void declare(final String name) {
+        if (!this.isDeclared(name)) {
+            this.update(name, Optional.empty(), true);
+        }
+    }
+
+    /**
+     * Binds the variable in this scope
+     *
+     * @param name
+     *            the variable name
+     * @param entity
+     *            the value
+     */
+    public void set(final String name, final Entity entity) {
+        this.update(name, Optional.of(entity), false);
+    }
+
+    public void remove(final String name) {
+        final int index = index(name);
+
+        Map<String, Optional<Entity>> current, next;
+        do {
+            current = this.stripes.get(index);
+            if (!current.containsKey(name)) {
+                return;
+            }
+            next = new HashMap<>(current);
+            next.remove(name);
+        } while (!this.stripes.compareAndSet(index, current, Collections.unmodifiableMap(next)));
+
+        this.version.incrementAndGet();
+        this.listeners.forEach(l -> l.removed(name));
+    }
+
+    /**
+     * @return the bindings of this scope (not the parents ones), sorted by name
+     */
+    public SortedMap<String, Optional<Entity>> getBindings() {
+        final SortedMap<String, Optional<Entity>> bindings = new TreeMap<>();
+        for (int i = 0; i < STRIPES; ++i) {
+            bindings.putAll(this.stripes.get(i));
+        }
+        return bindings;
+    }
+
+    private void update(final String name, final Optional<Entity> value, final boolean onlyIfAbsent) {
+        final int index = index(name);
+
+        Map<String, Optional<Entity>> current, next;
+        do {
+            current = this.stripes.get(index);
+            if (onlyIfAbsent && current.containsKey(name)) {
+                return;
+            }
+            next = new HashMap<>(current);
+            next.put(name, value);
+        } while (!this.stripes.compareAndSet(index, current, Collections.unmodifiableMap(next)));
+
+        this.version.incrementAndGet();
+        this.listeners.forEach(l -> l.bound(name, value));
+    }
+
+    private Map<String, Optional<Entity>> stripe(final String name) {
+        return this.stripes.get(index(name));
+    }
+
+    private static int index(final String name) {
+        final int h = name.hashCode();
+        return (h ^ (h >>> 16)) & MASK;
+    }
+
+    @Override
+    public String toString() {
+        return this.getBindings().toString();
+    }
+
+    /**
+     * Listener of bindings, called by the thread binding
+     */
+    public interface Listener {
+
+        /**
+         * @param name
+         *            the variable name
+         * @param value
+         *            the value (empty if declared without value)
+         */
+        void bound(String name, Optional<Entity> value);
+
+        /**
+         * @param name
+         *            the variable name
+         */
+        void removed(String name);
+    }
+}
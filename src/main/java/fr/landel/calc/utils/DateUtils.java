@@ -3,7 +3,6 @@ package fr.landel.calc.utils;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
-import java.time.temporal.ChronoUnit;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -15,6 +14,8 @@ import fr.landel.calc.processor.Unity;
 
 public final class DateUtils {
 
+    public static final int NANOS_PER_SECOND = 1_000_000_000;
+
     public static final double NANO_PER_MICROSECOND = 1_000;
     public static final double NANO_PER_MILLISECOND = NANO_PER_MICROSECOND * 1_000;
     public static final double NANO_PER_SECOND = NANO_PER_MILLISECOND * 1_000;
@@ -98,15 +99,14 @@ public final class DateUtils {
     }
 
     public static Entity add(final Entity a, final Entity b, final Unity unity) {
-        final LocalDateTime date;
-
-        if (a.isDate() && b.isDuration()) {
-            Duration bDuration = b.getDuration().get();
-            date = a.getDate().get().plus(bDuration);
-
-        } else if (a.isDuration() && b.isDate()) {
-            Duration aDuration = a.getDuration().get();
-            date = b.getDate().get().plus(aDuration);
+        if ((a.isDate() && b.isDuration()) || (a.isDuration() && b.isDate())) {
+            long seconds = a.getSeconds() + b.getSeconds();
+            int nanos = a.getNanos() + b.getNanos();
+            if (nanos >= NANOS_PER_SECOND) {
+                ++seconds;
+                nanos -= NANOS_PER_SECOND;
+            }
+            return new Entity(a.getIndex(), seconds * NANO_PER_SECOND + nanos, true, seconds, nanos, unity);
 
         } else { // a.isDuration() && b.isDuration()
             Duration aDuration = a.getDuration().get();
@@ -118,7 +118,6 @@ public final class DateUtils {
 
             return new Entity(a.getIndex(), diff, duration, unity);
         }
-        return new Entity(a.getIndex(), date.toEpochSecond(ZoneOffset.UTC) * NANO_PER_SECOND + date.getNano(), date, unity);
     }
 
     public static Entity subtract(final Entity a, final Entity b, final Unity unity) {
@@ -126,17 +125,27 @@ public final class DateUtils {
         final Duration duration;
 
         if (a.isDate() && b.isDate()) {
-            LocalDateTime aDateTime = a.getDate().get();
-            LocalDateTime bDateTime = b.getDate().get();
-
-            diff = ChronoUnit.SECONDS.between(bDateTime, aDateTime) * NANO_PER_SECOND + aDateTime.getNano() - bDateTime.getNano();
+            // seconds between, truncated toward zero (as ChronoUnit.SECONDS.between)
+            long seconds = a.getSeconds() - b.getSeconds();
+            final int nanos = a.getNanos() - b.getNanos();
+            if (seconds > 0 && nanos < 0) {
+                --seconds;
+            } else if (seconds < 0 && nanos > 0) {
+                ++seconds;
+            }
+
+            diff = seconds * NANO_PER_SECOND + a.getNanos() - b.getNanos();
             duration = Duration.ofNanos(diff.longValue());
 
         } else if (a.isDate() && b.isDuration()) {
-            Duration bDuration = b.getDuration().get();
-            LocalDateTime date = a.getDate().get().minus(bDuration);
+            long seconds = a.getSeconds() - b.getSeconds();
+            int nanos = a.getNanos() - b.getNanos();
+            if (nanos < 0) {
+                --seconds;
+                nanos += NANOS_PER_SECOND;
+            }
 
-            return new Entity(a.getIndex(), date.toEpochSecond(ZoneOffset.UTC) * NANO_PER_SECOND + date.getNano(), date, unity);
+            return new Entity(a.getIndex(), seconds * NANO_PER_SECOND + nanos, true, seconds, nanos, unity);
 
         } else { // a.isInterval() && b.isInterval()
             Duration aDuration = a.getDuration().get();
@@ -149,13 +158,28 @@ public final class DateUtils {
         return new Entity(a.getIndex(), diff, duration, unity);
     }
 
+    /**
+     * Converts nanoseconds from the first January of the year zero into a year (in constant time)
+     *
+     * @param date
+     *            the nanoseconds
+     * @return the year
+     */
     public static double fromZeroNanosecond(final Double date) {
-        int leap = 0;
-        int year = 0;
-        for (int i = 0; NANO_PER_YEAR * (i - leap) + NANO_PER_YEAR_LEAP * leap < date; i = nextLeapYear(i)) {
-            ++leap;
-            year = i;
+        if (!(date > 0)) {
+            return 0;
+        }
+
+        // estimation, then adjusted to the last leap year starting before the date
+        int year = previousLeapYear((int) Math.min(date / NANO_PER_YEAR_AVG, Integer.MAX_VALUE - 8) + 1);
+        for (int next = nextLeapYear(year); toZeroNanosecond(next) < date; next = nextLeapYear(year)) {
+            year = next;
         }
+        while (year > 0 && toZeroNanosecond(year) >= date) {
+            year = previousLeapYear(year - 1);
+        }
+
+        final int leap = leapYearsBefore(year) + 1;
         double diff = date - (NANO_PER_YEAR * (year - leap) + NANO_PER_YEAR_LEAP * leap);
         if (diff > NANO_PER_YEAR) {
             return year + Math.round(diff / NANO_PER_YEAR);
@@ -172,15 +196,38 @@ public final class DateUtils {
         return toZeroNanosecond(year.intValue());
     }
 
+    /**
+     * Converts the first January of the year into nanoseconds from the year zero (in constant time)
+     *
+     * @param year
+     *            the year
+     * @return the nanoseconds
+     */
     public static double toZeroNanosecond(final int year) {
-        int leap = 0;
-        for (int i = 0; i < year; i = nextLeapYear(i)) {
-            ++leap;
-        }
+        final int leap = leapYearsBefore(year);
 
         return NANO_PER_YEAR * (year - leap) + NANO_PER_YEAR_LEAP * leap;
     }
 
+    /**
+     * @return the number of leap years from the year zero (included) to the year (excluded)
+     */
+    private static int leapYearsBefore(final int year) {
+        if (year <= 0) {
+            return 0;
+        }
+        final int last = year - 1;
+        return last / 4 - last / 100 + last / 400 + 1;
+    }
+
+    private static int previousLeapYear(final int year) {
+        int leapYear = year - Math.floorMod(year, 4);
+        while (!IS_LEAP_YEAR.test(leapYear)) {
+            leapYear -= 4;
+        }
+        return leapYear;
+    }
+
     private static int nextLeapYear(final int leapYear) {
         final int next = leapYear + 4;
         if (next % 100 != 0 || next % 400 == 0) {
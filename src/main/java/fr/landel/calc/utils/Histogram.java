@@ -0,0 +1,158 @@
+package fr.landel.calc.utils;
+
+import java.beans.ConstructorProperties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in nanoseconds, recording doesn't allocate nor block.
+ * <p>
+ * The buckets are log-linear: each power of 2 is split into 16 buckets, so a percentile is read with a relative error of 1/16 at most
+ * (the upper bound of its bucket is returned), whatever the magnitude. The snapshots are read without stopping the writers, they may miss
+ * the values recorded meanwhile.
+ * </p>
+ *
+ * @since Mar 2, 2019
+ * @author Gilles
+ *
+ */
+public class Histogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a duration
+     *
+     * @param nanos
+     *            the duration in nanoseconds (negative ones are recorded as 0)
+     */
+    public void record(final long nanos) {
+        final long value = Math.max(0, nanos);
+        this.counts.incrementAndGet(index(value));
+        this.total.add(value);
+        if (value > this.max.get()) {
+            this.max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * Clears the recorded durations
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; ++i) {
+            this.counts.set(i, 0);
+        }
+        this.total.reset();
+        this.max.set(0);
+    }
+
+    /**
+     * @return the count, the mean, the max and the percentiles 50, 99 and 99.9
+     */
+    public Snapshot getSnapshot() {
+        final long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            counts[i] = this.counts.get(i);
+            count += counts[i];
+        }
+
+        final long max = this.max.get();
+        final long mean = count > 0 ? this.total.sum() / count : 0;
+
+        return new Snapshot(count, mean, percentile(counts, count, 0.5, max), percentile(counts, count, 0.99, max),
+                percentile(counts, count, 0.999, max), max);
+    }
+
+    static int index(final long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int shift = exponent - SUB_BITS;
+        return (shift + 1) * SUB_COUNT + (int) ((value >>> shift) & (SUB_COUNT - 1));
+    }
+
+    static long upperBound(final int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        final int shift = index / SUB_COUNT - 1;
+        final long lower = (long) (SUB_COUNT + index % SUB_COUNT) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    private static long percentile(final long[] counts, final long count, final double quantile, final long max) {
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = (long) Math.ceil(quantile * count);
+        long cumulated = 0;
+        for (int i = 0; i < counts.length; ++i) {
+            cumulated += counts[i];
+            if (cumulated >= rank) {
+                return Math.min(upperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Summary of a histogram, durations in nanoseconds
+     */
+    public static class Snapshot {
+        private final long count;
+        private final long mean;
+        private final long p50;
+        private final long p99;
+        private final long p999;
+        private final long max;
+
+        @ConstructorProperties({"count", "mean", "p50", "p99", "p999", "max"})
+        public Snapshot(final long count, final long mean, final long p50, final long p99, final long p999, final long max) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.p999 = p999;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        public long getMean() {
+            return this.mean;
+        }
+
+        public long getP50() {
+            return this.p50;
+        }
+
+        public long getP99() {
+            return this.p99;
+        }
+
+        public long getP999() {
+            return this.p999;
+        }
+
+        public long getMax() {
+            return this.max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d, mean=%d ns, p50=%d ns, p99=%d ns, p999=%d ns, max=%d ns", this.count, this.mean, this.p50, this.p99,
+                    this.p999, this.max);
+        }
+    }
+}
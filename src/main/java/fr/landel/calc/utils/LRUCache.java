@@ -0,0 +1,116 @@
+package fr.landel.calc.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Thread-safe cache bounded in size, the least recently used entry is evicted first.
+ *
+ * @param <K>
+ *            the key type
+ * @param <V>
+ *            the value type
+ */
+public class LRUCache<K, V> {
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final int maxSize;
+    private final Map<K, V> map;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public LRUCache(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be greater than 0");
+        }
+        this.maxSize = maxSize;
+        this.map = new LinkedHashMap<>(16, LOAD_FACTOR, true) {
+
+            private static final long serialVersionUID = -6196245787946484387L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+                return this.size() > LRUCache.this.maxSize;
+            }
+        };
+    }
+
+    public V get(final K key) {
+        return this.get(key, v -> true);
+    }
+
+    /**
+     * Get the cached value, only counted as a hit if the value is still valid
+     *
+     * @param key
+     *            the key
+     * @param valid
+     *            the validity checker
+     * @return the value or {@code null} if not found or not valid
+     */
+    public V get(final K key, final Predicate<V> valid) {
+        final V value;
+        synchronized (this.map) {
+            value = this.map.get(key);
+        }
+
+        if (value != null && valid.test(value)) {
+            this.hits.incrementAndGet();
+            return value;
+        } else {
+            this.misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    public void put(final K key, final V value) {
+        synchronized (this.map) {
+            this.map.put(key, value);
+        }
+    }
+
+    public void clear() {
+        synchronized (this.map) {
+            this.map.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (this.map) {
+            return this.map.size();
+        }
+    }
+
+    /**
+     * @return the max size
+     * @category getter
+     */
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * @return the hits count
+     * @category getter
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return the misses count
+     * @category getter
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    @Override
+    public String toString() {
+        return StringUtils.inject("size: {}/{}, hits: {}, misses: {}", this.size(), this.maxSize, this.getHits(), this.getMisses());
+    }
+}
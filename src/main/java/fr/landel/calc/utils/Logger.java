@@ -1,25 +1,36 @@
 package fr.landel.calc.utils;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collector;
-import java.util.stream.Collectors;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import fr.landel.calc.config.Conf;
 
+/**
+ * Asynchronous logger: after the level check, messages are queued in a bounded ring buffer, then formatted and written by batch by one
+ * writer thread, in a file channel kept open (file mode) or in the console. When the buffer is full, the caller is blocked or the message
+ * is dropped (see {@link Conf#LOG_OVERFLOW}).
+ */
 public class Logger {
 
     public static final String LOG_MODE_CONSOLE = "console";
     public static final String LOG_MODE_FILE = "file";
 
+    public static final String OVERFLOW_BLOCK = "block";
+    public static final String OVERFLOW_DROP = "drop";
+
     private static final String PATH = ".calculatrice";
     private static final String FILENAME = "log.txt";
 
@@ -27,59 +38,65 @@ public class Logger {
     private static final File FILE = new File(DIRECTORY, FILENAME);
 
     // date [level] class - message
-    private static final String FORMAT_SIMPLE = "{} [{}] {} - {}";
-    private static final String FORMAT_EXCEPTION = "{} [{}] {} - {}\n{}";
-
-    private static final Collector<String, ?, List<String>> COLLECTOR = Collectors.toList();
+    private static final String SEPARATOR_LEVEL_OPEN = " [";
+    private static final String SEPARATOR_LEVEL_CLOSE = "] ";
+    private static final String SEPARATOR_MESSAGE = " - ";
+    private static final String MESSAGE_DROPPED = "{} messages dropped, the log buffer is full";
 
     private static final String LINE_SEPARATOR = System.getProperty("line.separator");
 
+    private static final int BATCH_SIZE = 256;
+    private static final long FLUSH_TIMEOUT = 1_000;
+
     private static Level level = Level.INFO;
+    private static volatile Writer writer;
+
     private final String clazz;
-    private static Boolean consoleMode;
+    // the shared writer, if null
+    private final Writer target;
 
     public Logger(final Class<?> clazz) {
+        this(clazz, null);
+    }
+
+    Logger(final Class<?> clazz, final Writer target) {
         this.clazz = clazz.getSimpleName();
+        this.target = target;
     }
 
     private void log(final Level level, final Throwable throwable, final String message, final Object... args) {
-
-        if (consoleMode == null) {
-            consoleMode = LOG_MODE_CONSOLE.equals(Conf.LOG_MODE.getString().get());
-        }
-
         if (Logger.level.ordinal() <= level.ordinal()) {
-            final String date = DateTimeFormatter.ISO_DATE_TIME.format(LocalDateTime.now());
-
-            final String content;
-            if (args != null && args.length > 0) {
-                content = StringUtils.inject(message, Arrays.stream(args).map(String::valueOf).collect(COLLECTOR).toArray(new String[args.length]));
-            } else {
-                content = message;
-            }
-
-            final String log;
-            if (throwable != null) {
-                log = StringUtils.inject(FORMAT_EXCEPTION, date, level.name(), clazz, content, throwable.getMessage());
-            } else {
-                log = StringUtils.inject(FORMAT_SIMPLE, date, level.name(), clazz, content);
-            }
-
-            if (consoleMode) {
-                if (Level.ERROR.equals(level)) {
-                    System.err.println(log);
-                } else {
-                    System.out.println(log);
-                }
-            } else {
-                try (OutputStream os = new BufferedOutputStream(new FileOutputStream(FILE, true))) {
-                    os.write(log.concat(LINE_SEPARATOR).getBytes(StandardCharsets.UTF_8));
+            final Writer w = this.target != null ? this.target : getWriter();
+            w.add(new Event(LocalDateTime.now(), level, this.clazz, throwable, message, args));
+        }
+    }
 
-                } catch (IOException e) {
-                    System.err.println(StringUtils.inject(FORMAT_EXCEPTION, date, level.name(), clazz, content, e.getMessage()));
+    private static Writer getWriter() {
+        Writer w = writer;
+        if (w == null) {
+            synchronized (Logger.class) {
+                w = writer;
+                if (w == null) {
+                    // read on first message, the configuration logs itself while loading
+                    w = Writer.open(LOG_MODE_CONSOLE.equals(Conf.LOG_MODE.getString().get()),
+                            OVERFLOW_BLOCK.equals(Conf.LOG_OVERFLOW.getString().get()), Math.max(1, Conf.LOG_BUFFER.getInt().get()));
+                    writer = w;
+                    w.start();
+                    Runtime.getRuntime().addShutdownHook(new Thread(w::flush, "logger-shutdown"));
                 }
             }
         }
+        return w;
+    }
+
+    /**
+     * Waits until all queued messages are written (at most one second)
+     */
+    public static void flush() {
+        final Writer w = writer;
+        if (w != null) {
+            w.flush();
+        }
     }
 
     public void debug(final String message, final Object... args) {
@@ -120,4 +137,207 @@ public class Logger {
         WARN,
         ERROR;
     }
+
+    /**
+     * Message not yet formatted, arguments are formatted by the writer thread
+     */
+    private static class Event {
+        private final LocalDateTime date;
+        private final Level level;
+        private final String clazz;
+        private final Throwable throwable;
+        private final String message;
+        private final Object[] args;
+        private final CountDownLatch flushed;
+
+        private Event(final LocalDateTime date, final Level level, final String clazz, final Throwable throwable, final String message,
+                final Object[] args) {
+            this.date = date;
+            this.level = level;
+            this.clazz = clazz;
+            this.throwable = throwable;
+            this.message = message;
+            this.args = args;
+            this.flushed = null;
+        }
+
+        private Event(final CountDownLatch flushed) {
+            this.date = null;
+            this.level = null;
+            this.clazz = null;
+            this.throwable = null;
+            this.message = null;
+            this.args = null;
+            this.flushed = flushed;
+        }
+
+        private void format(final StringBuilder builder) {
+            DateTimeFormatter.ISO_DATE_TIME.formatTo(this.date, builder);
+            builder.append(SEPARATOR_LEVEL_OPEN).append(this.level.name()).append(SEPARATOR_LEVEL_CLOSE).append(this.clazz)
+                    .append(SEPARATOR_MESSAGE);
+            StringUtils.inject(builder, this.message, this.args);
+            if (this.throwable != null) {
+                builder.append('\n').append(this.throwable.getMessage());
+            }
+            builder.append(LINE_SEPARATOR);
+        }
+    }
+
+    /**
+     * Destination of the formatted messages, only called by the writer thread
+     */
+    @FunctionalInterface
+    interface Output {
+
+        /**
+         * @param out
+         *            the messages
+         * @param err
+         *            the errors, if written apart (empty otherwise)
+         * @throws IOException
+         *             on writing failure
+         */
+        void write(CharSequence out, CharSequence err) throws IOException;
+    }
+
+    /**
+     * Single consumer of the buffer
+     */
+    static class Writer implements Runnable {
+        private final BlockingQueue<Event> queue;
+        private final Output output;
+        private final boolean apart;
+        private final boolean block;
+        private final AtomicLong dropped = new AtomicLong();
+
+        private final List<Event> batch = new ArrayList<>(BATCH_SIZE);
+        private final StringBuilder out = new StringBuilder();
+        private final StringBuilder err = new StringBuilder();
+
+        /**
+         * Constructor
+         *
+         * @param output
+         *            the destination
+         * @param apart
+         *            true, to write the errors apart
+         * @param block
+         *            true, to block the callers when the buffer is full (the messages are dropped otherwise)
+         * @param capacity
+         *            the buffer capacity
+         */
+        Writer(final Output output, final boolean apart, final boolean block, final int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.output = output;
+            this.apart = apart;
+            this.block = block;
+        }
+
+        private static Writer open(final boolean console, final boolean block, final int capacity) {
+            if (!console) {
+                try {
+                    DIRECTORY.mkdirs();
+                    final FileChannel channel = FileChannel.open(FILE.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                            StandardOpenOption.APPEND);
+                    return new Writer((out, err) -> channel.write(StandardCharsets.UTF_8.encode(CharBuffer.wrap(out))), false, block, capacity);
+                } catch (IOException e) {
+                    System.err.println(StringUtils.inject("Cannot open log file {}, console used: {}", FILE.getAbsolutePath(), e.getMessage()));
+                }
+            }
+            return new Writer(Writer::console, true, block, capacity);
+        }
+
+        private static void console(final CharSequence out, final CharSequence err) {
+            if (out.length() > 0) {
+                System.out.append(out);
+                System.out.flush();
+            }
+            if (err.length() > 0) {
+                System.err.append(err);
+                System.err.flush();
+            }
+        }
+
+        void start() {
+            final Thread thread = new Thread(this, "logger");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void add(final Event event) {
+            if (this.block) {
+                try {
+                    this.queue.put(event);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else if (!this.queue.offer(event)) {
+                this.dropped.incrementAndGet();
+            }
+        }
+
+        /**
+         * Waits until the messages queued before are written (at most one second)
+         */
+        void flush() {
+            final CountDownLatch flushed = new CountDownLatch(1);
+            try {
+                if (this.queue.offer(new Event(flushed), FLUSH_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    flushed.await(FLUSH_TIMEOUT, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    this.batch.add(this.queue.take());
+                    this.queue.drainTo(this.batch, BATCH_SIZE - 1);
+
+                    this.write();
+
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+
+                } catch (RuntimeException e) {
+                    System.err.println(StringUtils.inject("Cannot write logs: {}", e.getMessage()));
+
+                } finally {
+                    // release flush requests, even on failure
+                    this.batch.stream().filter(e -> e.flushed != null).forEach(e -> e.flushed.countDown());
+                    this.batch.clear();
+                    this.out.setLength(0);
+                    this.err.setLength(0);
+                }
+            }
+        }
+
+        private void write() {
+            final long dropped = this.dropped.getAndSet(0);
+            if (dropped > 0) {
+                new Event(LocalDateTime.now(), Level.WARN, Logger.class.getSimpleName(), null, MESSAGE_DROPPED, new Object[] {dropped})
+                        .format(this.out);
+            }
+
+            for (Event event : this.batch) {
+                if (event.flushed != null) {
+                    continue;
+                } else if (this.apart && Level.ERROR.equals(event.level)) {
+                    event.format(this.err);
+                } else {
+                    event.format(this.out);
+                }
+            }
+
+            try {
+                this.output.write(this.out, this.err);
+            } catch (IOException e) {
+                System.err.println(StringUtils.inject("Cannot write log file {}: {}", FILE.getAbsolutePath(), e.getMessage()));
+            }
+        }
+    }
 }
@@ -1,39 +1,210 @@
 package fr.landel.calc.utils;
 
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.function.BiFunction;
 import java.util.function.Function;
 
-import fr.landel.calc.processor.MainProcessor;
-
 public final class MathUtils {
 
     private static final long TEN = 10;
 
+    // 2^53, above doubles are not all integers
+    private static final double MAX_SAFE_INTEGER = 9_007_199_254_740_992d;
+
     // PI/180
     private static final double DEGREE_CONVERTER = 0.017453292519943295D;
 
+    // n! for n in [0, 20], 21! overflows
+    private static final long[] LONG_FACTORIALS = new long[21];
+
+    // n! for n in [0, 170], 171! overflows, correctly rounded
+    private static final double[] DOUBLE_FACTORIALS = new double[171];
+
+    // n! is exact in double up to this value (22!, the odd part fits in the 53 bits of the significand)
+    public static final int MAX_EXACT_DOUBLE_FACTORIAL;
+
+    static {
+        int exact = 0;
+        BigInteger factorial = BigInteger.ONE;
+        for (int i = 0; i < DOUBLE_FACTORIALS.length; ++i) {
+            if (i > 0) {
+                factorial = factorial.multiply(BigInteger.valueOf(i));
+            }
+            if (i < LONG_FACTORIALS.length) {
+                LONG_FACTORIALS[i] = factorial.longValue();
+            }
+            DOUBLE_FACTORIALS[i] = factorial.doubleValue();
+            if (factorial.bitLength() - factorial.getLowestSetBit() <= 53) {
+                exact = i;
+            }
+        }
+        MAX_EXACT_DOUBLE_FACTORIAL = exact;
+    }
+
+    // Lanczos coefficients (g = 7, n = 9)
+    private static final double LANCZOS_G = 7;
+    private static final double[] LANCZOS = {0.99999999999980993, 676.5203681218851, -1259.1392167224028, 771.32342877765313,
+            -176.61502916214059, 12.507343278686905, -0.13857109526572012, 9.9843695780195716e-6, 1.5056327351493116e-7};
+    private static final double SQRT_TWO_PI = Math.sqrt(2 * Math.PI);
+
+    // above, Gamma overflows a double
+    private static final double MAX_GAMMA = 171.62;
+
     private MathUtils() {
         throw new UnsupportedOperationException();
     }
 
-    public static double fact(final Double n) {
-        return (double) fact(n.longValue());
+    /**
+     * Factorial, the integers from the table, the others from the Gamma function (n! = Gamma(n + 1))
+     *
+     * @param n
+     *            the value
+     * @return the factorial, infinity if too large for a double, NaN for negative integers
+     */
+    public static double fact(final double n) {
+        if (n == Math.rint(n)) {
+            if (n < 0) {
+                return Double.NaN;
+            }
+            return n < DOUBLE_FACTORIALS.length ? DOUBLE_FACTORIALS[(int) n] : Double.POSITIVE_INFINITY;
+        }
+        return gamma(n + 1);
     }
 
+    /**
+     * @param n
+     *            the value
+     * @return the factorial
+     * @throws ArithmeticException
+     *             if negative or if the result overflows a long (from 21!)
+     */
     public static long fact(final long n) {
-        if (n == 0L) {
-            return 1L;
-        } else {
-            return n * fact(n - 1L);
+        if (n < 0 || n >= LONG_FACTORIALS.length) {
+            throw new ArithmeticException("long overflow");
+        }
+        return LONG_FACTORIALS[(int) n];
+    }
+
+    /**
+     * Exact factorial, from the prime swing: n! = ((n/2)!)^2 * swing(n), the swing being the product of few prime powers
+     *
+     * @param n
+     *            the value
+     * @return the factorial
+     * @throws ArithmeticException
+     *             if negative
+     */
+    public static BigInteger factExact(final int n) {
+        if (n < 0) {
+            throw new ArithmeticException("negative factorial");
+        } else if (n < LONG_FACTORIALS.length) {
+            return BigInteger.valueOf(LONG_FACTORIALS[n]);
+        }
+        return factExact(n, primes(n));
+    }
+
+    private static BigInteger factExact(final int n, final int[] primes) {
+        if (n < LONG_FACTORIALS.length) {
+            return BigInteger.valueOf(LONG_FACTORIALS[n]);
+        }
+        final BigInteger half = factExact(n / 2, primes);
+        return half.multiply(half).multiply(swing(n, primes));
+    }
+
+    /**
+     * @return n! / ((n/2)!)^2, the exponent of each prime p is the number of odd n / p^i
+     */
+    private static BigInteger swing(final int n, final int[] primes) {
+        final long[] factors = new long[primes.length];
+        int count = 0;
+        for (int i = 0; i < primes.length && primes[i] <= n; ++i) {
+            final int p = primes[i];
+            long factor = 1;
+            int q = n;
+            while ((q /= p) > 0) {
+                if ((q & 1) == 1) {
+                    factor *= p;
+                }
+            }
+            if (factor > 1) {
+                factors[count++] = factor;
+            }
+        }
+        return product(factors, 0, count);
+    }
+
+    // balanced, to multiply numbers of close sizes
+    private static BigInteger product(final long[] factors, final int from, final int to) {
+        final int count = to - from;
+        if (count == 0) {
+            return BigInteger.ONE;
+        } else if (count == 1) {
+            return BigInteger.valueOf(factors[from]);
+        } else if (count == 2) {
+            return BigInteger.valueOf(factors[from]).multiply(BigInteger.valueOf(factors[from + 1]));
         }
+        final int middle = (from + to) >>> 1;
+        return product(factors, from, middle).multiply(product(factors, middle, to));
     }
 
+    private static int[] primes(final int n) {
+        final boolean[] composite = new boolean[n + 1];
+        final int[] primes = new int[n + 1];
+        int count = 0;
+        for (int i = 2; i <= n; ++i) {
+            if (!composite[i]) {
+                primes[count++] = i;
+                for (long j = (long) i * i; j <= n; j += i) {
+                    composite[(int) j] = true;
+                }
+            }
+        }
+        return Arrays.copyOf(primes, count);
+    }
+
+    /**
+     * Gamma function, from the Lanczos approximation (12 significant digits at least), the reflection formula below 1/2
+     *
+     * @param x
+     *            the value
+     * @return Gamma(x), infinity if too large for a double
+     */
+    public static double gamma(final double x) {
+        if (x < 0.5) {
+            return Math.PI / (Math.sin(Math.PI * x) * gamma(1 - x));
+        } else if (x > MAX_GAMMA) {
+            return Double.POSITIVE_INFINITY;
+        }
+        final double y = x - 1;
+        double sum = LANCZOS[0];
+        for (int i = 1; i < LANCZOS.length; ++i) {
+            sum += LANCZOS[i] / (y + i);
+        }
+        final double t = y + LANCZOS_G + 0.5;
+        // t^(y+0.5) overflows before e^-t compensates, so in two halves
+        final double half = Math.pow(t, (y + 0.5) / 2);
+        return SQRT_TWO_PI * half * (half * Math.exp(-t)) * sum;
+    }
+
+    // 2^63, Math.round saturates from there
+    private static final double MAX_ROUND = 0x1p63;
+
     public static double pow10(final double n) {
         return Math.pow(TEN, n);
     }
 
+    /**
+     * @param n
+     *            the value
+     * @param accuracy
+     *            the number of decimals
+     * @return the rounded value, or the value itself if the scaled value doesn't fit in a long (then it has no digit at this accuracy)
+     */
     public static double round(final double n, final double accuracy) {
         final double x = pow10(accuracy);
-        return Math.round(n * x) / x;
+        final double scaled = n * x;
+        return Math.abs(scaled) < MAX_ROUND ? Math.round(scaled) / x : n;
     }
 
     public static double ceil(final double n, final double accuracy) {
@@ -46,20 +217,20 @@ public final class MathUtils {
         return Math.floor(n * x) / x;
     }
 
-    public static Function<Double, Double> applyAngularFunction(final Function<Double, Double> angularFunction) {
-        return d -> {
+    public static BiFunction<Double, Boolean, Double> applyAngularFunction(final Function<Double, Double> angularFunction) {
+        return (d, radian) -> {
             double angular = angularFunction.apply(d);
-            if (!MainProcessor.isRadian()) {
+            if (!radian) {
                 angular = angular * DEGREE_CONVERTER;
             }
             return angular;
         };
     }
 
-    public static Function<Double, Double> applyInverseAngularFunction(final Function<Double, Double> angularFunction) {
-        return d -> {
+    public static BiFunction<Double, Boolean, Double> applyInverseAngularFunction(final Function<Double, Double> angularFunction) {
+        return (d, radian) -> {
             double angular = angularFunction.apply(d);
-            if (!MainProcessor.isRadian()) {
+            if (!radian) {
                 angular = angular / DEGREE_CONVERTER;
             }
             return angular;
@@ -77,4 +248,46 @@ public final class MathUtils {
     public static boolean isNotEqual(final double v1, final double v2, final int precision) {
         return Math.abs(v1 - v2) > 1d / MathUtils.pow10(precision);
     }
+
+    /**
+     * @param n
+     *            the value
+     * @return true, if the value is an integer exactly represented, like all its neighbors
+     */
+    public static boolean isSafeInteger(final double n) {
+        return Math.abs(n) < MAX_SAFE_INTEGER && n == Math.rint(n);
+    }
+
+    /**
+     * @param n
+     *            the value read or computed
+     * @return the bound of the error due to the rounding of the value into a double (half an ulp, none for safe integers)
+     */
+    public static double roundingError(final double n) {
+        return isSafeInteger(n) ? 0 : Math.ulp(n) / 2;
+    }
+
+    /**
+     * Checks if the rounding to the precision can differ between the value and the exact value (which is in [n - error, n + error]), so
+     * if a rounding boundary (middle between two rounded values) is in the error interval
+     *
+     * @param n
+     *            the value
+     * @param error
+     *            the bound of the absolute error
+     * @param precision
+     *            the number of decimals
+     * @return true, if the value has to be computed exactly to be rounded
+     */
+    public static boolean isRoundingAmbiguous(final double n, final double error, final int precision) {
+        if (!Double.isFinite(n) || error == 0) {
+            return false;
+        }
+        final double x = pow10(precision);
+        final double scaled = n * x;
+        final double boundary = Math.floor(scaled) + 0.5;
+
+        // the scaling adds its own rounding error
+        return Math.abs(scaled - boundary) <= error * x + Math.ulp(scaled);
+    }
 }
@@ -0,0 +1,229 @@
+package fr.landel.calc.utils;
+
+/**
+ * Formatter of numbers with a fixed number of decimals, written directly into a {@link StringBuilder}. The value is rounded as
+ * {@link MathUtils#round(double, double)}, then written in plain notation (no exponent) with exactly the precision as decimals. The
+ * values not finite are written as {@link Double#toString(double)}.
+ */
+public final class NumberFormatter {
+
+    private static final int MAX_PRECISION = 18;
+    private static final long[] POW10 = new long[MAX_PRECISION + 1];
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; ++i) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    // 2^63, from there the scaled value doesn't fit in a long, but the double has no digit at the precision to round
+    private static final double MAX_SCALED = 0x1p63;
+
+    // up to 15 digits, the shortest representation of the rounded double is the rounded decimal itself
+    private static final long MAX_DIRECT = POW10[15];
+    private static final int MAX_DIRECT_PRECISION = 15;
+
+    // plain notation from this value, below digits are lost in double
+    private static final double MIN_SCIENTIFIC = 1e15;
+    private static final int MIN_NORMAL_EXPONENT = -300;
+
+    private static final char DOT = '.';
+    private static final char ZERO = '0';
+    private static final char MINUS = '-';
+    private static final char EXPONENT = 'E';
+
+    private NumberFormatter() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Appends the value, in scientific notation if requested and the plain notation cannot show the value (too large to be precise or
+     * rounded to zero)
+     *
+     * @param builder
+     *            the builder
+     * @param value
+     *            the value
+     * @param precision
+     *            the number of decimals
+     * @param scientific
+     *            true to allow scientific notation
+     * @return the builder
+     */
+    public static StringBuilder append(final StringBuilder builder, final double value, final int precision, final boolean scientific) {
+        if (scientific && isScientific(value, precision)) {
+            return appendScientific(builder, value, precision);
+        }
+        return appendFixed(builder, value, precision, false);
+    }
+
+    /**
+     * @param value
+     *            the value
+     * @param precision
+     *            the number of decimals
+     * @return true, if the value has to be written in scientific notation (too large or rounded to zero)
+     */
+    public static boolean isScientific(final double value, final int precision) {
+        final double abs = Math.abs(value);
+        return Double.isFinite(abs) && abs != 0 && (abs >= MIN_SCIENTIFIC || Math.round(abs * MathUtils.pow10(precision)) == 0);
+    }
+
+    /**
+     * Appends the value as {@code mantissa E exponent}, the mantissa in [1, 10[ with the precision as decimals
+     *
+     * @param builder
+     *            the builder
+     * @param value
+     *            the value
+     * @param precision
+     *            the number of decimals of the mantissa
+     * @return the builder
+     */
+    public static StringBuilder appendScientific(final StringBuilder builder, final double value, final int precision) {
+        if (!Double.isFinite(value) || value == 0) {
+            return appendFixed(builder, value, precision, false);
+        }
+
+        int exponent = (int) Math.floor(Math.log10(Math.abs(value)));
+        double mantissa = mantissa(value, exponent);
+        if (Math.abs(Math.round(mantissa * MathUtils.pow10(precision))) >= 10 * MathUtils.pow10(precision)) {
+            mantissa = mantissa(value, ++exponent);
+        }
+
+        return appendFixed(builder, mantissa, precision, false).append(EXPONENT).append(exponent);
+    }
+
+    private static double mantissa(final double value, final int exponent) {
+        if (exponent < MIN_NORMAL_EXPONENT) {
+            // 10^-exponent overflows
+            return value * MathUtils.pow10(-MIN_NORMAL_EXPONENT) / MathUtils.pow10(exponent - MIN_NORMAL_EXPONENT);
+        }
+        return value / MathUtils.pow10(exponent);
+    }
+
+    /**
+     * Appends the value rounded with the precision as decimals
+     *
+     * @param builder
+     *            the builder
+     * @param value
+     *            the value
+     * @param precision
+     *            the number of decimals
+     * @param intermediate
+     *            true to remove decimals if all equal to zero
+     * @return the builder
+     */
+    public static StringBuilder appendFixed(final StringBuilder builder, final double value, final int precision, final boolean intermediate) {
+        if (!Double.isFinite(value)) {
+            return builder.append(value);
+        }
+
+        final double x = MathUtils.pow10(precision);
+        if (Math.abs(value * x) >= MAX_SCALED) {
+            appendDigits(builder, value, precision, intermediate);
+            return builder;
+        }
+
+        final long scaled = Math.round(value * x);
+
+        if (precision >= 0 && precision <= MAX_DIRECT_PRECISION && scaled > -MAX_DIRECT && scaled < MAX_DIRECT) {
+            appendDirect(builder, scaled, precision, intermediate);
+        } else {
+            appendDigits(builder, scaled / x, precision, intermediate);
+        }
+        return builder;
+    }
+
+    /**
+     * Writes the scaled value, inserting the dot
+     */
+    private static void appendDirect(final StringBuilder builder, final long scaled, final int precision, final boolean intermediate) {
+        long abs = scaled;
+        if (scaled < 0) {
+            builder.append(MINUS);
+            abs = -scaled;
+        }
+
+        final long decimals = abs % POW10[precision];
+        builder.append(abs / POW10[precision]);
+
+        if (precision > 0 && !(intermediate && decimals == 0)) {
+            builder.append(DOT);
+            for (long d = POW10[precision - 1]; d > decimals && d > 1; d /= 10) {
+                builder.append(ZERO);
+            }
+            builder.append(decimals);
+        }
+    }
+
+    /**
+     * Writes the shortest digits of the double (as {@link Double#toString(double)}, but without intermediate string), then moves the
+     * dot in place of the exponent and truncates or pads the decimals
+     */
+    private static void appendDigits(final StringBuilder builder, final double rounded, final int precision, final boolean intermediate) {
+        final int start = builder.length();
+        builder.append(rounded);
+
+        final int first = builder.charAt(start) == MINUS ? start + 1 : start;
+        int dot = indexOf(builder, DOT, first);
+
+        final int e = indexOf(builder, EXPONENT, dot);
+        if (e > -1) {
+            final int exponent = parseInt(builder, e + 1);
+            builder.setLength(e);
+            builder.deleteCharAt(dot);
+
+            if (exponent > 0) {
+                dot += exponent;
+                while (builder.length() < dot) {
+                    builder.append(ZERO);
+                }
+            } else {
+                // one digit before the dot in scientific notation
+                for (int i = exponent; i < 0; ++i) {
+                    builder.insert(first, ZERO);
+                }
+                dot = first + 1;
+            }
+            builder.insert(dot, DOT);
+        }
+
+        boolean zeros = true;
+        for (int i = dot + 1; i < builder.length() && zeros; ++i) {
+            zeros = builder.charAt(i) == ZERO;
+        }
+
+        final int length = dot + 1 + precision;
+        if (intermediate && zeros) {
+            builder.setLength(dot);
+        } else if (length > builder.length()) {
+            while (builder.length() < length) {
+                builder.append(ZERO);
+            }
+        } else if (precision > 0) {
+            builder.setLength(length);
+        } else {
+            builder.setLength(dot);
+        }
+    }
+
+    private static int indexOf(final CharSequence chars, final char c, final int start) {
+        for (int i = start; i < chars.length(); ++i) {
+            if (chars.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int parseInt(final CharSequence chars, final int start) {
+        final boolean negative = chars.charAt(start) == MINUS;
+        int value = 0;
+        for (int i = negative ? start + 1 : start; i < chars.length(); ++i) {
+            value = value * 10 + chars.charAt(i) - ZERO;
+        }
+        return negative ? -value : value;
+    }
+}
@@ -110,6 +110,34 @@ public final class StringUtils {
         return result;
     }
 
+    /**
+     * Appends the text, each '{}' replaced by the next parameter (without regular expression nor intermediate string)
+     *
+     * @param builder
+     *            the builder
+     * @param text
+     *            the text
+     * @param params
+     *            the parameters
+     * @return the builder
+     */
+    public static StringBuilder inject(final StringBuilder builder, final String text, final Object... params) {
+        if (params == null || params.length == 0) {
+            return builder.append(text);
+        }
+
+        int index = 0;
+        int start = 0;
+        for (int i = text.indexOf(INJECT_FIELD); i > -1; i = text.indexOf(INJECT_FIELD, start)) {
+            builder.append(text, start, i);
+            if (index < params.length) {
+                builder.append(params[index++]);
+            }
+            start = i + INJECT_FIELD.length();
+        }
+        return builder.append(text, start, text.length());
+    }
+
     public static String field(String text, int index, String separator) {
         return field(text, index, separator, false);
     }
@@ -1,23 +1,21 @@
 package fr.landel.calc.view;
 
 import java.awt.Color;
-import java.util.Arrays;
 
 import javax.swing.JTextArea;
 import javax.swing.event.CaretEvent;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.DefaultHighlighter;
+import javax.swing.text.Document;
 import javax.swing.text.Highlighter;
 
-import fr.landel.calc.processor.FunctionsTree;
 import fr.landel.calc.utils.Logger;
-import fr.landel.calc.utils.StringUtils;
 
 public class CaretHighlighter {
 
-    // TODO analyser le texte a la modification pas au deplacement du curseur
-    // precalculer les zones a coloriser
-    // corriger e>>
+    // TODO corriger e>>
 
     private static final Logger LOGGER = new Logger(CaretHighlighter.class);
 
@@ -29,7 +27,8 @@ public class CaretHighlighter {
     private final Highlighter.HighlightPainter painterFun;
     private final Highlighter.HighlightPainter painterErr;
 
-    // private int textAreaFormulaCaret;
+    // updated on each change of the text
+    private final FormulaTokens tokens = new FormulaTokens();
 
     public CaretHighlighter(final JTextArea textAreaFormula) {
         this.textAreaFormula = textAreaFormula;
@@ -38,113 +37,72 @@ public class CaretHighlighter {
         this.painterOk = new DefaultHighlighter.DefaultHighlightPainter(Color.GREEN);
         this.painterFun = new DefaultHighlighter.DefaultHighlightPainter(new Color(180, 255, 200));
         this.painterErr = new DefaultHighlighter.DefaultHighlightPainter(Color.RED);
+
+        final Document document = textAreaFormula.getDocument();
+        this.tokens.insert(0, textAreaFormula.getText());
+        document.addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(final DocumentEvent e) {
+                try {
+                    tokens.insert(e.getOffset(), document.getText(e.getOffset(), e.getLength()));
+                } catch (BadLocationException ex) {
+                    LOGGER.error(ex, "Cannot read the inserted text");
+                }
+            }
+
+            @Override
+            public void removeUpdate(final DocumentEvent e) {
+                tokens.remove(e.getOffset(), e.getLength());
+            }
+
+            @Override
+            public void changedUpdate(final DocumentEvent e) {
+                // attributes only
+            }
+        });
     }
 
     public Highlighter getHighlighter() {
         return this.highlighter;
     }
 
-    private int getParenthesis(final int start, final boolean next) {
-        int inc = 0;
-        String text = textAreaFormula.getText();
-        int len = text.length();
-        if (next) {
-            if (start < len) {
-                for (int i = start + 1; i < len; i++)
-                    if (text.charAt(i) == StringUtils.PARENTHESIS_CLOSE) {
-                        if (inc == 0)
-                            return i;
-                        inc--;
-                    } else if (text.charAt(i) == StringUtils.PARENTHESIS_OPEN)
-                        inc++;
-
-            }
-        } else if (start >= 0) {
-            for (int i = start - 1; i >= 0; i--) {
-                if (text.charAt(i) == StringUtils.PARENTHESIS_OPEN) {
-                    if (inc == 0)
-                        return i;
-                    inc--;
-                    continue;
-                }
-                if (text.charAt(i) == StringUtils.PARENTHESIS_CLOSE)
-                    inc++;
-            }
+    /**
+     * Highlights the parenthesis (with its pair) or the function name around the caret, the character before the caret first
+     *
+     * @param pos
+     *            the caret position
+     * @throws BadLocationException
+     *             if the tokens don't match the document
+     */
+    private void highlightText(final int pos) throws BadLocationException {
+        highlighter.removeAllHighlights();
+
+        if (pos < 0 || pos > tokens.length()) {
+            return;
+        }
 
+        int token = pos > 0 ? tokens.find(pos - 1) : -1;
+        if (token < 0) {
+            token = tokens.find(pos);
+        }
+        if (token < 0) {
+            return;
         }
-        return -1;
-    }
 
-    private void highlightText(final int pos) {
-        try {
-            highlighter.removeAllHighlights();
-
-            final String text = textAreaFormula.getText();
-            final char[] array = text.toCharArray();
-            final int length = array.length;
-
-            if (pos >= 0 && length > 0 && length >= pos) {
-                if (pos > 0) {
-                    char c = array[pos - 1];
-                    if (c == StringUtils.PARENTHESIS_OPEN || c == StringUtils.PARENTHESIS_CLOSE) {
-                        int i = getParenthesis(pos - 1, c != StringUtils.PARENTHESIS_CLOSE);
-                        if (i >= 0) {
-                            highlighter.addHighlight(pos - 1, pos, painterOk);
-                            highlighter.addHighlight(i, i + 1, painterOk);
-                        } else {
-                            highlighter.addHighlight(pos - 1, pos, painterErr);
-                        }
-                    } else if (Arrays.binarySearch(FunctionsTree.CHARS, c) > -1) {
-                        int start = pos - 1;
-                        int end = start;
-                        for (int i = pos - 1; i >= 0 && Arrays.binarySearch(FunctionsTree.CHARS, (char) array[i]) > -1; --i) {
-                            start = i;
-                        }
-                        for (int i = pos; i < length && Arrays.binarySearch(FunctionsTree.CHARS, (char) array[i]) > -1; ++i) {
-                            end = i;
-                        }
-                        if (start > -1 && end >= start && FunctionsTree.check(Arrays.copyOfRange(array, start, end + 1)).isPresent()) {
-                            highlighter.addHighlight(start, end + 1, painterFun);
-                        }
-                    } else if (length > pos) {
-                        c = array[pos];
-                        if (c == StringUtils.PARENTHESIS_OPEN || c == StringUtils.PARENTHESIS_CLOSE) {
-                            int i = getParenthesis(pos, c != StringUtils.PARENTHESIS_CLOSE);
-                            if (i >= 0) {
-                                highlighter.addHighlight(pos, pos + 1, painterOk);
-                                highlighter.addHighlight(i, i + 1, painterOk);
-                            } else {
-                                highlighter.addHighlight(pos, pos + 1, painterErr);
-                            }
-                        } else if (Arrays.binarySearch(FunctionsTree.CHARS, c) > -1) {
-                            int start = pos;
-                            int end = start + 1;
-                            for (int i = pos; i >= 0 && Arrays.binarySearch(FunctionsTree.CHARS, (char) array[i]) > -1; --i) {
-                                start = i;
-                            }
-                            for (int i = pos + 1; i < length && Arrays.binarySearch(FunctionsTree.CHARS, (char) array[i]) > -1; ++i) {
-                                end = i;
-                            }
-                            if (start > -1 && end >= start && FunctionsTree.check(Arrays.copyOfRange(array, start, end + 1)).isPresent()) {
-                                highlighter.addHighlight(start, end + 1, painterFun);
-                            }
-                        }
-                    }
-                } else {
-                    char c = array[pos];
-                    if (c == StringUtils.PARENTHESIS_OPEN || c == StringUtils.PARENTHESIS_CLOSE) {
-                        int i = getParenthesis(pos, c != StringUtils.PARENTHESIS_CLOSE);
-                        if (i >= 0) {
-                            highlighter.addHighlight(pos, pos + 1, painterOk);
-                            highlighter.addHighlight(i, i + 1, painterOk);
-                        } else {
-                            highlighter.addHighlight(pos, pos + 1, painterErr);
-                        }
-                    }
-                }
+        final int start = tokens.getStart(token);
+        final int end = tokens.getEnd(token);
+        final byte type = tokens.getType(token);
+
+        if (type == FormulaTokens.OPEN || type == FormulaTokens.CLOSE) {
+            final int pair = tokens.getPair(token);
+            if (pair > -1) {
+                highlighter.addHighlight(start, end, painterOk);
+                highlighter.addHighlight(tokens.getStart(pair), tokens.getEnd(pair), painterOk);
+            } else {
+                highlighter.addHighlight(start, end, painterErr);
             }
-        } catch (BadLocationException e) {
-            LOGGER.error(e, "Cannot highlight text");
+        } else if (type == FormulaTokens.FUNCTION) {
+            highlighter.addHighlight(start, end, painterFun);
         }
     }
 
@@ -0,0 +1,240 @@
+package fr.landel.calc.view;
+
+import java.util.Arrays;
+
+import fr.landel.calc.processor.SymbolTable;
+import fr.landel.calc.utils.StringUtils;
+
+/**
+ * Tokens of the formula being typed, for the highlighting: the parentheses (with the index of their pair) and the words made of function
+ * characters (known function or not).
+ * <p>
+ * The model follows the document changes: only the tokens around the change are read again, the next ones are shifted, then the
+ * parentheses are paired in one pass over the parenthesis tokens. The caret moves only do lookups.
+ * </p>
+ *
+ * @since Feb 25, 2019
+ * @author Gilles
+ *
+ */
+public class FormulaTokens {
+
+    public static final byte OPEN = 1;
+    public static final byte CLOSE = 2;
+    public static final byte WORD = 3;
+    public static final byte FUNCTION = 4;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private char[] text = new char[INITIAL_CAPACITY];
+    private int length;
+
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] ends = new int[INITIAL_CAPACITY];
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    // index of the matching parenthesis token, -1 if none
+    private int[] pairs = new int[INITIAL_CAPACITY];
+    private int size;
+
+    // buffers of the tokens read again
+    private int[] newStarts = new int[INITIAL_CAPACITY];
+    private int[] newEnds = new int[INITIAL_CAPACITY];
+    private byte[] newTypes = new byte[INITIAL_CAPACITY];
+    private int[] stack = new int[INITIAL_CAPACITY];
+
+    /**
+     * @param offset
+     *            the position of the inserted text
+     * @param inserted
+     *            the inserted text
+     */
+    public void insert(final int offset, final String inserted) {
+        final int count = inserted.length();
+        if (this.length + count > this.text.length) {
+            this.text = Arrays.copyOf(this.text, Math.max(this.length + count, this.text.length * 2));
+        }
+        System.arraycopy(this.text, offset, this.text, offset + count, this.length - offset);
+        inserted.getChars(0, count, this.text, offset);
+        this.length += count;
+
+        this.update(offset, 0, count);
+    }
+
+    /**
+     * @param offset
+     *            the position of the removed text
+     * @param count
+     *            the number of removed characters
+     */
+    public void remove(final int offset, final int count) {
+        System.arraycopy(this.text, offset + count, this.text, offset, this.length - offset - count);
+        this.length -= count;
+
+        this.update(offset, count, 0);
+    }
+
+    /**
+     * Reads again the tokens touched by the change
+     */
+    private void update(final int offset, final int removed, final int inserted) {
+        final int delta = inserted - removed;
+        final int oldEnd = offset + removed;
+
+        // tokens touching the change (adjacent ones too, words can be merged or split)
+        int lo = 0;
+        while (lo < this.size && this.ends[lo] < offset) {
+            ++lo;
+        }
+        int hi = lo;
+        while (hi < this.size && this.starts[hi] <= oldEnd) {
+            ++hi;
+        }
+
+        final int from = lo < hi ? Math.min(this.starts[lo], offset) : offset;
+        int to = offset + inserted;
+        for (int i = lo; i < hi; ++i) {
+            if (this.ends[i] > oldEnd) {
+                to = Math.max(to, this.ends[i] + delta);
+            }
+        }
+
+        final int count = this.lex(from, to);
+
+        // replaces [lo, hi) and shifts the next ones
+        final int next = lo + count;
+        final int tail = this.size - hi;
+        this.ensureCapacity(next + tail);
+        System.arraycopy(this.starts, hi, this.starts, next, tail);
+        System.arraycopy(this.ends, hi, this.ends, next, tail);
+        System.arraycopy(this.types, hi, this.types, next, tail);
+        System.arraycopy(this.newStarts, 0, this.starts, lo, count);
+        System.arraycopy(this.newEnds, 0, this.ends, lo, count);
+        System.arraycopy(this.newTypes, 0, this.types, lo, count);
+        this.size = next + tail;
+        for (int i = next; i < this.size; ++i) {
+            this.starts[i] += delta;
+            this.ends[i] += delta;
+        }
+
+        this.pair();
+    }
+
+    /**
+     * Reads the tokens into the new buffers
+     *
+     * @return the number of tokens
+     */
+    private int lex(final int from, final int to) {
+        int count = 0;
+        int i = from;
+        while (i < to) {
+            final char c = this.text[i];
+            if (count == this.newStarts.length) {
+                this.newStarts = Arrays.copyOf(this.newStarts, count * 2);
+                this.newEnds = Arrays.copyOf(this.newEnds, count * 2);
+                this.newTypes = Arrays.copyOf(this.newTypes, count * 2);
+            }
+
+            if (c == StringUtils.PARENTHESIS_OPEN || c == StringUtils.PARENTHESIS_CLOSE) {
+                this.newStarts[count] = i;
+                this.newEnds[count] = i + 1;
+                this.newTypes[count++] = c == StringUtils.PARENTHESIS_OPEN ? OPEN : CLOSE;
+                ++i;
+
+            } else if (SymbolTable.isFunctionChar(c)) {
+                final int start = i;
+                while (i < this.length && SymbolTable.isFunctionChar(this.text[i])) {
+                    ++i;
+                }
+                this.newStarts[count] = start;
+                this.newEnds[count] = i;
+                this.newTypes[count++] = SymbolTable.getFunction(this.text, start, i) != null ? FUNCTION : WORD;
+
+            } else {
+                ++i;
+            }
+        }
+        return count;
+    }
+
+    private void pair() {
+        int depth = 0;
+        for (int i = 0; i < this.size; ++i) {
+            this.pairs[i] = -1;
+            if (this.types[i] == OPEN) {
+                this.stack[depth++] = i;
+            } else if (this.types[i] == CLOSE && depth > 0) {
+                final int open = this.stack[--depth];
+                this.pairs[open] = i;
+                this.pairs[i] = open;
+            }
+        }
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity > this.starts.length) {
+            final int length = Math.max(capacity, this.starts.length * 2);
+            this.starts = Arrays.copyOf(this.starts, length);
+            this.ends = Arrays.copyOf(this.ends, length);
+            this.types = Arrays.copyOf(this.types, length);
+            this.pairs = Arrays.copyOf(this.pairs, length);
+            this.stack = Arrays.copyOf(this.stack, length);
+        }
+    }
+
+    /**
+     * @param position
+     *            the position of a character
+     * @return the index of the token containing the character, -1 if none
+     */
+    public int find(final int position) {
+        int low = 0;
+        int high = this.size - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (this.ends[mid] <= position) {
+                low = mid + 1;
+            } else if (this.starts[mid] > position) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the number of tokens
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return the number of characters
+     */
+    public int length() {
+        return this.length;
+    }
+
+    public int getStart(final int token) {
+        return this.starts[token];
+    }
+
+    public int getEnd(final int token) {
+        return this.ends[token];
+    }
+
+    public byte getType(final int token) {
+        return this.types[token];
+    }
+
+    /**
+     * @param token
+     *            the index of a parenthesis token
+     * @return the index of the matching parenthesis token, -1 if none
+     */
+    public int getPair(final int token) {
+        return this.pairs[token];
+    }
+}
@@ -280,11 +280,11 @@ public class FunctionDialog extends JDialog implements Dialog {
             int i = 0;
             try {
                 final Entity[] entities = new Entity[params.length];
-                final MainProcessor processor = new MainProcessor();
+                final MainProcessor processor = new MainProcessor(this.parent.getEvaluationContext());
                 for (i = 0; i < params.length; ++i) {
                     entities[i] = processor.processToEntity(params[i]);
                 }
-                errors = this.function.check(entities);
+                errors = this.function.check(processor.getContext(), entities);
 
             } catch (ProcessorException e) {
                 errors = Arrays.asList(this.function.getParams()[i].getPredicateI18n());
@@ -0,0 +1,147 @@
+package fr.landel.calc.view;
+
+import java.util.Arrays;
+
+import javax.swing.AbstractListModel;
+
+/**
+ * Rows of the history view: the formulas and their results, with their type.
+ * <p>
+ * The rows are stored in growable arrays, each change fires only the interval added, changed or removed, so the list doesn't copy nor
+ * re-render the other rows.
+ * </p>
+ *
+ * @since Feb 22, 2019
+ * @author Gilles
+ *
+ */
+public class HistoryListModel extends AbstractListModel<String> {
+
+    /**
+     * serialVersionUID
+     */
+    private static final long serialVersionUID = -3127467210358422384L;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private String[] rows = new String[INITIAL_CAPACITY];
+    private RowType[] types = new RowType[INITIAL_CAPACITY];
+    private int size;
+
+    @Override
+    public int getSize() {
+        return this.size;
+    }
+
+    @Override
+    public String getElementAt(final int index) {
+        return index > -1 && index < this.size ? this.rows[index] : null;
+    }
+
+    /**
+     * @param index
+     *            the index of the row
+     * @return the type of the row or null, if out of bounds
+     */
+    public RowType getType(final int index) {
+        return index > -1 && index < this.size ? this.types[index] : null;
+    }
+
+    /**
+     * Appends a row
+     *
+     * @param row
+     *            the text
+     * @param type
+     *            the type
+     */
+    public void add(final String row, final RowType type) {
+        this.ensureCapacity(this.size + 1);
+        this.rows[this.size] = row;
+        this.types[this.size] = type;
+        ++this.size;
+        this.fireIntervalAdded(this, this.size - 1, this.size - 1);
+    }
+
+    /**
+     * Inserts rows at the top
+     *
+     * @param rows
+     *            the texts
+     * @param types
+     *            the types, in the same order
+     * @param count
+     *            the number of rows to insert
+     */
+    public void insertFirst(final String[] rows, final RowType[] types, final int count) {
+        if (count > 0) {
+            this.ensureCapacity(this.size + count);
+            System.arraycopy(this.rows, 0, this.rows, count, this.size);
+            System.arraycopy(this.types, 0, this.types, count, this.size);
+            System.arraycopy(rows, 0, this.rows, 0, count);
+            System.arraycopy(types, 0, this.types, 0, count);
+            this.size += count;
+            this.fireIntervalAdded(this, 0, count - 1);
+        }
+    }
+
+    /**
+     * Replaces a row
+     *
+     * @param index
+     *            the index of the row
+     * @param row
+     *            the text
+     * @param type
+     *            the type
+     */
+    public void set(final int index, final String row, final RowType type) {
+        if (index > -1 && index < this.size) {
+            this.rows[index] = row;
+            this.types[index] = type;
+            this.fireContentsChanged(this, index, index);
+        }
+    }
+
+    /**
+     * @param index
+     *            the index of the row to remove
+     */
+    public void remove(final int index) {
+        if (index > -1 && index < this.size) {
+            System.arraycopy(this.rows, index + 1, this.rows, index, this.size - index - 1);
+            System.arraycopy(this.types, index + 1, this.types, index, this.size - index - 1);
+            --this.size;
+            this.rows[this.size] = null;
+            this.types[this.size] = null;
+            this.fireIntervalRemoved(this, index, index);
+        }
+    }
+
+    public void clear() {
+        if (this.size > 0) {
+            final int last = this.size - 1;
+            Arrays.fill(this.rows, 0, this.size, null);
+            Arrays.fill(this.types, 0, this.size, null);
+            this.size = 0;
+            this.fireIntervalRemoved(this, 0, last);
+        }
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity > this.rows.length) {
+            final int length = Math.max(capacity, this.rows.length * 2);
+            this.rows = Arrays.copyOf(this.rows, length);
+            this.types = Arrays.copyOf(this.types, length);
+        }
+    }
+
+    /**
+     * Type of a row, gives its colors and alignment
+     */
+    public enum RowType {
+        FORMULA,
+        SUCCESS,
+        ERROR;
+    }
+}
@@ -5,6 +5,7 @@ import static javax.swing.GroupLayout.PREFERRED_SIZE;
 import static javax.swing.GroupLayout.Alignment.LEADING;
 import static javax.swing.GroupLayout.Alignment.TRAILING;
 
+import java.awt.Adjustable;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Dimension;
@@ -12,16 +13,22 @@ import java.awt.Font;
 import java.awt.Frame;
 import java.awt.Insets;
 import java.awt.Rectangle;
+import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.AdjustmentEvent;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.util.Iterator;
+import java.io.IOException;
 import java.util.List;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.swing.BorderFactory;
 import javax.swing.ButtonGroup;
@@ -29,6 +36,7 @@ import javax.swing.GroupLayout;
 import javax.swing.JButton;
 import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
 import javax.swing.JList;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
@@ -36,12 +44,17 @@ import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
+import javax.swing.JProgressBar;
 import javax.swing.JRadioButtonMenuItem;
 import javax.swing.JScrollPane;
 import javax.swing.JSeparator;
 import javax.swing.JTextArea;
 import javax.swing.ScrollPaneConstants;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.event.CaretEvent;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.event.ListSelectionEvent;
 
 import fr.landel.calc.config.Conf;
@@ -49,12 +62,21 @@ import fr.landel.calc.config.Configuration;
 import fr.landel.calc.config.Formula;
 import fr.landel.calc.config.I18n;
 import fr.landel.calc.config.Images;
+import fr.landel.calc.config.Journal;
+import fr.landel.calc.processor.AsyncProcessor;
+import fr.landel.calc.processor.Cancellation;
+import fr.landel.calc.processor.Entity;
+import fr.landel.calc.processor.EvaluationContext;
 import fr.landel.calc.processor.Functions;
 import fr.landel.calc.processor.MainProcessor;
 import fr.landel.calc.processor.Operators;
+import fr.landel.calc.processor.PreviewProcessor;
 import fr.landel.calc.processor.ProcessorException;
+import fr.landel.calc.processor.RandomStream;
+import fr.landel.calc.processor.VariableScope;
 import fr.landel.calc.utils.ClipboardUtils;
 import fr.landel.calc.utils.FrameUtils;
+import fr.landel.calc.utils.Logger;
 import fr.landel.calc.utils.StringUtils;
 
 /**
@@ -71,6 +93,8 @@ public class MainFrame extends JFrame implements Dialog {
      */
     private static final long serialVersionUID = 5111170027743866090L;
 
+    private static final Logger LOGGER = new Logger(MainFrame.class);
+
     private static final Font FONT_MENU = new Font("DejaVu Sans", 0, 11);
     private static final Font FONT_FRAME = new Font("Arial", 0, 10);
     private static final Font FONT_FORMULA = new Font("Tahoma", 0, 14);
@@ -81,11 +105,19 @@ public class MainFrame extends JFrame implements Dialog {
     public static final int RIGHT = 4;
     public static final int CENTER = 0;
 
+    private static final int PROGRESS_DELAY = 200;
+    private static final int PREVIEW_DELAY = 250;
+    private static final Color PREVIEW_COLOR = new Color(100, 100, 150);
+
     private static final Dimension DIM_BUTTON = new Dimension(45, 29);
 
     private String laf;
 
     private MainProcessor processor;
+    private AsyncProcessor evaluator;
+    private final VariableScope variables = new VariableScope();
+    // stream of the random functions, kept between the formulas (only used by the evaluation thread)
+    private final RandomStream random = new RandomStream();
 
     private AboutDialog aboutDialog;
     private PreferencesDialog preferencesDialog;
@@ -97,18 +129,37 @@ public class MainFrame extends JFrame implements Dialog {
     private ButtonGroup groupPrecision;
     private CaretHighlighter highlighter;
 
-    private JMenuItem itemEditCut, itemEditCopy, itemEditDelete, itemEditClear;
+    private JMenuItem itemEditCut, itemEditCopy, itemEditDelete, itemEditClear, itemEditCancel;
 
     private JPopupMenu popupFormula = new JPopupMenu();
     private JMenuItem itemFormulaCut, itemFormulaCopy;
 
     private JTextArea textAreaFormula;
+    private JProgressBar progressBar;
+    private Timer progressTimer;
+    private JLabel previewLabel;
+    private Timer previewTimer;
+    // the preview of the text being typed, evaluated in its own thread (only the last one is shown)
+    private final PreviewProcessor preview = new PreviewProcessor();
+    private final ExecutorService previewExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "preview");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Cancellation previewCancellation = Cancellation.NONE;
     private JList<String> screenList;
 
     private MainFrameList mainFrameList;
 
     private final List<Formula> formulas;
+    private final Journal journal;
+    // read in the EDT, for the bindings journaled out of an evaluation or out of the EDT
+    private volatile EvaluationContext journalContext;
+    private volatile boolean historySave;
     private String draftFormula;
+    // reverse search (Ctrl-R): the text searched and the index of the last formula found
+    private String searchQuery;
+    private int searchIndex;
 
     private boolean controlDown;
 
@@ -124,15 +175,19 @@ public class MainFrame extends JFrame implements Dialog {
         this.preferencesDialog = new PreferencesDialog(this, this.laf);
         this.functionDialog = new FunctionDialog(this);
 
-        this.formulas = Conf.getFormulas();
-        Conf.loadVariables();
+        this.journal = openJournal();
+        this.formulas = this.loadHistory();
 
-        this.processor = new MainProcessor();
+        this.processor = new MainProcessor(this.getEvaluationContext());
+        this.evaluator = new AsyncProcessor(this.processor, SwingUtilities::invokeLater);
 
         this.initMenu();
         this.initComponents();
         this.initPopupMenu();
         this.initFrame();
+
+        // results of the formulas depending on a re-bound variable, posted in the evaluation order
+        this.processor.getDependencies().addListener(formula -> SwingUtilities.invokeLater(() -> this.mainFrameList.updateResult(formula)));
     }
 
     private void initPopupMenu() {
@@ -161,6 +216,8 @@ public class MainFrame extends JFrame implements Dialog {
         menuEdit.add(new JSeparator());
         itemEditDelete = add(menuEdit, setMenuItem(I18n.MENU_EDIT_DELETE, false), this::deleteHistory);
         itemEditClear = add(menuEdit, setMenuItem(I18n.MENU_EDIT_CLEAR, false), this::clearHistory);
+        menuEdit.add(new JSeparator());
+        itemEditCancel = add(menuEdit, setMenuItem(I18n.MENU_EDIT_CANCEL, false), this::cancelEvaluation);
 
         JMenu menuView = add(menuBar, setMenu(I18n.MENU_VIEW));
         itemViewKeyboard = add(menuView, setCheckBoxMenuItem(null, I18n.MENU_VIEW_KEYBOARD), this::splitActionListener);
@@ -226,10 +283,10 @@ public class MainFrame extends JFrame implements Dialog {
         mainFrameList.addCounterListener(this::updateList);
         screenList.setBackground(new Color(245, 245, 255));
         screenList.setDragEnabled(true);
-        screenList.setListData(new String[0]);
         screenList.addListSelectionListener(this::updateListSelection);
 
         screen.setViewportView(screenList);
+        screen.getVerticalScrollBar().addAdjustmentListener(this::screenScrolled);
 
         final JScrollPane scrollPane = new JScrollPane();
         scrollPane.setBackground(Color.BLACK);
@@ -264,6 +321,36 @@ public class MainFrame extends JFrame implements Dialog {
         updateI18n(I18n.FRAME_INPUT, textAreaFormula::setToolTipText);
         scrollPane.setViewportView(textAreaFormula);
 
+        // shown if an evaluation takes some time
+        progressBar = new JProgressBar();
+        progressBar.setIndeterminate(true);
+        progressBar.setBorderPainted(false);
+        progressBar.setVisible(false);
+        progressTimer = new Timer(PROGRESS_DELAY, e -> progressBar.setVisible(evaluator.isBusy()));
+        progressTimer.setRepeats(false);
+
+        previewLabel = new JLabel(StringUtils.SPACE);
+        previewLabel.setHorizontalAlignment(RIGHT);
+        previewLabel.setForeground(PREVIEW_COLOR);
+        previewTimer = new Timer(PREVIEW_DELAY, e -> updatePreview());
+        previewTimer.setRepeats(false);
+        textAreaFormula.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(final DocumentEvent e) {
+                previewTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(final DocumentEvent e) {
+                previewTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(final DocumentEvent e) {
+                // attributes only
+            }
+        });
+
         final JButton buttonEqual = buildButton(DIM_BUTTON, null);
         buttonEqual.setText("=");
 
@@ -306,6 +393,14 @@ public class MainFrame extends JFrame implements Dialog {
                         .addComponent(scrollPane, DEFAULT_SIZE, 218, MAX_SIZE)
                         .addContainerGap(5, 5)
                         .addComponent(buttonEqual, PREFERRED_SIZE, DEFAULT_SIZE, PREFERRED_SIZE)
+                        .addContainerGap(5, 5))
+                .addGroup(tLayout.createSequentialGroup()
+                        .addContainerGap(5, 5)
+                        .addComponent(previewLabel, DEFAULT_SIZE, 218, MAX_SIZE)
+                        .addContainerGap(5, 5))
+                .addGroup(tLayout.createSequentialGroup()
+                        .addContainerGap(5, 5)
+                        .addComponent(progressBar, DEFAULT_SIZE, 218, MAX_SIZE)
                         .addContainerGap(5, 5)));
 
         tLayout.setVerticalGroup(tLayout.createSequentialGroup()
@@ -317,6 +412,8 @@ public class MainFrame extends JFrame implements Dialog {
                         .addGroup(tLayout.createSequentialGroup()
                                 .addGap(5)
                                 .addComponent(buttonEqual, PREFERRED_SIZE, DEFAULT_SIZE, PREFERRED_SIZE)))
+                .addComponent(previewLabel, PREFERRED_SIZE, DEFAULT_SIZE, PREFERRED_SIZE)
+                .addComponent(progressBar, PREFERRED_SIZE, 4, PREFERRED_SIZE)
                 .addGap(5, 5, 5));
         // @formatter:on
 
@@ -481,7 +578,8 @@ public class MainFrame extends JFrame implements Dialog {
 
         this.setExtendedState(Conf.EXTENDED_STATE.getInt().get());
 
-        this.formulas.forEach(mainFrameList::addFormula);
+        this.mainFrameList.load();
+        this.mainFrameList.showLastFormula();
 
         boolean keyboardState = Conf.KEYBOARD.getBoolean().orElse(true);
         bottomPanel.setVisible(keyboardState);
@@ -562,23 +660,19 @@ public class MainFrame extends JFrame implements Dialog {
             Conf.HEIGHT.set(bounds.height);
         }
 
-        if (Conf.HISTORY_SAVE.getBoolean().get()) {
-            final int max = Conf.HISTORY_MAX.getInt().get();
-            int toRemove = this.formulas.size() - max;
+        this.evaluator.close();
+        this.previewExecutor.shutdownNow();
 
-            final Iterator<Formula> it = this.formulas.iterator();
-            while (it.hasNext() && toRemove-- > 0) {
-                it.next();
-                it.remove();
+        if (this.journal != null) {
+            // the formulas saved before the history saving was disabled are forgotten, as the next ones
+            if (!Conf.HISTORY_SAVE.getBoolean().get()) {
+                this.journal.clearFormulas();
             }
-
-            Conf.clearFormulas();
-            int i = 0;
-            for (Formula formula : this.formulas) {
-                Conf.setFormula(i++, formula);
+            try {
+                this.journal.close();
+            } catch (IOException e) {
+                LOGGER.error(e, "Cannot close the journal {}", Journal.FILE);
             }
-
-            Conf.saveVariables();
         }
 
         Configuration.save();
@@ -751,6 +845,23 @@ public class MainFrame extends JFrame implements Dialog {
         mainFrameList.clear();
     }
 
+    /**
+     * Stops recomputing the formula, no longer shown (may be called while evaluating)
+     *
+     * @param formula
+     *            the formula
+     */
+    public void unwatchFormula(final String formula) {
+        this.processor.unwatch(formula);
+    }
+
+    /**
+     * Stops recomputing all the formulas of the history, the variable definitions are kept
+     */
+    public void unwatchFormulas() {
+        this.processor.getDependencies().unwatchAll();
+    }
+
     public void setText(final String text, final boolean forceEmpty) {
         if (text != null && !text.isBlank()) {
             textAreaFormula.setText(text.trim());
@@ -790,11 +901,17 @@ public class MainFrame extends JFrame implements Dialog {
             evt.consume();
 
         } else if (evt.getKeyCode() == KeyEvent.VK_UP) {
+            resetSearch();
             keyUpReleased();
 
         } else if (evt.getKeyCode() == KeyEvent.VK_DOWN) {
+            resetSearch();
             keyDownReleased();
 
+        } else if (evt.isControlDown() && evt.getKeyCode() == KeyEvent.VK_R) {
+            evt.consume();
+            searchPrevious();
+
         } else if (evt.isControlDown() && evt.getKeyCode() == KeyEvent.VK_V) {
             evt.consume();
         } else if (evt.isControlDown()) {
@@ -817,15 +934,63 @@ public class MainFrame extends JFrame implements Dialog {
 
         } else if (!evt.isControlDown() && evt.getKeyCode() != KeyEvent.VK_UP && evt.getKeyCode() != KeyEvent.VK_DOWN) {
             resetDraftFormula();
+            resetSearch();
             int size = screenList.getModel().getSize();
             screenList.removeSelectionInterval(0, size);
         }
     }
 
+    /**
+     * Finds the previous formula containing the text typed before the first Ctrl-R (in the formula or its result)
+     */
+    private void searchPrevious() {
+        if (searchQuery == null) {
+            if (textAreaFormula.getText().isBlank()) {
+                return;
+            }
+            updateDraftFormula();
+            searchQuery = textAreaFormula.getText().trim();
+            searchIndex = mainFrameList.getFormulaCount();
+        }
+
+        final int found = mainFrameList.search(searchQuery, searchIndex);
+        if (found > -1) {
+            searchIndex = found;
+            mainFrameList.selectFormula(found);
+            setText(screenList.getSelectedValue(), false);
+        } else {
+            Toolkit.getDefaultToolkit().beep();
+        }
+    }
+
+    private void resetSearch() {
+        searchQuery = null;
+    }
+
+    private void screenScrolled(final AdjustmentEvent evt) {
+        final Adjustable bar = evt.getAdjustable();
+        if (!evt.getValueIsAdjusting() && evt.getValue() == bar.getMinimum() && bar.getMaximum() > bar.getVisibleAmount()) {
+            final int rows = mainFrameList.showPrevious();
+            if (rows > 0) {
+                // keeps the rows previously at the top in place
+                SwingUtilities.invokeLater(() -> {
+                    final Rectangle bounds = screenList.getCellBounds(0, rows - 1);
+                    if (bounds != null) {
+                        bar.setValue(bounds.height);
+                    }
+                });
+            }
+        }
+    }
+
     private void keyUpReleased() {
         int index = screenList.getSelectedIndex();
         int type;
 
+        if (index == 0 || index == 1) {
+            index += mainFrameList.showPrevious();
+        }
+
         if (index > 0) {
             mainFrameList.setSelectedIndex(--index);
 
@@ -884,27 +1049,86 @@ public class MainFrame extends JFrame implements Dialog {
     }
 
     private void processFormula() {
-        if (!textAreaFormula.getText().isBlank()) {
-            try {
-                MainProcessor.setRadian(Conf.RADIAN.getBoolean().get());
-                MainProcessor.setExact(Conf.EXACT.getBoolean().get());
-                MainProcessor.setScientific(Conf.SCIENTIFIC.getBoolean().get());
-                MainProcessor.setPrecision(Conf.PRECISION.getInt().get());
-                MainProcessor.setUnityAbbrev(Conf.UNITY_ABBREV.getBoolean().get());
-                MainProcessor.setUnitiesSpace(Conf.UNITY_SPACE.getBoolean().get());
-                MainProcessor.setValuesSpace(Conf.VALUE_SPACE.getBoolean().get());
+        final String input = textAreaFormula.getText();
+        if (!input.isBlank()) {
+            final EvaluationContext context = this.getEvaluationContext();
+            this.journalContext = context;
+            this.historySave = Conf.HISTORY_SAVE.getBoolean().get();
+            this.evaluator.submit(input, context, Conf.TIMEOUT.getInt().get(), true, f -> this.formulaProcessed(input, f));
+            this.updateProgress();
+        }
+    }
 
-                final Formula formula = this.processor.process(textAreaFormula.getText());
+    /**
+     * Called in the EDT, in submission order
+     *
+     * @param input
+     *            the submitted text
+     * @param formula
+     *            the formula with its result or error
+     */
+    private void formulaProcessed(final String input, final Formula formula) {
+        if (this.journal != null) {
+            this.journal.setSaveFormulas(Conf.HISTORY_SAVE.getBoolean().get());
+        }
+        this.mainFrameList.addFormula(formula, true);
+        this.mainFrameList.showLastFormula();
 
-                this.mainFrameList.addFormula(formula, true);
-                this.mainFrameList.showLastFormula();
+        // the input is kept, if modified meanwhile
+        if (formula.getResult().isPresent() && formula.getResult().get().isSuccess() && input.equals(textAreaFormula.getText())) {
+            textAreaFormula.setText(StringUtils.EMPTY);
+        }
+        this.updateProgress();
+    }
 
-                if (formula.getResult().isPresent() && formula.getResult().get().isSuccess()) {
-                    textAreaFormula.setText(StringUtils.EMPTY);
-                }
-            } catch (ProcessorException e) {
-                mainFrameList.addFormula(textAreaFormula.getText(), false, e.getMessage());
+    /**
+     * Evaluates the text being typed out of the EDT, the previous preview is cancelled. Errors are not shown, the formula may be incomplete
+     */
+    private void updatePreview() {
+        previewCancellation.cancel(I18n.ERROR_EVALUATION_CANCELLED);
+
+        final String input = textAreaFormula.getText();
+        if (input.isBlank()) {
+            previewLabel.setText(StringUtils.SPACE);
+            return;
+        }
+
+        final Cancellation cancellation = new Cancellation();
+        final EvaluationContext context = this.getEvaluationContext().withCancellation(cancellation);
+        previewCancellation = cancellation;
+
+        previewExecutor.execute(() -> {
+            if (cancellation.isCancelled()) {
+                return;
             }
+            String result;
+            try {
+                result = "= " + preview.preview(input, context).toString(context);
+            } catch (ProcessorException | RuntimeException | StackOverflowError e) {
+                result = StringUtils.SPACE;
+            }
+
+            final String text = result;
+            SwingUtilities.invokeLater(() -> {
+                if (!cancellation.isCancelled() && input.equals(textAreaFormula.getText())) {
+                    previewLabel.setText(text);
+                }
+            });
+        });
+    }
+
+    private void cancelEvaluation(final ActionEvent evt) {
+        this.evaluator.cancelAll();
+    }
+
+    private void updateProgress() {
+        final boolean busy = this.evaluator.isBusy();
+        itemEditCancel.setEnabled(busy);
+        if (!busy) {
+            progressTimer.stop();
+            progressBar.setVisible(false);
+        } else if (!progressBar.isVisible()) {
+            progressTimer.restart();
         }
     }
 
@@ -932,6 +1156,68 @@ public class MainFrame extends JFrame implements Dialog {
         itemEditClear.setEnabled(count > 0);
     }
 
+    private static Journal openJournal() {
+        try {
+            return new Journal(Journal.FILE.toPath(), Conf.HISTORY_MAX.getInt().get());
+        } catch (IOException e) {
+            LOGGER.error(e, "Cannot open the journal {}, history and variables won't be saved", Journal.FILE);
+            return null;
+        }
+    }
+
+    private List<Formula> loadHistory() throws ProcessorException {
+        if (this.journal == null) {
+            Conf.loadVariables(this.variables);
+            return Conf.getFormulas();
+        }
+
+        // read by page on demand, the formulas are only kept in memory if the history is not saved
+        this.journal.setSaveFormulas(Conf.HISTORY_SAVE.getBoolean().get());
+        final List<Formula> history = this.journal.getFormulas();
+        final boolean empty = history.isEmpty();
+        for (Entry<String, String> variable : this.journal.getVariables().entrySet()) {
+            Conf.loadVariable(this.variables, variable.getKey(), variable.getValue());
+        }
+
+        this.journalContext = this.getEvaluationContext();
+        this.historySave = Conf.HISTORY_SAVE.getBoolean().get();
+        this.variables.addListener(new VariableScope.Listener() {
+            @Override
+            public void bound(final String name, final Optional<Entity> value) {
+                // a variable read before any assignment is only declared, not journaled
+                if (value.isPresent() && historySave) {
+                    final EvaluationContext context = evaluator != null ? evaluator.getRunningContext().orElse(journalContext) : journalContext;
+                    journal.setVariable(name, value.get().toString(context));
+                }
+            }
+
+            @Override
+            public void removed(final String name) {
+                if (historySave) {
+                    journal.removeVariable(name);
+                }
+            }
+        });
+
+        // history and variables saved in the configuration by the previous versions, moved into the journal
+        if (empty && this.journal.getVariables().isEmpty()) {
+            Conf.loadVariables(this.variables);
+            history.addAll(Conf.getFormulas());
+            Conf.clearFormulas();
+            Conf.clearVariables();
+        }
+
+        return history;
+    }
+
+    public VariableScope getVariables() {
+        return this.variables;
+    }
+
+    public EvaluationContext getEvaluationContext() {
+        return Conf.getEvaluationContext(this.variables).withRandom(this.random);
+    }
+
     public boolean isControlDown() {
         return this.controlDown;
     }
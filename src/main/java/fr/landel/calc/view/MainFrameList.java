@@ -8,7 +8,10 @@ import java.awt.event.MouseEvent;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
 
 import javax.swing.BorderFactory;
 import javax.swing.JLabel;
@@ -20,11 +23,15 @@ import javax.swing.ListCellRenderer;
 import javax.swing.ListModel;
 import javax.swing.border.Border;
 
-import fr.landel.calc.config.Conf;
 import fr.landel.calc.config.Formula;
+import fr.landel.calc.config.HistoryIndex;
 import fr.landel.calc.config.I18n;
+import fr.landel.calc.config.Journal;
+import fr.landel.calc.config.Result;
+import fr.landel.calc.processor.MainProcessor;
 import fr.landel.calc.utils.ClipboardUtils;
 import fr.landel.calc.utils.StringUtils;
+import fr.landel.calc.view.HistoryListModel.RowType;
 
 public class MainFrameList {
 
@@ -43,14 +50,14 @@ public class MainFrameList {
     private static final Color BORDER_ERROR = new Color(255, 230, 230);
     private static final Color BORDER_SELECTED_ERROR = new Color(150, 0, 0);
 
-    private static Color aCellColor[][];
-    private static Border aBorder[][];
-    private static int aAlignment[];
-
     private final MainFrame parent;
     private final JList<String> screenList;
+    private final HistoryListModel model;
     private final List<Formula> formulas;
+    private final HistoryIndex index;
     private final List<CounterListener> counterListeners;
+    // the history is shown from this formula, previous ones are loaded by page on demand
+    private int first;
 
     private JPopupMenu popupList = new JPopupMenu();
     private JMenuItem itemCut, itemCopy, itemInsert, itemDelete, itemClear;
@@ -58,7 +65,17 @@ public class MainFrameList {
     public MainFrameList(final MainFrame parent, final JList<String> screenList, final List<Formula> formulas) {
         this.parent = parent;
         this.screenList = screenList;
+        this.model = new HistoryListModel();
+        this.screenList.setModel(this.model);
+
+        final HistoryCellRenderer renderer = new HistoryCellRenderer(this.model);
+        this.screenList.setCellRenderer(renderer);
+        // all the rows have the same size (the width is only enlarged by the new rows), so only the visible ones are rendered
+        this.screenList.setFixedCellHeight(
+                renderer.getListCellRendererComponent(screenList, StringUtils.SPACE, -1, false, false).getPreferredSize().height);
+        this.screenList.setFixedCellWidth(1);
         this.formulas = formulas;
+        this.index = new HistoryIndex(formulas);
         this.counterListeners = new ArrayList<>();
 
         this.initPopupMenu();
@@ -146,12 +163,104 @@ public class MainFrameList {
         this.counterListeners.add(listener);
     }
 
+    /**
+     * Shows the last page of the history
+     */
+    public void load() {
+        this.model.clear();
+        this.first = this.formulas.size();
+        this.show(Math.max(0, this.formulas.size() - Journal.PAGE_SIZE));
+        fireCounter();
+    }
+
+    /**
+     * Shows the previous page of the history, if any (the selection is kept)
+     *
+     * @return the number of rows added at the top of the list
+     */
+    public int showPrevious() {
+        if (this.first == 0) {
+            return 0;
+        }
+
+        final int size = getSize(screenList);
+
+        // the list shifts the selection itself
+        this.show(Math.max(0, this.first - Journal.PAGE_SIZE));
+
+        return getSize(screenList) - size;
+    }
+
+    /**
+     * Finds the most recent formula containing the query (in its text or its result), before the specified one
+     *
+     * @param query
+     *            the text to find
+     * @param before
+     *            the index of the formula to search before (exclusive), the history size to search from the last
+     * @return the index of the formula or -1
+     */
+    public int search(final String query, final int before) {
+        return this.index.search(query, before);
+    }
+
+    /**
+     * @return the number of formulas in the history
+     */
+    public int getFormulaCount() {
+        return this.formulas.size();
+    }
+
+    /**
+     * Selects the formula, the previous pages are shown if needed
+     *
+     * @param index
+     *            the index of the formula in the history
+     */
+    public void selectFormula(final int index) {
+        if (index > -1 && index < this.formulas.size()) {
+            if (index < this.first) {
+                this.show(index - index % Journal.PAGE_SIZE);
+            }
+            this.setSelectedIndex((index - this.first) * 2);
+        }
+    }
+
+    /**
+     * Shows the formulas from the specified one, before the ones already shown
+     *
+     * @param from
+     *            the index of the first formula to show
+     */
+    private void show(final int from) {
+        final int count = this.first - from;
+        final String[] rows = new String[count * 2];
+        final RowType[] types = new RowType[count * 2];
+
+        int row = 0;
+        for (Formula formula : this.formulas.subList(from, this.first)) {
+            rows[row] = StringUtils.SPACE + formula.getFormula() + StringUtils.SPACE;
+            types[row++] = RowType.FORMULA;
+
+            if (formula.getResult().isPresent()) {
+                final Result result = formula.getResult().get();
+                rows[row] = StringUtils.SPACE + result.getResult() + StringUtils.SPACE;
+                types[row++] = result.isSuccess() ? RowType.SUCCESS : RowType.ERROR;
+            }
+        }
+
+        this.first = from;
+        this.model.insertFirst(rows, types, row);
+        this.fitWidth(0, row);
+    }
+
     public void addFormula(final Formula formula) {
         this.addFormula(formula, false);
     }
 
     public void addFormula(final String formula, final boolean success, final String result) {
-        this.formulas.add(new Formula(formula, success, result));
+        final Formula entry = new Formula(formula, success, result);
+        this.store(entry);
         this.addFormula(formula);
         if (success) {
             this.addResultSuccess(result);
@@ -167,25 +276,14 @@ public class MainFrameList {
         this.screenList.ensureIndexIsVisible(index);
     }
 
+    /**
+     * @param index
+     *            the index of the row
+     * @return 0 for a formula, 1 for a successful result, 2 for an error and -1 if out of bounds
+     */
     public int getFormulaType(final int index) {
-        int formula;
-        if (index % 2 == 0) {
-            formula = index;
-        } else {
-            formula = index - 1;
-        }
-
-        if (formula == index) {
-            return 0;
-        }
-
-        final int subIndex = formula / 2;
-        if (subIndex > -1 && this.formulas.size() > subIndex) {
-            Formula f = this.formulas.get(subIndex);
-            return f.getResult().isPresent() && f.getResult().get().isSuccess() ? 1 : 2;
-        }
-
-        return -1;
+        final RowType type = this.model.getType(index);
+        return type != null ? type.ordinal() : -1;
     }
 
     public void addFormula(final Formula formula, final boolean store) {
@@ -198,93 +296,114 @@ public class MainFrameList {
             }
         });
         if (store) {
-            this.formulas.add(formula);
+            this.store(formula);
             showLastFormula();
         }
         fireCounter();
     }
 
+    /**
+     * Appends the formula to the history, the oldest formulas dropped by the history (over its maximum) are removed from the view
+     *
+     * @param formula
+     *            the formula
+     */
+    private void store(final Formula formula) {
+        final int size = this.formulas.size();
+        this.formulas.add(formula);
+        this.index.add(formula);
+
+        for (int dropped = size + 1 - this.formulas.size(); dropped > 0; --dropped) {
+            this.index.remove(0);
+            if (this.first > 0) {
+                --this.first;
+            } else {
+                // shown, its rows are the first ones
+                this.model.remove(0);
+                if (this.model.getType(0) != null && this.model.getType(0) != RowType.FORMULA) {
+                    this.model.remove(0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Shows the result of a formula recomputed after a variable change, in all the rows of this formula (the history keeps the result of the
+     * evaluation)
+     *
+     * @param formula
+     *            the recomputed formula, prepared (see {@link MainProcessor#normalize(String)})
+     */
+    public void updateResult(final Formula formula) {
+        formula.getResult().ifPresent(result -> {
+            final String text = StringUtils.SPACE + result.getResult() + StringUtils.SPACE;
+            final RowType type = result.isSuccess() ? RowType.SUCCESS : RowType.ERROR;
+            for (int i = 0; i < this.model.getSize() - 1; ++i) {
+                if (this.isFormula(i, formula.getFormula()) && this.model.getType(i + 1) != RowType.FORMULA) {
+                    this.model.set(i + 1, text, type);
+                    this.fitWidth(i + 1, i + 2);
+                }
+            }
+        });
+    }
+
+    private boolean isFormula(final int index, final String formula) {
+        return this.model.getType(index) == RowType.FORMULA && formula.equals(MainProcessor.normalize(this.model.getElementAt(index)));
+    }
+
     public void showLastFormula() {
         screenList.ensureIndexIsVisible(screenList.getModel().getSize() - 1);
     }
 
     private void addFormula(final String text) {
-        add(screenList, -1, text);
-        setColor(screenList, -1, BACKGROUND_FORMULA, Color.BLACK, BACKGROUND_SELECTED_FORMULA, Color.BLACK);
-        setBorderColor(screenList, -1, BORDER_FORMULA, BORDER_SELECTED_FORMULA);
-        setAlignment(screenList, -1, 2);
+        this.addRow(text, RowType.FORMULA);
     }
 
     private void addResultSuccess(final String text) {
-        add(screenList, -1, text);
-        setColor(screenList, -1, BACKGROUND_SUCCESS, Color.BLACK, BACKGROUND_SELECTED_SUCCESS, Color.BLACK);
-        setBorderColor(screenList, -1, BORDER_SUCCESS, BORDER_SELECTED_SUCCESS);
-        setAlignment(screenList, -1, 4);
+        this.addRow(text, RowType.SUCCESS);
     }
 
     private void addResultError(final String text) {
-        add(screenList, -1, text);
-        setColor(screenList, -1, BACKGROUND_ERROR, Color.BLACK, BACKGROUND_SELECTED_ERROR, Color.BLACK);
-        setBorderColor(screenList, -1, BORDER_ERROR, BORDER_SELECTED_ERROR);
-        setAlignment(screenList, -1, 4);
+        this.addRow(text, RowType.ERROR);
     }
 
-    private static void add(final JList<String> list, final int index, final String text) {
-        int j = 0;
-        final String content = StringUtils.SPACE + text + StringUtils.SPACE;
-        final ListModel<String> model = list.getModel();
-        final int len = model.getSize();
-
-        if (index >= -1 && index < len) {
-            String aList[] = new String[len + 1];
-            Color aCellColorTmp[][] = new Color[len + 1][4];
-            Border aBorderTmp[][] = new Border[len + 1][2];
-            int aAlignmentTmp[] = new int[len + 1];
-            for (int i = 0; i < len; i++) {
-                if (index == i) {
-                    aList[i] = content;
-                    aCellColorTmp[i][0] = Color.WHITE;
-                    aCellColorTmp[i][1] = Color.BLACK;
-                    aCellColorTmp[i][2] = new Color(184, 207, 229);
-                    aCellColorTmp[i][3] = Color.BLACK;
-                    aBorderTmp[i][0] = BorderFactory.createLineBorder(Color.WHITE);
-                    aBorderTmp[i][1] = BorderFactory.createLineBorder(new Color(99, 130, 191));
-                    aAlignmentTmp[i] = 2;
-                    j++;
-                }
-                aList[i + j] = model.getElementAt(i).toString();
-                aCellColorTmp[i + j][0] = aCellColor[i][0];
-                aCellColorTmp[i + j][1] = aCellColor[i][1];
-                aCellColorTmp[i + j][2] = aCellColor[i][2];
-                aCellColorTmp[i + j][3] = aCellColor[i][3];
-                aBorderTmp[i + j][0] = aBorder[i][0];
-                aBorderTmp[i + j][1] = aBorder[i][1];
-                aAlignmentTmp[i + j] = aAlignment[i];
-            }
+    private void addRow(final String text, final RowType type) {
+        this.model.add(StringUtils.SPACE + text + StringUtils.SPACE, type);
+        this.fitWidth(this.model.getSize() - 1, this.model.getSize());
+    }
 
-            if (index == -1) {
-                aList[len] = content;
-                aCellColorTmp[len][0] = Color.WHITE;
-                aCellColorTmp[len][1] = Color.BLACK;
-                aCellColorTmp[len][2] = new Color(184, 207, 229);
-                aCellColorTmp[len][3] = Color.BLACK;
-                aBorderTmp[len][0] = BorderFactory.createLineBorder(Color.WHITE);
-                aBorderTmp[len][1] = BorderFactory.createLineBorder(new Color(99, 130, 191));
-                aAlignmentTmp[len] = 2;
-            }
-            list.setListData(aList);
-            list.setCellRenderer(new MyCellRenderer<>(list, aCellColorTmp, aBorderTmp, aAlignmentTmp));
-            getRenderer(list);
+    /**
+     * Enlarges the cells to the widest of the specified rows
+     *
+     * @param from
+     *            the first row (inclusive)
+     * @param to
+     *            the last row (exclusive)
+     */
+    private void fitWidth(final int from, final int to) {
+        final ListCellRenderer<? super String> renderer = screenList.getCellRenderer();
+        int width = screenList.getFixedCellWidth();
+        for (int i = from; i < to; ++i) {
+            width = Math.max(width,
+                    renderer.getListCellRendererComponent(screenList, this.model.getElementAt(i), i, false, false).getPreferredSize().width);
+        }
+        if (width != screenList.getFixedCellWidth()) {
+            screenList.setFixedCellWidth(width);
         }
     }
 
     public void clear() {
-        screenList.setListData(new String[0]);
+        this.parent.unwatchFormulas();
+        this.model.clear();
+        screenList.setFixedCellWidth(1);
         this.formulas.clear();
+        this.index.clear();
+        this.first = 0;
         fireCounter();
     }
 
     public void removeSelected() {
+        final Set<String> removed = new HashSet<>();
         Arrays.stream(screenList.getSelectedIndices()).boxed().sorted(Collections.reverseOrder()).forEach(i -> {
             final int index = i.intValue();
             int formula;
@@ -296,48 +415,26 @@ public class MainFrameList {
                 formula = index - 1;
                 result = index;
             }
-            this.remove(result);
-            this.remove(formula);
+            if (this.model.getType(formula) == RowType.FORMULA) {
+                removed.add(MainProcessor.normalize(this.model.getElementAt(formula)));
+            }
+            this.model.remove(result);
+            this.model.remove(formula);
 
-            final int subIndex = formula / 2;
+            final int subIndex = this.first + formula / 2;
             if (this.formulas.size() > subIndex) {
                 this.formulas.remove(subIndex);
-                Conf.setFormula(subIndex, null);
-                Conf.saveVariables();
+                this.index.remove(subIndex);
             }
         });
-        fireCounter();
-    }
 
-    private void remove(final int index) {
-        int j = 0;
-        final ListModel<String> model = screenList.getModel();
-        final int len = model.getSize();
-        if (index >= 0 && index < len) {
-            String aList[] = new String[len - 1];
-            Color aCellColorTmp[][] = new Color[len - 1][4];
-            Border aBorderTmp[][] = new Border[len - 1][2];
-            int aAlignmentTmp[] = new int[len - 1];
-            for (int i = 0; i < len; i++)
-                if (index != i) {
-                    aList[i + j] = model.getElementAt(i).toString();
-                    aCellColorTmp[i + j][0] = aCellColor[i][0];
-                    aCellColorTmp[i + j][1] = aCellColor[i][1];
-                    aCellColorTmp[i + j][2] = aCellColor[i][2];
-                    aCellColorTmp[i + j][3] = aCellColor[i][3];
-                    aBorderTmp[i + j][0] = aBorder[i][0];
-                    aBorderTmp[i + j][1] = aBorder[i][1];
-                    aAlignmentTmp[i + j] = aAlignment[i];
-                } else {
-                    j--;
-                }
-
-            screenList.setListData(aList);
-            if (aList.length > 0) {
-                screenList.setCellRenderer(new MyCellRenderer<>(screenList, aCellColorTmp, aBorderTmp, aAlignmentTmp));
+        // the formulas are recomputed while shown
+        for (String formula : removed) {
+            if (IntStream.range(0, this.model.getSize()).noneMatch(i -> this.isFormula(i, formula))) {
+                this.parent.unwatchFormula(formula);
             }
-            getRenderer(screenList);
         }
+        fireCounter();
     }
 
     private void fireCounter() {
@@ -359,94 +456,44 @@ public class MainFrameList {
         return res;
     }
 
-    private static void setAlignment(final JList<String> list, final int index, final int alignment) {
-        int len = getSize(list);
-        int i = index != -1 ? index : len - 1;
-        if (i >= 0 && i < len) {
-            getRenderer(list);
-            aAlignment[i] = alignment;
-            list.setCellRenderer(new MyCellRenderer<>(list, aCellColor, aBorder, aAlignment));
-        }
-    }
-
-    private static void setBorderColor(final JList<String> list, final int index, final Color border, final Color borderSelected) {
-        int len = getSize(list);
-        int i = index != -1 ? index : len - 1;
-        if (i >= 0 && i < len) {
-            getRenderer(list);
-            aBorder[i][0] = BorderFactory.createLineBorder(border);
-            aBorder[i][1] = BorderFactory.createLineBorder(borderSelected);
-            list.setCellRenderer(new MyCellRenderer<>(list, aCellColor, aBorder, aAlignment));
-        }
-    }
-
-    private static void setColor(final JList<String> list, final int index, final Color background, final Color front, final Color backgroundSelected,
-            final Color frontSelected) {
-        int len = getSize(list);
-        int i = index != -1 ? index : len - 1;
-        if (i >= 0 && i < len) {
-            getRenderer(list);
-            aCellColor[i][0] = background;
-            aCellColor[i][1] = front;
-            aCellColor[i][2] = backgroundSelected;
-            aCellColor[i][3] = frontSelected;
-            list.setCellRenderer(new MyCellRenderer<>(list, aCellColor, aBorder, aAlignment));
-        }
-    }
-
-    private static void getRenderer(final JList<String> list) {
-        ListModel<String> model = list.getModel();
-        int len = model.getSize();
-        aCellColor = new Color[len][4];
-        aBorder = new Border[len][2];
-        aAlignment = new int[len];
-        ListCellRenderer<? super String> render = list.getCellRenderer();
-
-        for (int i = 0; i < len; i++) {
-            JLabel labelList = (JLabel) render.getListCellRendererComponent(list, model.getElementAt(i), i, false, true);
-            aCellColor[i][0] = labelList.getBackground();
-            aCellColor[i][1] = labelList.getForeground();
-            aBorder[i][0] = labelList.getBorder();
-            aAlignment[i] = labelList.getHorizontalAlignment();
-
-            labelList = (JLabel) render.getListCellRendererComponent(list, model.getElementAt(i), i, true, true);
-            aCellColor[i][2] = labelList.getBackground();
-            aCellColor[i][3] = labelList.getForeground();
-            aBorder[i][1] = labelList.getBorder();
-            aAlignment[i] = labelList.getHorizontalAlignment();
-        }
-    }
-
-    static class MyCellRenderer<T> extends JLabel implements ListCellRenderer<T> {
+    /**
+     * Renderer shared by all the rows, the colors and the alignment depend on the row type
+     */
+    static class HistoryCellRenderer extends JLabel implements ListCellRenderer<String> {
 
         /**
          * serialVersionUID
          */
         private static final long serialVersionUID = 2708791466950985625L;
 
-        private Color aCellColor[][];
-        private Border aBorder[][];
-        private int aAlignment[];
-
-        public MyCellRenderer(final JList<T> list, final Color aCellColor[][], final Border aBorder[][], final int aAlignment[]) {
-            this.aAlignment = new int[aAlignment.length];
-            this.aAlignment = aAlignment;
-            this.aCellColor = new Color[aCellColor.length][aCellColor[0].length];
-            this.aCellColor = aCellColor;
-            this.aBorder = new Border[aBorder.length][aBorder[0].length];
-            this.aBorder = aBorder;
+        // by type: background, selected background
+        private static final Color[][] BACKGROUNDS = {{BACKGROUND_FORMULA, BACKGROUND_SELECTED_FORMULA},
+                {BACKGROUND_SUCCESS, BACKGROUND_SELECTED_SUCCESS}, {BACKGROUND_ERROR, BACKGROUND_SELECTED_ERROR}};
+        // by type: border, selected border
+        private static final Border[][] BORDERS = {
+                {BorderFactory.createLineBorder(BORDER_FORMULA), BorderFactory.createLineBorder(BORDER_SELECTED_FORMULA)},
+                {BorderFactory.createLineBorder(BORDER_SUCCESS), BorderFactory.createLineBorder(BORDER_SELECTED_SUCCESS)},
+                {BorderFactory.createLineBorder(BORDER_ERROR), BorderFactory.createLineBorder(BORDER_SELECTED_ERROR)}};
+
+        private final HistoryListModel model;
+
+        public HistoryCellRenderer(final HistoryListModel model) {
+            this.model = model;
             setOpaque(true);
+            setForeground(Color.BLACK);
         }
 
-        public Component getListCellRendererComponent(final JList<? extends T> list, final T value, final int index, final boolean isSelected,
-                boolean cellHasFocus) {
-            setText(value.toString());
-            if (index < aCellColor.length) {
-                setBackground(isSelected ? aCellColor[index][2] : aCellColor[index][0]);
-                setForeground(isSelected ? aCellColor[index][3] : aCellColor[index][1]);
-                setBorder(isSelected ? aBorder[index][1] : aBorder[index][0]);
-                setHorizontalAlignment(aAlignment[index]);
-            }
+        @Override
+        public Component getListCellRendererComponent(final JList<? extends String> list, final String value, final int index,
+                final boolean isSelected, boolean cellHasFocus) {
+            final RowType type = this.model.getType(index);
+            final int t = type != null ? type.ordinal() : 0;
+            final int selected = isSelected ? 1 : 0;
+
+            setText(value);
+            setBackground(BACKGROUNDS[t][selected]);
+            setBorder(BORDERS[t][selected]);
+            setHorizontalAlignment(type == null || type == RowType.FORMULA ? MainFrame.LEFT : MainFrame.RIGHT);
             return this;
         }
     }
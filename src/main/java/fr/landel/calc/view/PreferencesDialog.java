@@ -45,7 +45,7 @@ public class PreferencesDialog extends JDialog implements Dialog {
     private static final long serialVersionUID = 355131616351059808L;
 
     private static final Integer HISTORY_MIN = 1;
-    private static final Integer HISTORY_MAX = 1_000;
+    private static final Integer HISTORY_MAX = 100_000;
     private static final Integer HISTORY_STEP = 1;
 
     private MainFrame parent;
@@ -2,6 +2,9 @@ module fr.landel.calc {
     // swing UI
     requires transitive java.desktop;
 
+    // metrics MBean
+    requires java.management;
+
     // embedded images
     opens images;
 
@@ -10,4 +13,8 @@ module fr.landel.calc {
 
     // project packages
     exports fr.landel.calc;
+
+    // introspected by the platform MBean server
+    exports fr.landel.calc.processor to java.management;
+    exports fr.landel.calc.utils to java.management;
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+package fr.landel.calc.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test {@link HistoryIndex}
+ *
+ * @since Feb 21, 2019
+ * @author Gilles
+ *
+ */
+public class HistoryIndexTest {
+
+    private static final String[] PARTS = {"sqrt(", "cos(", "2", "15", "+", "*", "km", "h", "$rate", ")", "3.14", "Pi", "E", "/"};
+    static final int LARGE_SIZE = 1_000_000;
+    static final String[] QUERIES = {"km", "sqrt", "SQRT(2", "15+", "$rate*", "3.14", ")/", "pi", "cos(cos", "h)", "x", "e", "zzz"};
+
+    /**
+     * Test method for {@link HistoryIndex#search(String, int)}, has to match a linear scan.
+     */
+    @Test
+    void testSearch() {
+        final Random random = new Random(42);
+        final List<Formula> history = new ArrayList<>();
+        for (int i = 0; i < 500; ++i) {
+            history.add(random(random));
+        }
+
+        final HistoryIndex index = new HistoryIndex(history);
+        this.check(history, index);
+
+        for (int i = 0; i < 1_000; ++i) {
+            if (random.nextInt(4) == 0 && !history.isEmpty()) {
+                final int removed = random.nextInt(history.size());
+                history.remove(removed);
+                index.remove(removed);
+            } else {
+                final Formula formula = random(random);
+                history.add(formula);
+                index.add(formula);
+            }
+        }
+        this.check(history, index);
+
+        history.clear();
+        index.clear();
+        final Formula formula = new Formula("sqrt(15)", true, "3.873");
+        history.add(formula);
+        index.add(formula);
+        assertEquals(0, index.search("3.87", history.size()));
+        assertEquals(-1, index.search("3.87", 0));
+    }
+
+    /**
+     * Searches in a large history (indexed on the first search), has to match a linear scan. The timings are measured by
+     * HistoryIndexBenchmark.
+     */
+    @Test
+    void testLargeHistory() {
+        final List<Formula> history = largeHistory();
+        final HistoryIndex index = new HistoryIndex(history);
+
+        assertEquals(LARGE_SIZE, index.search("0.1234", history.size()));
+        for (String query : QUERIES) {
+            assertEquals(find(history, query.toLowerCase(Locale.ROOT), history.size()), index.search(query, history.size()), query);
+        }
+    }
+
+    /**
+     * @return a history of 1M random formulas, followed by one containing "0.1234" (at {@link #LARGE_SIZE}) and 1k random ones
+     */
+    static List<Formula> largeHistory() {
+        final Random random = new Random(7);
+        final List<Formula> history = new ArrayList<>();
+        for (int i = 0; i < LARGE_SIZE; ++i) {
+            history.add(random(random));
+        }
+        history.add(new Formula("acos(0.123456)", true, "1.4472"));
+        for (int i = 0; i < 1_000; ++i) {
+            history.add(random(random));
+        }
+        return history;
+    }
+
+    private void check(final List<Formula> history, final HistoryIndex index) {
+        for (String query : QUERIES) {
+            final String text = query.toLowerCase(Locale.ROOT);
+            int before = history.size();
+            do {
+                final int found = index.search(query, before);
+                assertEquals(find(history, text, before), found, query + " before " + before);
+                before = found;
+            } while (before > -1);
+        }
+    }
+
+    /**
+     * @return the index of the most recent formula containing the text before the specified index (linear scan) or -1
+     */
+    private static int find(final List<Formula> history, final String text, final int before) {
+        for (int i = before - 1; i > -1; --i) {
+            final Formula formula = history.get(i);
+            if (formula.getFormula().toLowerCase(Locale.ROOT).contains(text)
+                    || formula.getResult().get().getResult().toLowerCase(Locale.ROOT).contains(text)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Formula random(final Random random) {
+        final StringBuilder formula = new StringBuilder();
+        for (int i = 1 + random.nextInt(6); i > 0; --i) {
+            formula.append(PARTS[random.nextInt(PARTS.length)]);
+        }
+        return new Formula(formula.toString(), random.nextBoolean(), String.valueOf(random.nextInt(100_000)));
+    }
+}
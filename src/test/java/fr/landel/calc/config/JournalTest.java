@@ -0,0 +1,309 @@
+package fr.landel.calc.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test {@link Journal}
+ *
+ * @since Feb 20, 2019
+ * @author Gilles
+ *
+ */
+public class JournalTest {
+
+    private Path directory;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        this.directory = Files.createTempDirectory("journal");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        for (Path path : Files.walk(this.directory).sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * Test method for {@link Journal#Journal(Path, int)}, changes are replayed on opening.
+     */
+    @Test
+    void testReplay() throws IOException {
+        final Path file = this.directory.resolve("journal.bin");
+
+        try (Journal journal = new Journal(file, 4)) {
+            journal.addFormula(new Formula("1+1", true, "2"));
+            journal.addFormula(new Formula("1/0", false, "error"));
+            journal.addFormula(new Formula("2"));
+            journal.addFormula(new Formula("$a=5é", true, "5"));
+            journal.removeFormula(1);
+            journal.setVariable("$a", "5");
+            journal.setVariable("$b", null);
+            journal.setVariable("$c", "1");
+            journal.removeVariable("$c");
+        }
+
+        try (Journal journal = new Journal(file, 2)) {
+            assertEquals("[2, $a=5é, success: true, result: 5]", toString(journal.getFormulas()));
+            assertEquals(2, journal.getVariables().size());
+            assertEquals("5", journal.getVariables().get("$a"));
+            assertTrue(journal.getVariables().containsKey("$b"));
+            assertNull(journal.getVariables().get("$b"));
+
+            // indexes are based on the trimmed list
+            journal.removeFormula(0);
+        }
+
+        try (Journal journal = new Journal(file, 10)) {
+            assertEquals("[$a=5é, success: true, result: 5]", toString(journal.getFormulas()));
+
+            journal.clearFormulas();
+        }
+
+        try (Journal journal = new Journal(file, 10)) {
+            assertTrue(journal.getFormulas().isEmpty());
+            assertEquals(2, journal.getVariables().size());
+        }
+    }
+
+    /**
+     * Test method for {@link Journal#Journal(Path, int)}, a partial or corrupted record and the following ones are dropped.
+     */
+    @Test
+    void testRecovery() throws IOException {
+        final Path file = this.directory.resolve("journal.bin");
+
+        try (Journal journal = new Journal(file, 10)) {
+            journal.addFormula(new Formula("1", true, "1"));
+            journal.addFormula(new Formula("2", true, "2"));
+        }
+        final long size = Files.size(file);
+
+        // interrupted write
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+        try (Journal journal = new Journal(file, 10)) {
+            assertEquals("[1, success: true, result: 1]", toString(journal.getFormulas()));
+
+            journal.addFormula(new Formula("3", true, "3"));
+        }
+
+        // corrupted byte in the last record, written after the index (crash)
+        Files.delete(this.directory.resolve("journal.bin.idx"));
+        final byte[] bytes = Files.readAllBytes(file);
+        ++bytes[bytes.length - 2];
+        Files.write(file, bytes);
+
+        try (Journal journal = new Journal(file, 10)) {
+            assertEquals("[1, success: true, result: 1]", toString(journal.getFormulas()));
+        }
+
+        // not a journal
+        Files.write(file, "history.max = 100".getBytes());
+        try (Journal journal = new Journal(file, 10)) {
+            assertTrue(journal.getFormulas().isEmpty());
+            assertTrue(Files.exists(this.directory.resolve("journal.bin.invalid")));
+        }
+    }
+
+    /**
+     * Test method for {@link Journal#compact()}.
+     */
+    @Test
+    void testCompact() throws IOException {
+        final Path file = this.directory.resolve("journal.bin");
+
+        try (Journal journal = new Journal(file, 100)) {
+            // below the threshold of the background compaction
+            for (int i = 0; i < 300; ++i) {
+                journal.setVariable("$a", String.valueOf(i));
+                journal.addFormula(new Formula(String.valueOf(i), true, String.valueOf(i)));
+                journal.removeFormula(0);
+            }
+            journal.addFormula(new Formula("x"));
+            final long size = Files.size(file);
+
+            journal.compact();
+
+            assertTrue(Files.size(file) < size / 50);
+            assertFalse(Files.exists(this.directory.resolve("journal.bin.tmp")));
+
+            journal.setVariable("$b", "2");
+        }
+
+        try (Journal journal = new Journal(file, 100)) {
+            assertEquals("[x]", toString(journal.getFormulas()));
+            assertEquals("{$a=299, $b=2}", journal.getVariables().toString());
+        }
+    }
+
+    /**
+     * Test method for {@link Journal#close()}, the index saved on closing is loaded, then records appended after are replayed.
+     */
+    @Test
+    void testIndex() throws IOException {
+        final Path file = this.directory.resolve("journal.bin");
+        final Path index = this.directory.resolve("journal.bin.idx");
+
+        try (Journal journal = new Journal(file, 10)) {
+            journal.addFormula(new Formula("1", true, "1"));
+            journal.addFormula(new Formula("2", true, "2"));
+            journal.setVariable("$a", "1");
+        }
+        assertTrue(Files.exists(index));
+        final byte[] saved = Files.readAllBytes(index);
+
+        try (Journal journal = new Journal(file, 10)) {
+            assertEquals("[1, success: true, result: 1, 2, success: true, result: 2]", toString(journal.getFormulas()));
+
+            journal.addFormula(new Formula("3", false, "error"));
+            journal.removeFormula(0);
+            journal.setVariable("$b", "2");
+        }
+
+        // crash before the index is saved
+        Files.write(index, saved);
+        try (Journal journal = new Journal(file, 10)) {
+            assertEquals("[2, success: true, result: 2, 3, success: false, result: error]", toString(journal.getFormulas()));
+            assertEquals("{$a=1, $b=2}", journal.getVariables().toString());
+
+            journal.compact();
+            assertFalse(Files.exists(index));
+        }
+
+        // index of another journal
+        Files.write(index, saved);
+        try (Journal journal = new Journal(file, 10)) {
+            assertEquals("[2, success: true, result: 2, 3, success: false, result: error]", toString(journal.getFormulas()));
+        }
+    }
+
+    /**
+     * Test method for {@link Journal#getFormulas()}, formulas are read by page.
+     */
+    @Test
+    void testPages() throws IOException {
+        final Path file = this.directory.resolve("journal.bin");
+
+        try (Journal journal = new Journal(file, 2_000)) {
+            final List<Formula> formulas = journal.getFormulas();
+            for (int i = 0; i < 1_000; ++i) {
+                formulas.add(new Formula(String.valueOf(i), true, "r" + i));
+            }
+            assertEquals("0", formulas.get(0).getFormula());
+            assertEquals("999", formulas.get(999).getFormula());
+
+            formulas.remove(300);
+            assertEquals("301", formulas.get(300).getFormula());
+            assertEquals("999", formulas.get(998).getFormula());
+        }
+
+        try (Journal journal = new Journal(file, 2_000)) {
+            final List<Formula> formulas = journal.getFormulas();
+            assertEquals(999, formulas.size());
+            assertEquals("299", formulas.get(299).getFormula());
+            assertEquals("301", formulas.get(300).getFormula());
+            assertEquals("r999", formulas.get(998).getResult().get().getResult());
+        }
+    }
+
+    /**
+     * Test method for {@link Journal#addFormula(Formula)}, the oldest formulas over the maximum are dropped while adding.
+     */
+    @Test
+    void testTrim() throws IOException {
+        final Path file = this.directory.resolve("journal.bin");
+
+        try (Journal journal = new Journal(file, 300)) {
+            final List<Formula> formulas = journal.getFormulas();
+            for (int i = 0; i < 1_000; ++i) {
+                formulas.add(new Formula(String.valueOf(i), true, "r" + i));
+                assertEquals(Math.min(i + 1, 300), formulas.size());
+            }
+            assertEquals("700", formulas.get(0).getFormula());
+            assertEquals("999", formulas.get(299).getFormula());
+
+            // the saved ones first
+            journal.setSaveFormulas(false);
+            formulas.add(new Formula("1000", true, "r1000"));
+            assertEquals(300, formulas.size());
+            assertEquals("701", formulas.get(0).getFormula());
+            assertEquals("1000", formulas.get(299).getFormula());
+        }
+
+        try (Journal journal = new Journal(file, 300)) {
+            assertEquals(299, journal.size());
+            assertEquals("701", journal.getFormula(0).getFormula());
+            assertEquals("r999", journal.getFormula(298).getResult().get().getResult());
+        }
+
+        try (Journal journal = new Journal(file, 2)) {
+            journal.setSaveFormulas(false);
+            journal.addFormula(new Formula("a"));
+            journal.addFormula(new Formula("b"));
+            journal.addFormula(new Formula("c"));
+            assertEquals("[b, c]", toString(journal.getFormulas()));
+        }
+    }
+
+    /**
+     * Test method for {@link Journal#setSaveFormulas(boolean)}, formulas added while the history is not saved are only kept in memory.
+     */
+    @Test
+    void testUnsaved() throws IOException {
+        final Path file = this.directory.resolve("journal.bin");
+
+        try (Journal journal = new Journal(file, 10)) {
+            journal.addFormula(new Formula("1", true, "1"));
+            journal.setSaveFormulas(false);
+            journal.addFormula(new Formula("2", true, "2"));
+            journal.addFormula(new Formula("3", true, "3"));
+            journal.addFormula(new Formula("4", true, "4"));
+            assertFalse(journal.isSaveFormulas());
+
+            final List<Formula> formulas = journal.getFormulas();
+            assertEquals("[1, 2, 3, 4]", formulas.stream().map(Formula::getFormula).collect(Collectors.joining(", ", "[", "]")));
+            formulas.remove(2);
+            assertEquals("4", formulas.get(2).getFormula());
+        }
+
+        // nothing written (as after a crash)
+        try (Journal journal = new Journal(file, 10)) {
+            assertEquals("[1, success: true, result: 1]", toString(journal.getFormulas()));
+
+            journal.setSaveFormulas(false);
+            journal.addFormula(new Formula("2", true, "2"));
+            // the formulas kept meanwhile are written first
+            journal.setSaveFormulas(true);
+            journal.addFormula(new Formula("3", true, "3"));
+        }
+
+        try (Journal journal = new Journal(file, 10)) {
+            assertEquals(3, journal.size());
+            assertEquals("2", journal.getFormula(1).getFormula());
+            assertEquals("3", journal.getFormula(2).getFormula());
+        }
+    }
+
+    private static String toString(final List<Formula> formulas) {
+        return formulas.stream().map(Formula::toString).collect(Collectors.joining(", ", "[", "]"));
+    }
+}
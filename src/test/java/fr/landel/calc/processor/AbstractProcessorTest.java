@@ -5,6 +5,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.util.Optional;
+import java.util.function.BiConsumer;
 
 import org.junit.jupiter.api.BeforeEach;
 
@@ -21,6 +22,10 @@ import fr.landel.calc.utils.StringUtils;
 public abstract class AbstractProcessorTest {
 
     private MainProcessor processor;
+    private EvaluationContext context;
+
+    // notified of each checked expression, the benchmarks replay them
+    private BiConsumer<String, EvaluationContext> listener;
 
     protected AbstractProcessorTest() {
         processor = new MainProcessor();
@@ -28,18 +33,40 @@ public abstract class AbstractProcessorTest {
 
     @BeforeEach
     public void init() {
-        MainProcessor.setRadian(true);
-        MainProcessor.setExact(true);
-        MainProcessor.setScientific(true);
-        MainProcessor.setPrecision(3);
-        MainProcessor.setUnityAbbrev(true);
-        MainProcessor.setUnitiesSpace(true);
-        MainProcessor.setValuesSpace(true);
+        this.context = new EvaluationContext(true, true, true, 3, true, true, true, new VariableScope());
+    }
+
+    void setListener(final BiConsumer<String, EvaluationContext> listener) {
+        this.listener = listener;
+    }
+
+    protected EvaluationContext getContext() {
+        return this.context;
+    }
+
+    protected void setRadian(final boolean radian) {
+        this.context = this.context.withRadian(radian);
+    }
+
+    protected void setPrecision(final int precision) {
+        this.context = this.context.withPrecision(precision);
+    }
+
+    protected void setUnityAbbrev(final boolean unityAbbrev) {
+        this.context = this.context.withUnityAbbrev(unityAbbrev);
+    }
+
+    protected void setUnitiesSpace(final boolean unitiesSpace) {
+        this.context = this.context.withUnitiesSpace(unitiesSpace);
+    }
+
+    protected void setValuesSpace(final boolean valuesSpace) {
+        this.context = this.context.withValuesSpace(valuesSpace);
     }
 
     protected void checkException(final String expression, final String message) {
         try {
-            processor.process(expression);
+            processor.process(expression, this.context);
             fail(StringUtils.inject("Expression '{}' has to thrown error", expression));
 
         } catch (ProcessorException e) {
@@ -48,8 +75,11 @@ public abstract class AbstractProcessorTest {
     }
 
     protected void check(final String expression, final String expected) {
+        if (this.listener != null) {
+            this.listener.accept(expression, this.context);
+        }
         try {
-            final Formula formula = processor.process(expression);
+            final Formula formula = processor.process(expression, this.context);
             final Optional<Result> result = formula.getResult();
             assertTrue(result.isPresent());
             assertTrue(result.get().isSuccess());
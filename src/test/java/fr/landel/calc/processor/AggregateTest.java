@@ -0,0 +1,86 @@
+package fr.landel.calc.processor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * test {@link Aggregate} and the aggregate functions
+ *
+ * @since Feb 27, 2019
+ * @author Gilles
+ *
+ */
+public class AggregateTest {
+
+    /**
+     * Test method for {@link Aggregate#getSum()} and {@link Aggregate#getVariance()}, has to match the exact computation.
+     */
+    @Test
+    void testAccuracy() {
+        final Random random = new Random(27);
+        final Aggregate aggregate = new Aggregate();
+        BigDecimal sum = BigDecimal.ZERO;
+        final double[] values = new double[100_000];
+
+        // large offset, small spread: lost by a naive sum and by the sum of squares
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = 1e9 + random.nextDouble() * (random.nextBoolean() ? 1e-3 : 1e3);
+            aggregate.add(values[i]);
+            sum = sum.add(new BigDecimal(values[i]));
+        }
+
+        assertEquals(sum.doubleValue(), aggregate.getSum());
+
+        final BigDecimal mean = sum.divide(BigDecimal.valueOf(values.length), MathContext.DECIMAL128);
+        BigDecimal squares = BigDecimal.ZERO;
+        for (double value : values) {
+            final BigDecimal delta = new BigDecimal(value).subtract(mean);
+            squares = squares.add(delta.multiply(delta));
+        }
+        final double variance = squares.divide(BigDecimal.valueOf(values.length), MathContext.DECIMAL128).doubleValue();
+
+        assertEquals(mean.doubleValue(), aggregate.getAverage(), Math.ulp(mean.doubleValue()));
+        assertEquals(variance, aggregate.getVariance(), variance * 1e-9);
+        assertEquals(1e9, aggregate.getMin(), 1);
+        assertEquals(1e9 + 1e3, aggregate.getMax(), 1);
+    }
+
+    /**
+     * Test method for the aggregate {@link Functions}.
+     *
+     * @throws ProcessorException
+     *             on processing error
+     */
+    @Test
+    void testFunctions() throws ProcessorException {
+        final MainProcessor processor = new MainProcessor();
+        final EvaluationContext context = new EvaluationContext(new VariableScope()).withPrecision(2);
+
+        assertEquals("2.00", processor.processToEntity("avg(1;2;3)", context).toString(context));
+        assertEquals("20.00", processor.processToEntity("sum(1+2;3*4;(5))", context).toString(context));
+        assertEquals("-2.00", processor.processToEntity("min(5;-2;8)", context).toString(context));
+        assertEquals("8.00", processor.processToEntity("max(5;-2;8)", context).toString(context));
+        assertEquals("2.00", processor.processToEntity("stddev(2;4;4;4;5;5;7;9)", context).toString(context));
+        assertEquals("4.00", processor.processToEntity("variance(2;4;4;4;5;5;7;9)", context).toString(context));
+        assertEquals("6.00", processor.processToEntity("2*sum(1;2)", context).toString(context));
+
+        processor.process("$a=(3)");
+        processor.process("$b=(5)");
+        assertEquals("4.00", processor.processToEntity("avg($a;$b)", processor.getContext().withPrecision(2)).toString(context));
+
+        // unities of the same type
+        assertEquals("3 h 45 i 12 s", processor.processToEntity("sum(3h;45i;12s)", context).toString(context));
+        assertEquals("3 h", processor.processToEntity("avg(3h;1h)+1h", context).toString(context));
+        assertEquals("2.00 m", processor.processToEntity("max(2m;3ft)", context).toString(context));
+
+        assertThrows(ProcessorException.class, () -> processor.processToEntity("sum()", context));
+        assertThrows(ProcessorException.class, () -> processor.processToEntity("sum(1;2m)", context));
+        assertThrows(ProcessorException.class, () -> processor.processToEntity("variance(1m;2m)", context));
+    }
+}
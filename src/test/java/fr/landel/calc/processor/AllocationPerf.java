@@ -0,0 +1,103 @@
+package fr.landel.calc.processor;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Bytes allocated per {@link MainProcessor#process(String, EvaluationContext)} call, by category of formulas, against the budgets of
+ * {@code allocation-budgets.properties}
+ * <p>
+ * The counter is read from {@code com.sun.management.ThreadMXBean} by reflection: the module only reads {@code java.management}, not
+ * {@code jdk.management}, and the test is skipped on a JVM without this extension.
+ * </p>
+ *
+ * @since Mar 2, 2019
+ * @author Gilles
+ *
+ */
+public class AllocationPerf {
+
+    private static final String BUDGETS = "/allocation-budgets.properties";
+
+    private static final int WARM_UP = 2_000;
+    private static final int RUNS = 500;
+
+    private static final Map<String, String[]> CATEGORIES = new LinkedHashMap<>();
+    static {
+        // at least two formulas by category, so the results cache (one entry) is always missed
+        CATEGORIES.put("numbers", new String[] {"1+2*3-4/5", "(12.5+7.25)*3-2^3"});
+        CATEGORIES.put("unities", new String[] {"5m + 2ft - 2in", "(5m + 2ft - 2in) >> ftin"});
+        CATEGORIES.put("dates", new String[] {"(10h+19h30-(19h30-12h35+11h56-8h12))>>hi", "3h45i12s+2h"});
+        CATEGORIES.put("functions", new String[] {"cos(pi()/3)+sqr(16)", "round(2.675;2)+abs(-3)"});
+        CATEGORIES.put("variables", new String[] {"$a+$b*2", "($a-$b)/2"});
+    }
+
+    /**
+     * Test method for {@link MainProcessor#process(String, EvaluationContext)}, the bytes allocated by the calling thread have to stay in
+     * the budget of each category.
+     *
+     * @throws ProcessorException
+     *             on processing error
+     * @throws IOException
+     *             if the budgets cannot be read
+     * @throws ReflectiveOperationException
+     *             if the allocation counter cannot be read
+     */
+    @Test
+    void testBudgets() throws ProcessorException, IOException, ReflectiveOperationException {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        final Class<?> extension = Class.forName("com.sun.management.ThreadMXBean");
+        assumeTrue(extension.isInstance(threads));
+        assumeTrue((Boolean) extension.getMethod("isThreadAllocatedMemorySupported").invoke(threads)
+                && (Boolean) extension.getMethod("isThreadAllocatedMemoryEnabled").invoke(threads));
+        final Method allocated = extension.getMethod("getThreadAllocatedBytes", long.class);
+
+        final Properties budgets = new Properties();
+        try (InputStream input = AllocationPerf.class.getResourceAsStream(BUDGETS)) {
+            assertNotNull(input, BUDGETS);
+            budgets.load(input);
+        }
+
+        final long thread = Thread.currentThread().getId();
+        final StringBuilder exceeded = new StringBuilder();
+        final StringBuilder measured = new StringBuilder();
+
+        for (Map.Entry<String, String[]> category : CATEGORIES.entrySet()) {
+            final String[] formulas = category.getValue();
+            final MainProcessor processor = new MainProcessor(new EvaluationContext(new VariableScope()), MainProcessor.CACHE_SIZE, 1);
+            processor.process("$a=(12)");
+            processor.process("$b=(5)");
+            final EvaluationContext context = processor.getContext();
+
+            for (int i = 0; i < WARM_UP; ++i) {
+                processor.process(formulas[i % formulas.length], context);
+            }
+
+            final long start = (Long) allocated.invoke(threads, thread);
+            for (int i = 0; i < RUNS; ++i) {
+                processor.process(formulas[i % formulas.length], context);
+            }
+            final long perCall = ((Long) allocated.invoke(threads, thread) - start) / RUNS;
+
+            final long budget = Long.parseLong(budgets.getProperty(category.getKey()));
+            measured.append(String.format("%s: %,d / %,d; ", category.getKey(), perCall, budget));
+            if (perCall > budget) {
+                exceeded.append(category.getKey()).append(": ").append(perCall).append(" > ").append(budget).append("; ");
+            }
+        }
+
+        assertTrue(exceeded.length() == 0, "allocation budgets exceeded: " + exceeded + "(bytes/call / budget: " + measured + ")");
+    }
+}
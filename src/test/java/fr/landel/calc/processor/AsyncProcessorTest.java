@@ -0,0 +1,127 @@
+package fr.landel.calc.processor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import fr.landel.calc.config.Formula;
+import fr.landel.calc.config.I18n;
+
+/**
+ * test {@link AsyncProcessor}
+ *
+ * @since Feb 23, 2019
+ * @author Gilles
+ *
+ */
+public class AsyncProcessorTest {
+
+    private static final String LONG_FORMULA = "1" + "+1".repeat(200_000);
+
+    /**
+     * Test method for {@link AsyncProcessor#submit}, results are posted in submission order, failures included.
+     *
+     * @throws InterruptedException
+     *             on test interruption
+     */
+    @Test
+    void testOrder() throws InterruptedException {
+        final EvaluationContext context = new EvaluationContext(new VariableScope());
+        final List<Formula> results = new CopyOnWriteArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(4);
+
+        try (AsyncProcessor processor = new AsyncProcessor(new MainProcessor(context), Runnable::run)) {
+            processor.submit(LONG_FORMULA, context, 0, f -> this.accept(f, results, latch));
+            processor.submit("$x=(2*3)", context, 0, f -> this.accept(f, results, latch));
+            processor.submit("2+", context, 0, f -> this.accept(f, results, latch));
+            processor.submit("$x+1", context, 0, f -> this.accept(f, results, latch));
+
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            assertFalse(processor.isBusy());
+        }
+
+        assertEquals(4, results.size());
+        assertEquals("200001.000", results.get(0).getResult().get().getResult());
+        assertEquals("6.000", results.get(1).getResult().get().getResult());
+        assertFalse(results.get(2).getResult().get().isSuccess());
+        assertEquals("7.000", results.get(3).getResult().get().getResult());
+    }
+
+    /**
+     * Test method for {@link AsyncProcessor#cancelAll()} and the time budget.
+     *
+     * @throws InterruptedException
+     *             on test interruption
+     */
+    @Test
+    void testCancel() throws InterruptedException {
+        final EvaluationContext context = new EvaluationContext(new VariableScope());
+        final List<Formula> results = new CopyOnWriteArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(3);
+
+        try (AsyncProcessor processor = new AsyncProcessor(new MainProcessor(context), Runnable::run)) {
+            // the budget expires while parsing, the first check fails
+            processor.submit(LONG_FORMULA, context, 1, f -> this.accept(f, results, latch));
+            processor.submit(LONG_FORMULA + "+2", context, 0, f -> this.accept(f, results, latch));
+            processor.submit("1+2", context, 0, f -> this.accept(f, results, latch));
+            processor.cancelAll();
+
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(3, results.size());
+        for (Formula formula : results) {
+            assertFalse(formula.getResult().get().isSuccess());
+        }
+        assertEquals(I18n.ERROR_EVALUATION_CANCELLED.getI18n(), results.get(2).getResult().get().getResult());
+    }
+
+    /**
+     * Test method for {@link AsyncProcessor#getRunningContext()}, the listeners of the bindings get the submitted settings.
+     *
+     * @throws InterruptedException
+     *             on test interruption
+     */
+    @Test
+    void testRunningContext() throws InterruptedException {
+        final VariableScope scope = new VariableScope();
+        final EvaluationContext context = new EvaluationContext(scope);
+        final List<String> bindings = new CopyOnWriteArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(2);
+
+        try (AsyncProcessor processor = new AsyncProcessor(new MainProcessor(context), Runnable::run)) {
+            scope.addListener(new VariableScope.Listener() {
+                @Override
+                public void bound(final String name, final Optional<Entity> value) {
+                    value.ifPresent(v -> bindings.add(name + "=" + v.toString(processor.getRunningContext().get())));
+                }
+
+                @Override
+                public void removed(final String name) {
+                }
+            });
+
+            processor.submit("$x=(2/3)", context.withPrecision(1), 0, f -> this.accept(f, new CopyOnWriteArrayList<>(), latch));
+            processor.submit("$y=(2/3)", context.withPrecision(5), 0, f -> this.accept(f, new CopyOnWriteArrayList<>(), latch));
+
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            assertFalse(processor.getRunningContext().isPresent());
+        }
+
+        assertEquals(Arrays.asList("$x=0.7", "$y=0.66667"), bindings);
+    }
+
+    private void accept(final Formula formula, final List<Formula> results, final CountDownLatch latch) {
+        results.add(formula);
+        latch.countDown();
+    }
+}
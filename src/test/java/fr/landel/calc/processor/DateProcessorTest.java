@@ -25,23 +25,23 @@ public class DateProcessorTest extends AbstractProcessorTest {
     @Test
     void testProcess() throws ProcessorException {
 
-        MainProcessor.setPrecision(0);
+        setPrecision(0);
 
-        MainProcessor.setUnityAbbrev(true);
-        MainProcessor.setUnitiesSpace(false);
-        MainProcessor.setValuesSpace(true);
+        setUnityAbbrev(true);
+        setUnitiesSpace(false);
+        setValuesSpace(true);
 
         check("($m-($m=19h30-12h35+11h56-8h12-10h))>>hi", "18h 51i");
         check("(10h+19h30-(19h30-12h35+11h56-8h12))>>hi", "18h 51i");
         check("$m>>hi", "19h 30i");
 
-        MainProcessor.setValuesSpace(false);
+        setValuesSpace(false);
 
         check("$m", "19h30i");
 
-        MainProcessor.setUnitiesSpace(true);
-        MainProcessor.setUnityAbbrev(false);
-        MainProcessor.setValuesSpace(true);
+        setUnitiesSpace(true);
+        setUnityAbbrev(false);
+        setValuesSpace(true);
 
         check("(8h12+10h-11h56+12h35)>>hi", "18 hour 51 minute");
 
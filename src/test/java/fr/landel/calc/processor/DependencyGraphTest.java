@@ -0,0 +1,226 @@
+package fr.landel.calc.processor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import fr.landel.calc.config.Formula;
+import fr.landel.calc.config.I18n;
+
+/**
+ * test {@link DependencyGraph}
+ *
+ * @since Feb 12, 2019
+ * @author Gilles
+ *
+ */
+public class DependencyGraphTest {
+
+    /**
+     * Test method for {@link DependencyGraph#propagate(java.util.Collection, EvaluationContext)}.
+     *
+     * @throws ProcessorException
+     *             on processing error
+     */
+    @Test
+    void testPropagate() throws ProcessorException {
+        final VariableScope scope = new VariableScope();
+        final MainProcessor processor = new MainProcessor(new EvaluationContext(scope));
+        final DependencyGraph graph = processor.getDependencies();
+
+        final List<String> recomputed = new ArrayList<>();
+        graph.addListener(f -> recomputed.add(f.getFormula()));
+
+        processor.process("$tax=2");
+        processor.process("$a=($tax*10)");
+        processor.process("$b=($a+1)");
+        processor.process("$c=($tax+$b)");
+        processor.process("$other=5");
+        processor.process("$d=($other*2)");
+        graph.watch(processor.compile("$c*2"));
+
+        assertEquals(Arrays.asList("$a=($tax*10)", "$c=($tax+$b)"), graph.getDependents("$tax"));
+
+        recomputed.clear();
+        processor.process("$tax=3");
+
+        // topological order, only the affected subgraph
+        assertEquals(Arrays.asList("$a=($tax*10)", "$b=($a+1)", "$c=($tax+$b)", "$c*2"), recomputed);
+        assertEquals("30.000", scope.get("$a").get().toString());
+        assertEquals("31.000", scope.get("$b").get().toString());
+        assertEquals("34.000", scope.get("$c").get().toString());
+        assertEquals("10.000", scope.get("$d").get().toString());
+
+        // watched formula
+        final List<Formula> results = graph.propagate(Arrays.asList("$b"), processor.getContext());
+        assertEquals("$c=($tax+$b)=34.000, $c*2=68.000",
+                results.stream().map(f -> f.getFormula() + "=" + f.getResult().get().getResult()).collect(Collectors.joining(", ")));
+
+        // redefinition, $b no longer depends on $a
+        processor.process("$b=($other+1)");
+        recomputed.clear();
+        processor.process("$tax=1");
+        assertEquals(Arrays.asList("$a=($tax*10)", "$c=($tax+$b)", "$c*2"), recomputed);
+        assertEquals("7.000", scope.get("$c").get().toString());
+
+        // self reference is not a cycle
+        processor.process("$other=($other+1)");
+        assertEquals("7.000", scope.get("$b").get().toString());
+
+        graph.unwatch(processor.compile("$c*2"));
+        assertEquals(Arrays.asList("$c=($tax+$b)"), graph.getDependents("$b"));
+    }
+
+    /**
+     * Test method for {@link MainProcessor#process(String, EvaluationContext, boolean)} and {@link MainProcessor#unwatch(String)}.
+     *
+     * @throws ProcessorException
+     *             on processing error
+     */
+    @Test
+    void testWatch() throws ProcessorException {
+        final MainProcessor processor = new MainProcessor();
+        final DependencyGraph graph = processor.getDependencies();
+
+        final List<String> recomputed = new ArrayList<>();
+        graph.addListener(f -> recomputed.add(f.getFormula() + "=" + f.getResult().get().getResult()));
+
+        processor.process("$rate=2", processor.getContext(), true);
+        processor.process("$total=($rate*10)", processor.getContext(), true);
+        processor.process("3 * $rate", processor.getContext(), true);
+        processor.process("3 * 2", processor.getContext(), true);
+
+        // only the formula reading variables without assigning any is watched
+        assertEquals(Arrays.asList("$total=($rate*10)", "3*$rate"), graph.getDependents("$rate"));
+
+        processor.process("$rate=4");
+        assertEquals(Arrays.asList("$total=($rate*10)=40.000", "3*$rate=12.000"), recomputed);
+
+        // watched, even if the evaluation fails
+        assertThrows(ProcessorException.class, () -> processor.process("$missing+1", processor.getContext(), true));
+        recomputed.clear();
+        processor.process("$missing=1");
+        assertEquals(Arrays.asList("$missing+1=2.000"), recomputed);
+
+        processor.unwatch("3*$rate");
+        assertEquals(Arrays.asList("$total=($rate*10)"), graph.getDependents("$rate"));
+
+        // the definitions are kept
+        graph.unwatchAll();
+        assertTrue(graph.getDependents("$missing").isEmpty());
+        recomputed.clear();
+        processor.process("$rate=5");
+        assertEquals(Arrays.asList("$total=($rate*10)=50.000"), recomputed);
+    }
+
+    /**
+     * Test method for {@link DependencyGraph#define(CompiledFormula)}.
+     *
+     * @throws ProcessorException
+     *             on processing error
+     */
+    @Test
+    void testCycle() throws ProcessorException {
+        final MainProcessor processor = new MainProcessor();
+
+        processor.process("$x=1");
+        processor.process("$y=($x+1)");
+        processor.process("$z=($y*2)");
+
+        try {
+            processor.process("$x=($z-1)");
+            fail("Cycle has to be detected");
+        } catch (ProcessorException e) {
+            assertEquals(I18n.ERROR_VARIABLE_CYCLE.getI18n("$x -> $z -> $y -> $x"), e.getMessage());
+        }
+
+        // previous definition kept
+        assertTrue(processor.getDependencies().getDependents("$x").contains("$y=($x+1)"));
+        assertEquals("4.000", processor.process("$z").getResult().get().getResult());
+    }
+
+    /**
+     * Test method for {@link DependencyGraph#propagate(java.util.Collection, EvaluationContext)} with a large layer.
+     *
+     * @throws ProcessorException
+     *             on processing error
+     */
+    @Test
+    void testParallelLayer() throws ProcessorException {
+        final VariableScope scope = new VariableScope();
+        final MainProcessor processor = new MainProcessor(new EvaluationContext(scope));
+
+        processor.process("$start=1");
+        for (int i = 0; i < 100; ++i) {
+            processor.process("$v" + name(i) + "=($start+" + i + ")");
+            processor.process("$w" + name(i) + "=($v" + name(i) + "*2)");
+        }
+
+        processor.process("$start=10");
+        for (int i = 0; i < 100; ++i) {
+            assertEquals((10 + i) * 2, scope.get("$w" + name(i)).get().getValue(), 0);
+        }
+    }
+
+    /**
+     * Test method for {@link DependencyGraph#propagate(java.util.Collection, EvaluationContext)}, the random functions of a parallel
+     * layer draw from their own streams, so the same seed gives the same results.
+     *
+     * @throws ProcessorException
+     *             on processing error
+     */
+    @Test
+    void testParallelRandom() throws ProcessorException {
+        assertEquals(this.propagateRandom(), this.propagateRandom());
+    }
+
+    private List<Double> propagateRandom() throws ProcessorException {
+        final VariableScope scope = new VariableScope();
+        final MainProcessor processor = new MainProcessor(new EvaluationContext(scope).withRandom(new RandomStream(3)));
+
+        processor.process("$start=1");
+        for (int i = 0; i < 100; ++i) {
+            processor.process("$r" + name(i) + "=($start*rand())");
+        }
+        processor.process("$start=2");
+
+        final List<Double> values = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            values.add(scope.get("$r" + name(i)).get().getValue());
+        }
+        return values;
+    }
+
+    /**
+     * Test method for {@link DependencyGraph#define(CompiledFormula)}, a failed assignment doesn't replace the definition.
+     *
+     * @throws ProcessorException
+     *             on processing error
+     */
+    @Test
+    void testFailedDefinition() throws ProcessorException {
+        final VariableScope scope = new VariableScope();
+        final MainProcessor processor = new MainProcessor(new EvaluationContext(scope));
+        final DependencyGraph graph = processor.getDependencies();
+
+        processor.process("$a=1");
+        processor.process("$b=($a*2)");
+        assertThrows(ProcessorException.class, () -> processor.process("$b=(fact(-1)+$a)"));
+
+        assertEquals(Arrays.asList("$b=($a*2)"), graph.getDependents("$a"));
+        processor.process("$a=5");
+        assertEquals("10.000", scope.get("$b").get().toString());
+    }
+
+    private static String name(final int index) {
+        return new String(new char[] {(char) ('a' + index / 26), (char) ('a' + index % 26)});
+    }
+}
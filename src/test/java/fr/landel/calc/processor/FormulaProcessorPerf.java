@@ -0,0 +1,105 @@
+package fr.landel.calc.processor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Scaling of {@link FormulaProcessor} with the length of flat formulas, measured in wall-clock time (excluded from the default build, run
+ * with {@code mvn -P benchmarks test -Dtest=FormulaProcessorPerf})
+ *
+ * @since Feb 13, 2019
+ * @author Gilles
+ *
+ */
+@Tag("benchmark")
+public class FormulaProcessorPerf {
+
+    // doubling sizes, small formulas are dominated by fixed costs
+    private static final int[] TERMS = {2_000, 4_000, 8_000, 16_000, 32_000, 64_000, 128_000};
+    private static final int WARM_UP = 10;
+    private static final int RUNS = 10;
+    // the time per term of a quadratic processing doubles with the size
+    private static final double MAX_RATIO = 1.5;
+
+    /**
+     * Test method for {@link MainProcessor#processToEntity(String)}, the time per term has to stay flat from 2k up to 128k terms.
+     *
+     * @throws ProcessorException
+     *             on processing error
+     */
+    @Test
+    void testLinearScaling() throws ProcessorException {
+        final double[] perTerm = new double[TERMS.length];
+
+        final String[] formulas = new String[TERMS.length];
+        final double[] expected = new double[TERMS.length];
+        for (int t = 0; t < TERMS.length; ++t) {
+            final double[] result = new double[1];
+            formulas[t] = formula(TERMS[t], result);
+            expected[t] = result[0];
+        }
+
+        // warm up on every size, so each measure runs the compiled code
+        for (int r = 0; r < WARM_UP; ++r) {
+            for (int t = 0; t < TERMS.length; ++t) {
+                new MainProcessor().processToEntity(formulas[t]);
+            }
+        }
+
+        for (int t = 0; t < TERMS.length; ++t) {
+
+            long best = Long.MAX_VALUE;
+            for (int r = 0; r < RUNS; ++r) {
+                // new processor, so the compiled formula is not cached
+                final MainProcessor processor = new MainProcessor();
+
+                // the collections copy the live formula, their cost depends on the heap sizing, not on the processing
+                final long collections = collectionTime();
+                final long start = System.nanoTime();
+                final Entity entity = processor.processToEntity(formulas[t]);
+                best = Math.min(best, System.nanoTime() - start - (collectionTime() - collections));
+
+                assertEquals(expected[t], entity.getValue(), 0);
+            }
+            perTerm[t] = (double) best / TERMS[t];
+        }
+
+        for (int t = 1; t < TERMS.length; ++t) {
+            final double ratio = perTerm[t] / perTerm[t - 1];
+            assertTrue(ratio < MAX_RATIO, String.format("time per term grows x%.2f from %,d to %,d terms (ns/term: %s)", ratio, TERMS[t - 1],
+                    TERMS[t], Arrays.toString(perTerm)));
+        }
+    }
+
+    private static long collectionTime() {
+        final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private static String formula(final int terms, final double[] expected) {
+        final StringBuilder formula = new StringBuilder();
+        for (int i = 0; i < terms; i += 2) {
+            if (i > 0) {
+                formula.append(i % 4 == 0 ? '+' : '-');
+            }
+            final int left = i % 7 + 1;
+            final int right = i % 5 + 1;
+            formula.append(left).append('*').append(right);
+            expected[0] += (i % 4 == 0 ? 1 : -1) * left * right;
+        }
+        return formula.toString();
+    }
+}
@@ -7,6 +7,9 @@ import java.util.Set;
 
 import fr.landel.calc.utils.StringUtils;
 
+/**
+ * Previous trie of functions, replaced by {@link SymbolTable} (kept as baseline for {@link SymbolTablePerf})
+ */
 public class FunctionsTree {
     private FunctionsTree[] trees;
     private Functions function;
@@ -20,10 +20,10 @@ public class LengthProcessorTest extends AbstractProcessorTest {
     @Test
     void testProcess() throws ProcessorException {
 
-        MainProcessor.setPrecision(3);
-        MainProcessor.setUnityAbbrev(true);
-        MainProcessor.setUnitiesSpace(false);
-        MainProcessor.setValuesSpace(false);
+        setPrecision(3);
+        setUnityAbbrev(true);
+        setUnitiesSpace(false);
+        setValuesSpace(false);
 
         check("5m + 2ft - 2in", "5.559m");
         check("(5m + 2ft - 2in) >> ftin", "18.237ft");
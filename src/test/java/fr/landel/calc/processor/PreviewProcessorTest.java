@@ -0,0 +1,81 @@
+package fr.landel.calc.processor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * test {@link PreviewProcessor}
+ *
+ * @since Feb 24, 2019
+ * @author Gilles
+ *
+ */
+public class PreviewProcessorTest {
+
+    private static final String[] TYPED = {"(1+2)*sqr(16)", "(1+2)*sqr(16)+", "(1+2)*sqr(16)+(4", "(1+2)*sqr(16)+(4/8)",
+            "(1+2)*sqr(16)+(4/8)*($v", "(1+2)*sqr(16)+(4/8)*($v-1)", "(1+2)*sqr(16)+(4/8)*($v-1)+cos(pi()*(2/3))", "(5m + 2ft - 2in) >> ftin",
+            "(5m + (2ft - 2in)) >> ftin", "(10h+19h30-(19h30-12h35+11h56-8h12))>>hi"};
+
+    /**
+     * Test method for {@link PreviewProcessor#preview(String, EvaluationContext)}, has to match a full evaluation while typing.
+     *
+     * @throws ProcessorException
+     *             on processing error
+     */
+    @Test
+    void testPreview() throws ProcessorException {
+        final VariableScope scope = new VariableScope();
+        final MainProcessor processor = new MainProcessor(new EvaluationContext(scope));
+        final PreviewProcessor preview = new PreviewProcessor();
+
+        processor.process("$v=5");
+        for (EvaluationContext context : new EvaluationContext[] {processor.getContext(), processor.getContext().withExact(true)}) {
+            for (String input : TYPED) {
+                this.check(processor, preview, input, context);
+            }
+        }
+        assertTrue(preview.getGroupsCache().getHits() > 0);
+
+        // the results of the groups reading a variable are not reused once re-bound
+        processor.process("$v=9");
+        this.check(processor, preview, "(1+2)*sqr(16)+(4/8)*($v-1)", processor.getContext());
+        this.check(processor, preview, "(1+2)*sqr(16)+(4/8)*($v-1)", processor.getContext().withPrecision(1));
+    }
+
+    /**
+     * Test method for {@link PreviewProcessor#preview(String, EvaluationContext)}, without side effect.
+     *
+     * @throws ProcessorException
+     *             on processing error
+     */
+    @Test
+    void testNoSideEffect() throws ProcessorException {
+        final VariableScope scope = new VariableScope();
+        final EvaluationContext context = new EvaluationContext(scope);
+        final PreviewProcessor preview = new PreviewProcessor();
+
+        assertEquals("6.000", preview.preview("$w=(2*3)", context).toString(context));
+        assertFalse(scope.isDeclared("$w"));
+    }
+
+    private void check(final MainProcessor processor, final PreviewProcessor preview, final String input, final EvaluationContext context) {
+        String expected;
+        try {
+            expected = processor.processToEntity(input, context).toString(context);
+        } catch (ProcessorException e) {
+            expected = e.getMessage();
+        }
+
+        String result;
+        try {
+            result = preview.preview(input, context).toString(context);
+        } catch (ProcessorException e) {
+            result = e.getMessage();
+        }
+
+        assertEquals(expected, result, input);
+    }
+}
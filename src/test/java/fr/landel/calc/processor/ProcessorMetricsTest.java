@@ -0,0 +1,73 @@
+package fr.landel.calc.processor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.Attribute;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.junit.jupiter.api.Test;
+
+import fr.landel.calc.processor.ProcessorMetrics.Stage;
+
+/**
+ * Test {@link ProcessorMetrics}
+ *
+ * @since Mar 2, 2019
+ * @author Gilles
+ *
+ */
+public class ProcessorMetricsTest {
+
+    /**
+     * Test method for the stages recorded by {@link MainProcessor#process(String, EvaluationContext)}, read through JMX.
+     *
+     * @throws ProcessorException
+     *             on processing error
+     * @throws JMException
+     *             on JMX error
+     */
+    @Test
+    void testStages() throws ProcessorException, JMException {
+        final ProcessorMetrics metrics = ProcessorMetrics.getInstance();
+        metrics.reset();
+
+        final MainProcessor processor = new MainProcessor();
+        processor.process("sqr(16)*2m+3ft>>ftin");
+        processor.process("sqr(25)*2m+3in>>ftin");
+
+        assertTrue(metrics.getOperators().get(Operators.MULTIPLY.name()).getCount() >= 2);
+        assertTrue(metrics.getOperators().get(Operators.CONVERT.name()).getCount() >= 1);
+        assertTrue(metrics.getFunctions().get(Functions.SQR.name()).getCount() >= 2);
+        assertTrue(metrics.getEntities().containsKey(UnityType.LENGTH.name()));
+        assertTrue(metrics.getFormats().containsKey(UnityType.LENGTH.name()));
+        assertTrue(metrics.getParse().getCount() >= 2);
+
+        ProcessorMetrics.register();
+        ProcessorMetrics.register();
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName(ProcessorMetrics.OBJECT_NAME);
+        final CompositeData process = (CompositeData) server.getAttribute(name, "Process");
+        assertEquals(metrics.getProcess().getCount(), process.get("count"));
+        assertTrue((Long) process.get("p999") >= (Long) process.get("p50"));
+
+        final TabularData operators = (TabularData) server.getAttribute(name, "Operators");
+        assertEquals(metrics.getSnapshots(Stage.OPERATOR).size(), operators.size());
+
+        server.setAttribute(name, new Attribute("Enabled", false));
+        try {
+            final long count = metrics.getProcess().getCount();
+            processor.process("1+2");
+            assertEquals(count, metrics.getProcess().getCount());
+        } finally {
+            metrics.setEnabled(true);
+        }
+    }
+}
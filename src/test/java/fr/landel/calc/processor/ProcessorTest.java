@@ -1,5 +1,18 @@
 package fr.landel.calc.processor;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.jupiter.api.Test;
 
 import fr.landel.calc.config.I18n;
@@ -24,29 +37,29 @@ public class ProcessorTest extends AbstractProcessorTest {
 
         checkException("test(12)", I18n.ERROR_FUNCTION_UNKNOWN.getI18n("test"));
 
-        MainProcessor.setPrecision(0);
+        setPrecision(0);
         check("12", "12");
 
         check("abs(12)", "12");
         check("abs(-12)", "12");
         check("abs(-12.645555)", "13");
 
-        MainProcessor.setPrecision(3);
+        setPrecision(3);
         check("abs(12)", "12.000");
         check("abs(-12)", "12.000");
         check("abs(-12.645555)", "12.646");
 
-        MainProcessor.setPrecision(4);
+        setPrecision(4);
         check("abs(12)", "12.0000");
         check("abs(-12)", "12.0000");
         check("abs(-12.645555)", "12.6456");
 
-        MainProcessor.setPrecision(15);
+        setPrecision(15);
         check("abs(12)", "12.000000000000000");
         check("abs(-12)", "12.000000000000000");
         check("abs(-12.645555)", "12.645555000000000");
 
-        MainProcessor.setPrecision(3);
+        setPrecision(3);
         check("2007y3M-2008y2M", "-11.079 M");
         check("100Y7M*2", "201 Y 2 M"); // XXX bug > 293 ans (long)
         check("3*(3+2)", "15.000");
@@ -62,4 +75,184 @@ public class ProcessorTest extends AbstractProcessorTest {
         check("2017y12M >>y", "2017 y");
         check("2017y12M >>yd", "2017 y 335 d");
     }
+
+    /**
+     * Test method for {@link MainProcessor#compile(java.lang.String)}.
+     * 
+     * @throws ProcessorException
+     *             on processing error
+     */
+    @Test
+    void testCompile() throws ProcessorException {
+        final CompiledFormula formula = new MainProcessor().compile("(($x+1h)*2)>>i");
+
+        final VariableScope variables1 = new VariableScope();
+        final VariableScope variables2 = new VariableScope();
+        new MainProcessor(new EvaluationContext(variables1)).process("$x=30i");
+        new MainProcessor(new EvaluationContext(variables2)).process("$x=2h");
+
+        assertEquals("180 i", formula.evaluate(new EvaluationContext(variables1)).toString());
+        assertEquals("360 i", formula.evaluate(new EvaluationContext(variables2)).toString());
+        assertEquals("180 i", formula.evaluate(new EvaluationContext(variables1)).toString());
+
+        checkException("(1)(2)", I18n.ERROR_FORMULA_OPERATOR_MISSING.getI18n("(1)(2)"));
+        checkException("()", I18n.ERROR_FORMULA_PARENTHESIS.getI18n());
+        checkException("(1+2", I18n.ERROR_FORMULA_PARENTHESIS.getI18n());
+    }
+
+    /**
+     * Test method for {@link MainProcessor#getFormulasCache()} and {@link MainProcessor#getResultsCache()}.
+     * 
+     * @throws ProcessorException
+     *             on processing error
+     */
+    @Test
+    void testCache() throws ProcessorException {
+        final MainProcessor processor = new MainProcessor(new EvaluationContext(new VariableScope()), 2, 2);
+
+        assertEquals("3.000", processor.process("1 + 2").getResult().get().getResult());
+        assertEquals("3.000", processor.process("1+2").getResult().get().getResult());
+        assertEquals(1, processor.getFormulasCache().getHits());
+        assertEquals(1, processor.getResultsCache().getHits());
+
+        final EvaluationContext context = processor.getContext().withPrecision(1);
+        assertEquals("3.0", processor.process("1+2", context).getResult().get().getResult());
+        assertEquals(1, processor.getResultsCache().getHits());
+
+        processor.process("$v=2", context);
+        assertEquals("6.0", processor.process("$v*3", context).getResult().get().getResult());
+        assertEquals("6.0", processor.process("$v*3", context).getResult().get().getResult());
+        assertEquals(2, processor.getResultsCache().getHits());
+
+        processor.process("$v=4", context);
+        assertEquals("12.0", processor.process("$v*3", context).getResult().get().getResult());
+        assertEquals(2, processor.getResultsCache().getHits());
+
+        assertEquals(2, processor.getFormulasCache().size());
+    }
+
+    /**
+     * Test method for {@link CompiledFormula#evaluate(EvaluationContext)} with concurrent contexts.
+     * 
+     * @throws Exception
+     *             on processing error
+     */
+    @Test
+    void testConcurrentContexts() throws Exception {
+        final CompiledFormula formula = new MainProcessor().compile("cos(0)*2/3");
+        final EvaluationContext context = new EvaluationContext(new VariableScope());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 400; ++i) {
+                final EvaluationContext c = context.withPrecision(i % 4);
+                futures.add(executor.submit(() -> formula.evaluate(c).toString(c)));
+            }
+            final String[] expected = {"1", "0.7", "0.67", "0.667"};
+            for (int i = 0; i < futures.size(); ++i) {
+                assertEquals(expected[i % 4], futures.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Test method for {@link MainProcessor#process(java.lang.String)} in exact mode.
+     * 
+     * @throws ProcessorException
+     *             on processing error
+     */
+    @Test
+    void testExact() throws ProcessorException {
+        final MainProcessor processor = new MainProcessor();
+        final EvaluationContext context = new EvaluationContext(new VariableScope()).withPrecision(2);
+        final EvaluationContext exact = context.withExact(true);
+
+        // 1.005 is 1.00499999999999989... in double
+        assertEquals("1.00", processor.processToEntity("1.005*1", context).toString(context));
+        assertEquals("1.01", processor.processToEntity("1.005*1", exact).toString(exact));
+        assertEquals("1.02", processor.processToEntity("1.015+0", exact).toString(exact));
+        assertEquals("-2.67", processor.processToEntity("-2.675", exact).toString(exact));
+
+        // only the ambiguous sub-level is escalated
+        assertEquals("5.03", processor.processToEntity("(2+3)*(1.005*1)", exact).toString(exact));
+        assertNull(processor.processToEntity("(2+3)*(1.5*2)", exact).getExact());
+        assertNull(processor.processToEntity("(1/3)*3", exact).getExact());
+        assertNotNull(processor.processToEntity("abs(1.005)*1", exact).getExact());
+
+        final EvaluationContext precise = exact.withPrecision(17);
+        assertEquals("0.30000000000000004", processor.processToEntity("0.1+0.2", context.withPrecision(17)).toString(precise));
+        assertEquals("0.30000000000000000", processor.processToEntity("0.1+0.2", precise).toString(precise));
+
+        // not computable exactly, kept in double
+        assertEquals("3.50 m", processor.processToEntity("2.5m+1m", exact).toString(exact));
+        assertEquals("1.41", processor.processToEntity("2^0.5", exact).toString(exact));
+    }
+
+    /**
+     * Test method for {@link MainProcessor#process(java.lang.String)} in exact mode, the escalation doesn't evaluate the sub-levels again.
+     * 
+     * @throws ProcessorException
+     *             on processing error
+     */
+    @Test
+    void testExactSideEffects() throws ProcessorException {
+        final VariableScope scope = new VariableScope();
+        final List<String> bindings = new ArrayList<>();
+        scope.addListener(new VariableScope.Listener() {
+            @Override
+            public void bound(final String name, final Optional<Entity> value) {
+                value.ifPresent(v -> bindings.add(name));
+            }
+
+            @Override
+            public void removed(final String name) {
+            }
+        });
+
+        final MainProcessor processor = new MainProcessor();
+        final EvaluationContext exact = new EvaluationContext(scope).withPrecision(2).withExact(true);
+
+        // the parent level is ambiguous, as the assignment
+        assertEquals("1.01", processor.processToEntity("($x=1.005*1)*1", exact).toString(exact));
+        assertEquals(Arrays.asList("$x"), bindings);
+
+        final EvaluationContext precise = exact.withPrecision(17).withRandom(new RandomStream(5));
+        final RandomStream replay = new RandomStream(5);
+        final Entity drawn = processor.processToEntity("(rand()+1)*3", precise);
+        assertNotNull(drawn.getExact());
+        assertEquals((replay.nextDouble() + 1) * 3, drawn.getExact().doubleValue(), 1e-15);
+        assertEquals(replay.nextDouble(), processor.processToEntity("rand()", precise).getValue());
+    }
+
+    /**
+     * Test method for {@link MainProcessor#process(java.lang.String)} with factorials.
+     * 
+     * @throws ProcessorException
+     *             on processing error
+     */
+    @Test
+    void testFactorial() throws ProcessorException {
+        final MainProcessor processor = new MainProcessor();
+        final EvaluationContext context = new EvaluationContext(new VariableScope()).withPrecision(2);
+        final EvaluationContext exact = context.withExact(true);
+
+        assertEquals("120.00", processor.processToEntity("fact(5)", context).toString(context));
+        assertEquals("0.89", processor.processToEntity("fact(0.5)", context).toString(context));
+        assertEquals("51090942171709440000.00", processor.processToEntity("fact(21)", exact).toString(exact));
+        assertEquals("25852016738884976640000.00", processor.processToEntity("fact(23)", exact).toString(exact));
+
+        // combinations, the factorials overflow the doubles
+        assertEquals("19900.00", processor.processToEntity("fact(200)/(fact(2)*fact(198))", exact).toString(exact));
+
+        // exact in double, or not needed at this precision: not escalated
+        assertEquals("51090942171709440000.00", processor.processToEntity("fact(21)", context).toString(context));
+        assertNull(processor.processToEntity("1/fact(30)", exact).getExact());
+
+        assertThrows(ProcessorException.class, () -> processor.processToEntity("fact(-1)", context));
+        assertThrows(ProcessorException.class, () -> processor.processToEntity("fact(-2)", exact));
+        assertEquals("-3.54", processor.processToEntity("fact(-1.5)", context).toString(context));
+    }
 }
@@ -0,0 +1,126 @@
+package fr.landel.calc.processor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * test {@link RandomStream} and the random functions
+ *
+ * @since Feb 28, 2019
+ * @author Gilles
+ *
+ */
+public class RandomStreamTest {
+
+    private static final int WORKERS = 4;
+    private static final int DRAWS = 10_000;
+
+    /**
+     * Test method for the random {@link Functions}, a seeded call is reproducible and doesn't alter the stream of the context.
+     *
+     * @throws ProcessorException
+     *             on processing error
+     */
+    @Test
+    void testFunctions() throws ProcessorException {
+        final MainProcessor processor = new MainProcessor();
+        final EvaluationContext context = new EvaluationContext(new VariableScope()).withPrecision(10).withRandom(new RandomStream(1));
+        final RandomStream replay = new RandomStream(1);
+
+        final double seeded = processor.processToEntity("rand(42)", context).getValue();
+        assertEquals(new RandomStream(42).nextDouble(), seeded);
+        assertEquals(replay.nextDouble(), processor.processToEntity("rand()", context).getValue());
+        assertEquals(seeded, processor.processToEntity("rand(42)", context).getValue());
+        assertEquals(replay.nextDouble(), processor.processToEntity("rand()", context).getValue());
+
+        for (int i = 0; i < 1_000; ++i) {
+            final double value = processor.processToEntity("randint(-2;3)", context).getValue();
+            assertTrue(value >= -2 && value <= 3 && value == Math.rint(value));
+        }
+
+        double sum = 0;
+        for (int i = 0; i < DRAWS; ++i) {
+            sum += processor.processToEntity("randn()", context).getValue();
+        }
+        assertEquals(0, sum / DRAWS, 0.05);
+
+        assertThrows(ProcessorException.class, () -> processor.processToEntity("randint(3;2)", context));
+        assertThrows(ProcessorException.class, () -> processor.processToEntity("randint(1.5;2)", context));
+        assertThrows(ProcessorException.class, () -> processor.processToEntity("rand(1;2)", context));
+    }
+
+    /**
+     * Test method for {@link RandomStream#nextGaussian()}, standard normal and reproducible.
+     */
+    @Test
+    void testGaussian() {
+        final RandomStream stream = new RandomStream(7);
+        final RandomStream replay = new RandomStream(7);
+        final Aggregate aggregate = new Aggregate();
+        double value;
+        for (int i = 0; i < DRAWS; ++i) {
+            value = stream.nextGaussian();
+            assertEquals(value, replay.nextGaussian());
+            aggregate.add(value);
+        }
+        assertEquals(0, aggregate.getAverage(), 0.05);
+        assertEquals(1, aggregate.getVariance(), 0.05);
+    }
+
+    /**
+     * Test method for {@link EvaluationContext#withSplitRandom()}, the workers draw the same numbers for the same seed, in parallel or
+     * not.
+     *
+     * @throws Exception
+     *             on evaluation failure
+     */
+    @Test
+    void testSplit() throws Exception {
+        final double[] sequential = new double[WORKERS];
+        final EvaluationContext context = new EvaluationContext().withRandom(new RandomStream(42));
+        for (int i = 0; i < WORKERS; ++i) {
+            sequential[i] = this.simulate(context.withSplitRandom());
+        }
+
+        final double[] parallel = new double[WORKERS];
+        final EvaluationContext parent = new EvaluationContext().withRandom(new RandomStream(42));
+        final ExecutorService executor = Executors.newFixedThreadPool(WORKERS);
+        try {
+            @SuppressWarnings("unchecked")
+            final Future<Double>[] futures = new Future[WORKERS];
+            for (int i = 0; i < WORKERS; ++i) {
+                final EvaluationContext worker = parent.withSplitRandom();
+                futures[i] = executor.submit(() -> this.simulate(worker));
+            }
+            for (int i = 0; i < WORKERS; ++i) {
+                parallel[i] = futures[i].get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertArrayEquals(sequential, parallel);
+        assertNotEquals(sequential[0], sequential[1]);
+    }
+
+    // Monte-Carlo estimation of pi, each worker has its own processor
+    private double simulate(final EvaluationContext context) throws ProcessorException {
+        final MainProcessor processor = new MainProcessor(context);
+        int inside = 0;
+        for (int i = 0; i < DRAWS; ++i) {
+            if (processor.processToEntity("rand()^2+rand()^2", context).getValue() <= 1) {
+                ++inside;
+            }
+        }
+        return 4d * inside / DRAWS;
+    }
+}
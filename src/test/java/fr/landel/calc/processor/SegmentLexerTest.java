@@ -0,0 +1,73 @@
+package fr.landel.calc.processor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * test {@link SegmentLexer}
+ *
+ * @since Feb 14, 2019
+ * @author Gilles
+ *
+ */
+public class SegmentLexerTest {
+
+    /**
+     * Test method for {@link SegmentLexer#find()}.
+     */
+    @Test
+    void testFind() {
+        final char[] chars = "x12.5e-3km.5h2E2-3ea".toCharArray();
+        final SegmentLexer lexer = new SegmentLexer(chars, 0, chars.length);
+
+        assertTrue(lexer.find());
+        assertEquals(12.5e-3, lexer.getValue());
+        assertEquals("km", new String(chars, lexer.getUnityStart(), lexer.getUnityEnd() - lexer.getUnityStart()));
+        assertEquals(9, lexer.getLength());
+
+        assertTrue(lexer.find());
+        assertEquals(0.5, lexer.getValue());
+        assertEquals("h", new String(chars, lexer.getUnityStart(), lexer.getUnityEnd() - lexer.getUnityStart()));
+
+        assertTrue(lexer.find());
+        assertEquals(200, lexer.getValue());
+        assertEquals(lexer.getUnityStart(), lexer.getUnityEnd());
+
+        // not an exponent
+        assertTrue(lexer.find());
+        assertEquals(-3, lexer.getValue());
+        assertEquals("ea", new String(chars, lexer.getUnityStart(), lexer.getUnityEnd() - lexer.getUnityStart()));
+
+        assertFalse(lexer.find());
+    }
+
+    /**
+     * Test method for {@link SegmentLexer#getValue()}, has to be identical to {@link Double#parseDouble(String)}.
+     */
+    @Test
+    void testValue() {
+        final String[] tests = {"0", "-0", "+1", "0.1", "0.3", ".000001", "123456789012345", "1234567890123456789", "0.1234567890123456789",
+                "1e22", "1e23", "4.9e-324", "1.7976931348623157E308", "2E-22", "9007199254740993", "3.14159e+5"};
+        for (String test : tests) {
+            this.check(test);
+        }
+
+        final Random random = new Random(42);
+        for (int i = 0; i < 100_000; ++i) {
+            final String number = random.nextInt(100_000) + "." + random.nextInt(1_000_000);
+            this.check(random.nextBoolean() ? number : number + "e" + (random.nextInt(60) - 30));
+        }
+    }
+
+    private void check(final String number) {
+        final SegmentLexer lexer = new SegmentLexer(number.toCharArray(), 0, number.length());
+        assertTrue(lexer.find(), number);
+        assertEquals(Double.doubleToRawLongBits(Double.parseDouble(number)), Double.doubleToRawLongBits(lexer.getValue()), number);
+        assertEquals(number.length(), lexer.getLength(), number);
+    }
+}
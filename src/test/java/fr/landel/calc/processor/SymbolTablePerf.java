@@ -0,0 +1,91 @@
+package fr.landel.calc.processor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Benchmark of {@link SymbolTable} against the previous tries ({@link FunctionsTree} and {@link UnityTree})
+ *
+ * @since Feb 15, 2019
+ * @author Gilles
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SymbolTablePerf {
+
+    private static final char[][] FUNCTIONS = Arrays.stream(Functions.values()).map(f -> f.getFunction().toCharArray()).toArray(char[][]::new);
+    private static final char[][] UNITIES = Arrays.stream(Unity.values()).flatMap(u -> Arrays.stream(u.getSymbols())).map(String::toCharArray)
+            .toArray(char[][]::new);
+
+    @Benchmark
+    public void triesFunctions(final Blackhole blackhole) {
+        for (char[] function : FUNCTIONS) {
+            int start = function.length;
+            while (start > 0 && Arrays.binarySearch(FunctionsTree.CHARS, function[start - 1]) > -1) {
+                --start;
+            }
+            blackhole.consume(FunctionsTree.check(Arrays.copyOfRange(function, start, function.length)));
+        }
+    }
+
+    @Benchmark
+    public void tableFunctions(final Blackhole blackhole) {
+        for (char[] function : FUNCTIONS) {
+            int start = function.length;
+            while (start > 0 && SymbolTable.isFunctionChar(function[start - 1])) {
+                --start;
+            }
+            blackhole.consume(SymbolTable.getFunction(function, start, function.length));
+        }
+    }
+
+    @Benchmark
+    public void triesUnities(final Blackhole blackhole) {
+        for (char[] unity : UNITIES) {
+            blackhole.consume(UnityTree.check(unity, 0, null));
+        }
+    }
+
+    @Benchmark
+    public void tableUnities(final Blackhole blackhole) {
+        for (char[] unity : UNITIES) {
+            blackhole.consume(SymbolTable.matchUnity(unity, 0, unity.length, null));
+        }
+    }
+
+    /**
+     * Runs the benchmarks (in the same JVM, short iterations)
+     *
+     * @throws RunnerException
+     *             on benchmark failure
+     */
+    @Test
+    void testBenchmark() throws RunnerException {
+        final Options options = new OptionsBuilder().include(SymbolTablePerf.class.getSimpleName()).forks(0).warmupIterations(2)
+                .warmupTime(TimeValue.milliseconds(200)).measurementIterations(3).measurementTime(TimeValue.milliseconds(200)).build();
+
+        final Collection<RunResult> results = new Runner(options).run();
+
+        assertEquals(4, results.size());
+    }
+}
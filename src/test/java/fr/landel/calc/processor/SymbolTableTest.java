@@ -0,0 +1,78 @@
+package fr.landel.calc.processor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * test {@link SymbolTable}
+ *
+ * @since Feb 15, 2019
+ * @author Gilles
+ *
+ */
+public class SymbolTableTest {
+
+    /**
+     * Test method for {@link SymbolTable#getFunction(char[], int, int)}.
+     */
+    @Test
+    void testFunction() {
+        for (Functions function : Functions.values()) {
+            final char[] chars = ("(" + function.getFunction() + "(").toCharArray();
+            assertEquals(function, SymbolTable.getFunction(chars, 1, chars.length - 1));
+            // the shorter name can be another function (rand, randn)
+            assertNotEquals(function, SymbolTable.getFunction(chars, 1, chars.length - 2));
+            assertNull(SymbolTable.getFunction(chars, 0, chars.length - 1));
+        }
+        assertNull(SymbolTable.getFunction(new char[0], 0, 0));
+    }
+
+    /**
+     * Test method for {@link SymbolTable#matchUnity(char[], int, int, UnityType)}, has to match the previous {@link UnityTree}.
+     */
+    @Test
+    void testUnity() {
+        final UnityType[] types = new UnityType[UnityType.values().length + 1];
+        System.arraycopy(UnityType.values(), 0, types, 1, types.length - 1);
+
+        for (Unity unity : Unity.values()) {
+            for (String symbol : unity.getSymbols()) {
+                for (String suffix : new String[] {"", "x", "³", "ear"}) {
+                    final char[] chars = (symbol + suffix).toCharArray();
+
+                    for (UnityType type : types) {
+                        final Optional<Unity> expected = UnityTree.check(chars, 0, type);
+                        final int state = SymbolTable.matchUnity(chars, 0, chars.length, type);
+
+                        assertEquals(expected.orElse(null), state != SymbolTable.NONE ? SymbolTable.getUnity(state) : null, symbol + suffix);
+                    }
+                }
+            }
+        }
+
+        final char[] chars = "kmh".toCharArray();
+        final int state = SymbolTable.matchUnity(chars, 1, chars.length, null);
+        assertEquals(Unity.LENGTH_METER, SymbolTable.getUnity(state));
+        assertEquals(1, SymbolTable.getLength(state));
+    }
+
+    /**
+     * Test method for {@link SymbolTable#matchVariable(char[], int, int)}.
+     */
+    @Test
+    void testVariable() {
+        final String[] tests = {"$a", "$rate_b", "$x1", "$", "a", "$$a", "$_", "$é"};
+        final int[] expected = {2, 7, 2, 0, 0, 0, 2, 0};
+
+        for (int i = 0; i < tests.length; ++i) {
+            final char[] chars = tests[i].toCharArray();
+            assertEquals(expected[i], SymbolTable.matchVariable(chars, 0, chars.length), tests[i]);
+            assertEquals(expected[i] == chars.length, Entity.PATTERN_VARIABLE.matcher(tests[i]).matches(), tests[i]);
+        }
+    }
+}
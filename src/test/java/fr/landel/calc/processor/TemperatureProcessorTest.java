@@ -30,10 +30,10 @@ public class TemperatureProcessorTest extends AbstractProcessorTest {
 		checkException("(3K % 4K) >> K", I18n.ERROR_OPERATOR.getI18n("3.000 K", "4.000 K", "%"));
 		checkException("(4K ^ 2K) >> K", I18n.ERROR_OPERATOR.getI18n("4.000 K", "2.000 K", "^"));
 
-		MainProcessor.setPrecision(3);
-		MainProcessor.setUnityAbbrev(true);
-		MainProcessor.setUnitiesSpace(false);
-		MainProcessor.setValuesSpace(false);
+		setPrecision(3);
+		setUnityAbbrev(true);
+		setUnitiesSpace(false);
+		setValuesSpace(false);
 
 		check("(5C + 2K - 2Re) >> K", "4.500K");
 		check("(5C + 2K - 2Re * 2) >> K", "2.000K");
@@ -41,10 +41,10 @@ public class TemperatureProcessorTest extends AbstractProcessorTest {
 		check("(4K % 3) >> K", "1.000K");
 		check("(4K ^ 2) >> K", "16.000K");
 
-		MainProcessor.setPrecision(0);
-		MainProcessor.setUnityAbbrev(false);
-		MainProcessor.setUnitiesSpace(true);
-		MainProcessor.setValuesSpace(false);
+		setPrecision(0);
+		setUnityAbbrev(false);
+		setUnitiesSpace(true);
+		setValuesSpace(false);
 
 		check("(5C + 2K - 2Re) >> C", "-269 celsius");
 	}
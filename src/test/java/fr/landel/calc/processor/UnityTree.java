@@ -7,6 +7,9 @@ import java.util.Set;
 
 import fr.landel.calc.utils.StringUtils;
 
+/**
+ * Previous trie of unities, replaced by {@link SymbolTable} (kept as baseline for {@link SymbolTablePerf})
+ */
 public class UnityTree {
     private UnityTree[] trees;
     private Unity unity;
@@ -71,24 +74,45 @@ public class UnityTree {
     }
 
     static Optional<Unity> check(final char[] array, final int index, final UnityType requiredType) {
-        return check(TREE, array, index, requiredType);
+        return Optional.ofNullable(find(TREE, array, index, array.length, requiredType));
     }
 
     static Optional<Unity> check(final UnityTree[] validator, final char[] array, final int index, final UnityType requiredType) {
-        if (array.length > index) {
+        return Optional.ofNullable(find(validator, array, index, array.length, requiredType));
+    }
+
+    /**
+     * Walks the tree from the index, without copy of the array
+     *
+     * @param array
+     *            the characters
+     * @param index
+     *            the start index
+     * @param end
+     *            the end index (exclusive)
+     * @param requiredType
+     *            the required type (or {@code null})
+     * @return the unity of the longest symbol matching the required type or {@code null}
+     */
+    static Unity find(final char[] array, final int index, final int end, final UnityType requiredType) {
+        return find(TREE, array, index, end, requiredType);
+    }
+
+    private static Unity find(final UnityTree[] validator, final char[] array, final int index, final int end, final UnityType requiredType) {
+        if (end > index) {
             char c = array[index];
             if (validator.length > c && validator[c] != null) {
-                Optional<Unity> unity = Optional.empty();
+                Unity unity = null;
                 if (validator[c].getTrees() != null) {
-                    unity = check(validator[c].getTrees(), array, index + 1, requiredType);
+                    unity = find(validator[c].getTrees(), array, index + 1, end, requiredType);
                 }
-                if (unity.isPresent() && (requiredType == null || requiredType.equals(unity.get().getType()))) {
+                if (unity != null && (requiredType == null || requiredType.equals(unity.getType()))) {
                     return unity;
                 } else if (requiredType == null || requiredType.equals(validator[c].getUnityType())) {
-                    return Optional.ofNullable(validator[c].getUnity());
+                    return validator[c].getUnity();
                 }
             }
         }
-        return Optional.empty();
+        return null;
     }
 }
\ No newline at end of file
@@ -0,0 +1,98 @@
+package fr.landel.calc.processor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * test {@link VariableScope}
+ *
+ * @since Feb 10, 2019
+ * @author Gilles
+ *
+ */
+public class VariableScopeTest {
+
+    /**
+     * Test method for {@link VariableScope#child()} and {@link VariableScope#snapshot()}.
+     * 
+     * @throws ProcessorException
+     *             on processing error
+     */
+    @Test
+    void testScopes() throws ProcessorException {
+        final VariableScope session = new VariableScope();
+        final MainProcessor processor = new MainProcessor(new EvaluationContext(session));
+
+        processor.process("$a=2");
+        assertTrue(session.isDeclared("$a"));
+        assertEquals("2.000", session.get("$a").get().toString());
+
+        // bindings into the current scope only
+        final VariableScope child = session.child();
+        final EvaluationContext context = new EvaluationContext(child);
+        assertEquals("6.000", processor.process("$b=$a*3", context).getResult().get().getResult());
+        assertTrue(child.isDeclared("$b"));
+        assertFalse(session.isDeclared("$b"));
+
+        assertEquals("5.000", processor.process("$a=5", context).getResult().get().getResult());
+        assertEquals("5.000", child.get("$a").get().toString());
+        assertEquals("2.000", session.get("$a").get().toString());
+
+        // copy-on-write
+        final VariableScope snapshot = session.snapshot();
+        processor.process("$a=7");
+        assertEquals("7.000", session.get("$a").get().toString());
+        assertEquals("2.000", snapshot.get("$a").get().toString());
+
+        session.remove("$a");
+        assertFalse(session.isDeclared("$a"));
+        assertTrue(snapshot.isDeclared("$a"));
+    }
+
+    /**
+     * Test method for {@link VariableScope#set(String, Entity)} from many threads.
+     * 
+     * @throws Exception
+     *             on processing error
+     */
+    @Test
+    void testConcurrentSessions() throws Exception {
+        final VariableScope shared = new VariableScope();
+        shared.set("$rate", new Entity(0, 2d));
+        final CompiledFormula formula = new MainProcessor().compile("$x=($rate*$i)");
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<VariableScope>> futures = new ArrayList<>();
+            for (int i = 0; i < 50; ++i) {
+                final int session = i;
+                futures.add(executor.submit(() -> {
+                    final VariableScope scope = shared.child();
+                    final EvaluationContext context = new EvaluationContext(scope);
+                    for (int j = 0; j < 100; ++j) {
+                        scope.set("$i", new Entity(0, (double) session));
+                        formula.evaluate(context);
+                        shared.set("$n" + session + "_" + j, new Entity(0, (double) j));
+                    }
+                    return scope;
+                }));
+            }
+            for (int i = 0; i < futures.size(); ++i) {
+                assertEquals(2d * i, futures.get(i).get().get("$x").get().getValue());
+            }
+            assertEquals(50 * 100 + 1, shared.getBindings().size());
+            assertFalse(shared.isDeclared("$x"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
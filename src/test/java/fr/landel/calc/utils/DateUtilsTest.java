@@ -1,5 +1,9 @@
 package fr.landel.calc.utils;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
 import org.junit.jupiter.api.Test;
 
 /**
@@ -23,4 +27,56 @@ public class DateUtilsTest {
         // System.out.printf("%.6f%n", toZeroNanosecond(4) / (24 * 60 * 60 * 1_000_000_000d));
         System.out.printf("%.6f%n", DateUtils.toZeroNanosecond(2018) / (24 * 60 * 60 * 1_000_000_000d) / 365);
     }
+
+    @Test
+    public void testClosedForm() {
+        for (int year = -10; year < 10_000; ++year) {
+            assertEquals(loopToZeroNanosecond(year), DateUtils.toZeroNanosecond(year), 0, String.valueOf(year));
+        }
+
+        final Random random = new Random(42);
+        for (int i = 0; i < 100_000; ++i) {
+            final double date = (random.nextDouble() * 10_010 - 10) * DateUtils.NANO_PER_YEAR_AVG;
+            assertEquals(loopFromZeroNanosecond(date), DateUtils.fromZeroNanosecond(date), 0, String.valueOf(date));
+        }
+        for (int year = 0; year < 3_000; ++year) {
+            final double date = DateUtils.toZeroNanosecond(year);
+            for (double d : new double[] {date - 1, date, date + 1, date + DateUtils.NANO_PER_YEAR, date + DateUtils.NANO_PER_YEAR_LEAP}) {
+                assertEquals(loopFromZeroNanosecond(d), DateUtils.fromZeroNanosecond(d), 0, String.valueOf(d));
+            }
+        }
+    }
+
+    // previous implementations, walking every leap year
+
+    private static double loopToZeroNanosecond(final int year) {
+        int leap = 0;
+        for (int i = 0; i < year; i = nextLeapYear(i)) {
+            ++leap;
+        }
+        return DateUtils.NANO_PER_YEAR * (year - leap) + DateUtils.NANO_PER_YEAR_LEAP * leap;
+    }
+
+    private static double loopFromZeroNanosecond(final double date) {
+        int leap = 0;
+        int year = 0;
+        for (int i = 0; DateUtils.NANO_PER_YEAR * (i - leap) + DateUtils.NANO_PER_YEAR_LEAP * leap < date; i = nextLeapYear(i)) {
+            ++leap;
+            year = i;
+        }
+        double diff = date - (DateUtils.NANO_PER_YEAR * (year - leap) + DateUtils.NANO_PER_YEAR_LEAP * leap);
+        if (diff > DateUtils.NANO_PER_YEAR) {
+            return year + Math.round(diff / DateUtils.NANO_PER_YEAR);
+        } else {
+            return year;
+        }
+    }
+
+    private static int nextLeapYear(final int leapYear) {
+        final int next = leapYear + 4;
+        if (next % 100 != 0 || next % 400 == 0) {
+            return next;
+        }
+        return nextLeapYear(next);
+    }
 }
@@ -0,0 +1,67 @@
+package fr.landel.calc.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test {@link Histogram}
+ *
+ * @since Mar 2, 2019
+ * @author Gilles
+ *
+ */
+public class HistogramTest {
+
+    /**
+     * Test method for the buckets, each value is in the bucket it's bounded by.
+     */
+    @Test
+    void testBuckets() {
+        final Random random = new Random(2);
+        for (int i = 0; i < 100_000; ++i) {
+            final long value = (random.nextLong() >>> 1) >> random.nextInt(Long.SIZE - 1);
+            final int index = Histogram.index(value);
+            assertTrue(value <= Histogram.upperBound(index), String.valueOf(value));
+            assertTrue(index == 0 || value > Histogram.upperBound(index - 1), String.valueOf(value));
+        }
+        assertEquals(Long.MAX_VALUE, Histogram.upperBound(Histogram.index(Long.MAX_VALUE)));
+    }
+
+    /**
+     * Test method for {@link Histogram#getSnapshot()}, the percentiles are within 1/16 of the exact ones.
+     */
+    @Test
+    void testSnapshot() {
+        final Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getSnapshot().getCount());
+
+        final Random random = new Random(3);
+        final long[] values = new long[10_000];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = (long) Math.exp(random.nextGaussian() * 2 + 10);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        final Histogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(values.length, snapshot.getCount());
+        assertEquals(values[values.length - 1], snapshot.getMax());
+        assertEquals(Arrays.stream(values).sum() / values.length, snapshot.getMean());
+        checkPercentile(values[values.length / 2 - 1], snapshot.getP50());
+        checkPercentile(values[values.length * 99 / 100 - 1], snapshot.getP99());
+        checkPercentile(values[values.length * 999 / 1000 - 1], snapshot.getP999());
+
+        histogram.reset();
+        assertEquals(0, histogram.getSnapshot().getCount());
+        assertEquals(0, histogram.getSnapshot().getMax());
+    }
+
+    private static void checkPercentile(final long expected, final long actual) {
+        assertTrue(actual >= expected && actual <= expected + expected / 16, expected + " / " + actual);
+    }
+}
@@ -0,0 +1,178 @@
+package fr.landel.calc.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test {@link Logger}
+ *
+ * @since Mar 2, 2019
+ * @author Gilles
+ *
+ */
+public class LoggerTest {
+
+    private static final long TIMEOUT = 5;
+
+    /**
+     * Test method for {@link StringUtils#inject(StringBuilder, String, Object...)}.
+     */
+    @Test
+    void testInject() {
+        assertEquals(">a 1 and b", StringUtils.inject(new StringBuilder(">"), "a {} and {}", 1, "b").toString());
+        assertEquals("{} and {}", StringUtils.inject(new StringBuilder(), "{} and {}").toString());
+        assertEquals("1 and ", StringUtils.inject(new StringBuilder(), "{} and {}", 1).toString());
+        assertEquals("1 2", StringUtils.inject(new StringBuilder(), "{} {}", 1, 2, 3).toString());
+        assertEquals("null}", StringUtils.inject(new StringBuilder(), "{}}", (Object) null).toString());
+        assertEquals("no field", StringUtils.inject(new StringBuilder(), "no field", 1).toString());
+    }
+
+    /**
+     * Test method for {@link Logger#flush()}, the messages are formatted by the writer thread, after the level check.
+     */
+    @Test
+    void testFlush() {
+        final CapturedOutput output = new CapturedOutput();
+        final Logger.Writer writer = new Logger.Writer(output, true, true, 16);
+        writer.start();
+        final Logger logger = new Logger(LoggerTest.class, writer);
+
+        final List<String> threads = Collections.synchronizedList(new ArrayList<>());
+        final Object argument = new Object() {
+            @Override
+            public String toString() {
+                threads.add(Thread.currentThread().getName());
+                return "arg";
+            }
+        };
+
+        logger.debug("debug {}", argument);
+        logger.info("info {}", argument);
+        logger.error(new IllegalStateException("cause"), "error {}", 2);
+        writer.flush();
+
+        assertEquals(Arrays.asList("logger"), threads);
+        assertEquals(Arrays.asList("[INFO] LoggerTest - info arg"), output.messages());
+        assertEquals(Arrays.asList("[ERROR] LoggerTest - error 2", "cause"), output.errors());
+
+        // nothing queued
+        writer.flush();
+        assertEquals(1, output.messages().size());
+    }
+
+    /**
+     * Test method for the drop policy, the count of dropped messages is logged once the buffer is drained.
+     *
+     * @throws InterruptedException
+     *             on interruption
+     */
+    @Test
+    void testDrop() throws InterruptedException {
+        final CapturedOutput output = new CapturedOutput();
+        final Logger.Writer writer = new Logger.Writer(output, false, false, 2);
+        writer.start();
+        final Logger logger = new Logger(LoggerTest.class, writer);
+
+        output.pause();
+        logger.info("message {}", 1);
+        assertTrue(output.paused.await(TIMEOUT, TimeUnit.SECONDS));
+
+        // the writer is stopped on the first message, the buffer keeps 2 more
+        for (int i = 2; i < 7; ++i) {
+            logger.info("message {}", i);
+        }
+
+        output.resume();
+        writer.flush();
+
+        assertEquals(Arrays.asList("[INFO] LoggerTest - message 1", "[WARN] Logger - 3 messages dropped, the log buffer is full",
+                "[INFO] LoggerTest - message 2", "[INFO] LoggerTest - message 3"), output.messages());
+    }
+
+    /**
+     * Test method for the block policy, the caller waits until the buffer has room.
+     *
+     * @throws InterruptedException
+     *             on interruption
+     */
+    @Test
+    void testBlock() throws InterruptedException {
+        final CapturedOutput output = new CapturedOutput();
+        final Logger.Writer writer = new Logger.Writer(output, false, true, 1);
+        writer.start();
+        final Logger logger = new Logger(LoggerTest.class, writer);
+
+        output.pause();
+        logger.info("message {}", 1);
+        assertTrue(output.paused.await(TIMEOUT, TimeUnit.SECONDS));
+        logger.info("message {}", 2);
+
+        final Thread caller = new Thread(() -> logger.info("message {}", 3));
+        caller.start();
+
+        final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+        while (caller.getState() != Thread.State.WAITING && System.nanoTime() < end) {
+            Thread.sleep(1);
+        }
+        assertEquals(Thread.State.WAITING, caller.getState());
+
+        output.resume();
+        caller.join(TimeUnit.SECONDS.toMillis(TIMEOUT));
+        writer.flush();
+
+        assertEquals(Arrays.asList("[INFO] LoggerTest - message 1", "[INFO] LoggerTest - message 2", "[INFO] LoggerTest - message 3"),
+                output.messages());
+    }
+
+    /**
+     * Output keeping the lines without their date, can stop the writer thread
+     */
+    private static class CapturedOutput implements Logger.Output {
+        private final List<String> out = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> err = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch paused = new CountDownLatch(1);
+        private volatile CountDownLatch resumed = new CountDownLatch(0);
+
+        @Override
+        public void write(final CharSequence out, final CharSequence err) {
+            add(this.out, out);
+            add(this.err, err);
+
+            this.paused.countDown();
+            try {
+                this.resumed.await(TIMEOUT, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private static void add(final List<String> lines, final CharSequence text) {
+            Arrays.stream(text.toString().split("\\R")).filter(l -> !l.isEmpty()).map(l -> l.replaceFirst("^\\S+ ", "")).forEach(lines::add);
+        }
+
+        private void pause() {
+            this.resumed = new CountDownLatch(1);
+        }
+
+        private void resume() {
+            this.resumed.countDown();
+        }
+
+        private List<String> messages() {
+            return new ArrayList<>(this.out);
+        }
+
+        private List<String> errors() {
+            return new ArrayList<>(this.err);
+        }
+    }
+}
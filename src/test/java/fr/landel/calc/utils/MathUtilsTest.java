@@ -0,0 +1,71 @@
+package fr.landel.calc.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test {@link MathUtils}
+ *
+ * @since Feb 26, 2019
+ * @author Gilles
+ *
+ */
+public class MathUtilsTest {
+
+    /**
+     * Test method for {@link MathUtils#fact(long)} and {@link MathUtils#fact(double)}.
+     */
+    @Test
+    void testFact() {
+        long expected = 1;
+        for (int n = 0; n <= 20; ++n) {
+            expected *= Math.max(n, 1);
+            assertEquals(expected, MathUtils.fact((long) n));
+            assertEquals((double) expected, MathUtils.fact((double) n));
+        }
+        assertThrows(ArithmeticException.class, () -> MathUtils.fact(21L));
+        assertThrows(ArithmeticException.class, () -> MathUtils.fact(-1L));
+
+        assertEquals(MathUtils.factExact(170).doubleValue(), MathUtils.fact(170d));
+        assertEquals(Double.POSITIVE_INFINITY, MathUtils.fact(171d));
+        assertTrue(Double.isNaN(MathUtils.fact(-2d)));
+        assertTrue(Double.isNaN(MathUtils.fact(Double.NaN)));
+
+        // Gamma(1.5) = sqrt(pi) / 2, Gamma(0.5) = sqrt(pi)
+        assertEquals(Math.sqrt(Math.PI) / 2, MathUtils.fact(0.5), 1e-14);
+        assertEquals(Math.sqrt(Math.PI), MathUtils.fact(-0.5), 1e-14);
+        assertEquals(MathUtils.fact(1.5) * 2.5, MathUtils.fact(2.5), 1e-13);
+    }
+
+    /**
+     * Test method for {@link MathUtils#gamma(double)}, has to match the factorials.
+     */
+    @Test
+    void testGamma() {
+        for (int n = 1; n <= 171; ++n) {
+            final double factorial = MathUtils.fact(n - 1d);
+            assertEquals(factorial, MathUtils.gamma(n), factorial * 1e-12);
+        }
+        assertEquals(Double.POSITIVE_INFINITY, MathUtils.gamma(172.5));
+    }
+
+    /**
+     * Test method for {@link MathUtils#factExact(int)}, has to match the product.
+     */
+    @Test
+    void testFactExact() {
+        BigInteger expected = BigInteger.ONE;
+        for (int n = 0; n <= 1_500; ++n) {
+            if (n > 0) {
+                expected = expected.multiply(BigInteger.valueOf(n));
+            }
+            assertEquals(expected, MathUtils.factExact(n));
+        }
+        assertThrows(ArithmeticException.class, () -> MathUtils.factExact(-1));
+    }
+}
@@ -0,0 +1,192 @@
+package fr.landel.calc.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test {@link NumberFormatter}
+ *
+ * @since Feb 17, 2019
+ * @author Gilles
+ *
+ */
+public class NumberFormatterTest {
+
+    /**
+     * Test method for {@link NumberFormatter#appendFixed(StringBuilder, double, int, boolean)}, has to be identical to the previous
+     * formatter.
+     */
+    @Test
+    void testFixed() {
+        final double[] tests = {0, -0d, 1, -1, 0.5, -0.5, 0.0005, -0.0005, 0.001, 1e-4, -1.5e-5, 12.645555, -12.645555, 1e7, 1.2345678e7, 123e20,
+                -9.87654321e16, 1e300, Double.MIN_VALUE, Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (double test : tests) {
+            this.check(test);
+        }
+
+        final Random random = new Random(42);
+        for (int i = 0; i < 200_000; ++i) {
+            final double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(40) - 20);
+            this.check(random.nextBoolean() ? value : Math.rint(value * 1_000) / 1_000);
+        }
+    }
+
+    private void check(final double value) {
+        final StringBuilder builder = new StringBuilder();
+        for (int precision = 0; precision <= 17; ++precision) {
+            for (boolean intermediate : new boolean[] {false, true}) {
+                builder.setLength(0);
+                NumberFormatter.appendFixed(builder, value, precision, intermediate);
+                assertEquals(stringify(value, intermediate, precision), builder.toString(), value + " " + precision);
+            }
+        }
+    }
+
+    /**
+     * Test method for {@link NumberFormatter#append(StringBuilder, double, int, boolean)}.
+     */
+    /**
+     * Test method for {@link NumberFormatter#appendFixed(StringBuilder, double, int, boolean)}, around the values which cannot be scaled
+     * to the precision in a long.
+     */
+    @Test
+    void testLarge() {
+        final StringBuilder builder = new StringBuilder();
+        final double boundary = 0x1p63 / 1e6;
+        final double[] tests = {1e14, -1e14, Math.nextDown(boundary), boundary, Math.nextUp(boundary), 5.109094217170944e19};
+        final String[] expected = {"100000000000000.000000", "-100000000000000.000000", "9223372036854.773000", "9223372036854.775000",
+                "9223372036854.777000", "51090942171709440000.000000"};
+
+        for (int i = 0; i < tests.length; ++i) {
+            builder.setLength(0);
+            assertEquals(expected[i], NumberFormatter.appendFixed(builder, tests[i], 6, false).toString(), String.valueOf(tests[i]));
+            builder.setLength(0);
+            assertEquals(expected[i], NumberFormatter.append(builder, tests[i], 6, false).toString(), String.valueOf(tests[i]));
+        }
+
+        builder.setLength(0);
+        assertEquals("Infinity", NumberFormatter.appendFixed(builder, Double.POSITIVE_INFINITY, 3, false).toString());
+    }
+
+    @Test
+    void testScientific() {
+        final StringBuilder builder = new StringBuilder();
+        final double[] tests = {12.5, 0.0004, -0.0004, 1.5e20, 9.9996e15, -2e-310, 0, 1e15};
+        final String[] expected = {"12.500", "4.000E-4", "-4.000E-4", "1.500E20", "1.000E16", "-2.000E-310", "0.000", "1.000E15"};
+
+        for (int i = 0; i < tests.length; ++i) {
+            builder.setLength(0);
+            assertEquals(expected[i], NumberFormatter.append(builder, tests[i], 3, true).toString());
+        }
+
+        builder.setLength(0);
+        assertEquals("0.000", NumberFormatter.append(builder, 0.0004, 3, false).toString());
+    }
+
+    // previous implementation, through Double.toString
+
+    private static String stringify(final double input, final boolean intermediate, final int precision) {
+        if (!Double.isFinite(input)) {
+            return Double.toString(input);
+        }
+
+        double rounded = MathUtils.round(input, precision);
+
+        final String value = removeExponent(Double.toString(rounded));
+        final int dot = value.indexOf('.');
+        final int length = dot + 1 + precision;
+        final String result;
+
+        if (intermediate && !value.substring(dot + 1).chars().anyMatch(v -> v != '0')) {
+            result = value.substring(0, dot);
+
+        } else if (length > value.length()) {
+            char[] chars = new char[length - value.length()];
+            Arrays.fill(chars, '0');
+            result = value + new String(chars);
+
+        } else if (precision > 0) {
+            result = value.substring(0, length);
+
+        } else if (dot > -1) {
+            result = value.substring(0, dot);
+
+        } else {
+            result = value;
+        }
+
+        return result;
+    }
+
+    private static String removeExponent(final String input) {
+
+        final int exp = Math.max(input.indexOf('E'), input.indexOf('e'));
+
+        if (exp > -1) {
+            int dot = input.indexOf('.');
+
+            if (dot < 0) {
+                dot = exp;
+            }
+
+            final boolean positive = input.indexOf('-') != 0;
+            final int nbExp = Integer.parseInt(input.substring(exp + 1));
+            final boolean posExp = nbExp > 0;
+
+            char[] in = input.toCharArray();
+            char[] out;
+
+            if (posExp) { // prepare array
+                out = new char[in.length + nbExp];
+            } else {
+                out = new char[in.length + -1 * nbExp];
+            }
+
+            Arrays.fill(out, '0');
+
+            int pos = 0;
+
+            if (posExp) { // fill digits in front of dot
+                System.arraycopy(in, 0, out, pos, dot);
+            } else {
+                pos = -1 * nbExp + 2;
+                if (positive) {
+                    System.arraycopy(in, 0, out, pos - 1, dot);
+                } else {
+                    System.arraycopy(in, 1, out, pos, dot - 1);
+                }
+            }
+
+            if (exp > dot) { // fill digits after dot
+                if (posExp) {
+                    pos = Math.min(exp - dot - 1, nbExp);
+                    System.arraycopy(in, dot + 1, out, dot, pos);
+                } else {
+                    pos += dot - 1;
+                    System.arraycopy(in, dot + 1, out, pos, exp - dot - 1);
+                }
+            }
+
+            if (posExp && exp - dot > nbExp) { // append digit after dot
+                pos = dot + pos + 1;
+                System.arraycopy(in, pos, out, nbExp + dot + 1, exp - pos);
+            }
+
+            if (posExp) { // set dot
+                out[nbExp + dot] = '.';
+            } else if (positive) {
+                out[1] = '.';
+            } else {
+                out[0] = '-';
+                out[2] = '.';
+            }
+
+            return new String(out);
+        }
+        return input;
+    }
+}
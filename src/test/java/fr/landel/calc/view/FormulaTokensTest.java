@@ -0,0 +1,91 @@
+package fr.landel.calc.view;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * test {@link FormulaTokens}
+ *
+ * @since Feb 25, 2019
+ * @author Gilles
+ *
+ */
+public class FormulaTokensTest {
+
+    private static final String CHARS = "()+*/cosqrpi$x12 ";
+
+    /**
+     * Test method for {@link FormulaTokens#find(int)} and {@link FormulaTokens#getPair(int)}.
+     */
+    @Test
+    void testTokens() {
+        final FormulaTokens tokens = new FormulaTokens();
+        tokens.insert(0, "(1+cos(pi()))*(abc");
+
+        assertEquals(10, tokens.size());
+        assertEquals(18, tokens.length());
+
+        final int cos = tokens.find(4);
+        assertEquals(FormulaTokens.FUNCTION, tokens.getType(cos));
+        assertEquals(3, tokens.getStart(cos));
+        assertEquals(6, tokens.getEnd(cos));
+        assertEquals(FormulaTokens.WORD, tokens.getType(tokens.find(16)));
+        assertEquals(-1, tokens.find(1));
+
+        assertEquals(tokens.find(12), tokens.getPair(tokens.find(0)));
+        assertEquals(tokens.find(11), tokens.getPair(tokens.find(6)));
+        assertEquals(-1, tokens.getPair(tokens.find(14)));
+
+        // splits the word, then merges it again
+        tokens.insert(4, "+");
+        assertEquals(FormulaTokens.WORD, tokens.getType(tokens.find(3)));
+        assertEquals(4, tokens.getEnd(tokens.find(3)));
+        tokens.remove(4, 1);
+        assertEquals(FormulaTokens.FUNCTION, tokens.getType(tokens.find(3)));
+
+        // closes the last parenthesis
+        tokens.insert(18, ")");
+        assertEquals(tokens.find(18), tokens.getPair(tokens.find(14)));
+    }
+
+    /**
+     * Test method for {@link FormulaTokens#insert(int, String)} and {@link FormulaTokens#remove(int, int)}, has to match the tokens read
+     * from scratch.
+     */
+    @Test
+    void testEdits() {
+        final Random random = new Random(25);
+        final FormulaTokens tokens = new FormulaTokens();
+        final StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < 5_000; ++i) {
+            final int offset = random.nextInt(text.length() + 1);
+            if (offset < text.length() && random.nextInt(3) == 0) {
+                final int count = 1 + random.nextInt(Math.min(4, text.length() - offset));
+                text.delete(offset, offset + count);
+                tokens.remove(offset, count);
+            } else {
+                final StringBuilder inserted = new StringBuilder();
+                for (int j = random.nextInt(4); j >= 0; --j) {
+                    inserted.append(CHARS.charAt(random.nextInt(CHARS.length())));
+                }
+                text.insert(offset, inserted);
+                tokens.insert(offset, inserted.toString());
+            }
+
+            final FormulaTokens expected = new FormulaTokens();
+            expected.insert(0, text.toString());
+            assertEquals(expected.length(), tokens.length());
+            assertEquals(expected.size(), tokens.size(), text.toString());
+            for (int t = 0; t < expected.size(); ++t) {
+                assertEquals(expected.getStart(t), tokens.getStart(t), text.toString());
+                assertEquals(expected.getEnd(t), tokens.getEnd(t), text.toString());
+                assertEquals(expected.getType(t), tokens.getType(t), text.toString());
+                assertEquals(expected.getPair(t), tokens.getPair(t), text.toString());
+            }
+        }
+    }
+}
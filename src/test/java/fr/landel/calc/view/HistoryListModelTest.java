@@ -0,0 +1,143 @@
+package fr.landel.calc.view;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+
+import org.junit.jupiter.api.Test;
+
+import fr.landel.calc.view.HistoryListModel.RowType;
+
+/**
+ * test {@link HistoryListModel}
+ *
+ * @since Mar 2, 2019
+ * @author Gilles
+ *
+ */
+public class HistoryListModelTest {
+
+    /**
+     * Test method for {@link HistoryListModel#add(String, RowType)} and {@link HistoryListModel#insertFirst(String[], RowType[], int)}, only
+     * the added interval is fired.
+     */
+    @Test
+    void testAdd() {
+        final HistoryListModel model = new HistoryListModel();
+        final Events events = new Events(model);
+
+        // beyond the initial capacity
+        for (int i = 0; i < 100; ++i) {
+            model.add("row" + i, i % 2 == 0 ? RowType.FORMULA : RowType.SUCCESS);
+        }
+        assertEquals(100, model.getSize());
+        assertEquals("added 0-0", events.get(0));
+        assertEquals("added 99-99", events.get(99));
+        assertEquals(100, events.size());
+
+        events.clear();
+        model.insertFirst(new String[] {"first", "error", "unused"}, new RowType[] {RowType.FORMULA, RowType.ERROR, RowType.SUCCESS}, 2);
+        assertEquals(Arrays.asList("added 0-1"), events);
+        assertEquals(102, model.getSize());
+        assertEquals("first", model.getElementAt(0));
+        assertEquals(RowType.ERROR, model.getType(1));
+        assertEquals("row0", model.getElementAt(2));
+        assertEquals("row99", model.getElementAt(101));
+        assertEquals(RowType.SUCCESS, model.getType(101));
+
+        // nothing to insert
+        events.clear();
+        model.insertFirst(new String[0], new RowType[0], 0);
+        assertEquals(0, events.size());
+
+        assertNull(model.getElementAt(-1));
+        assertNull(model.getElementAt(102));
+        assertNull(model.getType(102));
+    }
+
+    /**
+     * Test method for {@link HistoryListModel#set(int, String, RowType)}, {@link HistoryListModel#remove(int)} and
+     * {@link HistoryListModel#clear()}.
+     */
+    @Test
+    void testRemove() {
+        final HistoryListModel model = new HistoryListModel();
+        model.add("1+1", RowType.FORMULA);
+        model.add("2", RowType.SUCCESS);
+        model.add("1/0", RowType.FORMULA);
+        model.add("error", RowType.ERROR);
+
+        final Events events = new Events(model);
+
+        model.set(3, "1", RowType.SUCCESS);
+        assertEquals(Arrays.asList("changed 3-3"), events);
+        assertEquals("1", model.getElementAt(3));
+        assertEquals(RowType.SUCCESS, model.getType(3));
+
+        events.clear();
+        model.remove(1);
+        assertEquals(Arrays.asList("removed 1-1"), events);
+        assertEquals(3, model.getSize());
+        assertEquals("1/0", model.getElementAt(1));
+        assertEquals(RowType.FORMULA, model.getType(1));
+
+        // out of bounds
+        events.clear();
+        model.remove(3);
+        model.set(3, "2", RowType.SUCCESS);
+        assertEquals(0, events.size());
+
+        model.clear();
+        assertEquals(Arrays.asList("removed 0-2"), events);
+        assertEquals(0, model.getSize());
+        assertNull(model.getElementAt(0));
+
+        // already empty
+        events.clear();
+        model.clear();
+        assertEquals(0, events.size());
+
+        model.add("2", RowType.FORMULA);
+        assertEquals(Arrays.asList("added 0-0"), events);
+        assertEquals("2", model.getElementAt(0));
+    }
+
+    /**
+     * Events fired by the model, as "type first-last"
+     */
+    private static class Events extends ArrayList<String> implements ListDataListener {
+
+        /**
+         * serialVersionUID
+         */
+        private static final long serialVersionUID = 4650419946187318337L;
+
+        private Events(final HistoryListModel model) {
+            model.addListDataListener(this);
+        }
+
+        @Override
+        public void intervalAdded(final ListDataEvent e) {
+            this.add(e, "added");
+        }
+
+        @Override
+        public void intervalRemoved(final ListDataEvent e) {
+            this.add(e, "removed");
+        }
+
+        @Override
+        public void contentsChanged(final ListDataEvent e) {
+            this.add(e, "changed");
+        }
+
+        private void add(final ListDataEvent event, final String type) {
+            this.add(type + " " + event.getIndex0() + "-" + event.getIndex1());
+        }
+    }
+}